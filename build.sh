@@ -9,11 +9,20 @@ echo "Building VRecon Demo Client..."
 mvn clean package -q
 
 JAR_NAME="vrecon-demo-client.jar"
+ARCHIVE_NAME="vrecon-demo-client.jsa"
 SOURCE_JAR="target/vrecon-demo-client-1.0.0-SNAPSHOT.jar"
 
 if [ -f "$SOURCE_JAR" ]; then
     cp "$SOURCE_JAR" "$JAR_NAME"
     echo "Build successful: $JAR_NAME"
+    # Class data sharing archive for faster startup, recorded for the copied jar it is used with
+    rm -f "$ARCHIVE_NAME"
+    if java -XX:ArchiveClassesAtExit="$SCRIPT_DIR/$ARCHIVE_NAME" -Xlog:cds=error \
+            -cp "$SCRIPT_DIR/$JAR_NAME" io.vrecon.demo.TrainingRun; then
+        echo "Startup archive: $ARCHIVE_NAME"
+    else
+        echo "Warning: could not record $ARCHIVE_NAME, commands start without it"
+    fi
 else
     echo "Error: JAR not found at $SOURCE_JAR"
     exit 1
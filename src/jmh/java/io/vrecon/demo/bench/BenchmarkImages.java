@@ -0,0 +1,26 @@
+package io.vrecon.demo.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Locates the sample images used by the benchmarks.
+ */
+public final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * @param name File name of a bundled sample image
+     * @return Path of the image in the directory given by {@code vrecon.bench.images}
+     */
+    public static Path resolve(String name) {
+        Path image = Path.of(System.getProperty("vrecon.bench.images", ".")).resolve(name);
+        if (!Files.isRegularFile(image)) {
+            throw new IllegalStateException("Benchmark image not found: " + image.toAbsolutePath()
+                + " (run from the project directory or set -Dvrecon.bench.images)");
+        }
+        return image;
+    }
+}
@@ -0,0 +1,112 @@
+package io.vrecon.demo.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.vrecon.demo.client.VReconApiClient;
+import io.vrecon.demo.model.RecognizeResponse;
+import io.vrecon.demo.model.StateResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full client round trips against an in-process stub server on the loopback interface.
+ * Measures what the client adds per call: body streaming, connection reuse and parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final byte[] RECOGNIZE_RESPONSE = ("{\"success\":true,"
+        + "\"requestUuid\":\"550e8400-e29b-41d4-a716-446655440000\",\"state\":\"PENDING\"}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] STATE_RESPONSE = ("{\"success\":true,"
+        + "\"requestUuid\":\"550e8400-e29b-41d4-a716-446655440000\",\"state\":\"DONE\","
+        + "\"result\":{\"vehicle_found\":true,\"make\":\"Toyota\",\"model\":\"Camry\",\"color\":\"white\","
+        + "\"recognition_probability\":0.94,\"rect_area\":{\"x\":112,\"y\":80,\"width\":1450,\"height\":920},"
+        + "\"damage_detected\":false,\"multiple_vehicles_in_image\":false},"
+        + "\"createdAt\":\"2026-01-07T12:00:00.000Z\",\"updatedAt\":\"2026-01-07T12:00:04.000Z\"}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"sample1.webp", "foto1.png"})
+    public String image;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private VReconApiClient client;
+    private String imagePath;
+
+    @Setup
+    public void setup() throws IOException {
+        // Without TCP_NODELAY on the server, small responses wait for delayed ACKs (~40 ms per call)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        imagePath = BenchmarkImages.resolve(image).toString();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.createContext("/api/securapi/recognize", exchange -> respond(exchange, RECOGNIZE_RESPONSE));
+        server.createContext("/api/securapi/state", exchange -> respond(exchange, STATE_RESPONSE));
+        serverThreads = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverThreads);
+        server.start();
+        client = new VReconApiClient("http://127.0.0.1:" + server.getAddress().getPort(), "vrecon_benchmark", false);
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        try (InputStream request = exchange.getRequestBody()) {
+            byte[] discard = new byte[16 * 1024];
+            while (request.read(discard) >= 0) {
+                // Drain the upload so that the connection can be reused
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(body);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public RecognizeResponse recognize() throws IOException {
+        return client.recognize(imagePath);
+    }
+
+    @Benchmark
+    public StateResponse getState() throws IOException {
+        return client.getState("550e8400-e29b-41d4-a716-446655440000");
+    }
+
+    @Benchmark
+    public StateResponse getStateOnly() throws IOException {
+        return client.getState("550e8400-e29b-41d4-a716-446655440000", true);
+    }
+}
@@ -0,0 +1,59 @@
+package io.vrecon.demo.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.vrecon.demo.model.RecognizeRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a {@link RecognizeRequest} DTO holding an already encoded image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecognizeRequestBenchmark {
+
+    @Param({"sample1.webp", "foto1.png"})
+    public String image;
+
+    private RecognizeRequest request;
+    private ObjectMapper objectMapper;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setup() throws IOException {
+        String encoded = Base64.getEncoder().encodeToString(Files.readAllBytes(BenchmarkImages.resolve(image)));
+        request = new RecognizeRequest("vrecon_benchmark", encoded, image.endsWith(".png") ? "png" : "webp");
+        objectMapper = new ObjectMapper();
+        writer = objectMapper.writerFor(RecognizeRequest.class);
+    }
+
+    @Benchmark
+    public String toStringMapper() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(request);
+    }
+
+    @Benchmark
+    public byte[] toBytesWriter() throws JsonProcessingException {
+        return writer.writeValueAsBytes(request);
+    }
+}
@@ -0,0 +1,66 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vrecon.demo.bench.BenchmarkImages;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64 encoding of the recognize request body: the streaming channel used by the clients
+ * against encoding the whole file in memory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecognizeBodyBenchmark {
+
+    @Param({"sample1.webp", "sample2.webp", "sample3.webp", "sample4.webp", "sample5.webp", "foto1.png"})
+    public String image;
+
+    private Path path;
+    private RecognizeRequestBody body;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    @Setup
+    public void setup() throws IOException {
+        path = BenchmarkImages.resolve(image);
+        body = new RecognizeRequestBody(new ObjectMapper(), "vrecon_benchmark", PreparedImage.original(path));
+    }
+
+    @Benchmark
+    public long streamingBody() throws IOException {
+        long total = 0;
+        try (ReadableByteChannel channel = body.open()) {
+            int read;
+            while ((read = channel.read(buffer.clear())) >= 0) {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public String inMemoryBase64() throws IOException {
+        return Base64.getEncoder().encodeToString(Files.readAllBytes(path));
+    }
+}
@@ -0,0 +1,80 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vrecon.demo.model.StateResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialization of state responses, for a poll that is still PENDING and for a DONE
+ * response carrying a full RecognitionResult.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateParseBenchmark {
+
+    private static final String PENDING = "{\"success\":true,\"requestUuid\":\"550e8400-e29b-41d4-a716-446655440000\","
+        + "\"state\":\"PENDING\",\"result\":null,\"createdAt\":\"2026-01-07T12:00:00.000Z\","
+        + "\"updatedAt\":\"2026-01-07T12:00:00.000Z\",\"error\":null}";
+
+    private static final String DONE = "{\"success\":true,\"requestUuid\":\"550e8400-e29b-41d4-a716-446655440000\","
+        + "\"state\":\"DONE\",\"result\":{\"vehicle_found\":true,\"make\":\"Toyota\",\"model\":\"Camry\","
+        + "\"generation\":\"XV70\",\"color\":\"white\",\"side\":\"front\",\"angle\":\"front-left\","
+        + "\"recognition_probability\":0.94,\"rect_area\":{\"x\":112,\"y\":80,\"width\":1450,\"height\":920},"
+        + "\"damage_detected\":true,\"damage_area\":[{\"x\":300,\"y\":420,\"width\":180,\"height\":95},"
+        + "{\"x\":900,\"y\":510,\"width\":60,\"height\":40}],\"detection_notes\":\"Scratch on front bumper\","
+        + "\"multiple_vehicles_in_image\":false},\"createdAt\":\"2026-01-07T12:00:00.000Z\","
+        + "\"updatedAt\":\"2026-01-07T12:00:04.000Z\",\"error\":null}";
+
+    @Param({"PENDING", "DONE"})
+    public String payload;
+
+    private byte[] body;
+    private ObjectMapper objectMapper;
+    private StateResponseParser parser;
+
+    @Setup
+    public void setup() {
+        body = ("DONE".equals(payload) ? DONE : PENDING).getBytes(StandardCharsets.UTF_8);
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        parser = new StateResponseParser(objectMapper);
+    }
+
+    /**
+     * The original path: decode the body to a String, then bind it with an ad-hoc readValue.
+     */
+    @Benchmark
+    public StateResponse stringThenBind() throws IOException {
+        return objectMapper.readValue(new String(body, StandardCharsets.UTF_8), StateResponse.class);
+    }
+
+    @Benchmark
+    public StateResponse streamFull() throws IOException {
+        return parser.parse(new ByteArrayInputStream(body), false);
+    }
+
+    @Benchmark
+    public StateResponse streamStateOnly() throws IOException {
+        return parser.parse(new ByteArrayInputStream(body), true);
+    }
+}
@@ -0,0 +1,63 @@
+package io.vrecon.demo;
+
+import io.vrecon.demo.mock.Distribution;
+import io.vrecon.demo.mock.MockServerSettings;
+import io.vrecon.demo.mock.MockVReconServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Workload of the training run that records a class data sharing archive: runs recognize,
+ * recognize-wait and state against an in-process mock, so the archive holds the classes these
+ * commands load on the way to their first request.
+ *
+ * Run with {@code -XX:ArchiveClassesAtExit=<archive>} and the same jar path the archive is
+ * used with later; the JVM ignores an archive recorded for another class path.
+ */
+public final class TrainingRun {
+
+    private TrainingRun() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        MockServerSettings settings = new MockServerSettings();
+        settings.setPort(0);
+        settings.setQueueTime(Distribution.fixed(0));
+        settings.setProcessingTime(Distribution.fixed(0));
+        MockVReconServer server = new MockVReconServer(settings);
+        server.start();
+
+        Path directory = Files.createTempDirectory("vrecon-training");
+        Path image = directory.resolve("training.png");
+        ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "png", image.toFile());
+        // A daemon file that does not exist, so that the lookup is recorded but nothing is forwarded
+        String daemonFile = directory.resolve("daemon.properties").toString();
+        String url = "http://127.0.0.1:" + server.getPort();
+
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            VReconDemoApp.main(new String[] {"recognize", "--url", url, "--key", "training",
+                "--daemon-file", daemonFile, "--image", image.toString()});
+            VReconDemoApp.main(new String[] {"recognize-wait", "--url", url, "--key", "training",
+                "--daemon-file", daemonFile, "--image", image.toString(), "--poll-interval", "0.05",
+                "--max-dimension", "32"});
+            VReconDemoApp.main(new String[] {"state", "--url", url, "--key", "training",
+                "--daemon-file", daemonFile, "--uuid", "00000000-0000-0000-0000-000000000000"});
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+            server.close();
+            Files.deleteIfExists(image);
+            Files.deleteIfExists(directory);
+        }
+    }
+}
@@ -1,8 +1,36 @@
 package io.vrecon.demo;
 
+import io.vrecon.demo.client.ApiEndpoint;
+import io.vrecon.demo.client.BackoffPollingStrategy;
+import io.vrecon.demo.client.ConnectionSettings;
+import io.vrecon.demo.client.EndpointPool;
+import io.vrecon.demo.client.FixedPollingStrategy;
+import io.vrecon.demo.client.ImagePreprocessor;
+import io.vrecon.demo.client.LimiterSettings;
+import io.vrecon.demo.client.PollingStrategy;
+import io.vrecon.demo.client.ResultCache;
+import io.vrecon.demo.client.ResultSink;
+import io.vrecon.demo.client.SpanFileExporter;
+import io.vrecon.demo.client.Tracer;
+import io.vrecon.demo.commands.BatchOptions;
+import io.vrecon.demo.commands.BenchOptions;
+import io.vrecon.demo.commands.DaemonForwarder;
+import io.vrecon.demo.commands.ServeOptions;
 import io.vrecon.demo.commands.VReconCommands;
+import io.vrecon.demo.commands.WatchOptions;
+import io.vrecon.demo.mock.Distribution;
+import io.vrecon.demo.mock.MockServerSettings;
+import io.vrecon.demo.mock.MockVReconServer;
 import org.apache.commons.cli.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
 /**
  * VRecon Demo Application - CLI for Vehicle Recognition REST API.
  *
@@ -10,12 +38,32 @@ import org.apache.commons.cli.*;
  *   recognize  - Submit an image for vehicle recognition
  *   state      - Get the state of a recognition request
  *   recognize-wait - Submit an image and wait for the result
+ *   recognize-batch - Recognize a directory, glob or manifest of images concurrently
+ *   watch      - Recognize images as they are dropped into a spool directory
+ *   bench      - Measure latency percentiles and throughput under load
+ *   serve      - Keep a warm client running for recognize, state and recognize-wait
+ *   mock-server - Run a local mock of the API for load testing
  */
 public class VReconDemoApp {
 
     private static final String DEFAULT_BASE_URL = "https://vrecon.io";
+    /** Options a daemon started with serve honors per request; any other runs the command directly */
+    private static final Set<String> FORWARDED_OPTIONS = Set.of("key", "url", "verbose", "daemon-file",
+        "image", "uuid", "json", "timeout");
     private static final int DEFAULT_POLL_INTERVAL = 2;
     private static final int DEFAULT_MAX_WAIT_TIME = 60;
+    private static final int DEFAULT_CONCURRENCY = 16;
+    private static final int DEFAULT_SUBMIT_THREADS = 8;
+    private static final int DEFAULT_SETTLE_MILLIS = 500;
+    private static final int DEFAULT_WATCH_QUEUE = 256;
+    private static final int DEFAULT_CACHE_MAX_MB = 256;
+    private static final int DEFAULT_CACHE_TTL_HOURS = 168;
+    private static final int DEFAULT_JPEG_QUALITY = 85;
+    private static final int DEFAULT_BENCH_DURATION = 60;
+    private static final int DEFAULT_BENCH_MAX_IN_FLIGHT = 1000;
+    private static final int DEFAULT_REPORT_INTERVAL = 5;
+    private static final int DEFAULT_SERVE_THREADS = 32;
+    private static final ConnectionSettings DEFAULT_CONNECTIONS = new ConnectionSettings();
 
     public static void main(String[] args) {
         if (args.length == 0) {
@@ -31,6 +79,11 @@ public class VReconDemoApp {
             case "recognize" -> handleRecognize(commandArgs);
             case "state" -> handleState(commandArgs);
             case "recognize-wait" -> handleRecognizeWait(commandArgs);
+            case "recognize-batch" -> handleRecognizeBatch(commandArgs);
+            case "watch" -> handleWatch(commandArgs);
+            case "bench" -> handleBench(commandArgs);
+            case "serve" -> handleServe(commandArgs);
+            case "mock-server" -> handleMockServer(commandArgs);
             case "help", "-h", "--help" -> printUsage();
             default -> {
                 System.err.println("Unknown command: " + command);
@@ -49,6 +102,8 @@ public class VReconDemoApp {
             .required()
             .desc("Path to the image file")
             .build());
+        addPreprocessingOptions(options);
+        addDaemonOptions(options);
 
         try {
             CommandLine cmd = new DefaultParser().parse(options, args);
@@ -57,7 +112,12 @@ public class VReconDemoApp {
             String imagePath = cmd.getOptionValue("image");
             boolean verbose = cmd.hasOption("verbose");
 
-            VReconCommands commands = new VReconCommands(baseUrl, apiKey, verbose);
+            DaemonForwarder daemon = findDaemon(cmd, baseUrl, apiKey, verbose);
+            if (daemon != null && daemon.recognize(imagePath)) {
+                return;
+            }
+            VReconCommands commands = createCommands(cmd, baseUrl, apiKey, verbose);
+            commands.setImagePreprocessor(createPreprocessor(cmd));
             try {
                 commands.recognize(imagePath);
             } finally {
@@ -82,6 +142,7 @@ public class VReconDemoApp {
             .longOpt("json")
             .desc("Output raw JSON response")
             .build());
+        addDaemonOptions(options);
 
         try {
             CommandLine cmd = new DefaultParser().parse(options, args);
@@ -91,7 +152,11 @@ public class VReconDemoApp {
             boolean verbose = cmd.hasOption("verbose");
             boolean json = cmd.hasOption("json");
 
-            VReconCommands commands = new VReconCommands(baseUrl, apiKey, verbose);
+            DaemonForwarder daemon = findDaemon(cmd, baseUrl, apiKey, verbose);
+            if (daemon != null && daemon.getState(requestUuid, json)) {
+                return;
+            }
+            VReconCommands commands = createCommands(cmd, baseUrl, apiKey, verbose);
             try {
                 commands.getState(requestUuid, json);
             } finally {
@@ -112,31 +177,37 @@ public class VReconDemoApp {
             .required()
             .desc("Path to the image file")
             .build());
-        options.addOption(Option.builder("p")
-            .longOpt("poll-interval")
-            .hasArg()
-            .desc("Poll interval in seconds (default: " + DEFAULT_POLL_INTERVAL + ")")
-            .build());
+        addPollingOptions(options);
         options.addOption(Option.builder("t")
             .longOpt("timeout")
             .hasArg()
             .desc("Max wait time in seconds (default: " + DEFAULT_MAX_WAIT_TIME + ")")
             .build());
+        addCacheOptions(options);
+        addPreprocessingOptions(options);
+        addOutputOptions(options);
+        addDaemonOptions(options);
 
         try {
             CommandLine cmd = new DefaultParser().parse(options, args);
             String baseUrl = cmd.getOptionValue("url", DEFAULT_BASE_URL);
             String apiKey = cmd.getOptionValue("key");
             String imagePath = cmd.getOptionValue("image");
-            int pollInterval = Integer.parseInt(cmd.getOptionValue("poll-interval",
-                String.valueOf(DEFAULT_POLL_INTERVAL)));
+            PollingStrategy pollingStrategy = parsePollingStrategy(cmd);
             int maxWaitTime = Integer.parseInt(cmd.getOptionValue("timeout",
                 String.valueOf(DEFAULT_MAX_WAIT_TIME)));
             boolean verbose = cmd.hasOption("verbose");
 
-            VReconCommands commands = new VReconCommands(baseUrl, apiKey, verbose);
+            DaemonForwarder daemon = findDaemon(cmd, baseUrl, apiKey, verbose);
+            if (daemon != null && daemon.recognizeAndWait(imagePath, maxWaitTime)) {
+                return;
+            }
+            VReconCommands commands = createCommands(cmd, baseUrl, apiKey, verbose);
+            commands.setResultCache(openResultCache(cmd));
+            commands.setResultSink(openResultSink(cmd));
+            commands.setImagePreprocessor(createPreprocessor(cmd));
             try {
-                commands.recognizeAndWait(imagePath, pollInterval, maxWaitTime);
+                commands.recognizeAndWait(imagePath, pollingStrategy, maxWaitTime);
             } finally {
                 commands.close();
             }
@@ -147,6 +218,668 @@ public class VReconDemoApp {
         }
     }
 
+    private static void handleRecognizeBatch(String[] args) {
+        Options options = createCommonOptions();
+        options.addOption(Option.builder("i")
+            .longOpt("input")
+            .hasArg()
+            .required()
+            .desc("Directory, glob pattern or manifest file (one image path per line)")
+            .build());
+        options.addOption(Option.builder("c")
+            .longOpt("concurrency")
+            .hasArg()
+            .desc("Max images in flight (default: " + DEFAULT_CONCURRENCY + ")")
+            .build());
+        addPollingOptions(options);
+        options.addOption(Option.builder("t")
+            .longOpt("timeout")
+            .hasArg()
+            .desc("Max wait time per image in seconds (default: " + DEFAULT_MAX_WAIT_TIME + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("async")
+            .desc("Use the non-blocking HTTP/2-capable client instead of one thread per image")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("poll-threads")
+            .hasArg()
+            .desc("Poll all images from a shared scheduler with this many threads (default: 0, "
+                + "each image is polled on its own thread)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("submit-threads")
+            .hasArg()
+            .desc("Upload threads when --poll-threads is used (default: " + DEFAULT_SUBMIT_THREADS + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("journal")
+            .hasArg()
+            .desc("Journal file recording submitted images; rerunning with the same file resumes "
+                + "an interrupted run without uploading again")
+            .build());
+        addCacheOptions(options);
+        addPreprocessingOptions(options);
+        addOutputOptions(options);
+
+        try {
+            CommandLine cmd = new DefaultParser().parse(options, args);
+            String baseUrl = cmd.getOptionValue("url", DEFAULT_BASE_URL);
+            String apiKey = cmd.getOptionValue("key");
+            BatchOptions batchOptions = new BatchOptions();
+            batchOptions.setInput(cmd.getOptionValue("input"));
+            batchOptions.setConcurrency(Integer.parseInt(cmd.getOptionValue("concurrency",
+                String.valueOf(DEFAULT_CONCURRENCY))));
+            batchOptions.setPollingStrategy(parsePollingStrategy(cmd));
+            batchOptions.setMaxWaitTime(Integer.parseInt(cmd.getOptionValue("timeout",
+                String.valueOf(DEFAULT_MAX_WAIT_TIME))));
+            batchOptions.setAsync(cmd.hasOption("async"));
+            batchOptions.setPollThreads(Integer.parseInt(cmd.getOptionValue("poll-threads", "0")));
+            batchOptions.setSubmitThreads(Integer.parseInt(cmd.getOptionValue("submit-threads",
+                String.valueOf(DEFAULT_SUBMIT_THREADS))));
+            batchOptions.setJournal(cmd.getOptionValue("journal"));
+            boolean verbose = cmd.hasOption("verbose");
+
+            VReconCommands commands = createCommands(cmd, baseUrl, apiKey, verbose);
+            commands.setResultCache(openResultCache(cmd));
+            commands.setResultSink(openResultSink(cmd));
+            commands.setImagePreprocessor(createPreprocessor(cmd));
+            try {
+                commands.recognizeBatch(batchOptions);
+            } finally {
+                commands.close();
+            }
+        } catch (ParseException e) {
+            System.err.println("Error: " + e.getMessage());
+            printCommandHelp("recognize-batch", options);
+            System.exit(1);
+        }
+    }
+
+    private static void handleWatch(String[] args) {
+        Options options = createCommonOptions();
+        options.addOption(Option.builder("d")
+            .longOpt("dir")
+            .hasArg()
+            .required()
+            .desc("Spool directory to watch for new images")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("archive")
+            .hasArg()
+            .desc("Directory recognized images and their results are moved to, in a folder per day "
+                + "(default: <dir>/processed)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("failed")
+            .hasArg()
+            .desc("Directory failed images are moved to (default: <dir>/failed)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("settle")
+            .hasArg()
+            .desc("Milliseconds a new file must stay unchanged before it is uploaded (default: "
+                + DEFAULT_SETTLE_MILLIS + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("queue")
+            .hasArg()
+            .desc("Max settled images waiting for a free slot (default: " + DEFAULT_WATCH_QUEUE + ")")
+            .build());
+        options.addOption(Option.builder("c")
+            .longOpt("concurrency")
+            .hasArg()
+            .desc("Max images in flight (default: " + DEFAULT_CONCURRENCY + ")")
+            .build());
+        addPollingOptions(options);
+        options.addOption(Option.builder("t")
+            .longOpt("timeout")
+            .hasArg()
+            .desc("Max wait time per image in seconds (default: " + DEFAULT_MAX_WAIT_TIME + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("async")
+            .desc("Use the non-blocking HTTP/2-capable client instead of one thread per image")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("poll-threads")
+            .hasArg()
+            .desc("Poll all images from a shared scheduler with this many threads (default: 0, "
+                + "each image is polled on its own thread)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("submit-threads")
+            .hasArg()
+            .desc("Upload threads when --poll-threads is used (default: " + DEFAULT_SUBMIT_THREADS + ")")
+            .build());
+        addCacheOptions(options);
+        addPreprocessingOptions(options);
+        addOutputOptions(options);
+
+        try {
+            CommandLine cmd = new DefaultParser().parse(options, args);
+            String baseUrl = cmd.getOptionValue("url", DEFAULT_BASE_URL);
+            String apiKey = cmd.getOptionValue("key");
+            WatchOptions watchOptions = new WatchOptions();
+            watchOptions.setDirectory(cmd.getOptionValue("dir"));
+            watchOptions.setArchiveDirectory(cmd.getOptionValue("archive"));
+            watchOptions.setFailedDirectory(cmd.getOptionValue("failed"));
+            watchOptions.setSettleTime(Long.parseLong(cmd.getOptionValue("settle",
+                String.valueOf(DEFAULT_SETTLE_MILLIS))));
+            watchOptions.setQueueSize(Integer.parseInt(cmd.getOptionValue("queue",
+                String.valueOf(DEFAULT_WATCH_QUEUE))));
+            watchOptions.setConcurrency(Integer.parseInt(cmd.getOptionValue("concurrency",
+                String.valueOf(DEFAULT_CONCURRENCY))));
+            watchOptions.setPollingStrategy(parsePollingStrategy(cmd));
+            watchOptions.setMaxWaitTime(Integer.parseInt(cmd.getOptionValue("timeout",
+                String.valueOf(DEFAULT_MAX_WAIT_TIME))));
+            watchOptions.setAsync(cmd.hasOption("async"));
+            watchOptions.setPollThreads(Integer.parseInt(cmd.getOptionValue("poll-threads", "0")));
+            watchOptions.setSubmitThreads(Integer.parseInt(cmd.getOptionValue("submit-threads",
+                String.valueOf(DEFAULT_SUBMIT_THREADS))));
+            boolean verbose = cmd.hasOption("verbose");
+
+            VReconCommands commands = createCommands(cmd, baseUrl, apiKey, verbose);
+            commands.setResultCache(openResultCache(cmd));
+            commands.setResultSink(openResultSink(cmd));
+            commands.setImagePreprocessor(createPreprocessor(cmd));
+            try {
+                commands.watch(watchOptions);
+            } finally {
+                commands.close();
+            }
+        } catch (ParseException e) {
+            System.err.println("Error: " + e.getMessage());
+            printCommandHelp("watch", options);
+            System.exit(1);
+        }
+    }
+
+    private static void handleBench(String[] args) {
+        Options options = createCommonOptions();
+        options.addOption(Option.builder("i")
+            .longOpt("input")
+            .hasArg()
+            .required()
+            .desc("Directory, glob pattern or manifest file of the images to replay")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("rate")
+            .hasArg()
+            .desc("Open loop: start this many jobs per second regardless of how fast they finish")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("users")
+            .hasArg()
+            .desc("Closed loop: run this many users, each starting a job when its last one finished")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("max-in-flight")
+            .hasArg()
+            .desc("Open loop: drop starts while this many jobs are in flight (default: "
+                + DEFAULT_BENCH_MAX_IN_FLIGHT + ")")
+            .build());
+        options.addOption(Option.builder("d")
+            .longOpt("duration")
+            .hasArg()
+            .desc("Length of the measurement in seconds (default: " + DEFAULT_BENCH_DURATION + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("warmup")
+            .hasArg()
+            .desc("Seconds of load before the measurement starts (default: 0)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("report-interval")
+            .hasArg()
+            .desc("Seconds between progress lines and histogram log entries (default: "
+                + DEFAULT_REPORT_INTERVAL + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("histogram-log")
+            .hasArg()
+            .desc("Write the interval histograms to this file in HdrHistogram log format")
+            .build());
+        addPollingOptions(options);
+        options.addOption(Option.builder("t")
+            .longOpt("timeout")
+            .hasArg()
+            .desc("Max wait time per job in seconds (default: " + DEFAULT_MAX_WAIT_TIME + ")")
+            .build());
+        addPreprocessingOptions(options);
+
+        try {
+            CommandLine cmd = new DefaultParser().parse(options, args);
+            if (cmd.hasOption("rate") == cmd.hasOption("users")) {
+                throw new ParseException("Specify either --rate (open loop) or --users (closed loop)");
+            }
+            String baseUrl = cmd.getOptionValue("url", DEFAULT_BASE_URL);
+            String apiKey = cmd.getOptionValue("key");
+            BenchOptions benchOptions = new BenchOptions();
+            benchOptions.setInput(cmd.getOptionValue("input"));
+            benchOptions.setRate(Double.parseDouble(cmd.getOptionValue("rate", "0")));
+            benchOptions.setUsers(Integer.parseInt(cmd.getOptionValue("users", "0")));
+            if (benchOptions.getRate() <= 0 && benchOptions.getUsers() <= 0) {
+                throw new ParseException("--rate and --users must be positive");
+            }
+            benchOptions.setMaxInFlight(Integer.parseInt(cmd.getOptionValue("max-in-flight",
+                String.valueOf(DEFAULT_BENCH_MAX_IN_FLIGHT))));
+            benchOptions.setDuration(Integer.parseInt(cmd.getOptionValue("duration",
+                String.valueOf(DEFAULT_BENCH_DURATION))));
+            benchOptions.setWarmup(Integer.parseInt(cmd.getOptionValue("warmup", "0")));
+            benchOptions.setReportInterval(Integer.parseInt(cmd.getOptionValue("report-interval",
+                String.valueOf(DEFAULT_REPORT_INTERVAL))));
+            benchOptions.setHistogramLog(cmd.getOptionValue("histogram-log"));
+            benchOptions.setPollingStrategy(parsePollingStrategy(cmd));
+            benchOptions.setMaxWaitTime(Integer.parseInt(cmd.getOptionValue("timeout",
+                String.valueOf(DEFAULT_MAX_WAIT_TIME))));
+            boolean verbose = cmd.hasOption("verbose");
+
+            VReconCommands commands = createCommands(cmd, baseUrl, apiKey, verbose);
+            commands.setImagePreprocessor(createPreprocessor(cmd));
+            try {
+                commands.bench(benchOptions);
+            } finally {
+                commands.close();
+            }
+        } catch (ParseException e) {
+            System.err.println("Error: " + e.getMessage());
+            printCommandHelp("bench", options);
+            System.exit(1);
+        }
+    }
+
+    private static void handleServe(String[] args) {
+        Options options = createCommonOptions();
+        options.addOption(Option.builder()
+            .longOpt("port")
+            .hasArg()
+            .desc("Loopback port to listen on (default: any free port, see the endpoint file)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("threads")
+            .hasArg()
+            .desc("Requests handled at the same time; a waiting recognize-wait holds one (default: "
+                + DEFAULT_SERVE_THREADS + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("daemon-file")
+            .hasArg()
+            .desc("Endpoint file read by forwarding commands (default: ~/.vrecon/daemon.properties)")
+            .build());
+        addPollingOptions(options);
+        options.addOption(Option.builder("t")
+            .longOpt("timeout")
+            .hasArg()
+            .desc("Max wait time of recognize-wait requests that do not set one, in seconds (default: "
+                + DEFAULT_MAX_WAIT_TIME + ")")
+            .build());
+        addCacheOptions(options);
+        addPreprocessingOptions(options);
+
+        try {
+            CommandLine cmd = new DefaultParser().parse(options, args);
+            String baseUrl = cmd.getOptionValue("url", DEFAULT_BASE_URL);
+            String apiKey = cmd.getOptionValue("key");
+            ServeOptions serveOptions = new ServeOptions();
+            serveOptions.setPort(Integer.parseInt(cmd.getOptionValue("port", "0")));
+            serveOptions.setThreads(Integer.parseInt(cmd.getOptionValue("threads",
+                String.valueOf(DEFAULT_SERVE_THREADS))));
+            serveOptions.setEndpointFile(cmd.getOptionValue("daemon-file"));
+            serveOptions.setPollingStrategy(parsePollingStrategy(cmd));
+            serveOptions.setMaxWaitTime(Integer.parseInt(cmd.getOptionValue("timeout",
+                String.valueOf(DEFAULT_MAX_WAIT_TIME))));
+            boolean verbose = cmd.hasOption("verbose");
+
+            VReconCommands commands = createCommands(cmd, baseUrl, apiKey, verbose);
+            commands.setResultCache(openResultCache(cmd));
+            commands.setImagePreprocessor(createPreprocessor(cmd));
+            try {
+                commands.serve(serveOptions);
+            } finally {
+                commands.close();
+            }
+        } catch (ParseException e) {
+            System.err.println("Error: " + e.getMessage());
+            printCommandHelp("serve", options);
+            System.exit(1);
+        }
+    }
+
+    private static void handleMockServer(String[] args) {
+        MockServerSettings defaults = new MockServerSettings();
+        Options options = new Options();
+        options.addOption(Option.builder()
+            .longOpt("port")
+            .hasArg()
+            .desc("Port to listen on (default: " + defaults.getPort() + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("threads")
+            .hasArg()
+            .desc("Request handling threads (default: " + defaults.getThreads() + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("queue-time")
+            .hasArg()
+            .desc("Time in PENDING in ms: <ms>, uniform:<min>-<max>, exp:<mean> or lognormal:<median>:<sigma> "
+                + "(default: exp:300)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("processing-time")
+            .hasArg()
+            .desc("Time in PROCESSING in ms, same forms as --queue-time (default: lognormal:1500:0.4)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("latency")
+            .hasArg()
+            .desc("Delay of every response in ms, same forms as --queue-time (default: 0)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("spike-rate")
+            .hasArg()
+            .desc("Share of responses with an extra latency spike, 0.0-1.0 (default: 0)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("spike-latency")
+            .hasArg()
+            .desc("Extra delay of a spike in ms, same forms as --queue-time (default: 2000)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("error-rate")
+            .hasArg()
+            .desc("Share of submits rejected with success=false (default: 0)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("fail-rate")
+            .hasArg()
+            .desc("Share of jobs ending in FAILED (default: 0)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("rate-429")
+            .hasArg()
+            .desc("Share of requests answered with 429 Too Many Requests (default: 0)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("rate-5xx")
+            .hasArg()
+            .desc("Share of requests answered with 503 Service Unavailable (default: 0)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("retry-after")
+            .hasArg()
+            .desc("Retry-After seconds sent with 429 responses (default: " + defaults.getRetryAfterSeconds() + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("results")
+            .hasArg()
+            .desc("JSON file with an array of recognition results returned for DONE jobs (default: bundled examples)")
+            .build());
+
+        try {
+            CommandLine cmd = new DefaultParser().parse(options, args);
+            MockServerSettings settings = new MockServerSettings();
+            settings.setPort(Integer.parseInt(cmd.getOptionValue("port", String.valueOf(defaults.getPort()))));
+            settings.setThreads(Integer.parseInt(cmd.getOptionValue("threads", String.valueOf(defaults.getThreads()))));
+            if (cmd.hasOption("queue-time")) {
+                settings.setQueueTime(Distribution.parse(cmd.getOptionValue("queue-time")));
+            }
+            if (cmd.hasOption("processing-time")) {
+                settings.setProcessingTime(Distribution.parse(cmd.getOptionValue("processing-time")));
+            }
+            if (cmd.hasOption("latency")) {
+                settings.setLatency(Distribution.parse(cmd.getOptionValue("latency")));
+            }
+            if (cmd.hasOption("spike-latency")) {
+                settings.setSpikeLatency(Distribution.parse(cmd.getOptionValue("spike-latency")));
+            }
+            settings.setSpikeRate(Double.parseDouble(cmd.getOptionValue("spike-rate", "0")));
+            settings.setErrorRate(Double.parseDouble(cmd.getOptionValue("error-rate", "0")));
+            settings.setFailRate(Double.parseDouble(cmd.getOptionValue("fail-rate", "0")));
+            settings.setThrottleRate(Double.parseDouble(cmd.getOptionValue("rate-429", "0")));
+            settings.setServerErrorRate(Double.parseDouble(cmd.getOptionValue("rate-5xx", "0")));
+            settings.setRetryAfterSeconds(Integer.parseInt(cmd.getOptionValue("retry-after",
+                String.valueOf(defaults.getRetryAfterSeconds()))));
+            if (cmd.hasOption("results")) {
+                settings.setResults(MockVReconServer.readResults(Path.of(cmd.getOptionValue("results"))));
+            }
+
+            MockVReconServer server = new MockVReconServer(settings);
+            server.start();
+            System.out.println("Mock VRecon API listening on http://localhost:" + server.getPort());
+            System.out.println("Use --url http://localhost:" + server.getPort() + " with any --key. Press Ctrl+C to stop.");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                System.out.println();
+                System.out.println("Recognize requests: " + server.getRecognizeRequests());
+                System.out.println("State requests: " + server.getStateRequests());
+                System.out.println("Rejected submits: " + server.getRejected());
+                System.out.println("429 responses: " + server.getThrottled());
+                System.out.println("503 responses: " + server.getServerErrors());
+                System.out.println("Latency spikes: " + server.getSpikes());
+            }));
+            Thread.currentThread().join();
+        } catch (ParseException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            printCommandHelp("mock-server", options);
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Error starting mock server: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void addDaemonOptions(Options options) {
+        options.addOption(Option.builder()
+            .longOpt("daemon-file")
+            .hasArg()
+            .desc("Endpoint file of a daemon started with serve (default: ~/.vrecon/daemon.properties)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("no-daemon")
+            .desc("Call the API from this process even if a daemon is running")
+            .build());
+    }
+
+    /**
+     * @return Forwarder to a daemon for the same API and key, or null to run the command here
+     */
+    private static DaemonForwarder findDaemon(CommandLine cmd, String baseUrl, String apiKey, boolean verbose) {
+        if (cmd.hasOption("no-daemon")) {
+            return null;
+        }
+        // The daemon applies its own client, polling, cache, preprocessing and output settings,
+        // and serves one URL and key, so commands that set anything else run in this process
+        for (Option option : cmd.getOptions()) {
+            if (!FORWARDED_OPTIONS.contains(option.getLongOpt())) {
+                if (verbose) {
+                    System.out.println("--" + option.getLongOpt() + " is not applied by a daemon, running directly");
+                }
+                return null;
+            }
+        }
+        return DaemonForwarder.find(cmd.getOptionValue("daemon-file"), baseUrl, apiKey, verbose);
+    }
+
+    private static void addPollingOptions(Options options) {
+        options.addOption(Option.builder("p")
+            .longOpt("poll-interval")
+            .hasArg()
+            .desc("Poll interval in seconds; base interval while PENDING for backoff strategies (default: "
+                + DEFAULT_POLL_INTERVAL + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("poll-strategy")
+            .hasArg()
+            .desc("fixed, backoff (exponential with jitter) or adaptive (backoff, first poll at the learned "
+                + "completion time) (default: fixed)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("processing-interval")
+            .hasArg()
+            .desc("Base poll interval in seconds while PROCESSING (default: poll interval)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("poll-max")
+            .hasArg()
+            .desc("Max poll interval in seconds for backoff strategies (default: 4 x poll interval)")
+            .build());
+    }
+
+    private static PollingStrategy parsePollingStrategy(CommandLine cmd) throws ParseException {
+        long pollInterval = parseSeconds(cmd, "poll-interval", DEFAULT_POLL_INTERVAL * 1000L);
+        String strategy = cmd.getOptionValue("poll-strategy", "fixed");
+        long processingInterval = parseSeconds(cmd, "processing-interval", pollInterval);
+        long maxInterval = parseSeconds(cmd, "poll-max", pollInterval * 4);
+        return switch (strategy) {
+            case "fixed" -> new FixedPollingStrategy(pollInterval);
+            case "backoff" -> new BackoffPollingStrategy(pollInterval, processingInterval, maxInterval, false);
+            case "adaptive" -> new BackoffPollingStrategy(pollInterval, processingInterval, maxInterval, true);
+            default -> throw new ParseException("Unknown poll strategy: " + strategy);
+        };
+    }
+
+    private static void addCacheOptions(Options options) {
+        options.addOption(Option.builder()
+            .longOpt("cache-dir")
+            .hasArg()
+            .desc("Directory of a result cache keyed by image content; identical images are not uploaded again")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("cache-max-mb")
+            .hasArg()
+            .desc("Max total size of the result cache in MB (default: " + DEFAULT_CACHE_MAX_MB + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("cache-ttl")
+            .hasArg()
+            .desc("Max age of cached results in hours (default: " + DEFAULT_CACHE_TTL_HOURS + ")")
+            .build());
+    }
+
+    private static ResultCache openResultCache(CommandLine cmd) {
+        String directory = cmd.getOptionValue("cache-dir");
+        if (directory == null) {
+            return null;
+        }
+        long maxBytes = Long.parseLong(cmd.getOptionValue("cache-max-mb",
+            String.valueOf(DEFAULT_CACHE_MAX_MB))) * 1024 * 1024;
+        long ttlMillis = Math.round(Double.parseDouble(cmd.getOptionValue("cache-ttl",
+            String.valueOf(DEFAULT_CACHE_TTL_HOURS))) * 3_600_000);
+        try {
+            return new ResultCache(Path.of(directory), maxBytes, ttlMillis, cacheConfiguration(cmd));
+        } catch (IOException e) {
+            System.err.println("Error opening result cache: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Describe what the result of an image depends on besides its bytes: the image actually
+     * uploaded after preprocessing, and the deployments recognizing it.
+     */
+    private static String cacheConfiguration(CommandLine cmd) {
+        String preprocessing = "original";
+        if (cmd.hasOption("max-dimension") || cmd.hasOption("jpeg-quality")) {
+            // Preprocessed images also have their EXIF orientation applied
+            preprocessing = "max-dimension=" + cmd.getOptionValue("max-dimension", "0")
+                + ",jpeg-quality=" + cmd.getOptionValue("jpeg-quality", String.valueOf(DEFAULT_JPEG_QUALITY))
+                + ",exif-orientation=applied";
+        }
+        TreeSet<String> urls = new TreeSet<>();
+        if (!cmd.hasOption("endpoint") || cmd.hasOption("url")) {
+            urls.add(new ApiEndpoint(cmd.getOptionValue("url", DEFAULT_BASE_URL), cmd.getOptionValue("key"))
+                .getBaseUrl());
+        }
+        if (cmd.hasOption("endpoint")) {
+            for (String spec : cmd.getOptionValues("endpoint")) {
+                urls.add(ApiEndpoint.parse(spec, cmd.getOptionValue("key")).getBaseUrl());
+            }
+        }
+        return "preprocessing=" + preprocessing + "\nendpoints=" + String.join(",", urls);
+    }
+
+    private static void addOutputOptions(Options options) {
+        options.addOption(Option.builder("o")
+            .longOpt("output")
+            .hasArg()
+            .desc("Append one line per result to this file instead of printing a line per image")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("output-format")
+            .hasArg()
+            .desc("ndjson or csv (default: csv for a .csv file, ndjson otherwise)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("rotate-mb")
+            .hasArg()
+            .desc("Start a new output file once it reaches this size in MB (default: no limit)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("rotate-minutes")
+            .hasArg()
+            .desc("Start a new output file once it is this old (default: no limit)")
+            .build());
+    }
+
+    private static ResultSink openResultSink(CommandLine cmd) throws ParseException {
+        String output = cmd.getOptionValue("output");
+        if (output == null) {
+            return null;
+        }
+        Path file = Path.of(output);
+        ResultSink.Format format = ResultSink.Format.forFile(file);
+        if (cmd.hasOption("output-format")) {
+            try {
+                format = ResultSink.Format.valueOf(cmd.getOptionValue("output-format").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ParseException("Unknown output format: " + cmd.getOptionValue("output-format"));
+            }
+        }
+        long maxBytes = Math.round(Double.parseDouble(cmd.getOptionValue("rotate-mb", "0")) * 1024 * 1024);
+        long maxAgeMillis = Math.round(Double.parseDouble(cmd.getOptionValue("rotate-minutes", "0")) * 60_000);
+        try {
+            return new ResultSink(file, format, maxBytes, maxAgeMillis);
+        } catch (IOException e) {
+            System.err.println("Error opening output file: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static void addPreprocessingOptions(Options options) {
+        options.addOption(Option.builder()
+            .longOpt("max-dimension")
+            .hasArg()
+            .desc("Downscale images so that width and height are at most this many pixels before upload")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("jpeg-quality")
+            .hasArg()
+            .desc("Re-encode JPEG and opaque PNG images at this quality, 1-100, without metadata (default: "
+                + DEFAULT_JPEG_QUALITY + " when --max-dimension is set)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("prep-threads")
+            .hasArg()
+            .desc("Threads decoding and re-encoding images (default: number of CPUs)")
+            .build());
+    }
+
+    private static ImagePreprocessor createPreprocessor(CommandLine cmd) {
+        if (!cmd.hasOption("max-dimension") && !cmd.hasOption("jpeg-quality")) {
+            return null;
+        }
+        int maxDimension = Integer.parseInt(cmd.getOptionValue("max-dimension", "0"));
+        int quality = Integer.parseInt(cmd.getOptionValue("jpeg-quality", String.valueOf(DEFAULT_JPEG_QUALITY)));
+        int threads = Integer.parseInt(cmd.getOptionValue("prep-threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+        return new ImagePreprocessor(maxDimension, quality / 100f, threads);
+    }
+
     private static Options createCommonOptions() {
         Options options = new Options();
         options.addOption(Option.builder("k")
@@ -160,13 +893,306 @@ public class VReconDemoApp {
             .hasArg()
             .desc("Base URL of the VRecon API (default: " + DEFAULT_BASE_URL + ")")
             .build());
+        options.addOption(Option.builder()
+            .longOpt("endpoint")
+            .hasArg()
+            .argName("URL[,KEY[,RATE]]")
+            .desc("Spread requests over this endpoint, with its own key (default: --key) and requests per "
+                + "second; repeat for several endpoints or keys. --url then only joins when given")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("balancing")
+            .hasArg()
+            .desc("How --endpoint members are chosen: least-outstanding or latency (least outstanding "
+                + "requests weighted by recent latency) (default: least-outstanding)")
+            .build());
         options.addOption(Option.builder("v")
             .longOpt("verbose")
             .desc("Enable verbose logging for API requests")
             .build());
+        options.addOption(Option.builder()
+            .longOpt("max-connections")
+            .hasArg()
+            .desc("Max pooled connections in total (default: " + DEFAULT_CONNECTIONS.getMaxConnTotal() + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("max-per-route")
+            .hasArg()
+            .desc("Max pooled connections per host (default: " + DEFAULT_CONNECTIONS.getMaxConnPerRoute() + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("connect-timeout")
+            .hasArg()
+            .desc("Connect and TLS handshake timeout in seconds (default: "
+                + DEFAULT_CONNECTIONS.getConnectTimeout() / 1000 + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("read-timeout")
+            .hasArg()
+            .desc("Response/socket read timeout in seconds (default: "
+                + DEFAULT_CONNECTIONS.getReadTimeout() / 1000 + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("lease-timeout")
+            .hasArg()
+            .desc("Max wait for a pooled connection in seconds (default: "
+                + DEFAULT_CONNECTIONS.getLeaseTimeout() / 1000 + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("keep-alive")
+            .hasArg()
+            .desc("Keep-alive for idle connections in seconds (default: "
+                + DEFAULT_CONNECTIONS.getKeepAlive() / 1000 + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("idle-evict")
+            .hasArg()
+            .desc("Close pooled connections idle longer than this many seconds (default: "
+                + DEFAULT_CONNECTIONS.getIdleEviction() / 1000 + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("prewarm")
+            .hasArg()
+            .desc("Open this many connections in parallel at startup (default: 0)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("retries")
+            .hasArg()
+            .desc("Retries of a failed request; submits are only retried when the API cannot have "
+                + "received them (default: " + DEFAULT_CONNECTIONS.getMaxRetries() + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("retry-backoff")
+            .hasArg()
+            .desc("Max delay before the first retry in milliseconds, doubled for each further retry (default: "
+                + DEFAULT_CONNECTIONS.getRetryBackoff() + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("breaker-threshold")
+            .hasArg()
+            .desc("Consecutive failures after which requests to an endpoint fail fast, 0 to disable (default: "
+                + DEFAULT_CONNECTIONS.getCircuitBreakerThreshold() + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("breaker-open")
+            .hasArg()
+            .desc("Seconds an open circuit fails requests before a trial request (default: "
+                + DEFAULT_CONNECTIONS.getCircuitBreakerOpenTime() / 1000 + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("hedge")
+            .desc("Send a second state request when the first is slower than the recent p95 (async only)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("state-cache-ttl")
+            .hasArg()
+            .desc("Seconds a final state is answered from memory instead of the API, 0 to disable (default: "
+                + DEFAULT_CONNECTIONS.getStateCacheTtl() / 1000 + ")")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("rate-limit")
+            .hasArg()
+            .desc("Max API requests per second, submits and polls together (default: unlimited)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("burst")
+            .hasArg()
+            .desc("Requests allowed at once under --rate-limit after an idle period (default: 1)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("max-concurrency")
+            .hasArg()
+            .desc("Adapt the number of concurrent API requests to throttling and latency, up to this "
+                + "many (default: no adaptive limit)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("max-inflight-bytes")
+            .hasArg()
+            .desc("Max heap held by images being preprocessed or uploaded, such as 256m or 1g; "
+                + "further images wait until memory is released (default: no limit)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("metrics-port")
+            .hasArg()
+            .desc("Serve metrics in Prometheus format at http://<host>:<port>/metrics")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("metrics-file")
+            .hasArg()
+            .desc("Write metrics in Prometheus format to this file every 10 s and on exit")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("jmx")
+            .desc("Register metrics as the MBean io.vrecon:type=Metrics")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("trace-file")
+            .hasArg()
+            .desc("Append a span per request phase of recognize, state, recognize-wait and serve to this file")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("trace-format")
+            .hasArg()
+            .desc("jsonl (one span per line) or otlp (OpenTelemetry OTLP/JSON lines) (default: jsonl)")
+            .build());
+        options.addOption(Option.builder()
+            .longOpt("trace-sample")
+            .hasArg()
+            .desc("Share of jobs traced, 0.0-1.0 (default: 1)")
+            .build());
         return options;
     }
 
+    private static VReconCommands createCommands(CommandLine cmd, String baseUrl, String apiKey, boolean verbose) {
+        ConnectionSettings settings = parseConnectionSettings(cmd);
+        long maxInflightBytes = 0;
+        if (cmd.hasOption("max-inflight-bytes")) {
+            try {
+                maxInflightBytes = parseBytes(cmd.getOptionValue("max-inflight-bytes"));
+            } catch (NumberFormatException e) {
+                System.err.println("Error: Invalid max-inflight-bytes, expected a positive size such as 512m: "
+                    + cmd.getOptionValue("max-inflight-bytes"));
+                System.exit(1);
+            }
+        }
+        VReconCommands commands = new VReconCommands(parseEndpointPool(cmd, baseUrl, apiKey, settings), verbose,
+            settings);
+        commands.setLimiter(parseLimiterSettings(cmd));
+        if (maxInflightBytes > 0) {
+            commands.setByteBudget(maxInflightBytes);
+        }
+        if (cmd.hasOption("trace-file")) {
+            commands.setTracer(openTracer(cmd));
+        }
+        try {
+            commands.exportMetrics(Integer.parseInt(cmd.getOptionValue("metrics-port", "0")),
+                cmd.getOptionValue("metrics-file"), cmd.hasOption("jmx"));
+        } catch (IOException e) {
+            System.err.println("Error exporting metrics: " + e.getMessage());
+            commands.close();
+            System.exit(1);
+        }
+        return commands;
+    }
+
+    private static EndpointPool parseEndpointPool(CommandLine cmd, String baseUrl, String apiKey,
+                                                  ConnectionSettings settings) {
+        List<ApiEndpoint> endpoints = new ArrayList<>();
+        EndpointPool.Balancing balancing;
+        try {
+            if (!cmd.hasOption("endpoint") || cmd.hasOption("url")) {
+                endpoints.add(new ApiEndpoint(baseUrl, apiKey));
+            }
+            if (cmd.hasOption("endpoint")) {
+                for (String spec : cmd.getOptionValues("endpoint")) {
+                    endpoints.add(ApiEndpoint.parse(spec, apiKey));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: Invalid endpoint: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+        try {
+            balancing = EndpointPool.Balancing.parse(cmd.getOptionValue("balancing", "least-outstanding"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: Unknown balancing: " + cmd.getOptionValue("balancing"));
+            System.exit(1);
+            return null;
+        }
+        return new EndpointPool(endpoints, balancing, settings);
+    }
+
+    private static Tracer openTracer(CommandLine cmd) {
+        SpanFileExporter.Format format;
+        double sampleRate;
+        try {
+            format = SpanFileExporter.parseFormat(cmd.getOptionValue("trace-format", "jsonl"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: Unknown trace format: " + cmd.getOptionValue("trace-format"));
+            System.exit(1);
+            return null;
+        }
+        try {
+            sampleRate = Double.parseDouble(cmd.getOptionValue("trace-sample", "1"));
+        } catch (NumberFormatException e) {
+            sampleRate = Double.NaN;
+        }
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            System.err.println("Error: Trace sample rate must be between 0 and 1: "
+                + cmd.getOptionValue("trace-sample"));
+            System.exit(1);
+            return null;
+        }
+        try {
+            return new Tracer(new SpanFileExporter(Path.of(cmd.getOptionValue("trace-file")), format), sampleRate);
+        } catch (IOException e) {
+            System.err.println("Error opening trace file: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static ConnectionSettings parseConnectionSettings(CommandLine cmd) {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setMaxConnTotal(Integer.parseInt(cmd.getOptionValue("max-connections",
+            String.valueOf(settings.getMaxConnTotal()))));
+        settings.setMaxConnPerRoute(Integer.parseInt(cmd.getOptionValue("max-per-route",
+            String.valueOf(settings.getMaxConnPerRoute()))));
+        settings.setConnectTimeout(parseSeconds(cmd, "connect-timeout", settings.getConnectTimeout()));
+        settings.setReadTimeout(parseSeconds(cmd, "read-timeout", settings.getReadTimeout()));
+        settings.setLeaseTimeout(parseSeconds(cmd, "lease-timeout", settings.getLeaseTimeout()));
+        settings.setKeepAlive(parseSeconds(cmd, "keep-alive", settings.getKeepAlive()));
+        settings.setIdleEviction(parseSeconds(cmd, "idle-evict", settings.getIdleEviction()));
+        settings.setPrewarmConnections(Integer.parseInt(cmd.getOptionValue("prewarm", "0")));
+        settings.setMaxRetries(Integer.parseInt(cmd.getOptionValue("retries",
+            String.valueOf(settings.getMaxRetries()))));
+        settings.setRetryBackoff(Long.parseLong(cmd.getOptionValue("retry-backoff",
+            String.valueOf(settings.getRetryBackoff()))));
+        settings.setCircuitBreakerThreshold(Integer.parseInt(cmd.getOptionValue("breaker-threshold",
+            String.valueOf(settings.getCircuitBreakerThreshold()))));
+        settings.setCircuitBreakerOpenTime(parseSeconds(cmd, "breaker-open", settings.getCircuitBreakerOpenTime()));
+        settings.setHedgeStateRequests(cmd.hasOption("hedge"));
+        settings.setStateCacheTtl(parseSeconds(cmd, "state-cache-ttl", settings.getStateCacheTtl()));
+        return settings;
+    }
+
+    /**
+     * Parse a size in bytes with an optional k, m or g suffix (powers of 1024).
+     */
+    private static long parseBytes(String value) {
+        String size = value.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (size.endsWith("k") || size.endsWith("m") || size.endsWith("g")) {
+            unit = size.endsWith("k") ? 1024L : size.endsWith("m") ? 1024L * 1024 : 1024L * 1024 * 1024;
+            size = size.substring(0, size.length() - 1);
+        }
+        long bytes = Math.round(Double.parseDouble(size) * unit);
+        if (bytes < 1) {
+            throw new NumberFormatException("Size must be positive: " + value);
+        }
+        return bytes;
+    }
+
+    private static LimiterSettings parseLimiterSettings(CommandLine cmd) {
+        LimiterSettings settings = new LimiterSettings();
+        settings.setRate(Double.parseDouble(cmd.getOptionValue("rate-limit", "0")));
+        settings.setBurst(Integer.parseInt(cmd.getOptionValue("burst", String.valueOf(settings.getBurst()))));
+        settings.setMaxConcurrency(Integer.parseInt(cmd.getOptionValue("max-concurrency", "0")));
+        if (settings.getMaxConcurrency() > 0) {
+            settings.setInitialConcurrency(Math.min(settings.getInitialConcurrency(), settings.getMaxConcurrency()));
+        }
+        return settings;
+    }
+
+    /**
+     * Parse an option given in seconds and return it in milliseconds.
+     */
+    private static long parseSeconds(CommandLine cmd, String option, long defaultMillis) {
+        String value = cmd.getOptionValue(option);
+        return value == null ? defaultMillis : Math.round(Double.parseDouble(value) * 1000);
+    }
+
     private static void printUsage() {
         System.out.println("VRecon Demo Client - Vehicle Recognition REST API");
         System.out.println();
@@ -176,6 +1202,11 @@ public class VReconDemoApp {
         System.out.println("  recognize       Submit an image for vehicle recognition");
         System.out.println("  state           Get the state of a recognition request");
         System.out.println("  recognize-wait  Submit an image and wait for the result");
+        System.out.println("  recognize-batch Recognize a directory, glob or manifest of images");
+        System.out.println("  watch           Recognize images as they are dropped into a spool directory");
+        System.out.println("  bench           Measure latency percentiles and throughput under load");
+        System.out.println("  serve           Keep a warm client running for recognize, state and recognize-wait");
+        System.out.println("  mock-server     Run a local mock of the API for load testing");
         System.out.println("  help            Show this help message");
         System.out.println();
         System.out.println("Examples:");
@@ -191,12 +1222,68 @@ public class VReconDemoApp {
         System.out.println("  Submit and wait for result:");
         System.out.println("    java -jar vrecon-demo-client.jar recognize-wait \\");
         System.out.println("      --key vrecon_abc123... --image /path/to/vehicle.jpg \\");
-        System.out.println("      --poll-interval 2 --timeout 60");
+        System.out.println("      --poll-interval 2 --timeout 60 [--poll-strategy fixed|backoff|adaptive]");
+        System.out.println();
+        System.out.println("  Recognize every image in a directory, 32 at a time:");
+        System.out.println("    java -jar vrecon-demo-client.jar recognize-batch \\");
+        System.out.println("      --key vrecon_abc123... --input /data/images --concurrency 32");
+        System.out.println();
+        System.out.println("  Recognize camera images as they arrive and archive them with their results:");
+        System.out.println("    java -jar vrecon-demo-client.jar watch \\");
+        System.out.println("      --key vrecon_abc123... --dir /var/spool/cam1 --archive /data/archive/cam1");
+        System.out.println();
+        System.out.println("  Downscale to 1600 px and re-encode at JPEG quality 85 before uploading:");
+        System.out.println("    java -jar vrecon-demo-client.jar recognize-wait \\");
+        System.out.println("      --key vrecon_abc123... --image /path/to/vehicle.jpg --max-dimension 1600");
+        System.out.println();
+        System.out.println("  Start 20 jobs per second for 2 minutes and record the latency histograms:");
+        System.out.println("    java -jar vrecon-demo-client.jar bench \\");
+        System.out.println("      --key vrecon_abc123... --input /data/images --rate 20 --duration 120 \\");
+        System.out.println("      --histogram-log run1.hlog");
+        System.out.println();
+        System.out.println("  Spread a batch over two regions, the second with its own key at 50 requests/s:");
+        System.out.println("    java -jar vrecon-demo-client.jar recognize-batch --key vrecon_abc123... \\");
+        System.out.println("      --endpoint https://eu.vrecon.io --endpoint https://us.vrecon.io,vrecon_def456...,50 \\");
+        System.out.println("      --input /data/images --concurrency 64");
+        System.out.println();
+        System.out.println("  Keep a warm client running; recognize, state and recognize-wait with the same");
+        System.out.println("  --url and --key are then forwarded to it (--no-daemon to opt out):");
+        System.out.println("    java -jar vrecon-demo-client.jar serve --key vrecon_abc123...");
+        System.out.println();
+        System.out.println("  Run a mock API on port 8080 with 2% throttling and occasional latency spikes:");
+        System.out.println("    java -jar vrecon-demo-client.jar mock-server \\");
+        System.out.println("      --port 8080 --rate-429 0.02 --spike-rate 0.01 --spike-latency 3000");
         System.out.println();
         System.out.println("Common Options:");
         System.out.println("  -k, --key <apiKey>   API key for authentication (required)");
         System.out.println("  --url <baseUrl>      Base URL of the API (default: " + DEFAULT_BASE_URL + ")");
+        System.out.println("  --endpoint <URL[,KEY[,RATE]]>  Spread requests over this endpoint and key; repeatable");
+        System.out.println("  --balancing <name>     least-outstanding or latency");
         System.out.println("  -v, --verbose        Enable verbose logging for API requests");
+        System.out.println("  --max-connections <n>  Max pooled connections in total");
+        System.out.println("  --max-per-route <n>    Max pooled connections per host");
+        System.out.println("  --connect-timeout <s>  Connect and TLS handshake timeout");
+        System.out.println("  --read-timeout <s>     Response/socket read timeout");
+        System.out.println("  --lease-timeout <s>    Max wait for a pooled connection");
+        System.out.println("  --keep-alive <s>       Keep-alive for idle connections");
+        System.out.println("  --idle-evict <s>       Close connections idle longer than this");
+        System.out.println("  --prewarm <n>          Open n connections in parallel at startup");
+        System.out.println("  --retries <n>          Retries of a failed request");
+        System.out.println("  --retry-backoff <ms>   Max delay before the first retry");
+        System.out.println("  --breaker-threshold <n>  Failures after which an endpoint fails fast");
+        System.out.println("  --breaker-open <s>     Time an open circuit fails requests");
+        System.out.println("  --hedge                Duplicate state requests slower than the p95");
+        System.out.println("  --state-cache-ttl <s>  Time final states are answered from memory");
+        System.out.println("  --rate-limit <n>       Max API requests per second");
+        System.out.println("  --burst <n>            Requests allowed at once under --rate-limit");
+        System.out.println("  --max-concurrency <n>  Adapt concurrent requests to throttling, up to n");
+        System.out.println("  --max-inflight-bytes <size>  Max heap held by images in flight (e.g. 256m)");
+        System.out.println("  --metrics-port <port>  Serve Prometheus metrics at /metrics");
+        System.out.println("  --metrics-file <file>  Write Prometheus metrics to a file every 10 s");
+        System.out.println("  --jmx                  Register metrics as a JMX MBean");
+        System.out.println("  --trace-file <file>    Append a span per request phase to this file");
+        System.out.println("  --trace-format <name>  jsonl or otlp (default: jsonl)");
+        System.out.println("  --trace-sample <rate>  Share of jobs traced, 0.0-1.0 (default: 1)");
     }
 
     private static void printCommandHelp(String command, Options options) {
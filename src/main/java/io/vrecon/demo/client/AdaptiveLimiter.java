@@ -0,0 +1,320 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.metrics.MetricsRegistry;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side admission control for API requests, shared by all clients that use the same
+ * API key.
+ *
+ * A request needs a token from a bucket refilled at the configured rate and a free slot
+ * under the concurrency limit. The limit follows AIMD: it grows by one per round trip of
+ * successful responses that actually used it, and is cut in half on a throttling response
+ * (429 or 503), or by ten percent when recent latency exceeds the long-term baseline by the
+ * configured tolerance. A Retry-After header pauses all requests for the time asked for.
+ *
+ * Waiting requests are admitted in arrival order; the async client gets a future that is
+ * completed on admission, the sync client blocks on it.
+ */
+public class AdaptiveLimiter {
+
+    /** Weight of a new sample in the recent latency average */
+    private static final double RECENT_WEIGHT = 0.2;
+    /** Weight of a new sample in the long-term latency average used as the baseline */
+    private static final double BASELINE_WEIGHT = 0.02;
+    private static final double THROTTLED_DECREASE = 0.5;
+    private static final double LATENCY_DECREASE = 0.9;
+
+    private final double rate;
+    private final double burst;
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+
+    private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+    private double tokens;
+    private long refilledNanos = System.nanoTime();
+    private double limit;
+    private int inFlight;
+    private long pausedUntilNanos;
+    private boolean wakeupScheduled;
+    private double recentLatencyNanos;
+    private double baselineLatencyNanos;
+    private long decreasedNanos;
+
+    private final LongAdder throttled = new LongAdder();
+
+    public AdaptiveLimiter(LimiterSettings settings) {
+        this.rate = settings.getRate();
+        this.burst = Math.max(1, settings.getBurst());
+        this.adaptive = settings.getMaxConcurrency() > 0;
+        this.maxLimit = adaptive ? settings.getMaxConcurrency() : Integer.MAX_VALUE;
+        this.minLimit = Math.max(1, Math.min(settings.getMinConcurrency(), maxLimit));
+        this.latencyTolerance = Math.max(1.0, settings.getLatencyTolerance());
+        this.limit = adaptive
+            ? Math.max(minLimit, Math.min(settings.getInitialConcurrency(), maxLimit))
+            : Integer.MAX_VALUE;
+        this.tokens = burst;
+    }
+
+    /**
+     * Expose the limiter state as metrics.
+     *
+     * @param labels Label names and values telling this limiter from others, such as its API key
+     */
+    public void registerMetrics(MetricsRegistry registry, String... labels) {
+        registry.gauge("vrecon_limiter_concurrency_limit", "Current adaptive concurrency limit",
+            () -> adaptive ? getLimit() : maxLimit, labels);
+        registry.gauge("vrecon_limiter_in_flight", "Requests admitted by the limiter and not yet finished",
+            this::getInFlight, labels);
+        registry.gauge("vrecon_limiter_waiting", "Requests waiting for admission by the limiter",
+            this::getWaiting, labels);
+        registry.counter("vrecon_limiter_throttled_total", "Throttling responses (429 or 503) seen by the limiter",
+            throttled::sum, labels);
+    }
+
+    /**
+     * Wait for admission of a request.
+     *
+     * @return Permit to release when the request is done
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public Permit acquire() throws InterruptedIOException {
+        CompletableFuture<Permit> future = acquireAsync();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                future.join().ignore();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Request admission without blocking. Cancelling the returned future withdraws the
+     * request.
+     *
+     * @return Future completed with a permit once the request is admitted
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (waiters.isEmpty() && tryAdmit(System.nanoTime())) {
+                future.complete(new Permit());
+                return future;
+            }
+            waiters.add(future);
+        }
+        dispatch();
+        return future;
+    }
+
+    /**
+     * Admit waiting requests as far as tokens and slots allow, and schedule a wakeup if the
+     * head of the queue waits for time to pass rather than for a slot.
+     */
+    private void dispatch() {
+        List<CompletableFuture<Permit>> admitted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (!waiters.isEmpty()) {
+                if (waiters.peek().isDone()) {
+                    waiters.poll();
+                } else if (tryAdmit(now)) {
+                    admitted.add(waiters.poll());
+                } else {
+                    break;
+                }
+            }
+            if (!waiters.isEmpty() && inFlight < limit && !wakeupScheduled) {
+                long delay = Math.max(pausedUntilNanos - now,
+                    rate > 0 ? (long) ((1 - tokens) / rate * 1e9) : 0);
+                wakeupScheduled = true;
+                CompletableFuture.delayedExecutor(Math.max(delay, 100_000), TimeUnit.NANOSECONDS)
+                    .execute(this::wakeup);
+            }
+        }
+        for (CompletableFuture<Permit> future : admitted) {
+            Permit permit = new Permit();
+            if (!future.complete(permit)) {
+                permit.ignore();
+            }
+        }
+    }
+
+    private void wakeup() {
+        synchronized (this) {
+            wakeupScheduled = false;
+        }
+        dispatch();
+    }
+
+    /**
+     * @return Whether a request would be admitted right now, without waiting for a pause to
+     *         end, a token or a slot
+     */
+    synchronized boolean canAdmit() {
+        long now = System.nanoTime();
+        if (!waiters.isEmpty() || now - pausedUntilNanos < 0 || inFlight >= limit) {
+            return false;
+        }
+        return rate <= 0 || Math.min(burst, tokens + (now - refilledNanos) / 1e9 * rate) >= 1;
+    }
+
+    private boolean tryAdmit(long now) {
+        if (now - pausedUntilNanos < 0 || inFlight >= limit) {
+            return false;
+        }
+        if (rate > 0) {
+            tokens = Math.min(burst, tokens + (now - refilledNanos) / 1e9 * rate);
+            refilledNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private synchronized void onSuccess(long latencyNanos, int inFlightAtStart) {
+        inFlight--;
+        if (!adaptive) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (baselineLatencyNanos == 0) {
+            recentLatencyNanos = latencyNanos;
+            baselineLatencyNanos = latencyNanos;
+        } else {
+            recentLatencyNanos += (latencyNanos - recentLatencyNanos) * RECENT_WEIGHT;
+            baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) * BASELINE_WEIGHT;
+        }
+        if (recentLatencyNanos > baselineLatencyNanos * latencyTolerance) {
+            decrease(now, LATENCY_DECREASE);
+        } else if (inFlightAtStart >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private synchronized void onThrottled(long retryAfterMillis) {
+        inFlight--;
+        throttled.increment();
+        long now = System.nanoTime();
+        if (retryAfterMillis > 0) {
+            long until = now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis);
+            if (until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+            }
+        }
+        if (adaptive) {
+            decrease(now, THROTTLED_DECREASE);
+        }
+    }
+
+    private synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    /**
+     * Lower the limit at most once per round trip, as the responses of requests sent before
+     * the last decrease do not reflect it yet.
+     */
+    private void decrease(long now, double factor) {
+        if (decreasedNanos != 0 && now - decreasedNanos < recentLatencyNanos) {
+            return;
+        }
+        decreasedNanos = now;
+        limit = Math.max(minLimit, limit * factor);
+    }
+
+    /**
+     * @return Current concurrency limit, rounded down
+     */
+    public synchronized int getLimit() {
+        return (int) Math.min(Integer.MAX_VALUE, limit);
+    }
+
+    /**
+     * @return Admitted requests that have not released their permit
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Requests waiting for admission
+     */
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    /**
+     * @return Throttling responses reported so far
+     */
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    /**
+     * Admission of one request. Exactly one of the release methods takes effect; later calls
+     * are ignored, so {@link #ignore()} can be called unconditionally in a finally block.
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+            synchronized (AdaptiveLimiter.this) {
+                this.inFlightAtStart = inFlight;
+            }
+        }
+
+        /**
+         * The request got a regular response; its latency feeds the concurrency limit.
+         */
+        public void success() {
+            if (released.compareAndSet(false, true)) {
+                onSuccess(System.nanoTime() - startNanos, inFlightAtStart);
+                dispatch();
+            }
+        }
+
+        /**
+         * The API answered with 429 or 503.
+         *
+         * @param retryAfterMillis Delay asked for by the Retry-After header, 0 if none
+         */
+        public void throttled(long retryAfterMillis) {
+            if (released.compareAndSet(false, true)) {
+                onThrottled(retryAfterMillis);
+                dispatch();
+            }
+        }
+
+        /**
+         * The request failed for a reason unrelated to load, or was never sent.
+         */
+        public void ignore() {
+            if (released.compareAndSet(false, true)) {
+                onIgnored();
+                dispatch();
+            }
+        }
+    }
+}
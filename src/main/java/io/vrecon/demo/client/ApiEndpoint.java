@@ -0,0 +1,100 @@
+package io.vrecon.demo.client;
+
+import java.net.URI;
+
+/**
+ * One (base URL, API key) pair of an {@link EndpointPool}, with the request rate the key's
+ * quota allows.
+ */
+public final class ApiEndpoint {
+
+    private final String baseUrl;
+    private final String apiKey;
+    private final double rateLimit;
+
+    public ApiEndpoint(String baseUrl, String apiKey) {
+        this(baseUrl, apiKey, 0);
+    }
+
+    /**
+     * @param baseUrl   Base URL of the VRecon API
+     * @param apiKey    API key for authentication
+     * @param rateLimit Requests per second allowed for this key, 0 to use the limiter settings of the pool
+     */
+    public ApiEndpoint(String baseUrl, String apiKey, double rateLimit) {
+        if (baseUrl == null || baseUrl.isBlank()) {
+            throw new IllegalArgumentException("Missing base URL");
+        }
+        if (apiKey == null || apiKey.isBlank()) {
+            throw new IllegalArgumentException("Missing API key for " + baseUrl);
+        }
+        if (rateLimit < 0) {
+            throw new IllegalArgumentException("Rate limit must not be negative: " + rateLimit);
+        }
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.apiKey = apiKey;
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Parse an --endpoint value of the form {@code URL[,KEY[,RATE]]}.
+     *
+     * @param spec       Endpoint specification
+     * @param defaultKey Key used when the specification has none
+     * @throws IllegalArgumentException if the specification is malformed
+     */
+    public static ApiEndpoint parse(String spec, String defaultKey) {
+        String[] parts = spec.split(",", -1);
+        if (parts.length > 3) {
+            throw new IllegalArgumentException("Expected URL[,KEY[,RATE]]: " + spec);
+        }
+        String key = parts.length > 1 && !parts[1].isBlank() ? parts[1].trim() : defaultKey;
+        double rate = 0;
+        if (parts.length > 2 && !parts[2].isBlank()) {
+            try {
+                rate = Double.parseDouble(parts[2].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid rate in " + spec);
+            }
+        }
+        return new ApiEndpoint(parts[0].trim(), key, rate);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * @return Requests per second allowed for this key, 0 to use the limiter settings of the pool
+     */
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @return Host and port of the base URL, naming the endpoint in metrics and logs
+     */
+    public String getHost() {
+        URI uri = URI.create(baseUrl);
+        if (uri.getHost() == null) {
+            return baseUrl;
+        }
+        return uri.getPort() >= 0 ? uri.getHost() + ":" + uri.getPort() : uri.getHost();
+    }
+
+    /**
+     * @return Last characters of the key, naming it in metrics and logs without revealing it
+     */
+    public String getKeyLabel() {
+        return "..." + apiKey.substring(Math.max(0, apiKey.length() - 4));
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl + " (key " + getKeyLabel() + ")";
+    }
+}
@@ -0,0 +1,82 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter and separate base intervals for PENDING and PROCESSING.
+ *
+ * The n-th consecutive poll in a state waits a random time between 0 and
+ * {@code min(maxInterval, base * 2^(n-1))}, so polls of many jobs spread out instead of
+ * arriving in synchronized waves.
+ *
+ * When learning is enabled, the strategy keeps an exponentially weighted average of recent
+ * completion times and delays the first poll until shortly before a job is expected to finish.
+ */
+public class BackoffPollingStrategy implements PollingStrategy {
+
+    /** Weight of the newest sample in the completion time average. */
+    private static final double LEARNING_WEIGHT = 0.2;
+    /** Fraction of the expected completion time to wait before the first poll. */
+    private static final double FIRST_POLL_FRACTION = 0.9;
+
+    private final long pendingInterval;
+    private final long processingInterval;
+    private final long maxInterval;
+    private final boolean learn;
+    private double expectedCompletion;
+
+    /**
+     * @param pendingInterval    Base interval in milliseconds while the job is PENDING
+     * @param processingInterval Base interval in milliseconds while the job is PROCESSING
+     * @param maxInterval        Upper bound of any delay in milliseconds
+     * @param learn              Schedule the first poll from the observed completion times
+     */
+    public BackoffPollingStrategy(long pendingInterval, long processingInterval, long maxInterval, boolean learn) {
+        this.pendingInterval = pendingInterval;
+        this.processingInterval = processingInterval;
+        this.maxInterval = Math.max(maxInterval, Math.max(pendingInterval, processingInterval));
+        this.learn = learn;
+    }
+
+    @Override
+    public long firstDelay() {
+        double expected = getExpectedCompletion();
+        if (learn && expected > 0) {
+            return Math.round(expected * FIRST_POLL_FRACTION);
+        }
+        return pendingInterval;
+    }
+
+    @Override
+    public long nextDelay(String state, int pollsInState) {
+        long base = RecognitionStates.PROCESSING.equals(state) ? processingInterval : pendingInterval;
+        int exponent = Math.min(Math.max(pollsInState - 1, 0), 30);
+        long ceiling = Math.min(maxInterval, base << exponent);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @Override
+    public synchronized void onCompleted(long elapsedMillis) {
+        if (!learn) {
+            return;
+        }
+        expectedCompletion = expectedCompletion == 0
+            ? elapsedMillis
+            : expectedCompletion + LEARNING_WEIGHT * (elapsedMillis - expectedCompletion);
+    }
+
+    /**
+     * @return Learned average completion time in milliseconds, 0 before the first completion
+     */
+    public synchronized double getExpectedCompletion() {
+        return expectedCompletion;
+    }
+
+    @Override
+    public String toString() {
+        return "backoff with jitter, pending " + pendingInterval + " ms, processing " + processingInterval
+            + " ms, max " + maxInterval + " ms" + (learn ? ", learning completion time" : "");
+    }
+}
@@ -0,0 +1,151 @@
+package io.vrecon.demo.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Readable channel producing a JSON envelope around the Base64 encoding of an image.
+ *
+ * The image is read and encoded chunk by chunk, so the memory held by the channel is
+ * limited to two fixed-size buffers regardless of the size of the image.
+ *
+ * The length of the envelope is announced before the image is read, so reading fails if the
+ * image turns out to be longer or shorter than the size it was given.
+ */
+class Base64ImageChannel implements ReadableByteChannel {
+
+    /** Raw chunk size; a multiple of 3 so that intermediate chunks encode without padding. */
+    static final int RAW_CHUNK_SIZE = 48 * 1024;
+
+    private final ByteBuffer prefix;
+    private final ReadableByteChannel file;
+    private final long fileSize;
+    private final ByteBuffer suffix;
+    private final byte[] raw = new byte[RAW_CHUNK_SIZE];
+    private final ByteBuffer rawBuffer = ByteBuffer.wrap(raw);
+    private final byte[] encoded = new byte[RAW_CHUNK_SIZE / 3 * 4];
+    private final ByteBuffer encodedBuffer = ByteBuffer.wrap(encoded).limit(0);
+    private final Base64.Encoder encoder = Base64.getEncoder();
+    private boolean fileDone;
+    private long fileRead;
+    private boolean open = true;
+    private boolean timed;
+    private long readNanos;
+    private long encodeNanos;
+
+    /**
+     * @param fileSize Number of bytes the image channel must produce
+     */
+    Base64ImageChannel(byte[] prefix, ReadableByteChannel file, long fileSize, byte[] suffix) {
+        this.prefix = ByteBuffer.wrap(prefix);
+        this.file = file;
+        this.fileSize = fileSize;
+        this.suffix = ByteBuffer.wrap(suffix);
+    }
+
+    /**
+     * Length of the Base64 encoding of the given number of raw bytes.
+     */
+    static long encodedLength(long rawLength) {
+        return 4 * ((rawLength + 2) / 3);
+    }
+
+    /**
+     * Accumulate the time spent reading the file and encoding it, for tracing.
+     */
+    void enableTiming() {
+        timed = true;
+    }
+
+    /**
+     * @return Time spent reading the file so far, if timing is enabled
+     */
+    long getReadNanos() {
+        return readNanos;
+    }
+
+    /**
+     * @return Time spent Base64-encoding so far, if timing is enabled
+     */
+    long getEncodeNanos() {
+        return encodeNanos;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int start = dst.position();
+        while (dst.hasRemaining()) {
+            if (prefix.hasRemaining()) {
+                transfer(prefix, dst);
+            } else if (encodedBuffer.hasRemaining()) {
+                transfer(encodedBuffer, dst);
+            } else if (!fileDone) {
+                fillEncoded();
+            } else if (suffix.hasRemaining()) {
+                transfer(suffix, dst);
+            } else {
+                break;
+            }
+        }
+        int count = dst.position() - start;
+        if (count == 0 && fileDone && !suffix.hasRemaining() && !encodedBuffer.hasRemaining()) {
+            return -1;
+        }
+        return count;
+    }
+
+    private void fillEncoded() throws IOException {
+        long startNanos = timed ? System.nanoTime() : 0;
+        rawBuffer.clear();
+        while (rawBuffer.hasRemaining()) {
+            if (file.read(rawBuffer) < 0) {
+                fileDone = true;
+                break;
+            }
+        }
+        int length = rawBuffer.position();
+        fileRead += length;
+        if (fileRead > fileSize || fileDone && fileRead < fileSize) {
+            throw new IOException("Image changed while it was uploaded: expected " + fileSize + " bytes, read "
+                + (fileDone ? fileRead : "more"));
+        }
+        long readEndNanos = timed ? System.nanoTime() : 0;
+        int encodedLength;
+        if (length == raw.length) {
+            encodedLength = encoder.encode(raw, encoded);
+        } else {
+            encodedLength = encoder.encode(Arrays.copyOf(raw, length), encoded);
+        }
+        encodedBuffer.clear().limit(encodedLength);
+        if (timed) {
+            readNanos += readEndNanos - startNanos;
+            encodeNanos += System.nanoTime() - readEndNanos;
+        }
+    }
+
+    private static void transfer(ByteBuffer src, ByteBuffer dst) {
+        int n = Math.min(src.remaining(), dst.remaining());
+        int limit = src.limit();
+        src.limit(src.position() + n);
+        dst.put(src);
+        src.limit(limit);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        file.close();
+    }
+}
@@ -0,0 +1,345 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognizeResponse;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recognizes many images concurrently with a bounded number of jobs in flight.
+ *
+ * Each job submits one image and polls until a final state in one of three ways:
+ * <ul>
+ *   <li>on its own worker thread with {@link VReconApiClient#recognize(String)} and
+ *       {@link VReconApiClient#waitForResult(String, PollingStrategy, long)}</li>
+ *   <li>on a few upload threads, handing the submitted UUID to a shared {@link PollScheduler}</li>
+ *   <li>without any per-job thread through {@link VReconAsyncApiClient#recognizeAsync(String)} and
+ *       {@link VReconAsyncApiClient#waitForResultAsync(String, PollingStrategy, long)}</li>
+ * </ul>
+ *
+ * With an {@link ImagePreprocessor}, images are downscaled and re-encoded before upload.
+ * With a {@link ResultCache}, images whose content was recognized before are answered from
+ * the cache without being uploaded. With a {@link JobJournal}, images that a previous run
+ * already finished are skipped, and images it submitted but did not finish are polled by
+ * their journaled UUID instead of being uploaded again.
+ *
+ * Results are always handed to the cache, the journal and the {@link Listener} on a worker
+ * thread, never on the async client's I/O reactor or a poll scheduler thread, since all of
+ * them may block on disk I/O.
+ */
+public class BatchRecognizer {
+
+    /**
+     * Receives the outcome of every job. Called from worker threads.
+     *
+     * With a journal, an image is journaled as finished only after {@link #onResult} returns.
+     * A listener that cannot deliver a result throws instead: the image then stays open in the
+     * journal, and no further images are submitted.
+     */
+    public interface Listener {
+        void onResult(Path image, StateResponse response, long elapsedMillis);
+
+        void onError(Path image, Exception error, long elapsedMillis);
+
+        /**
+         * Called before the upload of an image that went through the preprocessor.
+         */
+        default void onPrepared(PreparedImage image) {
+        }
+    }
+
+    private final VReconApiClient client;
+    private final VReconAsyncApiClient asyncClient;
+    private final PollScheduler scheduler;
+    private final int workerThreads;
+    private final int maxInFlight;
+    private final PollingStrategy pollingStrategy;
+    private final long maxWaitTime;
+    private ResultCache resultCache;
+    private JobJournal journal;
+    private ImagePreprocessor preprocessor;
+    private volatile boolean stopped;
+
+    /**
+     * @param client          Client used for all jobs
+     * @param maxInFlight     Maximum number of images submitted or polled at the same time
+     * @param pollingStrategy Strategy deciding when each job is polled
+     * @param maxWaitTime     Maximum time to wait for a single image in milliseconds
+     */
+    public BatchRecognizer(VReconApiClient client, int maxInFlight, PollingStrategy pollingStrategy, long maxWaitTime) {
+        this(client, null, null, maxInFlight, maxInFlight, pollingStrategy, maxWaitTime);
+    }
+
+    /**
+     * @param client        Client used to submit the images
+     * @param scheduler     Scheduler polling the submitted images; its polling strategy applies
+     * @param submitThreads Number of threads uploading images
+     * @param maxInFlight   Maximum number of images being submitted or awaiting a result
+     * @param maxWaitTime   Maximum time to wait for a single image in milliseconds
+     */
+    public BatchRecognizer(VReconApiClient client, PollScheduler scheduler, int submitThreads, int maxInFlight,
+                           long maxWaitTime) {
+        this(client, null, scheduler, submitThreads, maxInFlight, null, maxWaitTime);
+    }
+
+    /**
+     * @param asyncClient     Non-blocking client used for all jobs
+     * @param maxInFlight     Maximum number of images submitted or polled at the same time
+     * @param pollingStrategy Strategy deciding when each job is polled
+     * @param maxWaitTime     Maximum time to wait for a single image in milliseconds
+     */
+    public BatchRecognizer(VReconAsyncApiClient asyncClient, int maxInFlight, PollingStrategy pollingStrategy,
+                           long maxWaitTime) {
+        this(null, asyncClient, null, 0, maxInFlight, pollingStrategy, maxWaitTime);
+    }
+
+    private BatchRecognizer(VReconApiClient client, VReconAsyncApiClient asyncClient, PollScheduler scheduler,
+                            int workerThreads, int maxInFlight, PollingStrategy pollingStrategy, long maxWaitTime) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.client = client;
+        this.asyncClient = asyncClient;
+        this.scheduler = scheduler;
+        this.workerThreads = Math.max(1, Math.min(workerThreads, maxInFlight));
+        this.maxInFlight = maxInFlight;
+        this.pollingStrategy = pollingStrategy;
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * Serve images whose content was recognized before from the cache, and store new results in it.
+     *
+     * @param resultCache Cache to use, or null to always recognize
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Record submits, state changes and results in a journal, and resume the jobs it already holds.
+     * No further images are submitted once the journal fails to write; jobs in flight then fail.
+     *
+     * @param journal Journal to use, or null to run without one
+     */
+    public void setJournal(JobJournal journal) {
+        this.journal = journal;
+        StateListener stateListener = journal != null
+            ? (requestUuid, response) -> journal.stateObserved(requestUuid, response.getState())
+            : null;
+        if (client != null) {
+            client.setStateListener(stateListener);
+        }
+        if (asyncClient != null) {
+            asyncClient.setStateListener(stateListener);
+        }
+    }
+
+    /**
+     * Downscale and re-encode images before they are uploaded.
+     *
+     * @param preprocessor Preprocessor to use, or null to upload the original files
+     */
+    public void setPreprocessor(ImagePreprocessor preprocessor) {
+        this.preprocessor = preprocessor;
+    }
+
+    /**
+     * Recognize all images and block until every job has finished.
+     *
+     * @param images   Images to recognize
+     * @param listener Listener notified as each job finishes
+     * @return Aggregate counts and timing of the run
+     * @throws InterruptedException if the run is interrupted
+     */
+    public BatchSummary run(Iterable<Path> images, Listener listener) throws InterruptedException {
+        Semaphore permits = new Semaphore(maxInFlight);
+        BatchSummary summary = new BatchSummary();
+        stopped = false;
+        ExecutorService workers = newWorkerPool();
+
+        try {
+            for (Path image : images) {
+                if (journal != null) {
+                    // Without a working journal the run could not be resumed, so stop submitting
+                    if (journal.getWriteError() != null) {
+                        break;
+                    }
+                    JobJournal.Entry entry = journal.get(JobJournal.key(image));
+                    if (entry != null && entry.isFinished()) {
+                        summary.recordSkipped();
+                        continue;
+                    }
+                }
+                permits.acquire();
+                if (stopped) {
+                    permits.release();
+                    break;
+                }
+                long start = System.nanoTime();
+                if (asyncClient != null && resultCache == null) {
+                    recognize(summary, listener, image, start)
+                        .whenCompleteAsync((response, error) ->
+                            finish(summary, listener, permits, image, start, response, error), workers);
+                } else {
+                    workers.execute(() -> runJob(summary, listener, permits, image, start, workers));
+                }
+            }
+            permits.acquire(maxInFlight);
+        } finally {
+            workers.shutdownNow();
+            summary.finish();
+        }
+        return summary;
+    }
+
+    private void runJob(BatchSummary summary, Listener listener, Semaphore permits, Path image, long start,
+                        ExecutorService workers) {
+        String cacheKey = null;
+        if (resultCache != null) {
+            try {
+                cacheKey = resultCache.key(image);
+            } catch (IOException e) {
+                finish(summary, listener, permits, image, start, null, e);
+                return;
+            }
+            StateResponse cached = resultCache.get(cacheKey);
+            if (cached != null) {
+                summary.recordCached();
+                finish(summary, listener, permits, image, start, cached, null);
+                return;
+            }
+        }
+        String key = cacheKey;
+        recognize(summary, listener, image, start).whenCompleteAsync((response, error) -> {
+            if (key != null && response != null) {
+                resultCache.put(key, response);
+            }
+            finish(summary, listener, permits, image, start, response, error);
+        }, workers);
+    }
+
+    /**
+     * Start the recognition of one image, or resume polling it if the journal holds an open
+     * request. Blocks the calling worker thread unless the async client or the poll scheduler
+     * is used.
+     */
+    private CompletableFuture<StateResponse> recognize(BatchSummary summary, Listener listener, Path image,
+                                                     long start) {
+        String key = journal != null ? JobJournal.key(image) : null;
+        JobJournal.Entry entry = key != null ? journal.get(key) : null;
+        CompletableFuture<StateResponse> result;
+        if (entry != null && entry.getRequestUuid() != null) {
+            summary.recordResumed();
+            result = await(entry.getRequestUuid(), start);
+        } else {
+            result = submit(summary, listener, image).thenCompose(recognizeResponse -> {
+                if (!recognizeResponse.isSuccess()) {
+                    StateResponse errorState = new StateResponse();
+                    errorState.setSuccess(false);
+                    errorState.setError(recognizeResponse.getError());
+                    return CompletableFuture.completedFuture(errorState);
+                }
+                if (key != null) {
+                    journal.submitted(key, recognizeResponse.getRequestUuid());
+                }
+                return await(recognizeResponse.getRequestUuid(), start);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Upload one image, preprocessing it first if configured. Preprocessing runs on the
+     * preprocessor's own pool; the upload itself never does.
+     */
+    private CompletableFuture<RecognizeResponse> submit(BatchSummary summary, Listener listener, Path image) {
+        if (preprocessor == null) {
+            if (asyncClient != null) {
+                return asyncClient.recognizeAsync(image.toString());
+            }
+            try {
+                return CompletableFuture.completedFuture(client.recognize(image.toString()));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        CompletableFuture<PreparedImage> prepared = preprocessor.prepareAsync(image).thenApply(preparedImage -> {
+            summary.recordPrepared(preparedImage);
+            listener.onPrepared(preparedImage);
+            return preparedImage;
+        });
+        if (asyncClient != null) {
+            return prepared.thenCompose(asyncClient::recognizeAsync);
+        }
+        try {
+            return CompletableFuture.completedFuture(client.recognize(prepared.join()));
+        } catch (CompletionException e) {
+            return CompletableFuture.failedFuture(e.getCause());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<StateResponse> await(String requestUuid, long start) {
+        long remaining = maxWaitTime - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (asyncClient != null) {
+            return asyncClient.waitForResultAsync(requestUuid, pollingStrategy, remaining);
+        }
+        if (scheduler != null) {
+            return scheduler.track(requestUuid, remaining);
+        }
+        try {
+            return CompletableFuture.completedFuture(client.waitForResult(requestUuid, pollingStrategy, remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private ExecutorService newWorkerPool() {
+        AtomicInteger workerIds = new AtomicInteger();
+        int threads = asyncClient != null ? Runtime.getRuntime().availableProcessors() : workerThreads;
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "vrecon-batch-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void finish(BatchSummary summary, Listener listener, Semaphore permits, Path image, long start,
+                        StateResponse response, Throwable error) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        try {
+            if (error == null) {
+                summary.record(response, elapsed);
+                listener.onResult(image, response, elapsed);
+                if (journal != null) {
+                    journal.finished(JobJournal.key(image), response);
+                }
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                Exception exception = cause instanceof Exception ? (Exception) cause : new Exception(cause);
+                summary.recordError(elapsed);
+                listener.onError(image, exception, elapsed);
+            }
+        } catch (RuntimeException e) {
+            // The result was not delivered or not journaled; leave the image open for the next run
+            stopped = true;
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregate counts and timing of a batch run. Safe for concurrent updates.
+ */
+public class BatchSummary {
+
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+    private final LongAdder resumed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder prepared = new LongAdder();
+    private final LongAdder originalBytes = new LongAdder();
+    private final LongAdder uploadedBytes = new LongAdder();
+    private final LongAdder totalLatencyMillis = new LongAdder();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    void record(StateResponse response, long elapsedMillis) {
+        if (response.isSuccess() && RecognitionStates.isCompleted(response.getState())) {
+            completed.increment();
+        } else {
+            failed.increment();
+        }
+        recordLatency(elapsedMillis);
+    }
+
+    void recordCached() {
+        cached.increment();
+    }
+
+    void recordResumed() {
+        resumed.increment();
+    }
+
+    void recordSkipped() {
+        skipped.increment();
+    }
+
+    void recordPrepared(PreparedImage image) {
+        prepared.increment();
+        originalBytes.add(image.getOriginalSize());
+        uploadedBytes.add(image.getSize());
+    }
+
+    void recordError(long elapsedMillis) {
+        errors.increment();
+        recordLatency(elapsedMillis);
+    }
+
+    private void recordLatency(long elapsedMillis) {
+        totalLatencyMillis.add(elapsedMillis);
+        maxLatencyMillis.accumulateAndGet(elapsedMillis, Math::max);
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * @return Number of images that finished with a recognition result
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * @return Number of images that finished without a result (failed, cancelled, rejected or timed out)
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return Number of images that could not be processed because of a client-side error
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return Number of images answered from the result cache without uploading, included in the completed count
+     */
+    public long getCached() {
+        return cached.sum();
+    }
+
+    /**
+     * @return Number of images submitted by an earlier run and polled again instead of being uploaded
+     */
+    public long getResumed() {
+        return resumed.sum();
+    }
+
+    /**
+     * @return Number of images skipped because the journal already holds their final result;
+     *         not included in the total
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return Number of images that went through the preprocessor
+     */
+    public long getPrepared() {
+        return prepared.sum();
+    }
+
+    /**
+     * @return Total size of the preprocessed images before preprocessing
+     */
+    public long getOriginalBytes() {
+        return originalBytes.sum();
+    }
+
+    /**
+     * @return Total size of the preprocessed images as uploaded
+     */
+    public long getUploadedBytes() {
+        return uploadedBytes.sum();
+    }
+
+    public long getTotal() {
+        return getCompleted() + getFailed() + getErrors();
+    }
+
+    public long getElapsedMillis() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000;
+    }
+
+    public double getAverageLatencyMillis() {
+        long total = getTotal();
+        return total == 0 ? 0 : (double) totalLatencyMillis.sum() / total;
+    }
+
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis.get();
+    }
+
+    /**
+     * @return Finished images per second of wall-clock time
+     */
+    public double getThroughput() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getTotal() * 1000.0 / elapsed;
+    }
+}
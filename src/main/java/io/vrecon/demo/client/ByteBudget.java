@@ -0,0 +1,201 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.metrics.MetricsRegistry;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Upper bound on the heap held by images in flight, shared by the preprocessor and all
+ * clients of a process.
+ *
+ * Code that loads, decodes or streams an image reserves its estimated memory first and
+ * releases it when done, so the number of images in memory adapts to their size: many small
+ * ones or a few large ones. Reservations are granted in arrival order, so a large image is
+ * not starved by a stream of small ones. A reservation larger than the whole budget is cut
+ * down to the budget; it then waits until nothing else is reserved and runs alone.
+ *
+ * The async client gets a future that is completed once the memory is granted, blocking
+ * callers wait on it.
+ */
+public class ByteBudget {
+
+    private final long maxBytes;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private long reserved;
+    private final LongAdder waits = new LongAdder();
+
+    /**
+     * @param maxBytes Total bytes that may be reserved at the same time
+     */
+    public ByteBudget(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Expose the budget usage as metrics.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("vrecon_inflight_bytes", "Bytes reserved by images being loaded, encoded or uploaded",
+            this::getReserved);
+        registry.gauge("vrecon_inflight_bytes_limit", "Maximum bytes images in flight may reserve", () -> maxBytes);
+        registry.gauge("vrecon_inflight_bytes_waiting", "Reservations waiting for memory to be released",
+            this::getWaiting);
+        registry.counter("vrecon_inflight_bytes_waits_total", "Reservations that had to wait for memory",
+            waits::sum);
+    }
+
+    /**
+     * Wait until the bytes can be reserved.
+     *
+     * @return Reservation to release when the memory is no longer used
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public Reservation reserve(long bytes) throws InterruptedIOException {
+        CompletableFuture<Reservation> future = reserveAsync(bytes);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                future.join().release();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the in-flight byte budget");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Reserve without blocking. Cancelling the returned future withdraws the request.
+     *
+     * @return Future completed with the reservation once the bytes are granted
+     */
+    public CompletableFuture<Reservation> reserveAsync(long bytes) {
+        long amount = Math.max(0, Math.min(bytes, maxBytes));
+        Waiter waiter;
+        synchronized (this) {
+            if (waiters.isEmpty() && reserved + amount <= maxBytes) {
+                reserved += amount;
+                return CompletableFuture.completedFuture(new Reservation(amount));
+            }
+            waiter = new Waiter(amount);
+            waiters.add(waiter);
+        }
+        waits.increment();
+        // A cancelled head must not hold up the waiters behind it
+        waiter.future.whenComplete((reservation, error) -> {
+            if (waiter.future.isCancelled()) {
+                free(0);
+            }
+        });
+        return waiter.future;
+    }
+
+    private void free(long amount) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            reserved -= amount;
+            while (!waiters.isEmpty()) {
+                Waiter head = waiters.peek();
+                if (head.future.isDone()) {
+                    waiters.poll();
+                    continue;
+                }
+                if (reserved + head.amount > maxBytes) {
+                    break;
+                }
+                waiters.poll();
+                reserved += head.amount;
+                granted.add(head);
+            }
+        }
+        for (Waiter waiter : granted) {
+            if (!waiter.future.complete(new Reservation(waiter.amount))) {
+                // Cancelled after it was granted
+                free(waiter.amount);
+            }
+        }
+    }
+
+    /**
+     * @return Total bytes that may be reserved at the same time
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return Bytes currently reserved
+     */
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * @return Reservations waiting for memory
+     */
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    /**
+     * Memory granted by the budget. Releasing it more than once has no effect.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final AtomicLong bytes;
+
+        private Reservation(long bytes) {
+            this.bytes = new AtomicLong(bytes);
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * Give back the part of the reservation above the given size, once the actual memory
+         * use turned out to be smaller than estimated.
+         */
+        public void shrink(long newBytes) {
+            long current;
+            do {
+                current = bytes.get();
+                if (newBytes >= current) {
+                    return;
+                }
+            } while (!bytes.compareAndSet(current, Math.max(0, newBytes)));
+            free(current - Math.max(0, newBytes));
+        }
+
+        public void release() {
+            long held = bytes.getAndSet(0);
+            if (held > 0) {
+                free(held);
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    private static final class Waiter {
+        private final long amount;
+        private final CompletableFuture<Reservation> future = new CompletableFuture<>();
+
+        private Waiter(long amount) {
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.vrecon.demo.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fails requests to an endpoint fast while it is down, instead of letting every caller wait
+ * for its own timeout and retries.
+ *
+ * After the configured number of consecutive failures the circuit opens and requests fail
+ * with {@link CircuitOpenException}. Once the open time has passed, a single trial request
+ * is let through: its success closes the circuit, its failure opens it again. Throttling
+ * with 429 is not a failure, the API is up and the limiter deals with it.
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String endpoint;
+    private final int threshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedNanos;
+    private boolean trialInFlight;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param endpoint   Path of the endpoint, for error messages
+     * @param threshold  Consecutive failures that open the circuit, 0 to never open it
+     * @param openMillis Time the circuit stays open before a trial request
+     */
+    CircuitBreaker(String endpoint, int threshold, long openMillis) {
+        this.endpoint = endpoint;
+        this.threshold = threshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Check that a request may be sent. Every call that returns must be followed by one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @throws CircuitOpenException if the circuit is open
+     */
+    synchronized void acquire() throws CircuitOpenException {
+        if (state == State.CLOSED) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (state == State.OPEN && now - openedNanos >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return;
+        }
+        rejected.increment();
+        throw new CircuitOpenException(endpoint,
+            Math.max(0, TimeUnit.NANOSECONDS.toMillis(openedNanos + openNanos - now)));
+    }
+
+    synchronized void onSuccess() {
+        failures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    synchronized void onFailure() {
+        trialInFlight = false;
+        failures++;
+        if (threshold > 0 && (state == State.HALF_OPEN || failures >= threshold)) {
+            state = State.OPEN;
+            openedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * The request ended without telling whether the endpoint works, such as a 429 or a
+     * cancelled hedge. A trial request may be sent again.
+     */
+    synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return Whether {@link #acquire()} would let a request through now
+     */
+    synchronized boolean isAvailable() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.nanoTime() - openedNanos >= openNanos;
+            case HALF_OPEN -> !trialInFlight;
+        };
+    }
+
+    /**
+     * @return Consecutive failures since the last success
+     */
+    synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return Requests failed fast because the circuit was open
+     */
+    long getRejected() {
+        return rejected.sum();
+    }
+}
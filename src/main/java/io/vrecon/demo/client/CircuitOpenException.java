@@ -0,0 +1,16 @@
+package io.vrecon.demo.client;
+
+import java.io.IOException;
+
+/**
+ * A request was not sent because the circuit breaker of its endpoint is open after repeated
+ * failures.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String endpoint, long retryInMillis) {
+        super("Circuit open for " + endpoint + " after repeated failures, next trial in " + retryInMillis + " ms");
+    }
+}
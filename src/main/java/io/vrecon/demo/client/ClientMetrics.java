@@ -0,0 +1,204 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.metrics.Counter;
+import io.vrecon.demo.metrics.Gauge;
+import io.vrecon.demo.metrics.Histogram;
+import io.vrecon.demo.metrics.MetricsRegistry;
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+import org.apache.hc.core5.pool.ConnPoolControl;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics updated by the API clients, resolved once so that the request path only touches
+ * striped counters.
+ */
+final class ClientMetrics {
+
+    static final String RECOGNIZE = "recognize";
+    static final String STATE = "state";
+
+    /** Status label of requests that failed without an HTTP response */
+    static final int NO_RESPONSE = 0;
+
+    private final MetricsRegistry registry;
+    private final String client;
+    private final Map<String, Map<Integer, Counter>> requests = new ConcurrentHashMap<>();
+    private final Histogram recognizeLatency;
+    private final Histogram stateLatency;
+    private final Counter uploadedBytes;
+    private final Gauge jobsInFlight;
+    private final Histogram pollsPerJob;
+    private final Map<String, Counter> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Counter> retries = new ConcurrentHashMap<>();
+    private final Counter hedges;
+    private final Counter hedgeWins;
+
+    ClientMetrics(MetricsRegistry registry, String client) {
+        this.registry = registry;
+        this.client = client;
+        this.recognizeLatency = registry.histogram("vrecon_request_duration_seconds",
+            "Latency of API requests until the response was parsed", Histogram.LATENCY_SECONDS,
+            "client", client, "endpoint", RECOGNIZE);
+        this.stateLatency = registry.histogram("vrecon_request_duration_seconds",
+            "Latency of API requests until the response was parsed", Histogram.LATENCY_SECONDS,
+            "client", client, "endpoint", STATE);
+        this.uploadedBytes = registry.counter("vrecon_upload_bytes_total",
+            "Bytes of image data uploaded, before Base64 encoding", "client", client);
+        this.jobsInFlight = registry.gauge("vrecon_jobs_in_flight",
+            "Submitted jobs being polled for a final state", "client", client);
+        this.pollsPerJob = registry.histogram("vrecon_job_polls",
+            "State polls needed per job that reached a final state", Histogram.SMALL_COUNTS, "client", client);
+        this.hedges = registry.counter("vrecon_hedged_requests_total",
+            "Duplicate state requests sent because the first one was slower than the recent p95", "client", client);
+        this.hedgeWins = registry.counter("vrecon_hedge_wins_total",
+            "Hedged state requests whose duplicate answered first", "client", client);
+    }
+
+    /**
+     * Expose the statistics of a connection pool as gauges.
+     */
+    void registerPool(ConnPoolControl<?> pool) {
+        String help = "Connections of the client's pool by state; pending are requests waiting for a lease";
+        registry.gauge("vrecon_pool_connections", help, () -> pool.getTotalStats().getLeased(),
+            "client", client, "state", "leased");
+        registry.gauge("vrecon_pool_connections", help, () -> pool.getTotalStats().getAvailable(),
+            "client", client, "state", "available");
+        registry.gauge("vrecon_pool_connections", help, () -> pool.getTotalStats().getPending(),
+            "client", client, "state", "pending");
+        registry.gauge("vrecon_pool_max_connections", "Maximum size of the client's connection pool",
+            () -> pool.getTotalStats().getMax(), "client", client);
+    }
+
+    /**
+     * Expose the state of the circuit breakers of every endpoint of the pool, labeled with the
+     * endpoint's host if there are several.
+     */
+    void registerCircuitBreakers(EndpointPool pool) {
+        Set<String> upstreams = new HashSet<>();
+        for (EndpointPool.Member member : pool.members()) {
+            String upstream = member.endpoint().getHost();
+            if (upstreams.add(upstream)) {
+                String[] labels = pool.isSingle() ? new String[0] : new String[] {"upstream", upstream};
+                registerCircuitBreaker(RECOGNIZE, member.breaker(VReconApiClient.RECOGNIZE_PATH), labels);
+                registerCircuitBreaker(STATE, member.breaker(VReconApiClient.STATE_PATH), labels);
+            }
+        }
+    }
+
+    private void registerCircuitBreaker(String endpoint, CircuitBreaker breaker, String... upstream) {
+        String[] labels = new String[4 + upstream.length];
+        labels[0] = "client";
+        labels[1] = client;
+        labels[2] = "endpoint";
+        labels[3] = endpoint;
+        System.arraycopy(upstream, 0, labels, 4, upstream.length);
+        registry.gauge("vrecon_circuit_state", "Circuit breaker of the endpoint: 0 closed, 1 open, 2 half open",
+            () -> breaker.getState().ordinal(), labels);
+        registry.counter("vrecon_circuit_rejected_total", "Requests failed fast because the circuit was open",
+            breaker::getRejected, labels);
+    }
+
+    /**
+     * Expose how many state requests were saved by coalescing and caching.
+     */
+    void registerStateCoalescer(StateCoalescer coalescer) {
+        registry.counter("vrecon_state_coalesced_total",
+            "State requests that shared the response of a request for the same job already in flight",
+            coalescer::getCoalesced, "client", client);
+        registry.counter("vrecon_state_cache_hits_total",
+            "State requests answered from the cache of final states", coalescer::getCacheHits, "client", client);
+    }
+
+    /**
+     * Start timing a request; call {@link Request#finish()} when it is done.
+     */
+    Request startRequest(String endpoint) {
+        return new Request(endpoint);
+    }
+
+    void recordRequest(String endpoint, int status, long nanos) {
+        requests.computeIfAbsent(endpoint, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(status, code -> registry.counter("vrecon_requests_total",
+                "API requests by endpoint and HTTP status; status 0 means no response was received",
+                "client", client, "endpoint", endpoint, "status", String.valueOf(code)))
+            .increment();
+        (RECOGNIZE.equals(endpoint) ? recognizeLatency : stateLatency).observeNanos(nanos);
+    }
+
+    /**
+     * Timing and status of one request.
+     */
+    final class Request {
+        private final String endpoint;
+        private final long startNanos = System.nanoTime();
+        private int status = NO_RESPONSE;
+
+        private Request(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        void setStatus(int status) {
+            this.status = status;
+        }
+
+        void finish() {
+            recordRequest(endpoint, status, System.nanoTime() - startNanos);
+        }
+    }
+
+    void recordRetry(String endpoint) {
+        retries.computeIfAbsent(endpoint, key -> registry.counter("vrecon_retries_total",
+                "Failed API requests that were retried", "client", client, "endpoint", key))
+            .increment();
+    }
+
+    void recordHedgeSent() {
+        hedges.increment();
+    }
+
+    void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    void recordUpload(long bytes) {
+        uploadedBytes.add(bytes);
+    }
+
+    void jobStarted() {
+        jobsInFlight.increment();
+    }
+
+    /**
+     * @param response Final response of the job, or null if it failed with an exception
+     * @param polls    Number of state polls of the job
+     */
+    void jobFinished(StateResponse response, int polls) {
+        String outcome;
+        if (response == null) {
+            outcome = "error";
+        } else if (response.isSuccess() && RecognitionStates.isTerminal(response.getState())) {
+            outcome = response.getState().toLowerCase(Locale.ROOT);
+        } else if (VReconApiClient.TIMEOUT_ERROR.equals(response.getError())) {
+            outcome = "timeout";
+        } else {
+            outcome = "error";
+        }
+        jobFinished(outcome, polls);
+    }
+
+    private void jobFinished(String outcome, int polls) {
+        jobsInFlight.decrement();
+        jobs.computeIfAbsent(outcome, key -> registry.counter("vrecon_jobs_total",
+                "Polled jobs by outcome", "client", client, "outcome", key))
+            .increment();
+        if (!"timeout".equals(outcome) && !"error".equals(outcome)) {
+            pollsPerJob.observe(polls);
+        }
+    }
+}
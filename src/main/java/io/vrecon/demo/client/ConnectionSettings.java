@@ -0,0 +1,196 @@
+package io.vrecon.demo.client;
+
+/**
+ * Connection pool, timeout and failure handling settings of the VRecon API clients.
+ *
+ * All durations are in milliseconds.
+ */
+public class ConnectionSettings {
+
+    private int maxConnTotal = 64;
+    private int maxConnPerRoute = 32;
+    private long connectTimeout = 10_000;
+    private long readTimeout = 60_000;
+    private long leaseTimeout = 30_000;
+    private long keepAlive = 30_000;
+    private long idleEviction = 60_000;
+    private int prewarmConnections;
+    private int maxRetries = 2;
+    private long retryBackoff = 200;
+    private long maxRetryBackoff = 5_000;
+    private int circuitBreakerThreshold = 5;
+    private long circuitBreakerOpenTime = 10_000;
+    private boolean hedgeStateRequests;
+    private long stateCacheTtl = 60_000;
+
+    /**
+     * @return Maximum number of pooled connections across all routes
+     */
+    public int getMaxConnTotal() {
+        return maxConnTotal;
+    }
+
+    public void setMaxConnTotal(int maxConnTotal) {
+        this.maxConnTotal = maxConnTotal;
+    }
+
+    /**
+     * @return Maximum number of pooled connections to one host
+     */
+    public int getMaxConnPerRoute() {
+        return maxConnPerRoute;
+    }
+
+    public void setMaxConnPerRoute(int maxConnPerRoute) {
+        this.maxConnPerRoute = maxConnPerRoute;
+    }
+
+    /**
+     * @return Timeout for establishing a connection, applied separately to the TCP connect
+     *         and the TLS handshake
+     */
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @return Maximum time to wait for the response and for data on an open connection
+     */
+    public long getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(long readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @return Maximum time to wait for a free connection from the pool
+     */
+    public long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    public void setLeaseTimeout(long leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * @return How long an idle connection is kept for reuse when the server does not say otherwise
+     */
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return Idle time after which a background task closes pooled connections
+     */
+    public long getIdleEviction() {
+        return idleEviction;
+    }
+
+    public void setIdleEviction(long idleEviction) {
+        this.idleEviction = idleEviction;
+    }
+
+    /**
+     * @return Number of connections opened in parallel when the client starts, 0 to disable
+     */
+    public int getPrewarmConnections() {
+        return prewarmConnections;
+    }
+
+    public void setPrewarmConnections(int prewarmConnections) {
+        this.prewarmConnections = prewarmConnections;
+    }
+
+    /**
+     * @return Number of times a failed request is retried. State requests are retried on any
+     *         I/O error, submits only when the API cannot have received them
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @return Upper bound of the randomized delay before the first retry; it doubles with every
+     *         further retry
+     */
+    public long getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(long retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * @return Cap of the retry delay, unless a Retry-After header asks for more
+     */
+    public long getMaxRetryBackoff() {
+        return maxRetryBackoff;
+    }
+
+    public void setMaxRetryBackoff(long maxRetryBackoff) {
+        this.maxRetryBackoff = maxRetryBackoff;
+    }
+
+    /**
+     * @return Consecutive failures of an endpoint after which its requests fail fast, 0 to
+     *         disable the circuit breaker
+     */
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    /**
+     * @return Time an open circuit fails requests before letting a single trial request through
+     */
+    public long getCircuitBreakerOpenTime() {
+        return circuitBreakerOpenTime;
+    }
+
+    public void setCircuitBreakerOpenTime(long circuitBreakerOpenTime) {
+        this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+    }
+
+    /**
+     * @return Whether the async client sends a second state request when the first one takes
+     *         longer than the recent p95 latency
+     */
+    public boolean isHedgeStateRequests() {
+        return hedgeStateRequests;
+    }
+
+    public void setHedgeStateRequests(boolean hedgeStateRequests) {
+        this.hedgeStateRequests = hedgeStateRequests;
+    }
+
+    /**
+     * @return How long a final state is answered from memory instead of the API, 0 to always
+     *         ask the API
+     */
+    public long getStateCacheTtl() {
+        return stateCacheTtl;
+    }
+
+    public void setStateCacheTtl(long stateCacheTtl) {
+        this.stateCacheTtl = stateCacheTtl;
+    }
+}
@@ -0,0 +1,389 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads the requests of a client over several (endpoint, API key) pairs.
+ *
+ * <ul>
+ *   <li>Every request goes to the member with the fewest outstanding requests or, with
+ *       {@link Balancing#LATENCY}, the lowest outstanding requests times recent latency.
+ *       Ties are broken round robin.</li>
+ *   <li>Every endpoint has its own circuit breakers. An endpoint whose circuit is open is
+ *       ejected from selection until its open time has passed; then a single trial request
+ *       decides whether it is taken back. Members with recent failures are chosen last.</li>
+ *   <li>Every API key has its own {@link AdaptiveLimiter}, so its quota, the concurrency it
+ *       sustains and the Retry-After pauses of its 429 responses are tracked separately.
+ *       A member whose key could not send right away is only chosen when all are waiting.</li>
+ * </ul>
+ *
+ * A request UUID belongs to the key and endpoint that issued it, so state requests stick to
+ * the member that submitted the job. The pool remembers that member until the job reaches a
+ * final state. UUIDs it does not know, such as those of a resumed journal, are looked up on
+ * each member in turn.
+ *
+ * A pool of one member behaves exactly like a client bound to one base URL and key. Sync and
+ * async clients may share a pool, and with it health, limiters and sticky members.
+ */
+public class EndpointPool {
+
+    /**
+     * How a member is chosen among the available ones.
+     */
+    public enum Balancing {
+        /** Fewest outstanding requests */
+        LEAST_OUTSTANDING,
+        /** Fewest outstanding requests weighted by the endpoint's recent latency */
+        LATENCY;
+
+        /**
+         * @return Strategy named by a --balancing value: least-outstanding or latency
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        public static Balancing parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /** Maximum number of request UUIDs remembered with their member */
+    static final int STICKY_CAPACITY = 65_536;
+    /** Weight of a new sample in the latency average of an endpoint */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final List<Member> members;
+    private final Balancing balancing;
+    private final LinkedHashMap<String, Member> sticky = new LinkedHashMap<>();
+    private final AtomicInteger nextStart = new AtomicInteger();
+    private final LongAdder lookups = new LongAdder();
+
+    /**
+     * @param endpoints Pairs of base URL and key, in order of preference for unknown UUIDs
+     * @param balancing How a member is chosen
+     * @param settings  Circuit breaker settings used for every endpoint
+     */
+    public EndpointPool(List<ApiEndpoint> endpoints, Balancing balancing, ConnectionSettings settings) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("No endpoints");
+        }
+        this.balancing = balancing;
+        Map<String, Upstream> upstreams = new HashMap<>();
+        Map<String, AdaptiveLimiter> limiters = new HashMap<>();
+        List<Member> pool = new ArrayList<>();
+        for (ApiEndpoint endpoint : endpoints) {
+            // Breakers of a single endpoint are named by path alone, as in error messages so far
+            String name = endpoints.size() > 1 ? endpoint.getBaseUrl() : "";
+            Upstream upstream = upstreams.computeIfAbsent(endpoint.getBaseUrl(), url -> new Upstream(name, settings));
+            AdaptiveLimiter limiter = limiters.computeIfAbsent(endpoint.getApiKey(),
+                key -> new AdaptiveLimiter(new LimiterSettings()));
+            pool.add(new Member(endpoint, upstream, limiter));
+        }
+        this.members = Collections.unmodifiableList(pool);
+    }
+
+    /**
+     * Pool of a client bound to one base URL and key.
+     */
+    static EndpointPool single(String baseUrl, String apiKey, ConnectionSettings settings) {
+        return new EndpointPool(List.of(new ApiEndpoint(baseUrl, apiKey)), Balancing.LEAST_OUTSTANDING, settings);
+    }
+
+    /**
+     * Admit the requests of all keys through one limiter.
+     */
+    public void setLimiter(AdaptiveLimiter limiter) {
+        for (Member member : members) {
+            member.limiter = limiter;
+        }
+    }
+
+    /**
+     * Give every key its own limiter. A key with a rate limit of its own uses it instead of
+     * the rate of the settings.
+     *
+     * @param settings Settings of every key's limiter
+     */
+    public void setLimiterSettings(LimiterSettings settings) {
+        Map<String, AdaptiveLimiter> limiters = new HashMap<>();
+        for (Member member : members) {
+            ApiEndpoint endpoint = member.endpoint;
+            member.limiter = limiters.computeIfAbsent(endpoint.getApiKey(), key -> new AdaptiveLimiter(
+                endpoint.getRateLimit() > 0 ? withRate(settings, endpoint.getRateLimit()) : settings));
+        }
+    }
+
+    private static LimiterSettings withRate(LimiterSettings settings, double rate) {
+        LimiterSettings keySettings = new LimiterSettings();
+        keySettings.setRate(rate);
+        keySettings.setBurst(settings.getBurst());
+        keySettings.setMaxConcurrency(settings.getMaxConcurrency());
+        keySettings.setMinConcurrency(settings.getMinConcurrency());
+        keySettings.setInitialConcurrency(settings.getInitialConcurrency());
+        keySettings.setLatencyTolerance(settings.getLatencyTolerance());
+        return keySettings;
+    }
+
+    /**
+     * Expose the limiter of every key, labeled with the key if there are several.
+     */
+    public void registerLimiterMetrics(MetricsRegistry registry) {
+        Map<AdaptiveLimiter, String> limiters = new LinkedHashMap<>();
+        for (Member member : members) {
+            limiters.putIfAbsent(member.limiter, member.endpoint.getKeyLabel());
+        }
+        for (Map.Entry<AdaptiveLimiter, String> limiter : limiters.entrySet()) {
+            if (limiters.size() == 1) {
+                limiter.getKey().registerMetrics(registry);
+            } else {
+                limiter.getKey().registerMetrics(registry, "key", limiter.getValue());
+            }
+        }
+    }
+
+    /**
+     * Expose the requests, outstanding requests and latency of every member. Does nothing for
+     * a pool of one member, whose numbers the client metrics already show.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        if (members.size() == 1) {
+            return;
+        }
+        for (Member member : members) {
+            String upstream = member.endpoint.getHost();
+            String key = member.endpoint.getKeyLabel();
+            registry.counter("vrecon_upstream_requests_total", "Requests sent to the endpoint with the key",
+                member.requests::sum, "upstream", upstream, "key", key);
+            registry.gauge("vrecon_upstream_outstanding", "Requests sent to the endpoint with the key and not finished",
+                member.outstanding::get, "upstream", upstream, "key", key);
+        }
+        Map<String, Upstream> upstreams = new LinkedHashMap<>();
+        for (Member member : members) {
+            upstreams.putIfAbsent(member.endpoint.getHost(), member.upstream);
+        }
+        for (Map.Entry<String, Upstream> upstream : upstreams.entrySet()) {
+            Upstream health = upstream.getValue();
+            String help = "Recent average latency of successful requests to the endpoint";
+            registry.gauge("vrecon_upstream_latency_seconds", help,
+                () -> health.getLatencyNanos(VReconApiClient.RECOGNIZE_PATH) / 1e9,
+                "upstream", upstream.getKey(), "endpoint", ClientMetrics.RECOGNIZE);
+            registry.gauge("vrecon_upstream_latency_seconds", help,
+                () -> health.getLatencyNanos(VReconApiClient.STATE_PATH) / 1e9,
+                "upstream", upstream.getKey(), "endpoint", ClientMetrics.STATE);
+        }
+        registry.gauge("vrecon_upstream_sticky_jobs", "Request UUIDs remembered with the member that issued them",
+            this::getStickyJobs);
+        registry.counter("vrecon_upstream_lookups_total", "State requests for unknown UUIDs tried on several members",
+            lookups::sum);
+    }
+
+    /**
+     * @return Members in the order they were configured
+     */
+    List<Member> members() {
+        return members;
+    }
+
+    /**
+     * @return Whether the pool has a single member, so there is nothing to choose
+     */
+    boolean isSingle() {
+        return members.size() == 1;
+    }
+
+    /**
+     * Choose the member for a new request to the endpoint path.
+     */
+    Member select(String path) {
+        if (members.size() == 1) {
+            return members.get(0);
+        }
+        int count = members.size();
+        int start = Math.floorMod(nextStart.getAndIncrement(), count);
+        Member best = null;
+        int bestTier = Integer.MAX_VALUE;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Member member = members.get((start + i) % count);
+            CircuitBreaker breaker = member.breaker(path);
+            int tier = !breaker.isAvailable() ? 2 : member.limiter.canAdmit() ? 0 : 1;
+            double score = (member.outstanding.get() + 1) * (1 + breaker.getFailures());
+            if (balancing == Balancing.LATENCY) {
+                // Endpoints without a sample yet score zero, so each gets measured early on
+                score *= member.upstream.getLatencyNanos(path);
+            }
+            if (tier < bestTier || (tier == bestTier && score < bestScore)) {
+                best = member;
+                bestTier = tier;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Remember the member that issued a request UUID.
+     */
+    void bind(String requestUuid, Member member) {
+        if (members.size() == 1 || requestUuid == null) {
+            return;
+        }
+        synchronized (sticky) {
+            sticky.put(requestUuid, member);
+            if (sticky.size() > STICKY_CAPACITY) {
+                Iterator<String> eldest = sticky.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget a request UUID once its job reached a final state.
+     */
+    void unbind(String requestUuid) {
+        if (members.size() > 1) {
+            synchronized (sticky) {
+                sticky.remove(requestUuid);
+            }
+        }
+    }
+
+    /**
+     * @return Member that issued the request UUID, or null if it has to be looked up
+     */
+    Member memberFor(String requestUuid) {
+        if (members.size() == 1) {
+            return members.get(0);
+        }
+        synchronized (sticky) {
+            return sticky.get(requestUuid);
+        }
+    }
+
+    /**
+     * Count a state request for an unknown UUID that is tried on the members in turn.
+     */
+    void recordLookup() {
+        lookups.increment();
+    }
+
+    /**
+     * @return Request UUIDs remembered with their member
+     */
+    public int getStickyJobs() {
+        synchronized (sticky) {
+            return sticky.size();
+        }
+    }
+
+    /**
+     * @return Base URLs and keys of the members
+     */
+    public List<ApiEndpoint> getEndpoints() {
+        List<ApiEndpoint> endpoints = new ArrayList<>();
+        for (Member member : members) {
+            endpoints.add(member.endpoint);
+        }
+        return endpoints;
+    }
+
+    /**
+     * Health and latency of one base URL, shared by the members using it.
+     */
+    private static final class Upstream {
+        final CircuitBreaker recognizeBreaker;
+        final CircuitBreaker stateBreaker;
+        private double recognizeLatencyNanos;
+        private double stateLatencyNanos;
+
+        Upstream(String name, ConnectionSettings settings) {
+            this.recognizeBreaker = new CircuitBreaker(name + VReconApiClient.RECOGNIZE_PATH,
+                settings.getCircuitBreakerThreshold(), settings.getCircuitBreakerOpenTime());
+            this.stateBreaker = new CircuitBreaker(name + VReconApiClient.STATE_PATH,
+                settings.getCircuitBreakerThreshold(), settings.getCircuitBreakerOpenTime());
+        }
+
+        synchronized double getLatencyNanos(String path) {
+            return VReconApiClient.RECOGNIZE_PATH.equals(path) ? recognizeLatencyNanos : stateLatencyNanos;
+        }
+
+        synchronized void recordLatency(String path, long nanos) {
+            if (VReconApiClient.RECOGNIZE_PATH.equals(path)) {
+                recognizeLatencyNanos = recognizeLatencyNanos == 0
+                    ? nanos : recognizeLatencyNanos + (nanos - recognizeLatencyNanos) * LATENCY_WEIGHT;
+            } else {
+                stateLatencyNanos = stateLatencyNanos == 0
+                    ? nanos : stateLatencyNanos + (nanos - stateLatencyNanos) * LATENCY_WEIGHT;
+            }
+        }
+    }
+
+    /**
+     * One (endpoint, key) pair. Every request sent through it is bracketed by
+     * {@link #started()} and {@link #finished(String, long, boolean)}.
+     */
+    static final class Member {
+        private final ApiEndpoint endpoint;
+        private final Upstream upstream;
+        private volatile AdaptiveLimiter limiter;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final LongAdder requests = new LongAdder();
+
+        private Member(ApiEndpoint endpoint, Upstream upstream, AdaptiveLimiter limiter) {
+            this.endpoint = endpoint;
+            this.upstream = upstream;
+            this.limiter = limiter;
+        }
+
+        ApiEndpoint endpoint() {
+            return endpoint;
+        }
+
+        String url(String path) {
+            return endpoint.getBaseUrl() + path;
+        }
+
+        String apiKey() {
+            return endpoint.getApiKey();
+        }
+
+        CircuitBreaker breaker(String path) {
+            return VReconApiClient.RECOGNIZE_PATH.equals(path) ? upstream.recognizeBreaker : upstream.stateBreaker;
+        }
+
+        AdaptiveLimiter limiter() {
+            return limiter;
+        }
+
+        void started() {
+            requests.increment();
+            outstanding.incrementAndGet();
+        }
+
+        /**
+         * @param latencyNanos Time from sending the request until its response was handled
+         * @param success      Whether the endpoint answered regularly; only then the latency counts
+         */
+        void finished(String path, long latencyNanos, boolean success) {
+            outstanding.decrementAndGet();
+            if (success) {
+                upstream.recordLatency(path, Math.max(1, latencyNanos));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return endpoint.toString();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.vrecon.demo.client;
+
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpException;
+
+import java.io.IOException;
+
+/**
+ * Span of one HTTP attempt of a traced request, shared through the request context with the
+ * exec chain and the request entity.
+ *
+ * Exec chain interceptors split the attempt into connection lease, which includes connecting
+ * when no pooled connection was idle, and time to first byte, from the request being sent to
+ * the response head arriving. When the exec chain retries on its own, the wait before the
+ * next exchange is recorded as retry backoff.
+ */
+final class ExchangeTrace {
+
+    static final String CONTEXT_ATTRIBUTE = "io.vrecon.demo.trace";
+
+    private final Span span;
+    private long markNanos;
+    private long sentNanos;
+    private int exchanges;
+
+    ExchangeTrace(Span span, long startNanos) {
+        this.span = span;
+        this.markNanos = startNanos;
+    }
+
+    Span span() {
+        return span;
+    }
+
+    /**
+     * Called by a request entity once its body is written, so that time to first byte does
+     * not include the upload.
+     */
+    void bodySent(long nanos) {
+        sentNanos = nanos;
+    }
+
+    /**
+     * Exec chain interceptor in front of the protocol handler, entered once per exchange;
+     * untraced requests pass straight through.
+     */
+    static ClassicHttpResponse beforeProtocol(ClassicHttpRequest request, ExecChain.Scope scope, ExecChain chain)
+            throws IOException, HttpException {
+        Object attribute = scope.clientContext.getAttribute(CONTEXT_ATTRIBUTE);
+        if (attribute instanceof ExchangeTrace trace && trace.exchanges++ > 0) {
+            long nowNanos = System.nanoTime();
+            trace.span.child("retry.backoff", trace.markNanos).setAttribute("vrecon.exchange", trace.exchanges)
+                .end(nowNanos);
+            trace.markNanos = nowNanos;
+        }
+        return chain.proceed(request, scope);
+    }
+
+    /**
+     * Exec chain interceptor in front of the main transport; untraced requests pass straight through.
+     */
+    static ClassicHttpResponse beforeTransport(ClassicHttpRequest request, ExecChain.Scope scope, ExecChain chain)
+            throws IOException, HttpException {
+        Object attribute = scope.clientContext.getAttribute(CONTEXT_ATTRIBUTE);
+        if (!(attribute instanceof ExchangeTrace trace)) {
+            return chain.proceed(request, scope);
+        }
+        long leasedNanos = System.nanoTime();
+        trace.span.child("connection.lease", trace.markNanos).end(leasedNanos);
+        trace.sentNanos = 0;
+        try {
+            ClassicHttpResponse response = chain.proceed(request, scope);
+            long headNanos = System.nanoTime();
+            trace.span.child("time.to.first.byte", trace.sentNanos != 0 ? trace.sentNanos : leasedNanos)
+                .setAttribute("http.response.status_code", response.getCode())
+                .end(headNanos);
+            return response;
+        } finally {
+            trace.markNanos = System.nanoTime();
+        }
+    }
+}
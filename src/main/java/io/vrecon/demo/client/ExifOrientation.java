@@ -0,0 +1,147 @@
+package io.vrecon.demo.client;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * EXIF Orientation tag of JPEG files, which cameras set instead of rotating the pixels.
+ *
+ * Re-encoding drops the tag, so {@link ImagePreprocessor} applies it to the pixels first.
+ * Only the segments in front of the image data are read.
+ */
+final class ExifOrientation {
+
+    /** Pixels are stored as displayed */
+    static final int NORMAL = 1;
+
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final int MAX_SEGMENT = 0xFFFF;
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * @return Orientation 1-8 of a JPEG file, or {@link #NORMAL} if it has none or is no JPEG
+     * @throws IOException if the file cannot be read
+     */
+    static int read(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readUnsignedShort() != 0xFFD8) {
+                return NORMAL;
+            }
+            while (true) {
+                int marker = data.readUnsignedShort();
+                // Start of scan or end of image: no more metadata segments
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                    return NORMAL;
+                }
+                int length = data.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return NORMAL;
+                }
+                byte[] segment = new byte[Math.min(length, MAX_SEGMENT)];
+                data.readFully(segment);
+                if (marker == 0xFFE1) {
+                    int orientation = parseExif(segment);
+                    if (orientation != 0) {
+                        return orientation;
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            return NORMAL;
+        }
+    }
+
+    /**
+     * @return Orientation in an APP1 segment, or 0 if it is no EXIF segment or has none
+     */
+    static int parseExif(byte[] segment) {
+        if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i'
+                || segment[3] != 'f' || segment[4] != 0 || segment[5] != 0) {
+            return 0;
+        }
+        int tiff = 6;
+        boolean littleEndian;
+        if (segment[tiff] == 'I' && segment[tiff + 1] == 'I') {
+            littleEndian = true;
+        } else if (segment[tiff] == 'M' && segment[tiff + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return 0;
+        }
+        long ifd = tiff + readInt(segment, tiff + 4, littleEndian);
+        if (ifd < tiff || ifd + 2 > segment.length) {
+            return 0;
+        }
+        int entries = readShort(segment, (int) ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > segment.length) {
+                return 0;
+            }
+            if (readShort(segment, entry, littleEndian) == ORIENTATION_TAG) {
+                int orientation = readShort(segment, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Turn an image into the orientation it is displayed in.
+     *
+     * @param type Type of the returned image
+     * @return The image itself for {@link #NORMAL}, otherwise a rotated or mirrored copy
+     */
+    static BufferedImage apply(BufferedImage image, int orientation, int type) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform;
+        switch (orientation) {
+            case 2 -> transform = new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> transform = new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> transform = new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> transform = new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> transform = new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> transform = new AffineTransform(0, -1, -1, 0, h, w);
+            case 8 -> transform = new AffineTransform(0, -1, 1, 0, 0, w);
+            default -> {
+                return image;
+            }
+        }
+        boolean swap = orientation >= 5;
+        BufferedImage oriented = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D graphics = oriented.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+
+    private static int readShort(byte[] bytes, int offset, boolean littleEndian) {
+        int b0 = bytes[offset] & 0xFF;
+        int b1 = bytes[offset + 1] & 0xFF;
+        return littleEndian ? b0 | b1 << 8 : b0 << 8 | b1;
+    }
+
+    private static long readInt(byte[] bytes, int offset, boolean littleEndian) {
+        long high = readShort(bytes, offset, littleEndian);
+        long low = readShort(bytes, offset + 2, littleEndian);
+        return littleEndian ? low << 16 | high : high << 16 | low;
+    }
+}
@@ -0,0 +1,31 @@
+package io.vrecon.demo.client;
+
+/**
+ * Polls immediately after submit and then at a constant interval.
+ */
+public class FixedPollingStrategy implements PollingStrategy {
+
+    private final long interval;
+
+    /**
+     * @param interval Interval between polls in milliseconds
+     */
+    public FixedPollingStrategy(long interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public long firstDelay() {
+        return 0;
+    }
+
+    @Override
+    public long nextDelay(String state, int pollsInState) {
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return "fixed, every " + interval + " ms";
+    }
+}
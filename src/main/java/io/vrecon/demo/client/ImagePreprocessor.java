@@ -0,0 +1,237 @@
+package io.vrecon.demo.client;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shrinks images before upload: downscales them to a maximum dimension and re-encodes them
+ * as JPEG at a target quality. Re-encoded images carry no EXIF or other metadata, so the
+ * EXIF orientation of a JPEG is applied to its pixels first.
+ *
+ * Decoding and encoding run on a CPU-sized pool of their own, so they never occupy the
+ * threads doing network I/O. PNG images with transparency stay PNG. Formats ImageIO cannot
+ * read, such as WebP, are uploaded unchanged, as are images it fails to decode, such as CMYK
+ * JPEGs, and any image whose re-encoded copy would not be smaller than the original.
+ */
+public class ImagePreprocessor implements AutoCloseable {
+
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final ExecutorService executor;
+    private ByteBudget byteBudget;
+
+    /**
+     * @param maxDimension Maximum width and height in pixels, 0 to keep the original size
+     * @param jpegQuality  JPEG quality between 0.0 and 1.0
+     * @param threads      Number of threads decoding and encoding images
+     */
+    public ImagePreprocessor(int maxDimension, float jpegQuality, int threads) {
+        if (jpegQuality < 0 || jpegQuality > 1) {
+            throw new IllegalArgumentException("jpegQuality must be between 0.0 and 1.0");
+        }
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        // Encode to memory instead of ImageIO's temporary files
+        ImageIO.setUseCache(false);
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "vrecon-prep-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reserve the memory of each image from a budget before decoding it. A re-encoded image
+     * keeps the part of the reservation its data needs until {@link PreparedImage#release()}.
+     *
+     * @param byteBudget Budget shared with the clients, or null for no limit
+     */
+    public void setByteBudget(ByteBudget byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Prepare an image on the preprocessing pool.
+     *
+     * @param image Image file
+     * @return Future completed with the image to upload
+     */
+    public CompletableFuture<PreparedImage> prepareAsync(Path image) {
+        CompletableFuture<PreparedImage> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(prepare(image));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Prepare an image on the calling thread.
+     *
+     * @param image Image file
+     * @return The re-encoded image, or the original if it cannot or need not be shrunk
+     * @throws IOException if the file cannot be read
+     */
+    public PreparedImage prepare(Path image) throws IOException {
+        PreparedImage original = PreparedImage.original(image);
+        if ("webp".equals(original.getFormat())) {
+            return original;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return original;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels;
+                try {
+                    pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                } catch (IIOException | RuntimeException e) {
+                    return original;
+                }
+                ByteBudget.Reservation reservation = byteBudget != null
+                    ? byteBudget.reserve(estimateBytes(pixels, original.getOriginalSize()))
+                    : null;
+                try {
+                    BufferedImage decoded;
+                    try {
+                        decoded = reader.read(0);
+                    } catch (IIOException | RuntimeException e) {
+                        // CMYK JPEGs, unusual TIFFs and the like upload fine as they are
+                        return original;
+                    }
+                    PreparedImage prepared = shrink(image, original, decoded, ExifOrientation.read(image));
+                    if (reservation != null && prepared.isModified()) {
+                        reservation.shrink(prepared.getSize() + RecognizeRequestBody.STREAMING_BYTES);
+                        prepared.setReservation(reservation);
+                        reservation = null;
+                    }
+                    return prepared;
+                } finally {
+                    if (reservation != null) {
+                        reservation.release();
+                    }
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Upper bound of the heap used to prepare an image: the decoded pixels and a converted or
+     * scaled copy at up to 4 bytes per pixel each, the encoded output, which is not larger than
+     * the original in practice, and the buffers of the upload.
+     */
+    private static long estimateBytes(long pixels, long fileSize) {
+        return 8 * pixels + fileSize + RecognizeRequestBody.STREAMING_BYTES;
+    }
+
+    private PreparedImage shrink(Path image, PreparedImage original, BufferedImage decoded, int orientation)
+            throws IOException {
+        boolean keepAlpha = "png".equals(original.getFormat()) && decoded.getColorModel().hasAlpha();
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        decoded = ExifOrientation.apply(decoded, orientation, type);
+        int width = decoded.getWidth();
+        int height = decoded.getHeight();
+        int longest = Math.max(width, height);
+        boolean resize = maxDimension > 0 && longest > maxDimension;
+        if (resize) {
+            width = Math.max(1, (int) Math.round((double) width * maxDimension / longest));
+            height = Math.max(1, (int) Math.round((double) height * maxDimension / longest));
+        }
+
+        BufferedImage output = resize || decoded.getType() != type
+            ? scale(decoded, width, height, type)
+            : decoded;
+        byte[] encoded = keepAlpha ? encodePng(output) : encodeJpeg(output);
+
+        // The original keeps its orientation tag, so it can still be sent when it is smaller
+        if (!resize && encoded.length >= original.getOriginalSize()) {
+            return original;
+        }
+        return new PreparedImage(image, encoded, keepAlpha ? "png" : "jpg", original.getOriginalSize());
+    }
+
+    /**
+     * Scale in steps of at most one half, which keeps bilinear filtering from aliasing on
+     * large reductions.
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height, int type) {
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (type == BufferedImage.TYPE_INT_RGB) {
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Stop the preprocessing threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,456 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of batch jobs, used to resume an interrupted run without uploading
+ * images again.
+ *
+ * Every submit, state transition and final result is appended as one JSON line. Appends are
+ * queued and written by a single background thread, which syncs the file to disk at most once
+ * per sync interval so that many records share one fsync. When the file has grown well beyond
+ * the number of jobs it describes, the writer thread rewrites it with only the latest record of
+ * each job and atomically replaces the old file.
+ *
+ * On open, the existing journal is replayed. A truncated last line left by a crash is ignored.
+ * Once the writer thread fails, every further record is rejected with the write error.
+ */
+public class JobJournal implements AutoCloseable {
+
+    private static final int COMPACTION_MIN_RECORDS = 10_000;
+    private static final int COMPACTION_FACTOR = 4;
+
+    /**
+     * Latest known state of one image.
+     */
+    public static final class Entry {
+        private final String image;
+        private volatile String requestUuid;
+        private volatile String state;
+        private volatile StateResponse result;
+
+        Entry(String image) {
+            this.image = image;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public String getRequestUuid() {
+            return requestUuid;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        /**
+         * @return Final StateResponse, or null while the job is still open
+         */
+        public StateResponse getResult() {
+            return result;
+        }
+
+        public boolean isFinished() {
+            return result != null;
+        }
+    }
+
+    /**
+     * One line of the journal file.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Record {
+        public static final String SUBMIT = "submit";
+        public static final String STATE = "state";
+        public static final String RESULT = "result";
+        public static final String DISCARD = "discard";
+
+        private String type;
+        private String image;
+        private String requestUuid;
+        private String state;
+        private StateResponse response;
+        private long time;
+
+        public Record() {}
+
+        Record(String type, String image, String requestUuid, String state, StateResponse response) {
+            this.type = type;
+            this.image = image;
+            this.requestUuid = requestUuid;
+            this.state = state;
+            this.response = response;
+            this.time = System.currentTimeMillis();
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public void setImage(String image) {
+            this.image = image;
+        }
+
+        public String getRequestUuid() {
+            return requestUuid;
+        }
+
+        public void setRequestUuid(String requestUuid) {
+            this.requestUuid = requestUuid;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+
+        public StateResponse getResponse() {
+            return response;
+        }
+
+        public void setResponse(StateResponse response) {
+            this.response = response;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public void setTime(long time) {
+            this.time = time;
+        }
+    }
+
+    private final Path file;
+    private final long syncIntervalMillis;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> byImage = new ConcurrentHashMap<>();
+    private final Map<String, Entry> byUuid = new ConcurrentHashMap<>();
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private FileChannel channel;
+    private long recordsInFile;
+    private volatile boolean closed;
+    private volatile IOException writeError;
+
+    /**
+     * Open a journal, replaying the records already in it.
+     *
+     * @param file               Journal file, created if it does not exist
+     * @param syncIntervalMillis Maximum time between a record being written and synced to disk
+     * @throws IOException if the journal cannot be read or opened for writing
+     */
+    public JobJournal(Path file, long syncIntervalMillis) throws IOException {
+        this.file = file;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        replay();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        this.writer = new Thread(this::runWriter, "vrecon-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    private void replay() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Record record;
+                try {
+                    record = objectMapper.readValue(line, Record.class);
+                } catch (IOException e) {
+                    // Partially written line from an interrupted run
+                    continue;
+                }
+                apply(record);
+                recordsInFile++;
+            }
+        }
+        truncatePartialLine();
+    }
+
+    /**
+     * Cut off a partially written last line so that new records start on a line of their own.
+     */
+    private void truncatePartialLine() throws IOException {
+        try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = existing.size();
+            ByteBuffer single = ByteBuffer.allocate(1);
+            long end = size;
+            while (end > 0) {
+                single.clear();
+                existing.read(single, end - 1);
+                if (single.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < size) {
+                existing.truncate(end);
+            }
+        }
+    }
+
+    private void apply(Record record) {
+        Entry entry = record.getImage() != null
+            ? byImage.computeIfAbsent(record.getImage(), Entry::new)
+            : byUuid.get(record.getRequestUuid());
+        if (entry == null) {
+            return;
+        }
+        if (record.getRequestUuid() != null && !record.getRequestUuid().equals(entry.requestUuid)) {
+            if (entry.requestUuid != null) {
+                byUuid.remove(entry.requestUuid);
+            }
+            entry.requestUuid = record.getRequestUuid();
+            entry.result = null;
+            byUuid.put(entry.requestUuid, entry);
+        }
+        if (Record.DISCARD.equals(record.getType())) {
+            if (entry.requestUuid != null) {
+                byUuid.remove(entry.requestUuid);
+            }
+            entry.requestUuid = null;
+            entry.state = null;
+            entry.result = null;
+            return;
+        }
+        if (record.getState() != null) {
+            entry.state = record.getState();
+        }
+        if (Record.RESULT.equals(record.getType())) {
+            entry.result = record.getResponse();
+            if (record.getResponse() != null) {
+                entry.state = record.getResponse().getState();
+            }
+        }
+    }
+
+    /**
+     * @param image Image file
+     * @return Journal key of the image, its absolute normalized path
+     */
+    public static String key(Path image) {
+        return image.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * @param image Image key from {@link #key(Path)}
+     * @return The journal entry of the image, or null if it was never submitted
+     */
+    public Entry get(String image) {
+        return byImage.get(image);
+    }
+
+    /**
+     * @return Number of images with a journal entry
+     */
+    public int size() {
+        return byImage.size();
+    }
+
+    /**
+     * Record that an image was accepted by the API.
+     */
+    public void submitted(String image, String requestUuid) {
+        append(new Record(Record.SUBMIT, image, requestUuid, RecognitionStates.PENDING, null));
+    }
+
+    /**
+     * Record the state returned by a poll. Only changes between open states are written, final
+     * states are recorded by {@link #finished(String, StateResponse)}.
+     */
+    public void stateObserved(String requestUuid, String state) {
+        Entry entry = byUuid.get(requestUuid);
+        if (entry == null || state == null || state.equals(entry.state) || RecognitionStates.isTerminal(state)) {
+            return;
+        }
+        append(new Record(Record.STATE, null, requestUuid, state, null));
+    }
+
+    /**
+     * Record the final result of an image. Only final states are written; a job that timed out
+     * stays open and is polled again after a restart. When the API answered with an error instead
+     * of a state, for example because it no longer knows the request, the request is discarded so
+     * that the image is uploaded again after a restart.
+     */
+    public void finished(String image, StateResponse response) {
+        if (response == null) {
+            return;
+        }
+        Entry entry = byImage.get(image);
+        if (!response.isSuccess()) {
+            if (entry != null && entry.requestUuid != null
+                    && !VReconApiClient.TIMEOUT_ERROR.equals(response.getError())) {
+                append(new Record(Record.DISCARD, image, entry.requestUuid, null, null));
+            }
+            return;
+        }
+        if (!RecognitionStates.isTerminal(response.getState())) {
+            return;
+        }
+        String requestUuid = response.getRequestUuid() != null ? response.getRequestUuid()
+            : entry != null ? entry.requestUuid : null;
+        append(new Record(Record.RESULT, image, requestUuid, response.getState(), response));
+    }
+
+    /**
+     * @return Error that stopped the writer thread, or null while records are being written
+     */
+    public IOException getWriteError() {
+        return writeError;
+    }
+
+    private void append(Record record) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        IOException error = writeError;
+        if (error != null) {
+            throw new UncheckedIOException("Journal could not be written: " + error.getMessage(), error);
+        }
+        apply(record);
+        queue.add(record);
+    }
+
+    private void runWriter() {
+        List<Record> batch = new ArrayList<>();
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            try {
+                Record first = queue.poll(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    write(batch);
+                    recordsInFile += batch.size();
+                    batch.clear();
+                    dirty = true;
+                }
+                boolean finishing = closed && queue.isEmpty();
+                if (dirty && (finishing
+                        || System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis))) {
+                    channel.force(false);
+                    lastSync = System.nanoTime();
+                    dirty = false;
+                }
+                if (recordsInFile > Math.max(COMPACTION_MIN_RECORDS, (long) COMPACTION_FACTOR * byImage.size())) {
+                    compact();
+                }
+                if (finishing) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            } catch (IOException e) {
+                writeError = e;
+                return;
+            }
+        }
+    }
+
+    private void write(List<Record> records) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Record record : records) {
+            lines.append(objectMapper.writeValueAsString(record)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Rewrite the journal with one record per image. Runs on the writer thread only.
+     */
+    private void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        List<Record> records = new ArrayList<>();
+        for (Entry entry : byImage.values()) {
+            if (entry.result != null) {
+                records.add(new Record(Record.RESULT, entry.image, entry.requestUuid, entry.state, entry.result));
+            } else if (entry.requestUuid != null) {
+                records.add(new Record(Record.SUBMIT, entry.image, entry.requestUuid, entry.state, null));
+            }
+        }
+        try (FileChannel compacted = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            FileChannel current = channel;
+            channel = compacted;
+            try {
+                write(records);
+                compacted.force(false);
+            } finally {
+                channel = current;
+            }
+        }
+        channel.force(false);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        recordsInFile = records.size();
+    }
+
+    /**
+     * Write and sync all queued records, then close the file.
+     *
+     * @throws IOException if a record could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Server-side phases of one job, reconstructed from the createdAt and updatedAt timestamps
+ * of its state polls.
+ *
+ * The API moves updatedAt whenever the state changes, so the updatedAt of the first poll
+ * answering PROCESSING is when the job left the queue, and the updatedAt of the final state
+ * is when processing finished. A job first seen in its final state has no queue/processing
+ * split, only its total server time. Timestamps are only parsed once the job completed.
+ *
+ * Observed by one poll loop at a time.
+ */
+final class JobTimeline {
+
+    /** Returned by the duration getters when the phase is unknown */
+    static final long UNKNOWN = -1;
+
+    private String processingSince;
+    private StateResponse completed;
+    private long completedAtMillis;
+    private boolean parsed;
+    private Instant createdAt;
+    private Instant processingAt;
+    private Instant finishedAt;
+
+    /**
+     * Note a successful state poll.
+     */
+    void observe(StateResponse response) {
+        String state = response.getState();
+        if (processingSince == null && RecognitionStates.PROCESSING.equals(state)) {
+            processingSince = response.getUpdatedAt();
+        } else if (completed == null && RecognitionStates.isCompleted(state)) {
+            completed = response;
+            completedAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return Whether a poll returned DONE or DELIVERED
+     */
+    boolean isCompleted() {
+        return completed != null;
+    }
+
+    /**
+     * @return Whether the timestamps of the completed job could be parsed and are in order
+     */
+    boolean isValid() {
+        parse();
+        return createdAt != null && finishedAt != null && !finishedAt.isBefore(createdAt);
+    }
+
+    /**
+     * @return Nanoseconds from createdAt until processing started, or {@link #UNKNOWN}
+     */
+    long getQueueNanos() {
+        return isValid() && processingAt != null ? between(createdAt, processingAt) : UNKNOWN;
+    }
+
+    /**
+     * @return Nanoseconds from processing start until the final state, or {@link #UNKNOWN}
+     */
+    long getProcessingNanos() {
+        return isValid() && processingAt != null ? between(processingAt, finishedAt) : UNKNOWN;
+    }
+
+    /**
+     * @return Nanoseconds from createdAt until the final state, or {@link #UNKNOWN}
+     */
+    long getServerNanos() {
+        return isValid() ? between(createdAt, finishedAt) : UNKNOWN;
+    }
+
+    /**
+     * Time from the final state until a poll saw it, the cost of the polling interval. Compares
+     * the server clock with the local one, so it is {@link #UNKNOWN} when skew makes it negative.
+     *
+     * @return Nanoseconds from the final state until it was observed, or {@link #UNKNOWN}
+     */
+    long getResultDelayNanos() {
+        return isValid() ? between(finishedAt, Instant.ofEpochMilli(completedAtMillis)) : UNKNOWN;
+    }
+
+    private void parse() {
+        if (parsed || completed == null) {
+            return;
+        }
+        parsed = true;
+        createdAt = parseTimestamp(completed.getCreatedAt());
+        finishedAt = parseTimestamp(completed.getUpdatedAt());
+        processingAt = parseTimestamp(processingSince);
+        if (processingAt != null && createdAt != null && finishedAt != null
+                && (processingAt.isBefore(createdAt) || processingAt.isAfter(finishedAt))) {
+            processingAt = null;
+        }
+    }
+
+    private static long between(Instant from, Instant to) {
+        long nanos = (to.getEpochSecond() - from.getEpochSecond()) * 1_000_000_000L + to.getNano() - from.getNano();
+        return nanos >= 0 ? nanos : UNKNOWN;
+    }
+
+    /**
+     * @return Instant of an ISO-8601 timestamp, taken as UTC if it has no offset, or null
+     */
+    static Instant parseTimestamp(String timestamp) {
+        if (timestamp == null || timestamp.isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(timestamp).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException e2) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.metrics.MetricsRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time of completed jobs went: uploading, waiting in the server's queue, being
+ * processed, and waiting for the next poll to notice the result. Safe for concurrent updates.
+ *
+ * The server phases come from the timestamps of the polls, see {@link JobTimeline}. Set on
+ * the sync and async clients, every job they wait for is recorded here, in microseconds for
+ * the CLI summaries and, once registered, in seconds for the metrics.
+ */
+public class JobTimings {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Phases of a job.
+     */
+    public enum Phase {
+        /** Attempt that returned the request UUID, from its admission by the limiter */
+        UPLOAD("upload"),
+        /** createdAt until the job started PROCESSING, for jobs polled while PROCESSING */
+        QUEUE("queue"),
+        /** Start of PROCESSING until DONE or DELIVERED, for jobs polled while PROCESSING */
+        PROCESSING("processing"),
+        /** createdAt until DONE or DELIVERED, queue and processing together */
+        SERVER("server"),
+        /** DONE or DELIVERED until a poll saw it */
+        RESULT_DELAY("result_delay");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        /**
+         * @return Label value of the phase in metrics and its name in summaries
+         */
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+    private final LongAdder invalid = new LongAdder();
+    private volatile io.vrecon.demo.metrics.Histogram[] metrics;
+
+    public JobTimings() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+        }
+    }
+
+    public void registerMetrics(MetricsRegistry registry) {
+        io.vrecon.demo.metrics.Histogram[] phaseMetrics = new io.vrecon.demo.metrics.Histogram[Phase.values().length];
+        for (Phase phase : Phase.values()) {
+            phaseMetrics[phase.ordinal()] = registry.histogram("vrecon_job_phase_seconds",
+                "Time completed jobs spent in each phase, from client timing and server timestamps",
+                io.vrecon.demo.metrics.Histogram.LATENCY_SECONDS, "phase", phase.getTag());
+        }
+        registry.counter("vrecon_job_timestamps_invalid_total",
+            "Completed jobs whose server timestamps were missing, unparseable or out of order", invalid::sum);
+        this.metrics = phaseMetrics;
+    }
+
+    /**
+     * Record the attempt of a recognize call that returned a request UUID. Waits for the byte
+     * budget, the limiter and retries before it are not part of the upload.
+     */
+    void recordUpload(long nanos) {
+        record(Phase.UPLOAD, nanos);
+    }
+
+    /**
+     * Record the server phases of a job once polling ended; jobs that did not complete are
+     * ignored.
+     */
+    void recordJob(JobTimeline timeline) {
+        if (!timeline.isCompleted()) {
+            return;
+        }
+        if (!timeline.isValid()) {
+            invalid.increment();
+            return;
+        }
+        record(Phase.QUEUE, timeline.getQueueNanos());
+        record(Phase.PROCESSING, timeline.getProcessingNanos());
+        record(Phase.SERVER, timeline.getServerNanos());
+        record(Phase.RESULT_DELAY, timeline.getResultDelayNanos());
+    }
+
+    private void record(Phase phase, long nanos) {
+        if (nanos == JobTimeline.UNKNOWN) {
+            return;
+        }
+        histograms.get(phase).recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        io.vrecon.demo.metrics.Histogram[] phaseMetrics = metrics;
+        if (phaseMetrics != null) {
+            phaseMetrics[phase.ordinal()].observeNanos(nanos);
+        }
+    }
+
+    /**
+     * @return Durations of the phase recorded so far, in microseconds
+     */
+    public Histogram getHistogram(Phase phase) {
+        return histograms.get(phase).copy();
+    }
+
+    /**
+     * @return Completed jobs left out because their server timestamps were missing, unparseable or out of order
+     */
+    public long getInvalid() {
+        return invalid.sum();
+    }
+}
@@ -0,0 +1,47 @@
+package io.vrecon.demo.client;
+
+import java.util.Arrays;
+
+/**
+ * Recent request latencies, from which a quantile is estimated to decide when a request is
+ * slow enough to hedge. The quantile is recomputed every few samples rather than per call.
+ */
+final class LatencyWindow {
+
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples;
+    private final double quantile;
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private long cachedNanos;
+
+    /**
+     * @param size     Number of most recent samples kept
+     * @param quantile Quantile to estimate, such as 0.95
+     */
+    LatencyWindow(int size, double quantile) {
+        this.samples = new long[size];
+        this.quantile = quantile;
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (++sinceRecompute >= RECOMPUTE_EVERY) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            cachedNanos = sorted[Math.min(count - 1, (int) Math.ceil(quantile * count) - 1)];
+        }
+    }
+
+    /**
+     * @return Estimated quantile in nanoseconds, 0 until enough samples were recorded
+     */
+    synchronized long getQuantileNanos() {
+        return cachedNanos;
+    }
+}
@@ -0,0 +1,82 @@
+package io.vrecon.demo.client;
+
+/**
+ * Settings of an {@link AdaptiveLimiter}. The defaults limit nothing but still pause all
+ * requests for the time a throttling response asks for in its Retry-After header.
+ */
+public class LimiterSettings {
+
+    private double rate;
+    private int burst = 1;
+    private int maxConcurrency;
+    private int minConcurrency = 1;
+    private int initialConcurrency = 8;
+    private double latencyTolerance = 2.0;
+
+    /**
+     * @return Requests per second allowed by the token bucket, 0 for no rate limit
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @return Number of requests that may be sent at once after an idle period
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    /**
+     * @return Upper bound of the adaptive concurrency limit, 0 to disable concurrency control
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return Lower bound of the adaptive concurrency limit
+     */
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public void setMinConcurrency(int minConcurrency) {
+        this.minConcurrency = minConcurrency;
+    }
+
+    /**
+     * @return Concurrency limit before any response was observed
+     */
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    public void setInitialConcurrency(int initialConcurrency) {
+        this.initialConcurrency = initialConcurrency;
+    }
+
+    /**
+     * @return Factor by which recent latency may exceed the baseline before the concurrency
+     *         limit is lowered
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+}
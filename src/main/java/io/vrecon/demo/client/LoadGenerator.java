@@ -0,0 +1,258 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.RecognizeResponse;
+import io.vrecon.demo.model.StateResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a set of images through recognize and polling to measure what the API and this
+ * client sustain, recording the latency of each phase in a {@link LoadReport}.
+ *
+ * <ul>
+ *   <li>Open loop starts jobs at a fixed rate whether or not earlier jobs have finished. Latency
+ *       is measured from the time a job was scheduled to start, so a stalled sender or a full
+ *       connection pool shows up in the percentiles instead of silently lowering the rate.</li>
+ *   <li>Closed loop runs a fixed number of users, each starting its next job as soon as the
+ *       previous one finished. It measures the throughput at that concurrency.</li>
+ * </ul>
+ *
+ * All jobs run on the {@link VReconAsyncApiClient}, so no thread is held per job in either mode.
+ */
+public class LoadGenerator {
+
+    /**
+     * Receives the histograms of every reporting interval, from the thread calling run.
+     */
+    public interface IntervalListener {
+        void onInterval(LoadReport.Interval interval);
+    }
+
+    private final VReconAsyncApiClient client;
+    private final List<PreparedImage> images;
+    private final PollingStrategy pollingStrategy;
+    private final long maxWaitTime;
+    private final AtomicLong nextImage = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile LoadReport report;
+
+    /**
+     * @param client          Client used for all jobs
+     * @param images          Images submitted in turn
+     * @param pollingStrategy Strategy deciding when each job is polled
+     * @param maxWaitTime     Maximum time to wait for a single job in milliseconds
+     */
+    public LoadGenerator(VReconAsyncApiClient client, List<PreparedImage> images, PollingStrategy pollingStrategy,
+                         long maxWaitTime) {
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("No images to submit");
+        }
+        this.client = client;
+        this.images = List.copyOf(images);
+        this.pollingStrategy = pollingStrategy;
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * Start jobs at a fixed rate.
+     *
+     * @param rate           Jobs started per second
+     * @param maxInFlight    Jobs in flight at which further starts are dropped and counted as errors
+     * @param warmupMillis   Time before the measurement starts
+     * @param durationMillis Length of the measurement
+     * @param intervalMillis Length of a reporting interval
+     * @param listener       Listener receiving every interval, or null
+     * @return Histograms and counts of the measurement
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public LoadReport runOpenLoop(double rate, int maxInFlight, long warmupMillis, long durationMillis,
+                                  long intervalMillis, IntervalListener listener) throws InterruptedException {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        long periodNanos = Math.max(1, Math.round(1_000_000_000 / rate));
+        Thread sender = new Thread(() -> {
+            long start = System.nanoTime();
+            for (long i = 0; !Thread.currentThread().isInterrupted(); i++) {
+                long intended = start + i * periodNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                }
+                if (inFlight.get() >= maxInFlight) {
+                    report.recordStarted();
+                    report.recordError("dropped: max in flight");
+                    continue;
+                }
+                startJob(intended);
+            }
+        }, "vrecon-load");
+        sender.setDaemon(true);
+        return run(sender, warmupMillis, durationMillis, intervalMillis, listener);
+    }
+
+    /**
+     * Run a fixed number of users, each starting a new job when its previous one finished.
+     *
+     * @param users          Number of concurrent users
+     * @param warmupMillis   Time before the measurement starts
+     * @param durationMillis Length of the measurement
+     * @param intervalMillis Length of a reporting interval
+     * @param listener       Listener receiving every interval, or null
+     * @return Histograms and counts of the measurement
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public LoadReport runClosedLoop(int users, long warmupMillis, long durationMillis, long intervalMillis,
+                                    IntervalListener listener) throws InterruptedException {
+        if (users <= 0) {
+            throw new IllegalArgumentException("users must be positive");
+        }
+        Thread starter = new Thread(() -> {
+            for (int i = 0; i < users; i++) {
+                runUser();
+            }
+        }, "vrecon-load");
+        return run(starter, warmupMillis, durationMillis, intervalMillis, listener);
+    }
+
+    private LoadReport run(Thread load, long warmupMillis, long durationMillis, long intervalMillis,
+                           IntervalListener listener) throws InterruptedException {
+        LoadReport current = new LoadReport();
+        report = current;
+        load.start();
+        try {
+            if (warmupMillis > 0) {
+                Thread.sleep(warmupMillis);
+                current.reset();
+            }
+            long end = System.currentTimeMillis() + durationMillis;
+            long now;
+            while ((now = System.currentTimeMillis()) < end) {
+                Thread.sleep(Math.min(intervalMillis, end - now));
+                LoadReport.Interval interval = current.nextInterval(inFlight.get());
+                if (listener != null) {
+                    listener.onInterval(interval);
+                }
+            }
+            current.finish();
+        } finally {
+            load.interrupt();
+            load.join();
+            report = null;
+        }
+
+        // Let the jobs in flight finish so that the slowest ones are not left out of the histograms
+        long drainDeadline = System.currentTimeMillis() + maxWaitTime + intervalMillis;
+        while (inFlight.get() > 0 && System.currentTimeMillis() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        LoadReport.Interval interval = current.nextInterval(inFlight.get());
+        if (listener != null) {
+            listener.onInterval(interval);
+        }
+        return current;
+    }
+
+    private void runUser() {
+        LoadReport current = report;
+        if (current == null) {
+            return;
+        }
+        // Continue asynchronously so that jobs failing right away do not recurse on one stack
+        startJob(System.nanoTime(), current).whenCompleteAsync((ignored, error) -> runUser());
+    }
+
+    private void startJob(long startNanos) {
+        LoadReport current = report;
+        if (current != null) {
+            startJob(startNanos, current);
+        }
+    }
+
+    private CompletableFuture<Void> startJob(long startNanos, LoadReport current) {
+        current.recordStarted();
+        inFlight.incrementAndGet();
+        PreparedImage image = images.get((int) (nextImage.getAndIncrement() % images.size()));
+        return client.recognizeAsync(image)
+            .handle((response, error) -> {
+                current.recordLatency(LoadReport.Phase.SUBMIT, System.nanoTime() - startNanos);
+                if (error != null) {
+                    current.recordError("submit: " + describe(error));
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                if (!response.isSuccess()) {
+                    current.recordError("submit: " + response.getError());
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                return poll(current, response, startNanos, pollingStrategy.firstDelay(), null, 0, new JobTimeline());
+            })
+            .thenCompose(future -> future)
+            .whenComplete((ignored, error) -> inFlight.decrementAndGet());
+    }
+
+    private CompletableFuture<Void> poll(LoadReport current, RecognizeResponse submitted, long startNanos,
+                                         long delay, String lastState, int pollsInState, JobTimeline timeline) {
+        long remaining = maxWaitTime - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (remaining <= 0) {
+            current.recordError("timeout");
+            return CompletableFuture.completedFuture(null);
+        }
+        String requestUuid = submitted.getRequestUuid();
+        Executor delayed = CompletableFuture.delayedExecutor(Math.min(delay, remaining), TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(System::nanoTime, delayed)
+            .thenCompose(pollStart -> client.getStateAsync(requestUuid, true)
+                .handle((response, error) -> {
+                    long now = System.nanoTime();
+                    current.recordLatency(LoadReport.Phase.POLL, now - pollStart);
+                    if (error != null) {
+                        current.recordError("state: " + describe(error));
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    return next(current, submitted, startNanos, now, response, lastState, pollsInState, timeline);
+                }))
+            .thenCompose(future -> future);
+    }
+
+    private CompletableFuture<Void> next(LoadReport current, RecognizeResponse submitted, long startNanos, long now,
+                                         StateResponse response, String lastState, int pollsInState,
+                                         JobTimeline timeline) {
+        if (!response.isSuccess()) {
+            current.recordError("state: " + response.getError());
+            return CompletableFuture.completedFuture(null);
+        }
+        timeline.observe(response);
+        String state = response.getState();
+        if (RecognitionStates.isCompleted(state)) {
+            current.recordCompleted(now - startNanos);
+            current.recordServerPhases(timeline);
+            pollingStrategy.onCompleted(TimeUnit.NANOSECONDS.toMillis(now - startNanos));
+            return CompletableFuture.completedFuture(null);
+        }
+        if (RecognitionStates.isTerminal(state)) {
+            current.recordFailed();
+            return CompletableFuture.completedFuture(null);
+        }
+        int polls = state != null && state.equals(lastState) ? pollsInState + 1 : 1;
+        return poll(current, submitted, startNanos, pollingStrategy.nextDelay(state, polls), state, polls,
+            timeline);
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof ThrottledException) {
+            return "HTTP " + ((ThrottledException) cause).getStatus();
+        }
+        return cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,305 @@
+package io.vrecon.demo.client;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counts of a load run. Safe for concurrent updates.
+ *
+ * Latencies are recorded in microseconds into one {@link Recorder} per phase. Each call to
+ * {@link #nextInterval(int)} swaps out the histograms of the interval that just ended and adds
+ * them to the totals, so recording never waits for reporting.
+ */
+public class LoadReport {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Measured phases of a job.
+     */
+    public enum Phase {
+        /** Upload of the image until the recognize response */
+        SUBMIT("submit"),
+        /** Start of the job until a poll returned DONE */
+        DONE("done"),
+        /** A single state request */
+        POLL("poll"),
+        /** createdAt until PROCESSING by the server's timestamps, for jobs polled while PROCESSING */
+        QUEUE("queue"),
+        /** PROCESSING until DONE by the server's timestamps, for jobs polled while PROCESSING */
+        PROCESSING("processing"),
+        /** createdAt until DONE by the server's timestamps */
+        SERVER("server"),
+        /** DONE by the server's timestamp until a poll saw it */
+        RESULT_DELAY("result_delay");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        /**
+         * @return Tag of the phase's histograms in a histogram log
+         */
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Histograms and counts of one reporting interval.
+     */
+    public static class Interval {
+        private final long startMillis;
+        private final long endMillis;
+        private final Map<Phase, Histogram> histograms;
+        private final long started;
+        private final long completed;
+        private final long errors;
+        private final int inFlight;
+
+        Interval(long startMillis, long endMillis, Map<Phase, Histogram> histograms, long started, long completed,
+                 long errors, int inFlight) {
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.histograms = histograms;
+            this.started = started;
+            this.completed = completed;
+            this.errors = errors;
+            this.inFlight = inFlight;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        /**
+         * @return Latencies of the phase recorded in this interval, in microseconds
+         */
+        public Histogram getHistogram(Phase phase) {
+            return histograms.get(phase);
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return Jobs submitted or being polled at the end of the interval
+         */
+        public int getInFlight() {
+            return inFlight;
+        }
+    }
+
+    private final Map<Phase, Recorder> recorders = new EnumMap<>(Phase.class);
+    private final Map<Phase, Histogram> intervalHistograms = new EnumMap<>(Phase.class);
+    private final Map<Phase, Histogram> totals = new EnumMap<>(Phase.class);
+    private final Map<String, LongAdder> errorCounts = new ConcurrentHashMap<>();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private long startedTotal;
+    private long completedTotal;
+    private long failedTotal;
+    private long errorsTotal;
+    private long intervalStartMillis;
+    private long startMillis;
+    private long endMillis;
+    private long windowStarted;
+    private long windowCompleted;
+
+    LoadReport() {
+        for (Phase phase : Phase.values()) {
+            recorders.put(phase, new Recorder(SIGNIFICANT_DIGITS));
+            totals.put(phase, new Histogram(SIGNIFICANT_DIGITS));
+        }
+        reset();
+    }
+
+    void recordStarted() {
+        started.increment();
+    }
+
+    void recordLatency(Phase phase, long nanos) {
+        recorders.get(phase).recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    void recordCompleted(long nanos) {
+        recordLatency(Phase.DONE, nanos);
+        completed.increment();
+    }
+
+    void recordServerPhases(JobTimeline timeline) {
+        recordPhase(Phase.QUEUE, timeline.getQueueNanos());
+        recordPhase(Phase.PROCESSING, timeline.getProcessingNanos());
+        recordPhase(Phase.SERVER, timeline.getServerNanos());
+        recordPhase(Phase.RESULT_DELAY, timeline.getResultDelayNanos());
+    }
+
+    private void recordPhase(Phase phase, long nanos) {
+        if (nanos != JobTimeline.UNKNOWN) {
+            recordLatency(phase, nanos);
+        }
+    }
+
+    void recordFailed() {
+        failed.increment();
+        recordError("job FAILED");
+    }
+
+    void recordError(String category) {
+        errors.increment();
+        errorCounts.computeIfAbsent(category, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Discard everything recorded so far, such as the samples of a warmup period.
+     */
+    synchronized void reset() {
+        nextInterval(0);
+        for (Histogram total : totals.values()) {
+            total.reset();
+        }
+        errorCounts.clear();
+        startedTotal = 0;
+        completedTotal = 0;
+        failedTotal = 0;
+        errorsTotal = 0;
+        startMillis = intervalStartMillis;
+        endMillis = 0;
+        windowStarted = 0;
+        windowCompleted = 0;
+    }
+
+    /**
+     * End the current interval and add it to the totals. Called from a single reporting thread.
+     */
+    synchronized Interval nextInterval(int inFlight) {
+        long now = System.currentTimeMillis();
+        Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = recorders.get(phase).getIntervalHistogram(intervalHistograms.get(phase));
+            histogram.setStartTimeStamp(intervalStartMillis);
+            histogram.setEndTimeStamp(now);
+            histogram.setTag(phase.getTag());
+            intervalHistograms.put(phase, histogram);
+            totals.get(phase).add(histogram);
+            histograms.put(phase, histogram);
+        }
+        long intervalStarted = started.sumThenReset();
+        long intervalCompleted = completed.sumThenReset();
+        long intervalErrors = errors.sumThenReset();
+        startedTotal += intervalStarted;
+        completedTotal += intervalCompleted;
+        failedTotal += failed.sumThenReset();
+        errorsTotal += intervalErrors;
+        Interval interval = new Interval(intervalStartMillis, now, histograms, intervalStarted, intervalCompleted,
+            intervalErrors, inFlight);
+        intervalStartMillis = now;
+        return interval;
+    }
+
+    /**
+     * End the measurement window at the end of the last interval. Jobs still in flight may be
+     * recorded afterwards; they count towards the histograms but not towards the rates.
+     */
+    synchronized void finish() {
+        endMillis = intervalStartMillis;
+        windowStarted = startedTotal;
+        windowCompleted = completedTotal;
+    }
+
+    /**
+     * @return Latencies of the phase over the whole measurement, in microseconds
+     */
+    public synchronized Histogram getHistogram(Phase phase) {
+        return totals.get(phase).copy();
+    }
+
+    /**
+     * @return Number of errors by category, most frequent first
+     */
+    public Map<String, Long> getErrorBreakdown() {
+        Map<String, Long> breakdown = new LinkedHashMap<>();
+        errorCounts.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+            .forEach(entry -> breakdown.put(entry.getKey(), entry.getValue().sum()));
+        return breakdown;
+    }
+
+    /**
+     * @return Number of jobs started
+     */
+    public synchronized long getStarted() {
+        return startedTotal;
+    }
+
+    /**
+     * @return Number of jobs that reached DONE
+     */
+    public synchronized long getCompleted() {
+        return completedTotal;
+    }
+
+    /**
+     * @return Number of jobs that reached FAILED
+     */
+    public synchronized long getFailed() {
+        return failedTotal;
+    }
+
+    /**
+     * @return Number of errors, including FAILED jobs, rejected submits, timeouts and transport errors
+     */
+    public synchronized long getErrors() {
+        return errorsTotal;
+    }
+
+    /**
+     * @return Duration of the measurement window in milliseconds, excluding warmup
+     */
+    public synchronized long getElapsedMillis() {
+        return (endMillis > 0 ? endMillis : System.currentTimeMillis()) - startMillis;
+    }
+
+    /**
+     * @return Jobs started per second within the measurement window
+     */
+    public synchronized double getStartRate() {
+        return perSecond(endMillis > 0 ? windowStarted : startedTotal);
+    }
+
+    /**
+     * @return Jobs that reached DONE per second within the measurement window
+     */
+    public synchronized double getThroughput() {
+        return perSecond(endMillis > 0 ? windowCompleted : completedTotal);
+    }
+
+    private double perSecond(long count) {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? count * 1000.0 / elapsed : 0;
+    }
+}
@@ -0,0 +1,225 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the state of many outstanding recognitions from a fixed number of threads.
+ *
+ * Jobs waiting for their next poll are kept in a hashed timer wheel driven by a single
+ * ticker thread; due polls run on a small worker pool. A waiting job costs one small object,
+ * so the thread count stays flat no matter how many UUIDs are tracked.
+ *
+ * The ticker thread alone owns the wheel buckets. Other threads hand jobs over through a
+ * concurrent queue that is drained at the start of every tick.
+ */
+public class PollScheduler implements AutoCloseable {
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final VReconApiClient client;
+    private final PollingStrategy pollingStrategy;
+    private final long tickMillis;
+    private final Job[] wheel = new Job[WHEEL_SIZE];
+    private final Queue<Job> incoming = new ConcurrentLinkedQueue<>();
+    private final ExecutorService workers;
+    private final Thread ticker;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private long tick;
+    private volatile boolean closed;
+
+    /**
+     * @param client          Client used for the state polls
+     * @param pollingStrategy Strategy deciding the delay before each poll
+     * @param workerThreads   Number of threads executing polls
+     * @param tickMillis      Resolution of the timer wheel in milliseconds
+     */
+    public PollScheduler(VReconApiClient client, PollingStrategy pollingStrategy, int workerThreads, long tickMillis) {
+        this.client = client;
+        this.pollingStrategy = pollingStrategy;
+        this.tickMillis = Math.max(1, tickMillis);
+        AtomicInteger workerIds = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "vrecon-poll-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker = new Thread(this::runTicker, "vrecon-poll-ticker");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * Start tracking a submitted recognition.
+     *
+     * @param requestUuid The UUID returned from the recognize endpoint
+     * @param maxWaitTime Maximum time to wait in milliseconds
+     * @return Future completed with the final StateResponse, or an unsuccessful one on timeout
+     */
+    public CompletableFuture<StateResponse> track(String requestUuid, long maxWaitTime) {
+        if (closed) {
+            throw new IllegalStateException("Poll scheduler is closed");
+        }
+        long now = System.currentTimeMillis();
+        Job job = new Job(requestUuid, now, now + maxWaitTime);
+        pending.incrementAndGet();
+        ClientMetrics metrics = client.metrics();
+        JobTimings timings = client.jobTimings();
+        metrics.jobStarted();
+        job.future.whenComplete((response, error) -> {
+            pending.decrementAndGet();
+            metrics.jobFinished(response, job.polls);
+            if (timings != null) {
+                timings.recordJob(job.timeline);
+            }
+        });
+        schedule(job, pollingStrategy.firstDelay());
+        return job.future;
+    }
+
+    /**
+     * @return Number of jobs that have not reached a final state yet
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void schedule(Job job, long delayMillis) {
+        long remaining = job.deadline - System.currentTimeMillis();
+        job.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.min(delayMillis, remaining)));
+        incoming.add(job);
+    }
+
+    private void runTicker() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        while (!closed) {
+            long nextTickAt = startNanos + (tick + 1) * tickNanos;
+            long sleep = nextTickAt - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            tick++;
+            transferIncoming(tickNanos);
+            expireBucket((int) (tick & (WHEEL_SIZE - 1)));
+        }
+    }
+
+    private void transferIncoming(long tickNanos) {
+        Job job;
+        while ((job = incoming.poll()) != null) {
+            long dueTick = Math.max(tick, (job.dueNanos - startNanos + tickNanos - 1) / tickNanos);
+            job.remainingRounds = (dueTick - tick) / WHEEL_SIZE;
+            int bucket = (int) (dueTick & (WHEEL_SIZE - 1));
+            job.next = wheel[bucket];
+            wheel[bucket] = job;
+        }
+    }
+
+    private void expireBucket(int bucket) {
+        Job previous = null;
+        Job job = wheel[bucket];
+        while (job != null) {
+            Job next = job.next;
+            if (job.remainingRounds <= 0) {
+                if (previous == null) {
+                    wheel[bucket] = next;
+                } else {
+                    previous.next = next;
+                }
+                job.next = null;
+                dispatch(job);
+            } else {
+                job.remainingRounds--;
+                previous = job;
+            }
+            job = next;
+        }
+    }
+
+    private void dispatch(Job job) {
+        if (job.future.isDone()) {
+            return;
+        }
+        if (System.currentTimeMillis() >= job.deadline) {
+            StateResponse timeoutState = new StateResponse();
+            timeoutState.setSuccess(false);
+            timeoutState.setError(VReconApiClient.TIMEOUT_ERROR);
+            job.future.complete(timeoutState);
+            return;
+        }
+        workers.execute(() -> poll(job));
+    }
+
+    private void poll(Job job) {
+        StateResponse stateResponse;
+        try {
+            stateResponse = client.getState(job.requestUuid, true);
+            job.polls++;
+        } catch (Exception e) {
+            job.future.completeExceptionally(e);
+            return;
+        }
+
+        if (!stateResponse.isSuccess()) {
+            job.future.complete(stateResponse);
+            return;
+        }
+        job.timeline.observe(stateResponse);
+
+        String state = stateResponse.getState();
+        if (RecognitionStates.isTerminal(state)) {
+            pollingStrategy.onCompleted(System.currentTimeMillis() - job.startTime);
+            job.future.complete(stateResponse);
+            return;
+        }
+
+        job.pollsInState = state != null && state.equals(job.lastState) ? job.pollsInState + 1 : 1;
+        job.lastState = state;
+        if (!closed) {
+            schedule(job, pollingStrategy.nextDelay(state, job.pollsInState));
+        }
+    }
+
+    /**
+     * Stop the ticker and the workers. Jobs still waiting are not completed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ticker.interrupt();
+        workers.shutdownNow();
+    }
+
+    private static final class Job {
+        final String requestUuid;
+        final long startTime;
+        final long deadline;
+        final CompletableFuture<StateResponse> future = new CompletableFuture<>();
+        final JobTimeline timeline = new JobTimeline();
+        String lastState;
+        int pollsInState;
+        int polls;
+        long dueNanos;
+        long remainingRounds;
+        Job next;
+
+        Job(String requestUuid, long startTime, long deadline) {
+            this.requestUuid = requestUuid;
+            this.startTime = startTime;
+            this.deadline = deadline;
+        }
+    }
+}
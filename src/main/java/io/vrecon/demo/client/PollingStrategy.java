@@ -0,0 +1,30 @@
+package io.vrecon.demo.client;
+
+/**
+ * Decides when the state of a submitted recognition is polled next.
+ *
+ * One instance is shared by all jobs of a client, so implementations must be thread-safe
+ * and keep per-job progress in the arguments they are given.
+ */
+public interface PollingStrategy {
+
+    /**
+     * @return Delay in milliseconds between a successful submit and the first state poll
+     */
+    long firstDelay();
+
+    /**
+     * @param state       State returned by the latest poll
+     * @param pollsInState Number of consecutive polls that returned this state, at least 1
+     * @return Delay in milliseconds before the next poll
+     */
+    long nextDelay(String state, int pollsInState);
+
+    /**
+     * Called when a job reaches a final state.
+     *
+     * @param elapsedMillis Time from the successful submit to the poll that observed the final state
+     */
+    default void onCompleted(long elapsedMillis) {
+    }
+}
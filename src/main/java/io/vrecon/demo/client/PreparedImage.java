@@ -0,0 +1,117 @@
+package io.vrecon.demo.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Image content ready for upload: either the original file, or a re-encoded copy in memory
+ * produced by an {@link ImagePreprocessor}.
+ */
+public final class PreparedImage {
+
+    private final Path source;
+    private final byte[] data;
+    private final String format;
+    private final long originalSize;
+    private volatile ByteBudget.Reservation reservation;
+
+    PreparedImage(Path source, byte[] data, String format, long originalSize) {
+        this.source = source;
+        this.data = data;
+        this.format = format;
+        this.originalSize = originalSize;
+    }
+
+    /**
+     * Upload an image file as it is stored on disk.
+     *
+     * @param source Image file
+     * @return Prepared image streaming the file content
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public static PreparedImage original(Path source) throws IOException {
+        if (!Files.exists(source)) {
+            throw new IOException("Image file not found: " + source);
+        }
+        return new PreparedImage(source, null, VReconApiClient.getImageFormat(source.toString()), Files.size(source));
+    }
+
+    public Path getSource() {
+        return source;
+    }
+
+    /**
+     * @return Format sent to the API: jpg, png or webp
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return True if the image was re-encoded, false if the original file is uploaded
+     */
+    public boolean isModified() {
+        return data != null;
+    }
+
+    /**
+     * @return Size of the original file in bytes
+     */
+    public long getOriginalSize() {
+        return originalSize;
+    }
+
+    /**
+     * @return Size of the uploaded image in bytes, before Base64 encoding
+     */
+    public long getSize() {
+        return data != null ? data.length : originalSize;
+    }
+
+    public long getBytesSaved() {
+        return originalSize - getSize();
+    }
+
+    /**
+     * Hand the memory budget held for the re-encoded data to this image. The reservation also
+     * covers the buffers of its upload.
+     */
+    void setReservation(ByteBudget.Reservation reservation) {
+        this.reservation = reservation;
+    }
+
+    /**
+     * @return True if the image still holds a reservation of the in-flight byte budget
+     */
+    boolean isReserved() {
+        ByteBudget.Reservation held = reservation;
+        return held != null && held.getBytes() > 0;
+    }
+
+    /**
+     * Give back the in-flight byte budget held by this image. The clients do this once the
+     * upload is done; code that keeps an image for repeated uploads releases it right away.
+     */
+    public void release() {
+        ByteBudget.Reservation held = reservation;
+        if (held != null) {
+            held.release();
+        }
+    }
+
+    /**
+     * Open a new channel over the image content. Each call starts again from the beginning.
+     */
+    ReadableByteChannel open() throws IOException {
+        if (data != null) {
+            return Channels.newChannel(new ByteArrayInputStream(data));
+        }
+        return FileChannel.open(source, StandardOpenOption.READ);
+    }
+}
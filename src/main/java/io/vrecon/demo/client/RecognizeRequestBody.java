@@ -0,0 +1,55 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON body of a recognize request, streamed from the image on demand.
+ *
+ * Produces the same document as serializing a {@link io.vrecon.demo.model.RecognizeRequest},
+ * but the image is Base64-encoded while it is being written instead of being held in memory.
+ */
+class RecognizeRequestBody {
+
+    /**
+     * Heap used while one body is streamed: the raw and encoded chunks of the Base64 channel
+     * and the 64 KB transfer buffer of the sync entity or async producer.
+     */
+    static final long STREAMING_BYTES = Base64ImageChannel.RAW_CHUNK_SIZE
+        + Base64ImageChannel.RAW_CHUNK_SIZE / 3 * 4 + 64 * 1024;
+
+    private final byte[] prefix;
+    private final byte[] suffix;
+    private final PreparedImage image;
+
+    RecognizeRequestBody(ObjectMapper objectMapper, String apiKey, PreparedImage image) throws IOException {
+        this.prefix = ("{\"apiKey\":" + objectMapper.writeValueAsString(apiKey) + ",\"image\":\"")
+            .getBytes(StandardCharsets.UTF_8);
+        this.suffix = ("\",\"format\":" + objectMapper.writeValueAsString(image.getFormat()) + "}")
+            .getBytes(StandardCharsets.UTF_8);
+        this.image = image;
+    }
+
+    /**
+     * @return Size of the uploaded image in bytes
+     */
+    long getImageSize() {
+        return image.getSize();
+    }
+
+    /**
+     * @return Exact length of the encoded JSON body in bytes
+     */
+    long getContentLength() {
+        return prefix.length + Base64ImageChannel.encodedLength(image.getSize()) + suffix.length;
+    }
+
+    /**
+     * Open a new channel over the body. Each call starts again from the beginning.
+     */
+    Base64ImageChannel open() throws IOException {
+        return new Base64ImageChannel(prefix, image.open(), image.getSize(), suffix);
+    }
+}
@@ -0,0 +1,82 @@
+package io.vrecon.demo.client;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * Classic HTTP entity that streams a {@link RecognizeRequestBody} to the connection.
+ */
+class RecognizeRequestEntity extends AbstractHttpEntity {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RecognizeRequestBody body;
+    private ExchangeTrace trace;
+
+    RecognizeRequestEntity(RecognizeRequestBody body) {
+        super(ContentType.APPLICATION_JSON, null);
+        this.body = body;
+    }
+
+    /**
+     * Record the time spent reading, encoding and writing the body in the spans of an attempt.
+     */
+    void setTrace(ExchangeTrace trace) {
+        this.trace = trace;
+    }
+
+    @Override
+    public long getContentLength() {
+        return body.getContentLength();
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return Channels.newInputStream(body.open());
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        ExchangeTrace trace = this.trace;
+        long startNanos = trace != null ? System.nanoTime() : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (Base64ImageChannel channel = body.open()) {
+            if (trace != null) {
+                channel.enableTiming();
+            }
+            while (channel.read(buffer) >= 0) {
+                outStream.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            if (trace != null) {
+                // Reading and encoding alternate chunk by chunk, so their spans carry the summed time
+                long endNanos = System.nanoTime();
+                Span write = trace.span().child("request.write", startNanos);
+                write.child("file.read", startNanos).end(startNanos + channel.getReadNanos());
+                write.child("base64.encode", startNanos).end(startNanos + channel.getEncodeNanos());
+                write.setAttribute("http.request.body.size", getContentLength()).end(endNanos);
+                trace.bodySent(endNanos);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
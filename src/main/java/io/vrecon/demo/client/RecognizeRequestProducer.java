@@ -0,0 +1,124 @@
+package io.vrecon.demo.client;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Set;
+
+/**
+ * Async entity producer that streams a {@link RecognizeRequestBody} to a non-blocking connection.
+ *
+ * Data is produced only as fast as the connection accepts it, one buffer at a time.
+ */
+class RecognizeRequestProducer implements AsyncEntityProducer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RecognizeRequestBody body;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+    private ReadableByteChannel channel;
+    private boolean endOfBody;
+    private boolean streamEnded;
+
+    RecognizeRequestProducer(RecognizeRequestBody body) {
+        this.body = body;
+    }
+
+    @Override
+    public synchronized int available() {
+        if (buffer.hasRemaining()) {
+            return buffer.remaining();
+        }
+        if (streamEnded) {
+            return 0;
+        }
+        return endOfBody ? 1 : BUFFER_SIZE;
+    }
+
+    @Override
+    public synchronized void produce(DataStreamChannel dataChannel) throws IOException {
+        if (streamEnded) {
+            return;
+        }
+        if (channel == null && !endOfBody) {
+            channel = body.open();
+        }
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (endOfBody) {
+                    dataChannel.endStream();
+                    streamEnded = true;
+                    closeChannel();
+                    return;
+                }
+                buffer.clear();
+                if (channel.read(buffer) < 0) {
+                    endOfBody = true;
+                }
+                buffer.flip();
+                continue;
+            }
+            if (dataChannel.write(buffer) == 0) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long getContentLength() {
+        return body.getContentLength();
+    }
+
+    @Override
+    public String getContentType() {
+        return ContentType.APPLICATION_JSON.toString();
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return null;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return false;
+    }
+
+    @Override
+    public Set<String> getTrailerNames() {
+        return null;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public void failed(Exception cause) {
+        releaseResources();
+    }
+
+    @Override
+    public synchronized void releaseResources() {
+        closeChannel();
+        buffer.clear().limit(0);
+        endOfBody = false;
+        streamEnded = false;
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of final recognition results, keyed by the SHA-256 of the image bytes and of
+ * the settings the result depends on, such as the preprocessing and the API endpoints. A
+ * directory can therefore be shared by runs with different settings without one answering
+ * for the other.
+ *
+ * Each entry is one JSON file named after its key. The cache is bounded by total size with
+ * least-recently-used eviction, and entries older than the TTL are treated as missing.
+ * Only completed results (DONE or DELIVERED) are stored, so failures are always retried.
+ * Entries are written to a temporary file and moved into place; temporary files left behind
+ * by a crash are deleted when the cache is opened.
+ */
+public class ResultCache {
+
+    private static final String SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+    /** Age after which a temporary file is left over from a crash rather than being written */
+    private static final long STALE_TEMP_MILLIS = 60_000;
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final byte[] configuration;
+    private final ObjectMapper objectMapper;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Open a cache directory, creating it if needed, and index the entries already in it.
+     *
+     * @param directory     Directory holding the cache files
+     * @param maxBytes      Maximum total size of all entries in bytes
+     * @param ttlMillis     Maximum age of an entry in milliseconds
+     * @param configuration Description of the settings that change the result of an image;
+     *                      only entries stored with the same description are found
+     * @throws IOException if the directory cannot be created or read
+     */
+    public ResultCache(Path directory, long maxBytes, long ttlMillis, String configuration) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.configuration = configuration.getBytes(StandardCharsets.UTF_8);
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        Files.createDirectories(directory);
+        load();
+    }
+
+    private void load() throws IOException {
+        List<Map.Entry<String, Entry>> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(SUFFIX) && !name.endsWith(TEMP_SUFFIX)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    if (System.currentTimeMillis() - attributes.lastModifiedTime().toMillis() > STALE_TEMP_MILLIS) {
+                        Files.deleteIfExists(file);
+                    }
+                    continue;
+                }
+                found.add(Map.entry(name.substring(0, name.length() - SUFFIX.length()),
+                    new Entry(attributes.size(), attributes.lastModifiedTime().toMillis())));
+            }
+        }
+        found.sort(Comparator.comparingLong(entry -> entry.getValue().storedAt));
+        synchronized (this) {
+            for (Map.Entry<String, Entry> entry : found) {
+                entries.put(entry.getKey(), entry.getValue());
+                totalBytes += entry.getValue().size;
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Compute the cache key of an image by hashing the configuration and the image content.
+     *
+     * @param image Image file
+     * @return Lower-case hex SHA-256 of the configuration followed by the file content
+     * @throws IOException if the file cannot be read
+     */
+    public String key(Path image) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        // Length first, so that no configuration can run into the image bytes of another
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, configuration.length));
+        digest.update(configuration);
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Look up a cached result.
+     *
+     * @param key Key computed by {@link #key(Path)}
+     * @return The cached StateResponse, or null if there is no fresh entry
+     */
+    public StateResponse get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (System.currentTimeMillis() - entry.storedAt > ttlMillis) {
+                remove(key);
+                misses.increment();
+                return null;
+            }
+        }
+        try {
+            StateResponse response = objectMapper.readValue(file(key).toFile(), StateResponse.class);
+            hits.increment();
+            return response;
+        } catch (IOException e) {
+            synchronized (this) {
+                // The file is read outside the lock; a concurrent put may have replaced the entry
+                if (entries.remove(key, entry)) {
+                    totalBytes -= entry.size;
+                    deleteFile(key);
+                }
+            }
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Store a result if it is a completed recognition.
+     *
+     * @param key      Key computed by {@link #key(Path)}
+     * @param response Final StateResponse of the recognition
+     */
+    public void put(String key, StateResponse response) {
+        if (!response.isSuccess() || !RecognitionStates.isCompleted(response.getState())) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+            try {
+                objectMapper.writeValue(temp.toFile(), response);
+                Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            long size = Files.size(file(key));
+            synchronized (this) {
+                Entry previous = entries.put(key, new Entry(size, System.currentTimeMillis()));
+                if (previous != null) {
+                    totalBytes -= previous.size;
+                }
+                totalBytes += size;
+                evict();
+            }
+        } catch (IOException e) {
+            // A result that cannot be cached is simply recognized again next time
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.getValue().size;
+            deleteFile(entry.getKey());
+            evictions.increment();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size;
+            deleteFile(key);
+        }
+    }
+
+    private void deleteFile(String key) {
+        try {
+            Files.deleteIfExists(file(key));
+        } catch (IOException e) {
+            // Ignore, the entry is no longer indexed
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private static final class Entry {
+        final long size;
+        final long storedAt;
+
+        Entry(long size, long storedAt) {
+            this.size = size;
+            this.storedAt = storedAt;
+        }
+    }
+}
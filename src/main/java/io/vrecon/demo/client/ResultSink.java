@@ -0,0 +1,445 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vrecon.demo.metrics.MetricsRegistry;
+import io.vrecon.demo.model.RecognitionResult;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Machine-readable output of recognition results, one line per image, as NDJSON or CSV.
+ *
+ * Callers only enqueue a result; a single background thread serializes it straight into a
+ * buffered file channel and flushes the buffer when the queue runs empty or once per flush
+ * interval. The queue is bounded. {@link #write} never blocks the caller: when the writer
+ * falls that far behind, results are dropped and counted instead of holding up recognition.
+ * {@link #writeOrFail} waits for room instead and reports a result it could not queue, for
+ * callers that must not consider an image done before its result is safe.
+ *
+ * The file can be rotated by size or age. The current file keeps its name; a rotated file
+ * gets the time it was rotated appended to its base name, such as
+ * {@code results-20260102-150405.ndjson}. Every CSV file starts with a header line.
+ */
+public class ResultSink implements AutoCloseable {
+
+    public enum Format {
+        NDJSON, CSV;
+
+        /**
+         * @return CSV for a file ending in .csv, NDJSON otherwise
+         */
+        public static Format forFile(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+        }
+    }
+
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final String CSV_HEADER = "time,image,elapsed_ms,success,request_uuid,state,error,created_at,"
+        + "updated_at,vehicle_found,make,model,generation,color,side,angle,recognition_probability,"
+        + "damage_detected,multiple_vehicles,detection_notes\n";
+    private static final DateTimeFormatter ROTATED_SUFFIX =
+        DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final Path file;
+    private final Format format;
+    private final long maxBytes;
+    private final long maxAgeNanos;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<Line> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private final Thread writer;
+    private FileChannel channel;
+    private CountingOutputStream out;
+    private JsonGenerator json;
+    private long openedNanos;
+    private long linesInFile;
+    private volatile boolean closed;
+    private volatile IOException writeError;
+
+    /**
+     * @param file         Output file, appended to if it exists
+     * @param format       Line format
+     * @param maxBytes     Rotate once the file reaches this size, 0 for no size limit
+     * @param maxAgeMillis Rotate once the file is this old, 0 for no age limit
+     * @throws IOException if the file cannot be opened
+     */
+    public ResultSink(Path file, Format format, long maxBytes, long maxAgeMillis) throws IOException {
+        this.file = file;
+        this.format = format;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        open();
+        this.writer = new Thread(this::runWriter, "vrecon-results");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.counter("vrecon_results_written_total", "Results written to the result file", written::sum);
+        registry.counter("vrecon_results_dropped_total", "Results dropped because the result writer fell behind",
+            dropped::sum);
+        registry.gauge("vrecon_results_queued", "Results waiting for the result writer", queue::size);
+    }
+
+    /**
+     * Queue the final response of an image. Never blocks.
+     *
+     * @return false if the result was dropped
+     */
+    public boolean write(String image, StateResponse response, long elapsedMillis) {
+        return enqueue(new Line(System.currentTimeMillis(), image, elapsedMillis, response, null));
+    }
+
+    /**
+     * Queue an image that failed without a response. Never blocks.
+     *
+     * @return false if the result was dropped
+     */
+    public boolean writeError(String image, String error, long elapsedMillis) {
+        return enqueue(new Line(System.currentTimeMillis(), image, elapsedMillis, null, error));
+    }
+
+    /**
+     * Queue the final response of an image, or the error of an image without one, waiting up
+     * to the timeout for room if the writer fell behind.
+     *
+     * @param response Final response, or null if the image failed with the error
+     * @throws IOException if the writer failed, the sink is closed or no room became free in time
+     */
+    public void writeOrFail(String image, StateResponse response, String error, long elapsedMillis,
+                            long timeoutMillis) throws IOException {
+        Line line = new Line(System.currentTimeMillis(), image, elapsedMillis, response, error);
+        checkWriter();
+        try {
+            if (!queue.offer(line, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                dropped.increment();
+                throw new IOException("Result writer fell behind for " + timeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.increment();
+            throw new InterruptedIOException("Interrupted while waiting for the result writer");
+        }
+        // The writer may have stopped while the line was queued
+        checkWriter();
+    }
+
+    private void checkWriter() throws IOException {
+        IOException error = writeError;
+        if (error != null) {
+            throw new IOException("Result writer failed: " + error.getMessage(), error);
+        }
+        if (closed) {
+            throw new IOException("Result sink is closed");
+        }
+    }
+
+    private boolean enqueue(Line line) {
+        if (closed || !queue.offer(line)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE),
+            channel.size());
+        json = objectMapper.getFactory().createGenerator(out);
+        // Flushing the generator only moves its bytes into the buffered stream
+        json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Lines are separated by the newline written after each object, not the default space
+        json.setRootValueSeparator(null);
+        openedNanos = System.nanoTime();
+        linesInFile = 0;
+        if (format == Format.CSV && out.count == 0) {
+            out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void runWriter() {
+        List<Line> batch = new ArrayList<>();
+        long lastFlush = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            try {
+                Line first = queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    for (Line line : batch) {
+                        if (isRotationDue()) {
+                            rotate();
+                        }
+                        writeLine(line);
+                        linesInFile++;
+                        written.increment();
+                    }
+                    batch.clear();
+                    dirty = true;
+                }
+                boolean finishing = closed && queue.isEmpty();
+                if (dirty && (finishing || queue.isEmpty()
+                        || System.nanoTime() - lastFlush >= TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS))) {
+                    out.flush();
+                    lastFlush = System.nanoTime();
+                    dirty = false;
+                }
+                if (first == null && isRotationDue()) {
+                    rotate();
+                }
+                if (finishing) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            } catch (IOException e) {
+                writeError = e;
+                closed = true;
+                // Nothing reads the queue any more; callers learn of the error from getWriteError
+                dropped.add(queue.size());
+                queue.clear();
+                return;
+            }
+        }
+    }
+
+    private boolean isRotationDue() {
+        return linesInFile > 0 && ((maxBytes > 0 && out.count >= maxBytes)
+            || (maxAgeNanos > 0 && System.nanoTime() - openedNanos >= maxAgeNanos));
+    }
+
+    /**
+     * Move the current file aside and start a new one. Runs on the writer thread only.
+     */
+    private void rotate() throws IOException {
+        out.flush();
+        channel.close();
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        String suffix = ROTATED_SUFFIX.format(Instant.now());
+        Path target = file.resolveSibling(base + "-" + suffix + extension);
+        for (int i = 1; Files.exists(target); i++) {
+            target = file.resolveSibling(base + "-" + suffix + "-" + i + extension);
+        }
+        Files.move(file, target);
+        rotations.increment();
+        open();
+    }
+
+    private void writeLine(Line line) throws IOException {
+        if (format == Format.NDJSON) {
+            writeJson(line);
+        } else {
+            out.write(toCsv(line).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeJson(Line line) throws IOException {
+        StateResponse response = line.response;
+        json.writeStartObject();
+        json.writeStringField("time", Instant.ofEpochMilli(line.time).toString());
+        json.writeStringField("image", line.image);
+        json.writeNumberField("elapsedMs", line.elapsedMillis);
+        if (response == null) {
+            json.writeBooleanField("success", false);
+            json.writeStringField("error", line.error);
+        } else {
+            json.writeBooleanField("success", response.isSuccess());
+            json.writeStringField("requestUuid", response.getRequestUuid());
+            json.writeStringField("state", response.getState());
+            json.writeStringField("error", response.getError());
+            json.writeStringField("createdAt", response.getCreatedAt());
+            json.writeStringField("updatedAt", response.getUpdatedAt());
+            json.writeFieldName("result");
+            objectMapper.writeValue(json, response.getResult());
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+        json.flush();
+    }
+
+    private static String toCsv(Line line) {
+        StateResponse response = line.response;
+        RecognitionResult result = response != null ? response.getResult() : null;
+        StringBuilder csv = new StringBuilder(256);
+        csv.append(Instant.ofEpochMilli(line.time)).append(',');
+        appendCsv(csv, line.image).append(',');
+        csv.append(line.elapsedMillis).append(',');
+        csv.append(response != null && response.isSuccess()).append(',');
+        if (response != null) {
+            appendCsv(csv, response.getRequestUuid()).append(',');
+            appendCsv(csv, response.getState()).append(',');
+            appendCsv(csv, response.getError()).append(',');
+            appendCsv(csv, response.getCreatedAt()).append(',');
+            appendCsv(csv, response.getUpdatedAt()).append(',');
+        } else {
+            csv.append(",,");
+            appendCsv(csv, line.error).append(",,,");
+        }
+        if (result != null) {
+            csv.append(result.isVehicleFound()).append(',');
+            appendCsv(csv, result.getMake()).append(',');
+            appendCsv(csv, result.getModel()).append(',');
+            appendCsv(csv, result.getGeneration()).append(',');
+            appendCsv(csv, result.getColor()).append(',');
+            appendCsv(csv, result.getSide()).append(',');
+            appendCsv(csv, result.getAngle()).append(',');
+            if (result.getRecognitionProbability() != null) {
+                csv.append(result.getRecognitionProbability());
+            }
+            csv.append(',').append(result.isDamageDetected()).append(',');
+            csv.append(result.isMultipleVehiclesInImage()).append(',');
+            appendCsv(csv, result.getDetectionNotes());
+        } else {
+            csv.append(",,,,,,,,,,");
+        }
+        return csv.append('\n').toString();
+    }
+
+    /**
+     * Append a field, quoted if it contains a separator, quote or line break.
+     */
+    private static StringBuilder appendCsv(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return csv.append(value);
+        }
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * @return Results written to the file
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return Results dropped because the queue was full or the sink was closed
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Error that stopped the writer, or null while it is writing
+     */
+    public IOException getWriteError() {
+        return writeError;
+    }
+
+    /**
+     * @return Files rotated aside since the sink was opened
+     */
+    public long getRotations() {
+        return rotations.sum();
+    }
+
+    /**
+     * Write all queued results, then close the file.
+     *
+     * @throws IOException if a result could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private static final class Line {
+        private final long time;
+        private final String image;
+        private final long elapsedMillis;
+        private final StateResponse response;
+        private final String error;
+
+        private Line(long time, String image, long elapsedMillis, StateResponse response, String error) {
+            this.time = time;
+            this.image = image;
+            this.elapsedMillis = elapsedMillis;
+            this.response = response;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Counts the bytes of the current file, including those still in the buffer, so that
+     * rotation by size does not need to flush.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream target;
+        private long count;
+
+        private CountingOutputStream(OutputStream target, long count) {
+            this.target = target;
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+    }
+}
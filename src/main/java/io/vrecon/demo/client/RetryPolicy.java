@@ -0,0 +1,88 @@
+package io.vrecon.demo.client;
+
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which failed requests are retried and how long to wait before each retry.
+ *
+ * State requests are idempotent and retried on any I/O error. A submit creates a job, so it
+ * is only retried when the API cannot have accepted it: the connection was never
+ * established, no pooled connection became free, or the API refused it with 429 or 503.
+ * Delays use full jitter, so clients that failed together do not retry together.
+ */
+final class RetryPolicy {
+
+    private final int maxRetries;
+    private final long backoff;
+    private final long maxBackoff;
+
+    RetryPolicy(ConnectionSettings settings) {
+        this.maxRetries = Math.max(0, settings.getMaxRetries());
+        this.backoff = Math.max(1, settings.getRetryBackoff());
+        this.maxBackoff = Math.max(backoff, settings.getMaxRetryBackoff());
+    }
+
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param error      Failure of the last attempt, possibly wrapped by a future
+     * @param idempotent Whether sending the request twice is harmless
+     */
+    boolean isRetryable(Throwable error, boolean idempotent) {
+        Throwable cause = unwrap(error);
+        if (!(cause instanceof IOException) || cause instanceof CircuitOpenException) {
+            return false;
+        }
+        if (cause instanceof ThrottledException || cause instanceof ConnectException
+                || cause instanceof ConnectTimeoutException || cause instanceof ConnectionRequestTimeoutException) {
+            return true;
+        }
+        // A bare InterruptedIOException means the calling thread was interrupted
+        return idempotent && cause.getClass() != InterruptedIOException.class;
+    }
+
+    /**
+     * @param retry Number of the retry, starting at 1
+     * @param error Failure of the last attempt
+     * @return Delay before the retry in milliseconds
+     */
+    long delayMillis(int retry, Throwable error) {
+        return delayMillis(retry, error, false);
+    }
+
+    /**
+     * @param retry    Number of the retry, starting at 1
+     * @param error    Failure of the last attempt
+     * @param rerouted Whether the retry may go to another member of an endpoint pool, in which
+     *                 case Retry-After only applies to the limiter of the throttled key
+     * @return Delay before the retry in milliseconds
+     */
+    long delayMillis(int retry, Throwable error, boolean rerouted) {
+        long cap = Math.min(maxBackoff, backoff << Math.min(retry - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        Throwable cause = unwrap(error);
+        if (!rerouted && cause instanceof ThrottledException) {
+            delay = Math.max(delay, ((ThrottledException) cause).getRetryAfterMillis());
+        }
+        return delay;
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,191 @@
+package io.vrecon.demo.client;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One timed phase of a traced job, handed to a {@link SpanExporter} when it ends.
+ *
+ * All spans of a job share its trace id, which serves as the correlation id of the job, and
+ * name their enclosing phase as parent. A span is recorded by one thread at a time.
+ *
+ * Jobs that are not traced get {@link #NOOP}, whose methods return at once without reading
+ * the clock or allocating, so instrumented code does not need to check whether tracing is on.
+ */
+public final class Span {
+
+    static final Span NOOP = new Span(null, null, null, null, 0, 0);
+
+    private final Tracer tracer;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final long epochOffsetNanos;
+    private final long startNanos;
+    private long endNanos;
+    private Map<String, Object> attributes;
+    private String error;
+
+    private Span(Tracer tracer, String traceId, String parentSpanId, String name, long epochOffsetNanos,
+                 long startNanos) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.spanId = tracer != null ? hex(ThreadLocalRandom.current().nextLong()) : null;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.epochOffsetNanos = epochOffsetNanos;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Start the root span of a new trace.
+     */
+    static Span root(Tracer tracer, String name) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long startNanos = System.nanoTime();
+        long epochOffsetNanos = System.currentTimeMillis() * 1_000_000 - startNanos;
+        return new Span(tracer, hex(random.nextLong()) + hex(random.nextLong()), null, name, epochOffsetNanos,
+            startNanos);
+    }
+
+    /**
+     * @return Whether this span is recorded; false for {@link #NOOP}
+     */
+    public boolean isRecording() {
+        return tracer != null;
+    }
+
+    /**
+     * Start a child span now.
+     */
+    Span child(String name) {
+        return tracer == null ? NOOP : child(name, System.nanoTime());
+    }
+
+    /**
+     * Start a child span at an earlier {@link System#nanoTime()}, for phases measured before
+     * the span could be created.
+     */
+    Span child(String name, long startNanos) {
+        if (tracer == null) {
+            return NOOP;
+        }
+        return new Span(tracer, traceId, spanId, name, epochOffsetNanos, startNanos);
+    }
+
+    Span setAttribute(String key, Object value) {
+        if (tracer != null && value != null) {
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Mark the phase as failed. The span still has to be ended.
+     */
+    void setError(Throwable error) {
+        if (tracer != null) {
+            this.error = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+        }
+    }
+
+    void setError(String error) {
+        if (tracer != null) {
+            this.error = error;
+        }
+    }
+
+    /**
+     * End the span now and export it.
+     */
+    void end() {
+        if (tracer != null) {
+            end(System.nanoTime());
+        }
+    }
+
+    /**
+     * End the span at the given {@link System#nanoTime()} and export it.
+     */
+    void end(long endNanos) {
+        if (tracer != null) {
+            this.endNanos = endNanos;
+            tracer.export(this);
+        }
+    }
+
+    /**
+     * @return W3C trace context header value naming this span as parent of a server-side span
+     */
+    String traceparent() {
+        return "00-" + traceId + "-" + spanId + "-01";
+    }
+
+    /**
+     * @return 32 hex digits identifying the trace, shared by all spans of a job
+     */
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * @return 16 hex digits identifying the span
+     */
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * @return Id of the enclosing span, or null for the root span of a trace
+     */
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Start time in nanoseconds since the epoch
+     */
+    public long getStartEpochNanos() {
+        return epochOffsetNanos + startNanos;
+    }
+
+    /**
+     * @return End time in nanoseconds since the epoch
+     */
+    public long getEndEpochNanos() {
+        return epochOffsetNanos + endNanos;
+    }
+
+    public long getDurationNanos() {
+        return endNanos - startNanos;
+    }
+
+    /**
+     * @return Attributes in the order they were set; values are strings, numbers or booleans
+     */
+    public Map<String, Object> getAttributes() {
+        return attributes != null ? Collections.unmodifiableMap(attributes) : Collections.emptyMap();
+    }
+
+    /**
+     * @return Error message if the phase failed, null otherwise
+     */
+    public String getError() {
+        return error;
+    }
+
+    private static String hex(long value) {
+        String digits = Long.toHexString(value);
+        return digits.length() == 16 ? digits : "0".repeat(16 - digits.length()) + digits;
+    }
+}
@@ -0,0 +1,28 @@
+package io.vrecon.demo.client;
+
+import java.io.IOException;
+
+/**
+ * Destination of the spans recorded by a {@link Tracer}.
+ *
+ * Spans are exported on the thread that ends them, in the middle of API requests, so an
+ * exporter must hand them off without blocking or doing I/O on that thread.
+ */
+public interface SpanExporter extends AutoCloseable {
+
+    /**
+     * Export an ended span. Must not block.
+     *
+     * @return false if the span was dropped
+     */
+    boolean export(Span span);
+
+    /**
+     * Export the spans still pending, then release resources.
+     *
+     * @throws IOException if pending spans could not be written
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,252 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends spans to a file from a background thread, as JSON lines or in the OTLP/JSON file
+ * format.
+ *
+ * JSONL writes one flat object per span. OTLP writes one OpenTelemetry
+ * {@code ExportTraceServiceRequest} per line with the spans queued since the previous line,
+ * the format read by the collector's otlpjsonfile receiver.
+ *
+ * Like {@link ResultSink}, callers only enqueue; when the bounded queue is full, spans are
+ * dropped instead of holding up requests.
+ */
+public class SpanFileExporter implements SpanExporter {
+
+    public enum Format {
+        JSONL, OTLP
+    }
+
+    static final String SERVICE_NAME = "vrecon-demo-client";
+    private static final String SCOPE_NAME = "io.vrecon.demo.client";
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long POLL_MILLIS = 1000;
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int SPAN_KIND_CLIENT = 3;
+    private static final int STATUS_CODE_ERROR = 2;
+
+    private final Format format;
+    private final BlockingQueue<Span> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final FileChannel channel;
+    private final OutputStream out;
+    private final JsonGenerator json;
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile IOException writeError;
+
+    /**
+     * @param file   Output file, appended to if it exists
+     * @param format Line format
+     * @throws IOException if the file cannot be opened
+     */
+    public SpanFileExporter(Path file, Format format) throws IOException {
+        this.format = format;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        this.json = new ObjectMapper().getFactory().createGenerator(out);
+        json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+        this.writer = new Thread(this::runWriter, "vrecon-traces");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return Format named by a --trace-format value
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static Format parseFormat(String name) {
+        return Format.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public boolean export(Span span) {
+        return !closed && queue.offer(span);
+    }
+
+    private void runWriter() {
+        List<Span> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Span first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    if (format == Format.OTLP) {
+                        writeOtlp(batch);
+                    } else {
+                        for (Span span : batch) {
+                            writeJsonLine(span);
+                        }
+                    }
+                    batch.clear();
+                    json.flush();
+                    // Written once the queue runs empty, so bursts are written in large blocks
+                    out.flush();
+                }
+                if (closed && queue.isEmpty()) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            } catch (IOException e) {
+                writeError = e;
+                closed = true;
+                return;
+            }
+        }
+    }
+
+    private void writeJsonLine(Span span) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("traceId", span.getTraceId());
+        json.writeStringField("spanId", span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            json.writeStringField("parentSpanId", span.getParentSpanId());
+        }
+        json.writeStringField("name", span.getName());
+        long start = span.getStartEpochNanos();
+        json.writeStringField("start", Instant.ofEpochSecond(0, start).toString());
+        json.writeNumberField("durationMicros", span.getDurationNanos() / 1000);
+        if (!span.getAttributes().isEmpty()) {
+            json.writeObjectFieldStart("attributes");
+            for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+                json.writeFieldName(attribute.getKey());
+                writeValue(attribute.getValue());
+            }
+            json.writeEndObject();
+        }
+        if (span.getError() != null) {
+            json.writeStringField("error", span.getError());
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value instanceof Boolean bool) {
+            json.writeBoolean(bool);
+        } else if (value instanceof Long || value instanceof Integer) {
+            json.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number number) {
+            json.writeNumber(number.doubleValue());
+        } else {
+            json.writeString(value.toString());
+        }
+    }
+
+    private void writeOtlp(List<Span> spans) throws IOException {
+        json.writeStartObject();
+        json.writeArrayFieldStart("resourceSpans");
+        json.writeStartObject();
+        json.writeObjectFieldStart("resource");
+        json.writeArrayFieldStart("attributes");
+        writeOtlpAttribute("service.name", SERVICE_NAME);
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeArrayFieldStart("scopeSpans");
+        json.writeStartObject();
+        json.writeObjectFieldStart("scope");
+        json.writeStringField("name", SCOPE_NAME);
+        json.writeEndObject();
+        json.writeArrayFieldStart("spans");
+        for (Span span : spans) {
+            writeOtlpSpan(span);
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private void writeOtlpSpan(Span span) throws IOException {
+        Map<String, Object> attributes = span.getAttributes();
+        json.writeStartObject();
+        json.writeStringField("traceId", span.getTraceId());
+        json.writeStringField("spanId", span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            json.writeStringField("parentSpanId", span.getParentSpanId());
+        }
+        json.writeStringField("name", span.getName());
+        json.writeNumberField("kind",
+            attributes.containsKey(VReconApiClient.HTTP_METHOD_ATTRIBUTE) ? SPAN_KIND_CLIENT : SPAN_KIND_INTERNAL);
+        // 64-bit integers are strings in the JSON mapping of protobuf
+        json.writeStringField("startTimeUnixNano", Long.toString(span.getStartEpochNanos()));
+        json.writeStringField("endTimeUnixNano", Long.toString(span.getEndEpochNanos()));
+        if (!attributes.isEmpty()) {
+            json.writeArrayFieldStart("attributes");
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                writeOtlpAttribute(attribute.getKey(), attribute.getValue());
+            }
+            json.writeEndArray();
+        }
+        if (span.getError() != null) {
+            json.writeObjectFieldStart("status");
+            json.writeNumberField("code", STATUS_CODE_ERROR);
+            json.writeStringField("message", span.getError());
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+    }
+
+    private void writeOtlpAttribute(String key, Object value) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("key", key);
+        json.writeObjectFieldStart("value");
+        if (value instanceof Boolean bool) {
+            json.writeBooleanField("boolValue", bool);
+        } else if (value instanceof Long || value instanceof Integer) {
+            json.writeStringField("intValue", value.toString());
+        } else if (value instanceof Number number) {
+            json.writeNumberField("doubleValue", number.doubleValue());
+        } else {
+            json.writeStringField("stringValue", value.toString());
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    /**
+     * Write all queued spans, then close the file.
+     *
+     * @throws IOException if a span could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight state requests: concurrent callers asking for the state of the same job
+ * share one HTTP request and its parsed response. Final states never change, so they are
+ * also kept for a while and answered without a request.
+ *
+ * A state-only request skips the result of non-final states, so a caller that wants the
+ * full response only joins a full request, while a state-only caller joins either. Shared
+ * responses are the same object for all callers and must be treated as read-only.
+ */
+final class StateCoalescer {
+
+    private static final String STATE_ONLY_PREFIX = "state-only:";
+
+    private final Map<String, CompletableFuture<StateResponse>> inFlight = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LinkedHashMap<String, CachedState> terminal = new LinkedHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * @param ttlMillis  Time a final state is answered from memory, 0 to disable the cache
+     * @param maxEntries Maximum number of cached final states
+     */
+    StateCoalescer(long ttlMillis, int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get a state, joining a request in flight for the same job or sending a new one.
+     *
+     * @param fetch Sends the request; called only if no cached or shared response is usable
+     */
+    StateResponse get(String requestUuid, boolean stateOnly, Fetch fetch) throws IOException {
+        StateResponse cached = cached(requestUuid);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<StateResponse> flight = new CompletableFuture<>();
+        String key = stateOnly ? STATE_ONLY_PREFIX + requestUuid : requestUuid;
+        CompletableFuture<StateResponse> existing = join(requestUuid, stateOnly, key, flight);
+        if (existing != null) {
+            return await(existing);
+        }
+        StateResponse response = null;
+        Throwable error = null;
+        try {
+            response = fetch.fetch();
+            return response;
+        } catch (IOException | RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            // Also on errors, so that later callers never join a flight nobody completes
+            finish(requestUuid, key, flight, response, error);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #get}. Cancelling the returned future does not cancel a
+     * request other callers may be waiting for.
+     */
+    CompletableFuture<StateResponse> getAsync(String requestUuid, boolean stateOnly,
+                                              Supplier<CompletableFuture<StateResponse>> fetch) {
+        StateResponse cached = cached(requestUuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<StateResponse> flight = new CompletableFuture<>();
+        String key = stateOnly ? STATE_ONLY_PREFIX + requestUuid : requestUuid;
+        CompletableFuture<StateResponse> existing = join(requestUuid, stateOnly, key, flight);
+        if (existing != null) {
+            return existing.copy();
+        }
+        CompletableFuture<StateResponse> request;
+        try {
+            request = fetch.get();
+        } catch (Throwable e) {
+            finish(requestUuid, key, flight, null, e);
+            return flight.copy();
+        }
+        request.whenComplete((response, error) -> finish(requestUuid, key, flight, response, error));
+        return flight.copy();
+    }
+
+    private CompletableFuture<StateResponse> join(String requestUuid, boolean stateOnly, String key,
+                                                  CompletableFuture<StateResponse> flight) {
+        CompletableFuture<StateResponse> existing = stateOnly ? inFlight.get(requestUuid) : null;
+        if (existing == null) {
+            existing = inFlight.putIfAbsent(key, flight);
+        }
+        if (existing != null) {
+            coalesced.increment();
+        }
+        return existing;
+    }
+
+    private void finish(String requestUuid, String key, CompletableFuture<StateResponse> flight,
+                        StateResponse response, Throwable error) {
+        if (response != null && response.isSuccess() && RecognitionStates.isTerminal(response.getState())) {
+            cache(requestUuid, response);
+        }
+        inFlight.remove(key, flight);
+        if (error != null) {
+            flight.completeExceptionally(RetryPolicy.unwrap(error));
+        } else {
+            flight.complete(response);
+        }
+    }
+
+    private static StateResponse await(CompletableFuture<StateResponse> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a shared state request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private synchronized StateResponse cached(String requestUuid) {
+        if (ttlNanos <= 0) {
+            return null;
+        }
+        CachedState entry = terminal.get(requestUuid);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresNanos >= 0) {
+            terminal.remove(requestUuid);
+            return null;
+        }
+        cacheHits.increment();
+        return entry.response;
+    }
+
+    private synchronized void cache(String requestUuid, StateResponse response) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        terminal.remove(requestUuid);
+        terminal.put(requestUuid, new CachedState(response, now + ttlNanos));
+        // Entries are in insertion order and share one TTL, so expired ones are at the head
+        Iterator<CachedState> entries = terminal.values().iterator();
+        while (entries.hasNext()) {
+            CachedState eldest = entries.next();
+            if (terminal.size() <= maxEntries && now - eldest.expiresNanos < 0) {
+                break;
+            }
+            entries.remove();
+        }
+    }
+
+    /**
+     * @return State requests that joined a request already in flight
+     */
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return State requests answered from the cache of final states
+     */
+    long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    interface Fetch {
+        StateResponse fetch() throws IOException;
+    }
+
+    private static final class CachedState {
+        private final StateResponse response;
+        private final long expiresNanos;
+
+        private CachedState(StateResponse response, long expiresNanos) {
+            this.response = response;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+}
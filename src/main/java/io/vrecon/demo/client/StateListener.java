@@ -0,0 +1,17 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.StateResponse;
+
+/**
+ * Observes every state returned by the state endpoint, for example to record transitions.
+ */
+public interface StateListener {
+
+    /**
+     * Called from the thread that received the response. Must not block.
+     *
+     * @param requestUuid The UUID that was polled
+     * @param response    The parsed StateResponse
+     */
+    void onState(String requestUuid, StateResponse response);
+}
@@ -0,0 +1,81 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.vrecon.demo.model.RecognitionResult;
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses responses of the state endpoint in a single pass with pre-built readers.
+ *
+ * In state-only mode the top-level fields are read token by token, and the result subtree
+ * is skipped without being bound unless the state is final. Most polls return PENDING or
+ * PROCESSING, for which the result carries nothing useful.
+ */
+final class StateResponseParser {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader stateReader;
+    private final ObjectReader resultReader;
+
+    StateResponseParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.stateReader = objectMapper.readerFor(StateResponse.class);
+        this.resultReader = objectMapper.readerFor(RecognitionResult.class);
+    }
+
+    StateResponse parse(InputStream body, boolean stateOnly) throws IOException {
+        if (!stateOnly) {
+            return stateReader.readValue(body);
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            return parseStateOnly(parser);
+        }
+    }
+
+    StateResponse parse(byte[] body, boolean stateOnly) throws IOException {
+        if (!stateOnly) {
+            return stateReader.readValue(body);
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            return parseStateOnly(parser);
+        }
+    }
+
+    private StateResponse parseStateOnly(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object in state response");
+        }
+        StateResponse response = new StateResponse();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "success" -> response.setSuccess(parser.getValueAsBoolean());
+                case "requestUuid" -> response.setRequestUuid(parser.getValueAsString());
+                case "state" -> response.setState(parser.getValueAsString());
+                case "createdAt" -> response.setCreatedAt(parser.getValueAsString());
+                case "updatedAt" -> response.setUpdatedAt(parser.getValueAsString());
+                case "error" -> response.setError(parser.getValueAsString());
+                case "result" -> {
+                    // The state usually precedes the result; if it does not, bind the result to be safe
+                    String state = response.getState();
+                    if (value == JsonToken.START_OBJECT && (state == null || RecognitionStates.isTerminal(state))) {
+                        response.setResult(resultReader.readValue(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return response;
+    }
+}
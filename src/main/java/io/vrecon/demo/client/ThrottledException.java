@@ -0,0 +1,70 @@
+package io.vrecon.demo.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The API refused a request because it is overloaded: HTTP 429 Too Many Requests or
+ * 503 Service Unavailable.
+ */
+public class ThrottledException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final long retryAfterMillis;
+
+    public ThrottledException(String endpoint, int status, long retryAfterMillis) {
+        super("HTTP " + status + " from " + endpoint
+            + (retryAfterMillis > 0 ? " (retry after " + retryAfterMillis + " ms)" : ""));
+        this.status = status;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * @return Whether a response with this status means the API is overloaded
+     */
+    static boolean isThrottling(int status) {
+        return status == 429 || status == 503;
+    }
+
+    /**
+     * Parse a Retry-After header, given either in seconds or as an HTTP date.
+     *
+     * @param value Header value, or null
+     * @return Delay in milliseconds, 0 if absent or invalid
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, Math.round(Double.parseDouble(trimmed) * 1000));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return HTTP status of the response
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Delay requested by the Retry-After header in milliseconds, 0 if none was given
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
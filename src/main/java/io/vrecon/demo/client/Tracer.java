@@ -0,0 +1,82 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Starts a trace per job and passes its spans to an exporter.
+ *
+ * Sampling is decided once per job: a job that is not sampled gets {@link Span#NOOP} and
+ * costs nothing more than a random number.
+ */
+public class Tracer implements AutoCloseable {
+
+    /** Tracer of clients without one; records nothing */
+    static final Tracer DISABLED = new Tracer(null, 0);
+
+    private final SpanExporter exporter;
+    private final double sampleRate;
+    private final LongAdder traces = new LongAdder();
+    private final LongAdder exported = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param exporter   Destination of ended spans
+     * @param sampleRate Share of jobs traced, 0.0-1.0
+     */
+    public Tracer(SpanExporter exporter, double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.exporter = exporter;
+        this.sampleRate = exporter != null ? sampleRate : 0;
+    }
+
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.counter("vrecon_traces_total", "Jobs traced", traces::sum);
+        registry.counter("vrecon_spans_exported_total", "Spans handed to the span exporter", exported::sum);
+        registry.counter("vrecon_spans_dropped_total", "Spans dropped because the span exporter fell behind",
+            dropped::sum);
+    }
+
+    /**
+     * Start the root span of a job, or {@link Span#NOOP} if the job is not sampled.
+     */
+    Span startTrace(String name) {
+        if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return Span.NOOP;
+        }
+        traces.increment();
+        return Span.root(this, name);
+    }
+
+    void export(Span span) {
+        if (exporter.export(span)) {
+            exported.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * @return Spans dropped by the exporter
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Close the exporter, writing the spans still pending.
+     *
+     * @throws IOException if pending spans could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (exporter != null) {
+            exporter.close();
+        }
+    }
+}
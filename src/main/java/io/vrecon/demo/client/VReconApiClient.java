@@ -2,76 +2,312 @@ package io.vrecon.demo.client;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vrecon.demo.metrics.MetricsRegistry;
 import io.vrecon.demo.model.*;
+import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.URIScheme;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * REST API client for VRecon Vehicle Recognition API.
  */
 public class VReconApiClient {
 
-    private final String baseUrl;
-    private final String apiKey;
+    static final String TIMEOUT_ERROR = "Timeout waiting for recognition result";
+    static final String RECOGNIZE_PATH = "/api/securapi/recognize";
+    static final String STATE_PATH = "/api/securapi/state";
+    /** Maximum number of final states kept for answering repeated state requests */
+    static final int STATE_CACHE_SIZE = 1024;
+    /** Attribute marking the span of an HTTP attempt */
+    static final String HTTP_METHOD_ATTRIBUTE = "http.request.method";
+
+    private final EndpointPool pool;
     private final ObjectMapper objectMapper;
+    private final StateResponseParser stateParser;
+    private final ConnectionSettings settings;
+    private final PoolingHttpClientConnectionManager connectionManager;
     private final CloseableHttpClient httpClient;
     private final boolean verbose;
+    private volatile StateListener stateListener;
+    private volatile ClientMetrics metrics;
+    private volatile ByteBudget byteBudget;
+    private volatile Tracer tracer = Tracer.DISABLED;
+    private volatile JobTimings jobTimings;
+    private final RetryPolicy retryPolicy;
+    private final StateCoalescer stateCoalescer;
 
     public VReconApiClient(String baseUrl, String apiKey, boolean verbose) {
-        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
-        this.apiKey = apiKey;
+        this(baseUrl, apiKey, verbose, new ConnectionSettings());
+    }
+
+    public VReconApiClient(String baseUrl, String apiKey, boolean verbose, ConnectionSettings settings) {
+        this(EndpointPool.single(baseUrl, apiKey, settings), verbose, settings);
+    }
+
+    /**
+     * @param pool     Endpoints and keys to spread requests over, possibly shared with an async client
+     * @param verbose  Log requests and responses to standard output
+     * @param settings Connection pool, timeout and retry settings
+     */
+    public VReconApiClient(EndpointPool pool, boolean verbose, ConnectionSettings settings) {
+        this.pool = pool;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        this.httpClient = HttpClients.createDefault();
+        this.stateParser = new StateResponseParser(objectMapper);
+        this.settings = settings;
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(settings.getMaxConnTotal())
+            .setMaxConnPerRoute(settings.getMaxConnPerRoute())
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(settings.getConnectTimeout()))
+                .setSocketTimeout(Timeout.ofMilliseconds(settings.getReadTimeout()))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build())
+            .setDefaultTlsConfig(TlsConfig.custom()
+                .setHandshakeTimeout(Timeout.ofMilliseconds(settings.getConnectTimeout()))
+                .build())
+            .build();
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(settings.getLeaseTimeout()))
+                .setResponseTimeout(Timeout.ofMilliseconds(settings.getReadTimeout()))
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(settings.getKeepAlive()))
+                .build())
+            .addExecInterceptorBefore(ChainElement.PROTOCOL.name(), "vrecon-trace-exchange",
+                ExchangeTrace::beforeProtocol)
+            .addExecInterceptorBefore(ChainElement.MAIN_TRANSPORT.name(), "vrecon-trace-transport",
+                ExchangeTrace::beforeTransport)
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEviction()))
+            .build();
         this.verbose = verbose;
+        this.retryPolicy = new RetryPolicy(settings);
+        this.stateCoalescer = new StateCoalescer(settings.getStateCacheTtl(), STATE_CACHE_SIZE);
+        setMetrics(new MetricsRegistry());
+
+        if (settings.getPrewarmConnections() > 0) {
+            prewarm(settings.getPrewarmConnections());
+        }
+    }
+
+    /**
+     * Open connections to the API hosts ahead of the first requests. All connections are
+     * leased first and then connected in parallel, so TCP and TLS setup is not paid serially.
+     *
+     * @param count Number of connections to open per host, limited by the per-route pool size
+     * @return Number of connections opened successfully
+     */
+    public int prewarm(int count) {
+        Set<String> baseUrls = new LinkedHashSet<>();
+        for (EndpointPool.Member member : pool.members()) {
+            baseUrls.add(member.endpoint().getBaseUrl());
+        }
+        int connected = 0;
+        for (String baseUrl : baseUrls) {
+            connected += prewarm(baseUrl, count);
+        }
+        return connected;
+    }
+
+    private int prewarm(String baseUrl, int count) {
+        HttpHost target = RoutingSupport.normalize(HttpHost.create(URI.create(baseUrl)), DefaultSchemePortResolver.INSTANCE);
+        HttpRoute route = new HttpRoute(target, null, URIScheme.HTTPS.same(target.getSchemeName()));
+        Timeout leaseTimeout = Timeout.ofMilliseconds(settings.getLeaseTimeout());
+        TimeValue keepAlive = TimeValue.ofMilliseconds(settings.getKeepAlive());
+
+        List<ConnectionEndpoint> endpoints = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(count, settings.getMaxConnPerRoute()); i++) {
+                endpoints.add(connectionManager.lease("prewarm-" + i, route, leaseTimeout, null).get(leaseTimeout));
+            }
+        } catch (Exception e) {
+            if (verbose) {
+                System.out.println("[LOG] Connection pre-warming stopped: " + e.getMessage());
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (endpoints.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(endpoints.size());
+        int connected = 0;
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (ConnectionEndpoint endpoint : endpoints) {
+                results.add(executor.submit(() -> {
+                    if (!endpoint.isConnected()) {
+                        connectionManager.connect(endpoint, null, HttpClientContext.create());
+                    }
+                    return true;
+                }));
+            }
+            for (int i = 0; i < endpoints.size(); i++) {
+                boolean ok;
+                try {
+                    ok = results.get(i).get();
+                } catch (Exception e) {
+                    ok = false;
+                    if (verbose) {
+                        System.out.println("[LOG] Connection pre-warming failed: " + e.getMessage());
+                    }
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                connectionManager.release(endpoints.get(i), null, ok ? keepAlive : TimeValue.ZERO_MILLISECONDS);
+                if (ok) {
+                    connected++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (verbose) {
+            System.out.println("[LOG] Pre-warmed " + connected + " connections to " + target);
+        }
+        return connected;
     }
 
     /**
      * Submit an image for vehicle recognition.
      *
+     * The image is Base64-encoded while the request body is written to the connection,
+     * so the file is never loaded into memory as a whole.
+     *
      * @param imagePath Path to the image file
      * @return RecognizeResponse containing the request UUID
      * @throws IOException if the request fails
      */
     public RecognizeResponse recognize(String imagePath) throws IOException {
-        Path path = Path.of(imagePath);
-        if (!Files.exists(path)) {
-            throw new IOException("Image file not found: " + imagePath);
+        return recognize(PreparedImage.original(Path.of(imagePath)));
+    }
+
+    /**
+     * Submit an image prepared by an {@link ImagePreprocessor} for vehicle recognition.
+     *
+     * @param image Image to upload
+     * @return RecognizeResponse containing the request UUID
+     * @throws IOException if the request fails
+     */
+    public RecognizeResponse recognize(PreparedImage image) throws IOException {
+        Span span = tracer.startTrace("recognize");
+        try {
+            return recognize(image, span);
+        } catch (IOException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.end();
         }
+    }
 
-        byte[] imageBytes = Files.readAllBytes(path);
-        String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-        String format = getImageFormat(imagePath);
+    private RecognizeResponse recognize(PreparedImage image, Span span) throws IOException {
+        if (span.isRecording()) {
+            span.setAttribute("vrecon.image.size", image.getSize()).setAttribute("vrecon.image.format", image.getFormat());
+        }
+        ClientMetrics metrics = this.metrics;
+        ByteBudget budget = byteBudget;
+        try {
+            RecognizeResponse recognizeResponse = withRetries(false, metrics, ClientMetrics.RECOGNIZE, span, () -> {
+                // Reserved per attempt, so that no memory is held during the backoff before a retry
+                ByteBudget.Reservation reservation = budget != null && !image.isReserved()
+                    ? budget.reserve(RecognizeRequestBody.STREAMING_BYTES)
+                    : null;
+                try {
+                    return attemptRecognize(image, span, metrics);
+                } finally {
+                    if (reservation != null) {
+                        reservation.release();
+                    }
+                }
+            });
+            metrics.recordUpload(image.getSize());
+            span.setAttribute("vrecon.request_uuid", recognizeResponse.getRequestUuid());
+            if (!recognizeResponse.isSuccess()) {
+                span.setError(recognizeResponse.getError());
+            }
+            return recognizeResponse;
+        } finally {
+            image.release();
+        }
+    }
 
-        RecognizeRequest request = new RecognizeRequest(apiKey, base64Image, format);
-        String jsonBody = objectMapper.writeValueAsString(request);
+    /**
+     * One upload of an image, to the member chosen for it, so that a retry can go to another
+     * endpoint or key.
+     */
+    private RecognizeResponse attemptRecognize(PreparedImage image, Span span, ClientMetrics metrics) throws IOException {
+        EndpointPool.Member member = pool.select(RECOGNIZE_PATH);
+        Span serialize = span.child("json.serialize");
+        RecognizeRequestBody body = new RecognizeRequestBody(objectMapper, member.apiKey(), image);
+        serialize.end();
 
-        String url = baseUrl + "/api/securapi/recognize";
+        String url = member.url(RECOGNIZE_PATH);
         if (verbose) {
             System.out.println("[LOG] POST /api/securapi/recognize - Request URL: " + url);
-            System.out.println("[LOG] POST /api/securapi/recognize - Request Body: {\"key\":\"***\",\"image\":\"<base64 " + imageBytes.length + " bytes>\",\"format\":\"" + format + "\"}");
+            System.out.println("[LOG] POST /api/securapi/recognize - Request Body: {\"key\":\"***\",\"image\":\"<base64 " + body.getImageSize() + " bytes>\",\"format\":\"" + image.getFormat() + "\"}");
         }
-
         HttpPost httpPost = new HttpPost(url);
         httpPost.setHeader("Content-Type", "application/json");
-        httpPost.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
-
-        return httpClient.execute(httpPost, response -> {
+        httpPost.setEntity(new RecognizeRequestEntity(body));
+        return execute(httpPost, member, RECOGNIZE_PATH, metrics, ClientMetrics.RECOGNIZE, span, (response, attempt, admittedNanos) -> {
+            Span read = attempt.child("response.read");
             String responseBody = EntityUtils.toString(response.getEntity());
+            read.end();
             if (verbose) {
                 System.out.println("[LOG] POST /api/securapi/recognize - Response Status: " + response.getCode());
                 System.out.println("[LOG] POST /api/securapi/recognize - Response Body: " + responseBody);
             }
-            return objectMapper.readValue(responseBody, RecognizeResponse.class);
+            Span parse = attempt.child("json.parse");
+            RecognizeResponse parsed = objectMapper.readValue(responseBody, RecognizeResponse.class);
+            parse.end();
+            if (parsed.isSuccess()) {
+                pool.bind(parsed.getRequestUuid(), member);
+                if (jobTimings != null) {
+                    jobTimings.recordUpload(System.nanoTime() - admittedNanos);
+                }
+            }
+            return parsed;
         });
     }
 
@@ -83,8 +319,198 @@ public class VReconApiClient {
      * @throws IOException if the request fails
      */
     public StateResponse getState(String requestUuid) throws IOException {
-        String jsonResponse = getStateAsJson(requestUuid);
-        return parseStateResponse(jsonResponse);
+        return getState(requestUuid, false);
+    }
+
+    /**
+     * Get the state/status of a recognition request, parsed directly from the response stream.
+     *
+     * Concurrent calls for the same request share one HTTP request, and final states are
+     * answered from memory for a while; the returned response must not be modified.
+     *
+     * @param requestUuid The UUID returned from the recognize endpoint
+     * @param stateOnly   Skip the recognition result unless the state is final; meant for polling
+     * @return StateResponse containing the current state, and the result if it was parsed
+     * @throws IOException if the request fails
+     */
+    public StateResponse getState(String requestUuid, boolean stateOnly) throws IOException {
+        Span span = tracer.startTrace("getState");
+        try {
+            return getState(requestUuid, stateOnly, span);
+        } catch (IOException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * A span without HTTP attempts below it was answered by a concurrent or cached request.
+     */
+    private StateResponse getState(String requestUuid, boolean stateOnly, Span span) throws IOException {
+        span.setAttribute("vrecon.request_uuid", requestUuid);
+        StateResponse stateResponse = stateCoalescer.get(requestUuid, stateOnly,
+            () -> fetchState(requestUuid, stateOnly, span));
+        span.setAttribute("vrecon.state", stateResponse.getState());
+        if (!stateResponse.isSuccess()) {
+            span.setError(stateResponse.getError());
+        }
+        return stateResponse;
+    }
+
+    private StateResponse fetchState(String requestUuid, boolean stateOnly, Span span) throws IOException {
+        EndpointPool.Member member = pool.memberFor(requestUuid);
+        StateResponse stateResponse = member != null
+            ? fetchState(member, requestUuid, stateOnly, span)
+            : lookupState(requestUuid, stateOnly, span);
+        if (RecognitionStates.isTerminal(stateResponse.getState())) {
+            pool.unbind(requestUuid);
+        }
+        StateListener listener = stateListener;
+        if (listener != null && stateResponse.isSuccess()) {
+            listener.onState(requestUuid, stateResponse);
+        }
+        return stateResponse;
+    }
+
+    private StateResponse fetchState(EndpointPool.Member member, String requestUuid, boolean stateOnly, Span span)
+            throws IOException {
+        Span serialize = span.child("json.serialize");
+        String jsonBody = newStateBody(member, requestUuid);
+        serialize.end();
+        ClientMetrics metrics = this.metrics;
+        return withRetries(true, metrics, ClientMetrics.STATE, span,
+            () -> execute(newStateRequest(member, jsonBody), member, STATE_PATH, metrics, ClientMetrics.STATE, span,
+                (response, attempt, admittedNanos) -> parseState(response, stateOnly, attempt)));
+    }
+
+    /**
+     * Ask the members in turn for a request UUID the pool does not know, and remember the
+     * first that knows it. Returns the last unsuccessful response if none does.
+     */
+    private StateResponse lookupState(String requestUuid, boolean stateOnly, Span span) throws IOException {
+        pool.recordLookup();
+        StateResponse stateResponse = null;
+        IOException failure = null;
+        for (EndpointPool.Member member : pool.members()) {
+            try {
+                stateResponse = fetchState(member, requestUuid, stateOnly, span);
+            } catch (IOException e) {
+                failure = failure != null ? failure : e;
+                continue;
+            }
+            if (stateResponse.isSuccess()) {
+                pool.bind(requestUuid, member);
+                return stateResponse;
+            }
+        }
+        if (stateResponse == null) {
+            throw failure;
+        }
+        return stateResponse;
+    }
+
+    /**
+     * Parse a state response straight from the stream, unless it is logged or traced: then the
+     * body is read first, which lets the trace tell reading from parsing.
+     */
+    private StateResponse parseState(ClassicHttpResponse response, boolean stateOnly, Span attempt)
+            throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new IOException("Empty response from /api/securapi/state (status " + response.getCode() + ")");
+        }
+        if (verbose || attempt.isRecording()) {
+            Span read = attempt.child("response.read");
+            byte[] responseBody = EntityUtils.toByteArray(entity);
+            read.setAttribute("http.response.body.size", responseBody.length).end();
+            if (verbose) {
+                System.out.println("[LOG] POST /api/securapi/state - Response Status: " + response.getCode());
+                System.out.println("[LOG] POST /api/securapi/state - Response Body: "
+                    + new String(responseBody, StandardCharsets.UTF_8));
+            }
+            Span parse = attempt.child("json.parse");
+            StateResponse parsed = stateParser.parse(responseBody, stateOnly);
+            parse.end();
+            return parsed;
+        }
+        try (InputStream body = entity.getContent()) {
+            return stateParser.parse(body, stateOnly);
+        }
+    }
+
+    /**
+     * @param stateListener Listener notified of every successful state poll, or null for none
+     */
+    public void setStateListener(StateListener stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * Record request counts and latencies, uploaded bytes, job outcomes and connection pool
+     * statistics in a registry. Without one, the client records into a private registry.
+     *
+     * @param registry Registry shared with the rest of the process
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        ClientMetrics clientMetrics = new ClientMetrics(registry, "sync");
+        clientMetrics.registerPool(connectionManager);
+        clientMetrics.registerCircuitBreakers(pool);
+        clientMetrics.registerStateCoalescer(stateCoalescer);
+        this.metrics = clientMetrics;
+    }
+
+    ClientMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Admit requests through a limiter, typically one shared with the async client. Without
+     * one, the client only honors the Retry-After header of throttling responses. With a pool
+     * of several keys, {@link EndpointPool#setLimiterSettings(LimiterSettings)} gives each key
+     * its own limiter instead.
+     *
+     * @param limiter Limiter to acquire a permit from before every request, for all keys of the pool
+     */
+    public void setLimiter(AdaptiveLimiter limiter) {
+        pool.setLimiter(limiter);
+    }
+
+    /**
+     * Reserve the memory of every upload from a budget, typically one shared with the async
+     * client and the preprocessor. An image re-encoded under the budget already holds its
+     * reservation, which is released once its upload is done.
+     *
+     * @param byteBudget Budget to reserve from, or null for no limit
+     */
+    public void setByteBudget(ByteBudget byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Trace the phases of recognize, getState, recognizeAndWait and waitForResult: JSON
+     * serialization, file reading, Base64 encoding, connection lease, time to first byte,
+     * response reading, JSON parsing, retry backoff and poll sleeps. Every HTTP attempt of a
+     * traced job carries a W3C traceparent header.
+     *
+     * @param tracer Tracer deciding which jobs are traced, or null to trace nothing
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer != null ? tracer : Tracer.DISABLED;
+    }
+
+    /**
+     * Break completed jobs down into upload, server queue, server processing and result delay.
+     *
+     * @param jobTimings Timings shared with the async client, or null to record none
+     */
+    public void setJobTimings(JobTimings jobTimings) {
+        this.jobTimings = jobTimings;
+    }
+
+    JobTimings jobTimings() {
+        return jobTimings;
     }
 
     /**
@@ -95,27 +521,200 @@ public class VReconApiClient {
      * @throws IOException if the request fails
      */
     public String getStateAsJson(String requestUuid) throws IOException {
-        StateRequest request = new StateRequest(apiKey, requestUuid);
-        String jsonBody = objectMapper.writeValueAsString(request);
+        Span span = tracer.startTrace("getState").setAttribute("vrecon.request_uuid", requestUuid);
+        try {
+            EndpointPool.Member member = pool.memberFor(requestUuid);
+            if (member != null) {
+                return fetchStateJson(member, requestUuid, span);
+            }
+            pool.recordLookup();
+            String json = null;
+            IOException failure = null;
+            for (EndpointPool.Member candidate : pool.members()) {
+                try {
+                    json = fetchStateJson(candidate, requestUuid, span);
+                } catch (IOException e) {
+                    failure = failure != null ? failure : e;
+                    continue;
+                }
+                if (objectMapper.readTree(json).path("success").asBoolean()) {
+                    return json;
+                }
+            }
+            if (json == null) {
+                throw failure;
+            }
+            return json;
+        } catch (IOException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
 
-        String url = baseUrl + "/api/securapi/state";
+    private String fetchStateJson(EndpointPool.Member member, String requestUuid, Span span) throws IOException {
+        Span serialize = span.child("json.serialize");
+        String jsonBody = newStateBody(member, requestUuid);
+        serialize.end();
+        ClientMetrics metrics = this.metrics;
+        return withRetries(true, metrics, ClientMetrics.STATE, span,
+            () -> execute(newStateRequest(member, jsonBody), member, STATE_PATH, metrics, ClientMetrics.STATE, span,
+                (response, attempt, admittedNanos) -> {
+                    Span read = attempt.child("response.read");
+                    String responseBody = EntityUtils.toString(response.getEntity());
+                    read.end();
+                    if (verbose) {
+                        System.out.println("[LOG] POST /api/securapi/state - Response Status: " + response.getCode());
+                        System.out.println("[LOG] POST /api/securapi/state - Response Body: " + responseBody);
+                    }
+                    return responseBody;
+                }));
+    }
+
+    /**
+     * Run a request, retrying failures that the retry policy allows for after a randomized
+     * backoff.
+     *
+     * @param idempotent Whether sending the request twice is harmless
+     */
+    private <T> T withRetries(boolean idempotent, ClientMetrics metrics, String endpoint, Span span,
+                              Attempt<T> attempt) throws IOException {
+        for (int retry = 1; ; retry++) {
+            try {
+                return attempt.run();
+            } catch (IOException e) {
+                if (retry > retryPolicy.getMaxRetries() || !retryPolicy.isRetryable(e, idempotent)
+                        || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                long delay = retryPolicy.delayMillis(retry, e, !pool.isSingle());
+                if (verbose) {
+                    System.out.println("[LOG] Retrying " + endpoint + " in " + delay + " ms after: " + e.getMessage());
+                }
+                metrics.recordRetry(endpoint);
+                Span backoff = span.child("retry.backoff").setAttribute("vrecon.retry", retry);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                } finally {
+                    backoff.end();
+                }
+            }
+        }
+    }
+
+    private interface Attempt<T> {
+        T run() throws IOException;
+    }
+
+    private interface ResponseHandler<T> {
+        /**
+         * @param admittedNanos {@link System#nanoTime()} when the limiter admitted the attempt
+         */
+        T handle(ClassicHttpResponse response, Span attempt, long admittedNanos) throws IOException, HttpException;
+    }
+
+    /**
+     * Send a request to a member of the pool once its circuit breaker and the limiter of its
+     * key admit it, and time it. Throttling responses are reported to the limiter and raised
+     * as {@link ThrottledException} instead of being handed to the response handler.
+     */
+    private <T> T execute(HttpPost httpPost, EndpointPool.Member member, String path, ClientMetrics metrics,
+                          String endpoint, Span span, ResponseHandler<T> handler) throws IOException {
+        CircuitBreaker breaker = member.breaker(path);
+        breaker.acquire();
+        AdaptiveLimiter.Permit permit;
+        Span limiterWait = span.child("limiter.wait");
+        try {
+            permit = member.limiter().acquire();
+        } catch (IOException e) {
+            breaker.onIgnored();
+            limiterWait.setError(e);
+            throw e;
+        } finally {
+            limiterWait.end();
+        }
+        ClientMetrics.Request request = metrics.startRequest(endpoint);
+        Span attempt = span.isRecording()
+            ? span.child("POST " + path)
+                .setAttribute(HTTP_METHOD_ATTRIBUTE, "POST")
+                .setAttribute("url.path", path)
+            : Span.NOOP;
+        if (attempt.isRecording() && !pool.isSingle()) {
+            attempt.setAttribute("server.address", member.endpoint().getHost());
+        }
+        member.started();
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        HttpClientContext context = HttpClientContext.create();
+        if (attempt.isRecording()) {
+            ExchangeTrace trace = new ExchangeTrace(attempt, System.nanoTime());
+            context.setAttribute(ExchangeTrace.CONTEXT_ATTRIBUTE, trace);
+            if (httpPost.getEntity() instanceof RecognizeRequestEntity entity) {
+                entity.setTrace(trace);
+            }
+            httpPost.setHeader("traceparent", attempt.traceparent());
+        }
+        try {
+            T result = httpClient.execute(httpPost, context, response -> {
+                request.setStatus(response.getCode());
+                if (attempt.isRecording()) {
+                    attempt.setAttribute("http.response.status_code", response.getCode());
+                }
+                if (ThrottledException.isThrottling(response.getCode())) {
+                    EntityUtils.consume(response.getEntity());
+                    Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+                    if (verbose) {
+                        System.out.println("[LOG] POST " + httpPost.getPath() + " - Response Status: " + response.getCode()
+                            + (retryAfter != null ? ", Retry-After: " + retryAfter.getValue() : ""));
+                    }
+                    throw new ThrottledException(httpPost.getPath(), response.getCode(),
+                        ThrottledException.parseRetryAfter(retryAfter != null ? retryAfter.getValue() : null));
+                }
+                return handler.handle(response, attempt, startNanos);
+            });
+            permit.success();
+            breaker.onSuccess();
+            success = true;
+            return result;
+        } catch (ThrottledException e) {
+            permit.throttled(e.getRetryAfterMillis());
+            if (e.getStatus() == 429) {
+                breaker.onIgnored();
+            } else {
+                breaker.onFailure();
+            }
+            attempt.setError(e);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure();
+            attempt.setError(e);
+            throw e;
+        } finally {
+            member.finished(path, System.nanoTime() - startNanos, success);
+            permit.ignore();
+            request.finish();
+            attempt.end();
+        }
+    }
+
+    private String newStateBody(EndpointPool.Member member, String requestUuid) throws IOException {
+        String jsonBody = objectMapper.writeValueAsString(new StateRequest(member.apiKey(), requestUuid));
         if (verbose) {
-            System.out.println("[LOG] POST /api/securapi/state - Request URL: " + url);
+            System.out.println("[LOG] POST /api/securapi/state - Request URL: " + member.url(STATE_PATH));
             System.out.println("[LOG] POST /api/securapi/state - Request Body: " + jsonBody);
         }
+        return jsonBody;
+    }
 
-        HttpPost httpPost = new HttpPost(url);
+    private HttpPost newStateRequest(EndpointPool.Member member, String jsonBody) {
+        HttpPost httpPost = new HttpPost(member.url(STATE_PATH));
         httpPost.setHeader("Content-Type", "application/json");
         httpPost.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
-
-        return httpClient.execute(httpPost, response -> {
-            String responseBody = EntityUtils.toString(response.getEntity());
-            if (verbose) {
-                System.out.println("[LOG] POST /api/securapi/state - Response Status: " + response.getCode());
-                System.out.println("[LOG] POST /api/securapi/state - Response Body: " + responseBody);
-            }
-            return responseBody;
-        });
+        return httpPost;
     }
 
     /**
@@ -126,7 +725,7 @@ public class VReconApiClient {
      * @throws IOException if parsing fails
      */
     public StateResponse parseStateResponse(String jsonResponse) throws IOException {
-        return objectMapper.readValue(jsonResponse, StateResponse.class);
+        return stateParser.parse(jsonResponse.getBytes(StandardCharsets.UTF_8), false);
     }
 
     /**
@@ -141,37 +740,167 @@ public class VReconApiClient {
      */
     public StateResponse recognizeAndWait(String imagePath, long pollInterval, long maxWaitTime)
             throws IOException, InterruptedException {
-        RecognizeResponse recognizeResponse = recognize(imagePath);
+        return recognizeAndWait(imagePath, new FixedPollingStrategy(pollInterval), maxWaitTime);
+    }
 
-        if (!recognizeResponse.isSuccess()) {
-            StateResponse errorState = new StateResponse();
-            errorState.setSuccess(false);
-            errorState.setError(recognizeResponse.getError());
-            return errorState;
+    /**
+     * Submit an image and poll for the result until completion, at times chosen by the polling strategy.
+     *
+     * @param imagePath       Path to the image file
+     * @param pollingStrategy Strategy deciding the delay before each poll
+     * @param maxWaitTime     Maximum time to wait in milliseconds
+     * @return StateResponse containing the final result
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if the polling is interrupted
+     */
+    public StateResponse recognizeAndWait(String imagePath, PollingStrategy pollingStrategy, long maxWaitTime)
+            throws IOException, InterruptedException {
+        return recognizeAndWait(PreparedImage.original(Path.of(imagePath)), pollingStrategy, maxWaitTime);
+    }
+
+    /**
+     * Submit an image prepared by an {@link ImagePreprocessor} and poll for the result until completion.
+     *
+     * @param image           Image to upload
+     * @param pollingStrategy Strategy deciding the delay before each poll
+     * @param maxWaitTime     Maximum time to wait in milliseconds
+     * @return StateResponse containing the final result
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if the polling is interrupted
+     */
+    public StateResponse recognizeAndWait(PreparedImage image, PollingStrategy pollingStrategy, long maxWaitTime)
+            throws IOException, InterruptedException {
+        Span span = tracer.startTrace("recognizeAndWait");
+        try {
+            Span submit = span.child("recognize");
+            RecognizeResponse recognizeResponse;
+            try {
+                recognizeResponse = recognize(image, submit);
+            } catch (IOException | RuntimeException e) {
+                submit.setError(e);
+                throw e;
+            } finally {
+                submit.end();
+            }
+            span.setAttribute("vrecon.request_uuid", recognizeResponse.getRequestUuid());
+
+            if (!recognizeResponse.isSuccess()) {
+                StateResponse errorState = new StateResponse();
+                errorState.setSuccess(false);
+                errorState.setError(recognizeResponse.getError());
+                span.setError(recognizeResponse.getError());
+                return errorState;
+            }
+
+            return waitForResult(recognizeResponse.getRequestUuid(), pollingStrategy, maxWaitTime, span);
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Poll an already submitted recognition request until it reaches a final state.
+     *
+     * @param requestUuid     The UUID returned from the recognize endpoint
+     * @param pollingStrategy Strategy deciding the delay before each poll
+     * @param maxWaitTime     Maximum time to wait in milliseconds
+     * @return StateResponse containing the final result
+     * @throws IOException          if the request fails
+     * @throws InterruptedException if the polling is interrupted
+     */
+    public StateResponse waitForResult(String requestUuid, PollingStrategy pollingStrategy, long maxWaitTime)
+            throws IOException, InterruptedException {
+        Span span = tracer.startTrace("waitForResult").setAttribute("vrecon.request_uuid", requestUuid);
+        try {
+            return waitForResult(requestUuid, pollingStrategy, maxWaitTime, span);
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.end();
         }
+    }
 
-        String requestUuid = recognizeResponse.getRequestUuid();
-        long startTime = System.currentTimeMillis();
+    private StateResponse waitForResult(String requestUuid, PollingStrategy pollingStrategy, long maxWaitTime,
+                                        Span span) throws IOException, InterruptedException {
+        ClientMetrics jobMetrics = metrics;
+        jobMetrics.jobStarted();
+        JobTimeline timeline = new JobTimeline();
+        StateResponse result = null;
+        int polls = 0;
+        try {
+            long startTime = System.currentTimeMillis();
+            long deadline = startTime + maxWaitTime;
+            long delay = pollingStrategy.firstDelay();
+            String lastState = null;
+            int pollsInState = 0;
 
-        while (System.currentTimeMillis() - startTime < maxWaitTime) {
-            StateResponse stateResponse = getState(requestUuid);
+            while (true) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                if (delay > 0) {
+                    Span sleep = span.child("poll.sleep");
+                    try {
+                        Thread.sleep(Math.min(delay, remaining));
+                    } finally {
+                        sleep.end();
+                    }
+                }
 
-            if (!stateResponse.isSuccess()) {
-                return stateResponse;
-            }
+                Span poll = span.child("getState");
+                StateResponse stateResponse;
+                try {
+                    stateResponse = getState(requestUuid, true, poll);
+                } catch (IOException | RuntimeException e) {
+                    poll.setError(e);
+                    throw e;
+                } finally {
+                    poll.end();
+                }
+                polls++;
 
-            String state = stateResponse.getState();
-            if ("DONE".equals(state) || "DELIVERED".equals(state) || "FAILED".equals(state) || "CANCELLED".equals(state)) {
-                return stateResponse;
+                if (!stateResponse.isSuccess()) {
+                    result = stateResponse;
+                    return result;
+                }
+                timeline.observe(stateResponse);
+
+                String state = stateResponse.getState();
+                if (RecognitionStates.isTerminal(state)) {
+                    pollingStrategy.onCompleted(System.currentTimeMillis() - startTime);
+                    result = stateResponse;
+                    return result;
+                }
+
+                pollsInState = state != null && state.equals(lastState) ? pollsInState + 1 : 1;
+                lastState = state;
+                delay = pollingStrategy.nextDelay(state, pollsInState);
             }
 
-            Thread.sleep(pollInterval);
+            StateResponse timeoutState = new StateResponse();
+            timeoutState.setSuccess(false);
+            timeoutState.setError(TIMEOUT_ERROR);
+            result = timeoutState;
+            return result;
+        } finally {
+            jobMetrics.jobFinished(result, polls);
+            JobTimings timings = jobTimings;
+            if (timings != null) {
+                timings.recordJob(timeline);
+            }
+            span.setAttribute("vrecon.polls", polls);
+            if (result != null) {
+                span.setAttribute("vrecon.state", result.getState());
+                if (!result.isSuccess()) {
+                    span.setError(result.getError());
+                }
+            }
         }
-
-        StateResponse timeoutState = new StateResponse();
-        timeoutState.setSuccess(false);
-        timeoutState.setError("Timeout waiting for recognition result");
-        return timeoutState;
     }
 
     /**
@@ -181,7 +910,7 @@ public class VReconApiClient {
         httpClient.close();
     }
 
-    private String getImageFormat(String imagePath) {
+    static String getImageFormat(String imagePath) {
         String lower = imagePath.toLowerCase();
         if (lower.endsWith(".png")) {
             return "png";
@@ -0,0 +1,749 @@
+package io.vrecon.demo.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.vrecon.demo.metrics.MetricsRegistry;
+import io.vrecon.demo.model.*;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking REST API client for VRecon Vehicle Recognition API.
+ *
+ * Requests run on a small number of I/O reactor threads. With HTTPS the connection protocol
+ * is negotiated through ALPN, so an HTTP/2-capable server multiplexes all outstanding
+ * requests over a single connection per route.
+ */
+public class VReconAsyncApiClient {
+
+    /** Number of recent state request latencies the hedging delay is estimated from */
+    private static final int HEDGE_WINDOW = 512;
+    private static final double HEDGE_QUANTILE = 0.95;
+    /** Maximum share of state requests that get a duplicate */
+    private static final double HEDGE_BUDGET = 0.1;
+
+    private final EndpointPool pool;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader recognizeReader;
+    private final StateResponseParser stateParser;
+    private final PoolingAsyncClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpClient;
+    private final boolean verbose;
+    private volatile StateListener stateListener;
+    private volatile ClientMetrics metrics;
+    private volatile ByteBudget byteBudget;
+    private volatile JobTimings jobTimings;
+    private final RetryPolicy retryPolicy;
+    private final boolean hedgeStateRequests;
+    private final StateCoalescer stateCoalescer;
+    private final LatencyWindow stateLatency = new LatencyWindow(HEDGE_WINDOW, HEDGE_QUANTILE);
+    private final LongAdder hedgeableRequests = new LongAdder();
+    private final LongAdder hedgesSent = new LongAdder();
+
+    public VReconAsyncApiClient(String baseUrl, String apiKey, boolean verbose) {
+        this(baseUrl, apiKey, verbose, new ConnectionSettings());
+    }
+
+    public VReconAsyncApiClient(String baseUrl, String apiKey, boolean verbose, ConnectionSettings settings) {
+        this(baseUrl, apiKey, verbose, settings, HttpVersionPolicy.NEGOTIATE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param baseUrl       Base URL of the VRecon API
+     * @param apiKey        API key for authentication
+     * @param verbose       Log requests and responses to standard output
+     * @param settings      Connection pool and timeout settings; pre-warming is not supported
+     *                      by the async client
+     * @param versionPolicy HTTP protocol policy; NEGOTIATE uses HTTP/2 when the server offers it
+     *                      over TLS, FORCE_HTTP_2 also uses it for plain-text connections
+     * @param ioThreads     Number of I/O reactor threads
+     */
+    public VReconAsyncApiClient(String baseUrl, String apiKey, boolean verbose, ConnectionSettings settings,
+                                HttpVersionPolicy versionPolicy, int ioThreads) {
+        this(EndpointPool.single(baseUrl, apiKey, settings), verbose, settings, versionPolicy, ioThreads);
+    }
+
+    public VReconAsyncApiClient(EndpointPool pool, boolean verbose, ConnectionSettings settings) {
+        this(pool, verbose, settings, HttpVersionPolicy.NEGOTIATE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param pool          Endpoints and keys to spread requests over, typically shared with the sync client
+     * @param verbose       Log requests and responses to standard output
+     * @param settings      Connection pool and timeout settings; pre-warming is not supported
+     *                      by the async client
+     * @param versionPolicy HTTP protocol policy; NEGOTIATE uses HTTP/2 when the server offers it
+     *                      over TLS, FORCE_HTTP_2 also uses it for plain-text connections
+     * @param ioThreads     Number of I/O reactor threads
+     */
+    public VReconAsyncApiClient(EndpointPool pool, boolean verbose, ConnectionSettings settings,
+                                HttpVersionPolicy versionPolicy, int ioThreads) {
+        this.pool = pool;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.recognizeReader = objectMapper.readerFor(RecognizeResponse.class);
+        this.stateParser = new StateResponseParser(objectMapper);
+        this.verbose = verbose;
+        this.retryPolicy = new RetryPolicy(settings);
+        this.hedgeStateRequests = settings.isHedgeStateRequests();
+        this.stateCoalescer = new StateCoalescer(settings.getStateCacheTtl(), VReconApiClient.STATE_CACHE_SIZE);
+
+        this.connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(settings.getMaxConnTotal())
+            .setMaxConnPerRoute(settings.getMaxConnPerRoute())
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(settings.getConnectTimeout()))
+                .setSocketTimeout(Timeout.ofMilliseconds(settings.getReadTimeout()))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build())
+            .setDefaultTlsConfig(TlsConfig.custom()
+                .setVersionPolicy(versionPolicy)
+                .setHandshakeTimeout(Timeout.ofMilliseconds(settings.getConnectTimeout()))
+                .build())
+            .build();
+        this.httpClient = HttpAsyncClients.custom()
+            .setConnectionManager(connectionManager)
+            .setIOReactorConfig(IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .build())
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(settings.getLeaseTimeout()))
+                .setResponseTimeout(Timeout.ofMilliseconds(settings.getReadTimeout()))
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(settings.getKeepAlive()))
+                .build())
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleEviction()))
+            .build();
+        this.httpClient.start();
+        setMetrics(new MetricsRegistry());
+    }
+
+    /**
+     * Submit an image for vehicle recognition without blocking the calling thread.
+     *
+     * @param imagePath Path to the image file
+     * @return Future completed with the RecognizeResponse containing the request UUID
+     */
+    public CompletableFuture<RecognizeResponse> recognizeAsync(String imagePath) {
+        try {
+            return recognizeAsync(PreparedImage.original(Path.of(imagePath)));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Submit an image prepared by an {@link ImagePreprocessor} without blocking the calling thread.
+     *
+     * @param image Image to upload
+     * @return Future completed with the RecognizeResponse containing the request UUID
+     */
+    public CompletableFuture<RecognizeResponse> recognizeAsync(PreparedImage image) {
+        ClientMetrics requestMetrics = metrics;
+        ByteBudget budget = byteBudget;
+        return this.<RecognizeResponse>withRetries(false, requestMetrics, ClientMetrics.RECOGNIZE, () -> {
+            // Reserved per attempt, so that no memory is held during the backoff before a retry
+            CompletableFuture<ByteBudget.Reservation> reserved = budget != null && !image.isReserved()
+                ? budget.reserveAsync(RecognizeRequestBody.STREAMING_BYTES)
+                : CompletableFuture.completedFuture(null);
+            CompletableFuture<RecognizeResponse> submitted = reserved.thenCompose(reservation ->
+                submit(image, requestMetrics).whenComplete((response, error) -> {
+                    if (reservation != null) {
+                        reservation.release();
+                    }
+                }));
+            submitted.whenComplete((response, error) -> {
+                // A cancelled attempt never runs submit, so the reservation may be granted to nobody
+                if (submitted.isCancelled() && !reserved.cancel(false)) {
+                    ByteBudget.Reservation reservation = reserved.getNow(null);
+                    if (reservation != null) {
+                        reservation.release();
+                    }
+                }
+            });
+            return submitted;
+        }).whenComplete((response, error) -> image.release());
+    }
+
+    /**
+     * One attempt to upload an image, to the member chosen for it, so that a retry can go to
+     * another endpoint or key.
+     */
+    private CompletableFuture<RecognizeResponse> submit(PreparedImage image, ClientMetrics requestMetrics) {
+        EndpointPool.Member member = pool.select(VReconApiClient.RECOGNIZE_PATH);
+        RecognizeRequestBody body;
+        try {
+            body = new RecognizeRequestBody(objectMapper, member.apiKey(), image);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String url = member.url(VReconApiClient.RECOGNIZE_PATH);
+        if (verbose) {
+            System.out.println("[LOG] POST /api/securapi/recognize - Request URL: " + url);
+            System.out.println("[LOG] POST /api/securapi/recognize - Request Body: {\"key\":\"***\",\"image\":\"<base64 " + body.getImageSize() + " bytes>\",\"format\":\"" + image.getFormat() + "\"}");
+        }
+        return execute(AsyncRequestBuilder.post(url).setEntity(new RecognizeRequestProducer(body)).build(),
+            member, VReconApiClient.RECOGNIZE_PATH, requestMetrics, ClientMetrics.RECOGNIZE, null,
+            (responseBody, admittedNanos) -> {
+                requestMetrics.recordUpload(image.getSize());
+                RecognizeResponse response = recognizeReader.readValue(responseBody);
+                if (response.isSuccess()) {
+                    pool.bind(response.getRequestUuid(), member);
+                    JobTimings timings = jobTimings;
+                    if (timings != null) {
+                        timings.recordUpload(System.nanoTime() - admittedNanos);
+                    }
+                }
+                return response;
+            });
+    }
+
+    /**
+     * Get the state/status of a recognition request without blocking the calling thread.
+     *
+     * @param requestUuid The UUID returned from the recognize endpoint
+     * @return Future completed with the StateResponse containing the current state and result
+     */
+    public CompletableFuture<StateResponse> getStateAsync(String requestUuid) {
+        return getStateAsync(requestUuid, false);
+    }
+
+    /**
+     * Get the state/status of a recognition request without blocking the calling thread.
+     *
+     * Concurrent calls for the same request share one HTTP request, and final states are
+     * answered from memory for a while; the returned response must not be modified.
+     *
+     * @param requestUuid The UUID returned from the recognize endpoint
+     * @param stateOnly   Skip the recognition result unless the state is final; meant for polling
+     * @return Future completed with the StateResponse containing the current state, and the
+     *         result if it was parsed
+     */
+    public CompletableFuture<StateResponse> getStateAsync(String requestUuid, boolean stateOnly) {
+        return stateCoalescer.getAsync(requestUuid, stateOnly, () -> fetchState(requestUuid, stateOnly));
+    }
+
+    private CompletableFuture<StateResponse> fetchState(String requestUuid, boolean stateOnly) {
+        EndpointPool.Member member = pool.memberFor(requestUuid);
+        CompletableFuture<StateResponse> future;
+        if (member != null) {
+            future = fetchState(member, requestUuid, stateOnly);
+        } else {
+            pool.recordLookup();
+            future = lookupState(pool.members(), 0, requestUuid, stateOnly, null, null);
+        }
+        return future.thenApply(stateResponse -> {
+            if (RecognitionStates.isTerminal(stateResponse.getState())) {
+                pool.unbind(requestUuid);
+            }
+            StateListener listener = stateListener;
+            if (listener != null && stateResponse.isSuccess()) {
+                listener.onState(requestUuid, stateResponse);
+            }
+            return stateResponse;
+        });
+    }
+
+    private CompletableFuture<StateResponse> fetchState(EndpointPool.Member member, String requestUuid,
+                                                        boolean stateOnly) {
+        String jsonBody;
+        try {
+            jsonBody = objectMapper.writeValueAsString(new StateRequest(member.apiKey(), requestUuid));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String url = member.url(VReconApiClient.STATE_PATH);
+        if (verbose) {
+            System.out.println("[LOG] POST /api/securapi/state - Request URL: " + url);
+            System.out.println("[LOG] POST /api/securapi/state - Request Body: " + jsonBody);
+        }
+
+        ClientMetrics requestMetrics = metrics;
+        Supplier<CompletableFuture<StateResponse>> attempt = () -> execute(
+            AsyncRequestBuilder.post(url).setEntity(jsonBody, ContentType.APPLICATION_JSON).build(),
+            member, VReconApiClient.STATE_PATH, requestMetrics, ClientMetrics.STATE, stateLatency,
+            (body, admittedNanos) -> stateParser.parse(body, stateOnly));
+        return withRetries(true, requestMetrics, ClientMetrics.STATE,
+            hedgeStateRequests ? () -> hedged(attempt, member, requestMetrics) : attempt);
+    }
+
+    /**
+     * Ask the members in turn, starting at the given index, for a request UUID the pool does
+     * not know, and remember the first that knows it. Completes with the last unsuccessful
+     * response if none does, or the first failure if no member answered.
+     */
+    private CompletableFuture<StateResponse> lookupState(List<EndpointPool.Member> members, int index,
+                                                         String requestUuid, boolean stateOnly,
+                                                         StateResponse last, Throwable failure) {
+        if (index == members.size()) {
+            return last != null ? CompletableFuture.completedFuture(last) : CompletableFuture.failedFuture(failure);
+        }
+        EndpointPool.Member member = members.get(index);
+        return fetchState(member, requestUuid, stateOnly).handle((stateResponse, error) -> {
+            if (error == null && stateResponse.isSuccess()) {
+                pool.bind(requestUuid, member);
+                return CompletableFuture.completedFuture(stateResponse);
+            }
+            return lookupState(members, index + 1, requestUuid, stateOnly,
+                error == null ? stateResponse : last,
+                failure != null || error == null ? failure : RetryPolicy.unwrap(error));
+        }).thenCompose(future -> future);
+    }
+
+    /**
+     * @param stateListener Listener notified of every successful state poll, or null for none
+     */
+    public void setStateListener(StateListener stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * Record request counts and latencies, uploaded bytes, job outcomes and connection pool
+     * statistics in a registry. Without one, the client records into a private registry.
+     *
+     * @param registry Registry shared with the rest of the process
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        ClientMetrics clientMetrics = new ClientMetrics(registry, "async");
+        clientMetrics.registerPool(connectionManager);
+        clientMetrics.registerCircuitBreakers(pool);
+        clientMetrics.registerStateCoalescer(stateCoalescer);
+        this.metrics = clientMetrics;
+    }
+
+    /**
+     * Admit requests through a limiter, typically one shared with the sync client. Without
+     * one, the client only honors the Retry-After header of throttling responses. With a pool
+     * of several keys, {@link EndpointPool#setLimiterSettings(LimiterSettings)} gives each key
+     * its own limiter instead.
+     *
+     * @param limiter Limiter to acquire a permit from before every request, for all keys of the pool
+     */
+    public void setLimiter(AdaptiveLimiter limiter) {
+        pool.setLimiter(limiter);
+    }
+
+    /**
+     * Reserve the memory of every upload from a budget, typically one shared with the sync
+     * client and the preprocessor. Waiting for memory does not hold a thread.
+     *
+     * @param byteBudget Budget to reserve from, or null for no limit
+     */
+    public void setByteBudget(ByteBudget byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Break completed jobs down into upload, server queue, server processing and result delay.
+     *
+     * @param jobTimings Timings shared with the sync client, or null to record none
+     */
+    public void setJobTimings(JobTimings jobTimings) {
+        this.jobTimings = jobTimings;
+    }
+
+    /**
+     * Submit an image and poll for the result until completion, without holding a thread
+     * while waiting between polls.
+     *
+     * @param imagePath    Path to the image file
+     * @param pollInterval Interval between polls in milliseconds
+     * @param maxWaitTime  Maximum time to wait in milliseconds
+     * @return Future completed with the StateResponse containing the final result
+     */
+    public CompletableFuture<StateResponse> recognizeAndWaitAsync(String imagePath, long pollInterval, long maxWaitTime) {
+        return recognizeAndWaitAsync(imagePath, new FixedPollingStrategy(pollInterval), maxWaitTime);
+    }
+
+    /**
+     * Submit an image and poll for the result until completion at times chosen by the polling
+     * strategy, without holding a thread while waiting between polls.
+     *
+     * @param imagePath       Path to the image file
+     * @param pollingStrategy Strategy deciding the delay before each poll
+     * @param maxWaitTime     Maximum time to wait in milliseconds
+     * @return Future completed with the StateResponse containing the final result
+     */
+    public CompletableFuture<StateResponse> recognizeAndWaitAsync(String imagePath, PollingStrategy pollingStrategy,
+                                                                  long maxWaitTime) {
+        return recognizeAsync(imagePath).thenCompose(recognizeResponse -> {
+            if (!recognizeResponse.isSuccess()) {
+                StateResponse errorState = new StateResponse();
+                errorState.setSuccess(false);
+                errorState.setError(recognizeResponse.getError());
+                return CompletableFuture.completedFuture(errorState);
+            }
+            return waitForResultAsync(recognizeResponse.getRequestUuid(), pollingStrategy, maxWaitTime);
+        });
+    }
+
+    /**
+     * Poll an already submitted recognition request until it reaches a final state, without
+     * holding a thread while waiting between polls.
+     *
+     * @param requestUuid     The UUID returned from the recognize endpoint
+     * @param pollingStrategy Strategy deciding the delay before each poll
+     * @param maxWaitTime     Maximum time to wait in milliseconds
+     * @return Future completed with the StateResponse containing the final result
+     */
+    public CompletableFuture<StateResponse> waitForResultAsync(String requestUuid, PollingStrategy pollingStrategy,
+                                                               long maxWaitTime) {
+        long startTime = System.currentTimeMillis();
+        ClientMetrics jobMetrics = metrics;
+        jobMetrics.jobStarted();
+        JobTimings timings = jobTimings;
+        AtomicInteger polls = new AtomicInteger();
+        JobTimeline timeline = new JobTimeline();
+        return poll(requestUuid, pollingStrategy, startTime, startTime + maxWaitTime,
+            pollingStrategy.firstDelay(), null, 0, polls, timeline)
+            .whenComplete((response, error) -> {
+                jobMetrics.jobFinished(response, polls.get());
+                if (timings != null) {
+                    timings.recordJob(timeline);
+                }
+            });
+    }
+
+    private CompletableFuture<StateResponse> poll(String requestUuid, PollingStrategy pollingStrategy, long startTime,
+                                                  long deadline, long delay, String lastState, int pollsInState,
+                                                  AtomicInteger polls, JobTimeline timeline) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            StateResponse timeoutState = new StateResponse();
+            timeoutState.setSuccess(false);
+            timeoutState.setError(VReconApiClient.TIMEOUT_ERROR);
+            return CompletableFuture.completedFuture(timeoutState);
+        }
+        Executor delayed = CompletableFuture.delayedExecutor(Math.min(delay, remaining), TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(() -> requestUuid, delayed)
+            .thenCompose(uuid -> getStateAsync(uuid, true))
+            .thenCompose(stateResponse -> {
+                polls.incrementAndGet();
+                if (!stateResponse.isSuccess()) {
+                    return CompletableFuture.completedFuture(stateResponse);
+                }
+                timeline.observe(stateResponse);
+                String state = stateResponse.getState();
+                if (RecognitionStates.isTerminal(state)) {
+                    pollingStrategy.onCompleted(System.currentTimeMillis() - startTime);
+                    return CompletableFuture.completedFuture(stateResponse);
+                }
+                int inState = state != null && state.equals(lastState) ? pollsInState + 1 : 1;
+                return poll(requestUuid, pollingStrategy, startTime, deadline,
+                    pollingStrategy.nextDelay(state, inState), state, inState, polls, timeline);
+            });
+    }
+
+    /**
+     * Run a request, retrying failures that the retry policy allows for after a randomized
+     * backoff. Cancelling the returned future cancels the current attempt.
+     *
+     * @param idempotent Whether sending the request twice is harmless
+     */
+    private <T> CompletableFuture<T> withRetries(boolean idempotent, ClientMetrics metrics, String endpoint,
+                                                 Supplier<CompletableFuture<T>> attempt) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> current = new AtomicReference<>();
+        attempt(result, current, idempotent, metrics, endpoint, attempt, 1);
+        result.whenComplete((value, error) -> {
+            CompletableFuture<T> running = current.get();
+            if (result.isCancelled() && running != null) {
+                running.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private <T> void attempt(CompletableFuture<T> result, AtomicReference<CompletableFuture<T>> current,
+                             boolean idempotent, ClientMetrics metrics, String endpoint,
+                             Supplier<CompletableFuture<T>> attempt, int retry) {
+        if (result.isDone()) {
+            return;
+        }
+        CompletableFuture<T> future = attempt.get();
+        current.set(future);
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = RetryPolicy.unwrap(error);
+            if (result.isDone() || retry > retryPolicy.getMaxRetries() || !retryPolicy.isRetryable(cause, idempotent)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            long delay = retryPolicy.delayMillis(retry, cause, !pool.isSingle());
+            if (verbose) {
+                System.out.println("[LOG] Retrying " + endpoint + " in " + delay + " ms after: " + cause.getMessage());
+            }
+            metrics.recordRetry(endpoint);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                .execute(() -> attempt(result, current, idempotent, metrics, endpoint, attempt, retry + 1));
+        });
+    }
+
+    /**
+     * Send a state request and, if it is still unanswered after the recent p95 latency, a
+     * duplicate. The first response wins and the other request is cancelled. Duplicates are
+     * limited to a tenth of the state requests, so a uniformly slow API does not get twice
+     * the load, and none are sent while the circuit of the member's endpoint is not closed.
+     */
+    private CompletableFuture<StateResponse> hedged(Supplier<CompletableFuture<StateResponse>> attempt,
+                                                    EndpointPool.Member member, ClientMetrics metrics) {
+        long delay = stateLatency.getQuantileNanos();
+        hedgeableRequests.increment();
+        CompletableFuture<StateResponse> primary = attempt.get();
+        if (delay == 0 || member.breaker(VReconApiClient.STATE_PATH).getState() != CircuitBreaker.State.CLOSED) {
+            return primary;
+        }
+        CompletableFuture<StateResponse> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<StateResponse>> hedge = new AtomicReference<>();
+        // Attempts whose failure is still pending; the result fails only when all have failed
+        AtomicInteger pending = new AtomicInteger(1);
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                if (result.complete(value)) {
+                    cancel(hedge.get());
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(RetryPolicy.unwrap(error));
+            }
+        });
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+            if (result.isDone() || hedgesSent.sum() >= hedgeableRequests.sum() * HEDGE_BUDGET
+                    || !incrementIfPositive(pending)) {
+                return;
+            }
+            hedgesSent.increment();
+            metrics.recordHedgeSent();
+            CompletableFuture<StateResponse> duplicate = attempt.get();
+            hedge.set(duplicate);
+            duplicate.whenComplete((value, error) -> {
+                if (error == null) {
+                    if (result.complete(value)) {
+                        metrics.recordHedgeWin();
+                        primary.cancel(false);
+                    }
+                } else if (pending.decrementAndGet() == 0) {
+                    result.completeExceptionally(RetryPolicy.unwrap(error));
+                }
+            });
+            if (result.isDone()) {
+                duplicate.cancel(false);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                primary.cancel(false);
+                cancel(hedge.get());
+            }
+        });
+        return result;
+    }
+
+    private static boolean incrementIfPositive(AtomicInteger counter) {
+        int value;
+        do {
+            value = counter.get();
+            if (value == 0) {
+                return false;
+            }
+        } while (!counter.compareAndSet(value, value + 1));
+        return true;
+    }
+
+    private static void cancel(CompletableFuture<?> future) {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Send a request to a member of the pool once the circuit breaker of its endpoint and the
+     * limiter of its key admit it, and time it. Throttling responses are reported to the
+     * limiter and fail the future with a {@link ThrottledException}.
+     *
+     * @param latencies Window to record the latency of successful requests in, or null
+     */
+    private <T> CompletableFuture<T> execute(AsyncRequestProducer request, EndpointPool.Member member, String endpoint,
+                                             ClientMetrics metrics, String metricsEndpoint, LatencyWindow latencies,
+                                             BodyParser<T> parser) {
+        CircuitBreaker breaker = member.breaker(endpoint);
+        try {
+            breaker.acquire();
+        } catch (CircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<AdaptiveLimiter.Permit> admission = member.limiter().acquireAsync();
+        admission.whenComplete((permit, admissionError) -> {
+            if (admissionError != null) {
+                // A cancelled admission already released the breaker when the result was cancelled
+                if (result.completeExceptionally(RetryPolicy.unwrap(admissionError))) {
+                    breaker.onIgnored();
+                }
+                return;
+            }
+            if (result.isDone()) {
+                permit.ignore();
+                breaker.onIgnored();
+                return;
+            }
+            Future<SimpleHttpResponse> future;
+            try {
+                future = send(request, member, endpoint, breaker, metrics.startRequest(metricsEndpoint), permit,
+                    latencies, parser, result);
+            } catch (RuntimeException e) {
+                if (result.completeExceptionally(e)) {
+                    permit.ignore();
+                    breaker.onIgnored();
+                }
+                return;
+            }
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    future.cancel(true);
+                }
+            });
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled() && admission.cancel(false)) {
+                breaker.onIgnored();
+            }
+        });
+        return result;
+    }
+
+    private <T> Future<SimpleHttpResponse> send(AsyncRequestProducer request, EndpointPool.Member member,
+                                                String endpoint, CircuitBreaker breaker, ClientMetrics.Request timer,
+                                                AdaptiveLimiter.Permit permit, LatencyWindow latencies,
+                                                BodyParser<T> parser, CompletableFuture<T> result) {
+        member.started();
+        long startNanos = System.nanoTime();
+        try {
+            return httpClient.execute(request, SimpleResponseConsumer.create(),
+                new FutureCallback<>() {
+                    @Override
+                    public void completed(SimpleHttpResponse response) {
+                        timer.setStatus(response.getCode());
+                        if (ThrottledException.isThrottling(response.getCode())) {
+                            Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+                            if (verbose) {
+                                System.out.println("[LOG] POST " + endpoint + " - Response Status: " + response.getCode()
+                                    + (retryAfter != null ? ", Retry-After: " + retryAfter.getValue() : ""));
+                            }
+                            ThrottledException throttled = new ThrottledException(endpoint, response.getCode(),
+                                ThrottledException.parseRetryAfter(retryAfter != null ? retryAfter.getValue() : null));
+                            timer.finish();
+                            member.finished(endpoint, System.nanoTime() - startNanos, false);
+                            permit.throttled(throttled.getRetryAfterMillis());
+                            if (throttled.getStatus() == 429) {
+                                breaker.onIgnored();
+                            } else {
+                                breaker.onFailure();
+                            }
+                            result.completeExceptionally(throttled);
+                            return;
+                        }
+                        if (verbose) {
+                            System.out.println("[LOG] POST " + endpoint + " - Response Status: " + response.getCode());
+                            System.out.println("[LOG] POST " + endpoint + " - Response Body: " + response.getBodyText());
+                        }
+                        permit.success();
+                        T parsed;
+                        try {
+                            byte[] bytes = response.getBodyBytes();
+                            parsed = parser.parse(bytes != null ? bytes : new byte[0], startNanos);
+                        } catch (IOException | RuntimeException e) {
+                            timer.finish();
+                            member.finished(endpoint, System.nanoTime() - startNanos, false);
+                            breaker.onFailure();
+                            result.completeExceptionally(e);
+                            return;
+                        }
+                        timer.finish();
+                        long nanos = System.nanoTime() - startNanos;
+                        member.finished(endpoint, nanos, true);
+                        breaker.onSuccess();
+                        if (latencies != null) {
+                            latencies.record(nanos);
+                        }
+                        result.complete(parsed);
+                    }
+
+                    @Override
+                    public void failed(Exception ex) {
+                        timer.finish();
+                        member.finished(endpoint, System.nanoTime() - startNanos, false);
+                        permit.ignore();
+                        breaker.onFailure();
+                        result.completeExceptionally(ex);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        timer.finish();
+                        member.finished(endpoint, System.nanoTime() - startNanos, false);
+                        permit.ignore();
+                        breaker.onIgnored();
+                        result.cancel(false);
+                    }
+                });
+        } catch (RuntimeException e) {
+            // Such as a client that is closing: the callback will never be called
+            timer.finish();
+            member.finished(endpoint, System.nanoTime() - startNanos, false);
+            permit.ignore();
+            breaker.onFailure();
+            result.completeExceptionally(e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private interface BodyParser<T> {
+        /**
+         * @param admittedNanos {@link System#nanoTime()} when the limiter admitted the attempt
+         */
+        T parse(byte[] body, long admittedNanos) throws IOException;
+    }
+
+    /**
+     * Close the HTTP client and release resources.
+     */
+    public void close() {
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+}
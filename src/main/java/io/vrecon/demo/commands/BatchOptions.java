@@ -0,0 +1,103 @@
+package io.vrecon.demo.commands;
+
+import io.vrecon.demo.client.PollingStrategy;
+
+/**
+ * Options of the recognize-batch command.
+ */
+public class BatchOptions {
+
+    private String input;
+    private int concurrency;
+    private PollingStrategy pollingStrategy;
+    private int maxWaitTime;
+    private boolean async;
+    private int pollThreads;
+    private int submitThreads;
+    private String journal;
+
+    /**
+     * @return Directory, glob pattern or manifest file listing the images
+     */
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(String input) {
+        this.input = input;
+    }
+
+    /**
+     * @return Maximum number of images in flight
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public PollingStrategy getPollingStrategy() {
+        return pollingStrategy;
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        this.pollingStrategy = pollingStrategy;
+    }
+
+    /**
+     * @return Maximum time to wait per image in seconds
+     */
+    public int getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public void setMaxWaitTime(int maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * @return Use the non-blocking client instead of worker threads
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    /**
+     * @return Number of threads of a shared poll scheduler, 0 to poll on the job threads
+     */
+    public int getPollThreads() {
+        return pollThreads;
+    }
+
+    public void setPollThreads(int pollThreads) {
+        this.pollThreads = pollThreads;
+    }
+
+    /**
+     * @return Number of upload threads when a poll scheduler is used
+     */
+    public int getSubmitThreads() {
+        return submitThreads;
+    }
+
+    public void setSubmitThreads(int submitThreads) {
+        this.submitThreads = submitThreads;
+    }
+
+    /**
+     * @return Journal file used to resume an interrupted run, or null to run without one
+     */
+    public String getJournal() {
+        return journal;
+    }
+
+    public void setJournal(String journal) {
+        this.journal = journal;
+    }
+}
@@ -0,0 +1,127 @@
+package io.vrecon.demo.commands;
+
+import io.vrecon.demo.client.PollingStrategy;
+
+/**
+ * Options of the bench command.
+ */
+public class BenchOptions {
+
+    private String input;
+    private double rate;
+    private int users;
+    private int maxInFlight;
+    private int duration;
+    private int warmup;
+    private int reportInterval;
+    private PollingStrategy pollingStrategy;
+    private int maxWaitTime;
+    private String histogramLog;
+
+    /**
+     * @return Directory, glob pattern or manifest file listing the images to replay
+     */
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(String input) {
+        this.input = input;
+    }
+
+    /**
+     * @return Jobs started per second in open-loop mode, 0 for closed-loop mode
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @return Number of concurrent users in closed-loop mode
+     */
+    public int getUsers() {
+        return users;
+    }
+
+    public void setUsers(int users) {
+        this.users = users;
+    }
+
+    /**
+     * @return Jobs in flight at which open-loop starts are dropped
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return Length of the measurement in seconds
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * @return Seconds of load before the measurement starts
+     */
+    public int getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(int warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     * @return Seconds between progress lines and histogram log entries
+     */
+    public int getReportInterval() {
+        return reportInterval;
+    }
+
+    public void setReportInterval(int reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    public PollingStrategy getPollingStrategy() {
+        return pollingStrategy;
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        this.pollingStrategy = pollingStrategy;
+    }
+
+    /**
+     * @return Maximum time to wait per job in seconds
+     */
+    public int getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public void setMaxWaitTime(int maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * @return File receiving the interval histograms in HdrHistogram log format, or null for none
+     */
+    public String getHistogramLog() {
+        return histogramLog;
+    }
+
+    public void setHistogramLog(String histogramLog) {
+        this.histogramLog = histogramLog;
+    }
+}
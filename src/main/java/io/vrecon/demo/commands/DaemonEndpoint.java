@@ -0,0 +1,155 @@
+package io.vrecon.demo.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Properties;
+
+/**
+ * Where a running daemon can be reached: the file written by the serve command and read by
+ * the commands that forward to it.
+ *
+ * The file holds the loopback port, the API URL the daemon talks to, a hash of its API key
+ * and a random token that every request must carry. It is only readable by its owner, so
+ * other local users cannot use the daemon and with it the API key.
+ */
+final class DaemonEndpoint {
+
+    private static final String DEFAULT_FILE = ".vrecon/daemon.properties";
+
+    private final int port;
+    private final String url;
+    private final String keyHash;
+    private final String token;
+    private final long pid;
+
+    DaemonEndpoint(int port, String url, String keyHash, String token, long pid) {
+        this.port = port;
+        this.url = url;
+        this.keyHash = keyHash;
+        this.token = token;
+        this.pid = pid;
+    }
+
+    /**
+     * @return Endpoint file used when none is given: {@code ~/.vrecon/daemon.properties}
+     */
+    static Path defaultFile() {
+        return Path.of(System.getProperty("user.home")).resolve(DEFAULT_FILE);
+    }
+
+    /**
+     * @return The endpoint in the file, or null if there is none or it cannot be read
+     */
+    static DaemonEndpoint read(Path file) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+            return new DaemonEndpoint(Integer.parseInt(properties.getProperty("port")),
+                properties.getProperty("url"), properties.getProperty("keyHash"),
+                properties.getProperty("token"), Long.parseLong(properties.getProperty("pid")));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replace the file atomically, so that a forwarding command never reads it half-written.
+     */
+    void write(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("port", String.valueOf(port));
+        properties.setProperty("url", url);
+        properties.setProperty("keyHash", keyHash);
+        properties.setProperty("token", token);
+        properties.setProperty("pid", String.valueOf(pid));
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, ".daemon", ".tmp");
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            }
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "VRecon daemon");
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Remove the file if it still describes this endpoint and not a daemon started since.
+     */
+    void delete(Path file) {
+        DaemonEndpoint current = read(file);
+        if (current == null || current.pid != pid || !current.token.equals(token)) {
+            return;
+        }
+        try {
+            Files.delete(file);
+        } catch (NoSuchFileException e) {
+            // Already gone
+        } catch (IOException e) {
+            System.err.println("Error removing daemon endpoint file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Whether the daemon process is still running; a crashed daemon leaves its file behind
+     */
+    boolean isAlive() {
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    /**
+     * @return Whether the daemon talks to the given API with the given key
+     */
+    boolean serves(String url, String apiKey) {
+        return this.url.equals(url) && keyHash.equals(hashKey(apiKey));
+    }
+
+    static String hashKey(String apiKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(apiKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String newToken() {
+        byte[] token = new byte[24];
+        new SecureRandom().nextBytes(token);
+        return HexFormat.of().formatHex(token);
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    long getPid() {
+        return pid;
+    }
+}
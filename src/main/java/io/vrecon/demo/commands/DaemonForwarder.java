@@ -0,0 +1,309 @@
+package io.vrecon.demo.commands;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vrecon.demo.model.RecognizeResponse;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Runs recognize, state and recognize-wait through a daemon started with the serve command,
+ * printing the same output as {@link VReconCommands}.
+ *
+ * Uses the JDK's HTTP client for the loopback call, so a forwarded command loads neither the
+ * Apache client nor TLS. Client, polling, cache and preprocessing settings are the daemon's.
+ * When the daemon cannot be reached before anything was sent, the command reports that it
+ * was not handled and the caller runs it directly.
+ */
+public class DaemonForwarder {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int READ_GRACE_MILLIS = 30_000;
+
+    private final DaemonEndpoint endpoint;
+    private final boolean verbose;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private DaemonForwarder(DaemonEndpoint endpoint, boolean verbose) {
+        this.endpoint = endpoint;
+        this.verbose = verbose;
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * Find a running daemon for the given API and key.
+     *
+     * @param endpointFile File written by the serve command, or null for the default location
+     * @return Forwarder, or null if no matching daemon is running
+     */
+    public static DaemonForwarder find(String endpointFile, String baseUrl, String apiKey, boolean verbose) {
+        Path file = endpointFile != null ? Path.of(endpointFile) : DaemonEndpoint.defaultFile();
+        DaemonEndpoint endpoint = DaemonEndpoint.read(file);
+        if (endpoint == null || !endpoint.isAlive()) {
+            return null;
+        }
+        if (!endpoint.serves(baseUrl, apiKey)) {
+            if (verbose) {
+                System.out.println("Daemon " + endpoint.getPid() + " serves another URL or key, running directly");
+            }
+            return null;
+        }
+        return new DaemonForwarder(endpoint, verbose);
+    }
+
+    /**
+     * Forward the recognize command.
+     *
+     * @return False if the daemon could not be reached and the command should run directly
+     */
+    public boolean recognize(String imagePath) {
+        HttpURLConnection connection;
+        try {
+            connection = submit(imagePath, false, 0);
+        } catch (ConnectException e) {
+            return unreachable(e);
+        } catch (IOException e) {
+            System.err.println("Error submitting recognition request: " + e.getMessage());
+            return true;
+        }
+        System.out.println("Submitting image for recognition: " + imagePath);
+        System.out.println();
+        try {
+            readEvents(connection, new EventPrinter() {
+                @Override
+                void onSubmitted(RecognizeResponse response) {
+                    ResultPrinter.printSubmitted(response);
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error submitting recognition request: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Forward the state command.
+     *
+     * @return False if the daemon could not be reached and the command should run directly
+     */
+    public boolean getState(String requestUuid, boolean outputJson) {
+        int status;
+        String body;
+        try {
+            HttpURLConnection connection = open("/state?uuid=" + URLEncoder.encode(requestUuid, StandardCharsets.UTF_8)
+                + (outputJson ? "&raw=true" : ""), "GET", CONNECT_TIMEOUT_MILLIS + READ_GRACE_MILLIS);
+            try (InputStream in = responseStream(connection)) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            status = connection.getResponseCode();
+        } catch (ConnectException e) {
+            return unreachable(e);
+        } catch (IOException e) {
+            System.err.println("Error getting recognition state: " + e.getMessage());
+            return true;
+        }
+        if (status != 200) {
+            reportFailure(body, "Error getting recognition state: ");
+            return true;
+        }
+        if (outputJson) {
+            System.out.println(body);
+            return true;
+        }
+        System.out.println("Checking recognition state for UUID: " + requestUuid);
+        System.out.println();
+        try {
+            ResultPrinter.printState(objectMapper.readValue(body, StateResponse.class));
+        } catch (IOException e) {
+            System.err.println("Error getting recognition state: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Forward the recognize-wait command.
+     *
+     * @param maxWaitTime Maximum time to wait in seconds
+     * @return False if the daemon could not be reached and the command should run directly
+     */
+    public boolean recognizeAndWait(String imagePath, int maxWaitTime) {
+        HttpURLConnection connection;
+        try {
+            connection = submit(imagePath, true, maxWaitTime);
+        } catch (ConnectException e) {
+            return unreachable(e);
+        } catch (IOException e) {
+            System.err.println("Error during recognition: " + e.getMessage());
+            return true;
+        }
+        System.out.println("Submitting image for recognition: " + imagePath);
+        System.out.println("Daemon: pid " + endpoint.getPid() + " on port " + endpoint.getPort());
+        System.out.println("Max wait time: " + maxWaitTime + " seconds");
+        System.out.println();
+        try {
+            readEvents(connection, new EventPrinter() {
+                private boolean waiting;
+                private String lastState;
+
+                @Override
+                void onPreprocessed(String size) {
+                    waitingForResult();
+                    System.out.println("Preprocessed: " + size);
+                }
+
+                @Override
+                void onSubmitted(RecognizeResponse response) {
+                    waitingForResult();
+                    lastState = response.getState();
+                }
+
+                @Override
+                void onState(String state) {
+                    if (state != null && !state.equals(lastState)) {
+                        System.out.println("State: " + state);
+                        lastState = state;
+                    }
+                }
+
+                @Override
+                void onResult(StateResponse response, boolean cached) {
+                    if (cached) {
+                        System.out.println("Found a cached result for identical image content.");
+                    }
+                    System.out.println();
+                    ResultPrinter.printFinalState(response);
+                }
+
+                private void waitingForResult() {
+                    if (!waiting) {
+                        System.out.println("Waiting for recognition to complete...");
+                        waiting = true;
+                    }
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error during recognition: " + e.getMessage());
+        }
+        return true;
+    }
+
+    private HttpURLConnection submit(String imagePath, boolean wait, int maxWaitTime) throws IOException {
+        HttpURLConnection connection = open("/recognize", "POST",
+            wait ? maxWaitTime * 1000 + READ_GRACE_MILLIS : READ_GRACE_MILLIS);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        var request = objectMapper.createObjectNode()
+            .put("image", Path.of(imagePath).toAbsolutePath().toString())
+            .put("wait", wait);
+        if (wait) {
+            request.put("timeout", maxWaitTime);
+        }
+        // Connects, so a daemon that went away is detected before the request is sent
+        connection.connect();
+        try (OutputStream out = connection.getOutputStream()) {
+            objectMapper.writeValue(out, request);
+        }
+        return connection;
+    }
+
+    private HttpURLConnection open(String path, String method, int readTimeoutMillis) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + endpoint.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestProperty("Authorization", "Bearer " + endpoint.getToken());
+        if (verbose) {
+            System.out.println(">>> " + method + " " + url);
+        }
+        return connection;
+    }
+
+    private static InputStream responseStream(HttpURLConnection connection) throws IOException {
+        InputStream error = connection.getResponseCode() >= 400 ? connection.getErrorStream() : null;
+        return error != null ? error : connection.getInputStream();
+    }
+
+    private void readEvents(HttpURLConnection connection, EventPrinter printer) throws IOException {
+        if (connection.getResponseCode() != 200) {
+            try (InputStream in = responseStream(connection)) {
+                reportFailure(new String(in.readAllBytes(), StandardCharsets.UTF_8), "Daemon error: ");
+            }
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (verbose) {
+                    System.out.println("<<< " + line);
+                }
+                JsonNode event = objectMapper.readTree(line);
+                switch (event.path("type").asText()) {
+                    case "preprocessed" -> printer.onPreprocessed(event.path("size").asText());
+                    case "submitted" -> printer.onSubmitted(
+                        objectMapper.treeToValue(event.get("response"), RecognizeResponse.class));
+                    case "state" -> printer.onState(event.path("state").asText(null));
+                    case "result" -> printer.onResult(
+                        objectMapper.treeToValue(event.get("response"), StateResponse.class),
+                        event.path("cached").asBoolean());
+                    case "error" -> throw new IOException(event.path("message").asText());
+                    default -> {
+                        // Added by a newer daemon
+                    }
+                }
+            }
+        }
+    }
+
+    private void reportFailure(String body, String prefix) {
+        String message;
+        try {
+            message = objectMapper.readValue(body, StateResponse.class).getError();
+        } catch (IOException e) {
+            message = body;
+        }
+        System.err.println(prefix + message);
+    }
+
+    private boolean unreachable(ConnectException e) {
+        if (verbose) {
+            System.out.println("Daemon on port " + endpoint.getPort() + " not reachable (" + e.getMessage()
+                + "), running directly");
+        }
+        return false;
+    }
+
+    /**
+     * Callbacks for the events of a forwarded recognize request.
+     */
+    private abstract static class EventPrinter {
+        void onPreprocessed(String size) {
+            System.out.println("Preprocessed: " + size);
+        }
+
+        void onSubmitted(RecognizeResponse response) {
+        }
+
+        void onState(String state) {
+        }
+
+        void onResult(StateResponse response, boolean cached) {
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package io.vrecon.demo.commands;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.vrecon.demo.client.ImagePreprocessor;
+import io.vrecon.demo.client.PollingStrategy;
+import io.vrecon.demo.client.PreparedImage;
+import io.vrecon.demo.client.ResultCache;
+import io.vrecon.demo.client.VReconApiClient;
+import io.vrecon.demo.metrics.MetricsRegistry;
+import io.vrecon.demo.model.RecognizeResponse;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loopback HTTP front of a long-running client, so that short commands reuse its warm JVM,
+ * connection pool and TLS sessions instead of paying for them on every call.
+ *
+ * <ul>
+ *   <li>{@code POST /recognize} with {@code {"image": "/abs/path", "wait": true, "timeout": 60}}
+ *       streams newline-delimited JSON events: {@code preprocessed}, {@code submitted}, a
+ *       {@code state} per observed state and the final {@code result}, or an {@code error}.</li>
+ *   <li>{@code GET /state?uuid=...[&raw=true]} returns the state, or the API response as is.</li>
+ *   <li>{@code GET /health} answers once the daemon is ready.</li>
+ * </ul>
+ *
+ * Every request must carry the token of the endpoint file as {@code Authorization: Bearer}.
+ * Images are read from the daemon's file system by absolute path, so callers must be on the
+ * same host. Requests are handled on their own thread from start to end; responses written
+ * from another thread are only flushed when the JDK server's dispatcher next wakes up.
+ */
+final class DaemonServer implements AutoCloseable {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String JSON = "application/json";
+
+    private final VReconApiClient client;
+    private final ImagePreprocessor preprocessor;
+    private final ResultCache resultCache;
+    private final PollingStrategy pollingStrategy;
+    private final long maxWaitTime;
+    private final byte[] token;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder recognizeRequests = new LongAdder();
+    private final LongAdder stateRequests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Start serving on the loopback interface.
+     *
+     * @param client          Client all requests go through
+     * @param preprocessor    Preprocessor applied to every image, or null
+     * @param resultCache     Cache consulted by waiting recognitions, or null
+     * @param pollingStrategy Strategy shared by all waiting recognitions
+     * @param maxWaitTime     Wait limit in milliseconds of requests that do not set one
+     * @param token           Token every request must present
+     * @param port            Port to listen on, 0 for any free port
+     * @param threads         Requests handled at the same time; a waiting recognition holds one
+     * @throws IOException if the port cannot be bound
+     */
+    DaemonServer(VReconApiClient client, ImagePreprocessor preprocessor, ResultCache resultCache,
+                 PollingStrategy pollingStrategy, long maxWaitTime, String token, int port, int threads)
+            throws IOException {
+        this.client = client;
+        this.preprocessor = preprocessor;
+        this.resultCache = resultCache;
+        this.pollingStrategy = pollingStrategy;
+        this.maxWaitTime = maxWaitTime;
+        this.token = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // Small event lines would otherwise wait for delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "vrecon-serve-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 64);
+        server.createContext("/recognize", exchange -> handle(exchange, "POST", this::recognize));
+        server.createContext("/state", exchange -> handle(exchange, "GET", this::state));
+        server.createContext("/health", exchange -> handle(exchange, "GET",
+            health -> send(health, 200, "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8))));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Expose request counts as metrics.
+     */
+    void registerMetrics(MetricsRegistry registry) {
+        String help = "Requests forwarded to the daemon by endpoint";
+        registry.counter("vrecon_serve_requests_total", help, recognizeRequests::sum, "endpoint", "recognize");
+        registry.counter("vrecon_serve_requests_total", help, stateRequests::sum, "endpoint", "state");
+        registry.counter("vrecon_serve_rejected_total", "Daemon requests rejected for a missing or wrong token",
+            rejected::sum);
+        registry.gauge("vrecon_serve_active", "Daemon requests being handled", active::get);
+    }
+
+    /**
+     * @return The port the server listens on
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        active.incrementAndGet();
+        try (exchange) {
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null
+                    || !MessageDigest.isEqual(token, authorization.getBytes(StandardCharsets.UTF_8))) {
+                rejected.increment();
+                send(exchange, 401, error("Missing or wrong daemon token"));
+                return;
+            }
+            if (!method.equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("Method not allowed"));
+                return;
+            }
+            handler.handle(exchange);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private void recognize(HttpExchange exchange) throws IOException {
+        recognizeRequests.increment();
+        JsonNode request;
+        try (InputStream in = exchange.getRequestBody()) {
+            request = objectMapper.readTree(in);
+        } catch (IOException e) {
+            send(exchange, 400, error("Invalid request: " + e.getMessage()));
+            return;
+        }
+        Path image = Path.of(request.path("image").asText(""));
+        if (!image.isAbsolute() || !Files.isRegularFile(image)) {
+            send(exchange, 400, error("Image must be an absolute path to a file: " + image));
+            return;
+        }
+        boolean wait = request.path("wait").asBoolean(false);
+        long timeout = request.has("timeout") ? request.get("timeout").asLong() * 1000 : maxWaitTime;
+
+        exchange.getResponseHeaders().set("Content-Type", NDJSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            Events events = new Events(out);
+            try {
+                String cacheKey = wait && resultCache != null ? resultCache.key(image) : null;
+                StateResponse cached = cacheKey != null ? resultCache.get(cacheKey) : null;
+                if (cached != null) {
+                    events.send(events.event("result").put("cached", true).set("response",
+                        objectMapper.valueToTree(cached)));
+                    return;
+                }
+                PreparedImage prepared = preprocessor != null
+                    ? preprocessor.prepare(image) : PreparedImage.original(image);
+                if (preprocessor != null) {
+                    events.send(events.event("preprocessed").put("size", VReconCommands.describeSize(prepared)));
+                }
+                RecognizeResponse submitted = client.recognize(prepared);
+                events.send(events.event("submitted").set("response", objectMapper.valueToTree(submitted)));
+                if (!wait) {
+                    return;
+                }
+                StateResponse response;
+                if (submitted.isSuccess()) {
+                    response = client.waitForResult(submitted.getRequestUuid(),
+                        new ReportingStrategy(pollingStrategy, events), timeout);
+                } else {
+                    response = new StateResponse();
+                    response.setSuccess(false);
+                    response.setError(submitted.getError());
+                }
+                if (cacheKey != null) {
+                    resultCache.put(cacheKey, response);
+                }
+                events.send(events.event("result").put("cached", false).set("response",
+                    objectMapper.valueToTree(response)));
+            } catch (IOException e) {
+                events.sendQuietly(events.event("error").put("message", String.valueOf(e.getMessage())));
+            } catch (InterruptedException e) {
+                events.sendQuietly(events.event("error").put("message", "Daemon is shutting down"));
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void state(HttpExchange exchange) throws IOException {
+        stateRequests.increment();
+        String uuid = null;
+        boolean raw = false;
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals >= 0 ? parameter.substring(0, equals) : parameter;
+                String value = equals >= 0
+                    ? URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8) : "";
+                if ("uuid".equals(name)) {
+                    uuid = value;
+                } else if ("raw".equals(name)) {
+                    raw = Boolean.parseBoolean(value);
+                }
+            }
+        }
+        if (uuid == null || uuid.isBlank()) {
+            send(exchange, 400, error("Missing uuid"));
+            return;
+        }
+        try {
+            byte[] body = raw ? client.getStateAsJson(uuid).getBytes(StandardCharsets.UTF_8)
+                : objectMapper.writeValueAsBytes(client.getState(uuid));
+            send(exchange, 200, body);
+        } catch (IOException e) {
+            send(exchange, 502, error(String.valueOf(e.getMessage())));
+        }
+    }
+
+    private byte[] error(String message) throws IOException {
+        StateResponse response = new StateResponse();
+        response.setSuccess(false);
+        response.setError(message);
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Stop accepting requests and give those in flight up to the grace time to finish.
+     */
+    void close(long graceMillis) {
+        server.stop((int) Math.max(0, TimeUnit.MILLISECONDS.toSeconds(graceMillis)));
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void close() {
+        close(0);
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Newline-delimited JSON events of one recognize request, flushed one by one.
+     */
+    private final class Events {
+        private final OutputStream out;
+        private boolean broken;
+
+        private Events(OutputStream out) {
+            this.out = out;
+        }
+
+        private ObjectNode event(String type) {
+            return objectMapper.createObjectNode().put("type", type);
+        }
+
+        private void send(ObjectNode event) throws IOException {
+            out.write(objectMapper.writeValueAsBytes(event));
+            out.write('\n');
+            out.flush();
+        }
+
+        /**
+         * Send if the caller is still listening; used where an exception cannot be thrown.
+         */
+        private void sendQuietly(ObjectNode event) {
+            if (broken) {
+                return;
+            }
+            try {
+                send(event);
+            } catch (IOException e) {
+                // The caller went away; the recognition still runs to its end
+                broken = true;
+            }
+        }
+    }
+
+    /**
+     * Reports every new state of one job, using the poll loop's own callback so that events
+     * are written on the request thread.
+     */
+    private static final class ReportingStrategy implements PollingStrategy {
+        private final PollingStrategy delegate;
+        private final Events events;
+
+        private ReportingStrategy(PollingStrategy delegate, Events events) {
+            this.delegate = delegate;
+            this.events = events;
+        }
+
+        @Override
+        public long firstDelay() {
+            return delegate.firstDelay();
+        }
+
+        @Override
+        public long nextDelay(String state, int pollsInState) {
+            if (pollsInState == 1) {
+                events.sendQuietly(events.event("state").put("state", state));
+            }
+            return delegate.nextDelay(state, pollsInState);
+        }
+
+        @Override
+        public void onCompleted(long elapsedMillis) {
+            delegate.onCompleted(elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
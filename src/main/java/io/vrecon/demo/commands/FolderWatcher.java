@@ -0,0 +1,273 @@
+package io.vrecon.demo.commands;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Endless source of the files dropped into a spool directory, for a batch that runs until
+ * it is closed.
+ *
+ * A file is handed out once its size and modification time have not changed for the settle
+ * time, so a file still being copied is not uploaded half-written. Its attributes are read
+ * when it is first seen and again once no event touched it for the settle time. Writers
+ * that can should still write to a hidden or temporary name and rename when done.
+ *
+ * Ready files wait in a bounded queue; while it is full, new files stay on disk and only
+ * their names are tracked, and beyond that limit the directory is listed again once the
+ * backlog drains. A burst therefore costs memory per tracked name, not per file.
+ */
+final class FolderWatcher implements Iterable<Path>, AutoCloseable {
+
+    private static final long TICK_MILLIS = 50;
+    private static final int MAX_PENDING = 10_000;
+
+    private final Path directory;
+    private final Predicate<Path> filter;
+    private final long settleNanos;
+    private final WatchService watchService;
+    private final BlockingQueue<Path> ready;
+    private final Map<Path, Candidate> pending = new LinkedHashMap<>();
+    private final Set<Path> claimed = ConcurrentHashMap.newKeySet();
+    private final LongAdder detected = new LongAdder();
+    private final LongAdder rescans = new LongAdder();
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private boolean rescan = true;
+
+    /**
+     * @param directory     Spool directory; subdirectories are not watched
+     * @param filter        Files to pick up
+     * @param settleMillis  Time a file must stay unchanged before it is handed out
+     * @param queueCapacity Maximum number of ready files waiting to be taken
+     * @throws IOException if the directory cannot be watched
+     */
+    FolderWatcher(Path directory, Predicate<Path> filter, long settleMillis, int queueCapacity) throws IOException {
+        this.directory = directory;
+        this.filter = filter;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.ready = new ArrayBlockingQueue<>(queueCapacity);
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        this.thread = new Thread(this::watch, "vrecon-watch");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Blocks for the next ready file. Iteration ends when the watcher is closed; files still
+     * queued then stay in the directory for the next run. Only one iterator may be used.
+     */
+    @Override
+    public Iterator<Path> iterator() {
+        return new Iterator<>() {
+            private Path next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && !closed) {
+                    try {
+                        next = ready.poll(TICK_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Path file = next;
+                next = null;
+                return file;
+            }
+        };
+    }
+
+    /**
+     * Forget a handed out file once it was moved away, so that a new file with the same name
+     * is picked up again. A file that is never released is not handed out twice.
+     */
+    void release(Path file) {
+        claimed.remove(file);
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.poll(TICK_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            rescan = true;
+                        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            pending.remove(directory.resolve((Path) event.context()));
+                        } else {
+                            Path file = directory.resolve((Path) event.context());
+                            Candidate candidate = pending.get(file);
+                            if (candidate != null) {
+                                // Still being written; check again once it has been quiet
+                                candidate.stableSince = System.nanoTime();
+                            } else {
+                                track(file);
+                            }
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException("Watched directory is no longer accessible: " + directory);
+                    }
+                }
+                if (rescan && pending.size() < MAX_PENDING / 2) {
+                    rescan = false;
+                    rescans.increment();
+                    scan();
+                }
+                settle();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        } catch (IOException e) {
+            failure = e;
+            closed = true;
+        }
+    }
+
+    private void scan() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext() && !rescan) {
+                track(iterator.next());
+            }
+        }
+    }
+
+    private void track(Path file) {
+        if (pending.containsKey(file) || claimed.contains(file)
+                || file.getFileName().toString().startsWith(".") || !filter.test(file)) {
+            return;
+        }
+        if (pending.size() >= MAX_PENDING) {
+            // Stop tracking names; the directory is listed again once the backlog drains
+            rescan = true;
+            return;
+        }
+        pending.put(file, new Candidate(System.nanoTime() - settleNanos));
+        detected.increment();
+    }
+
+    private void settle() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Candidate>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Path, Candidate> entry = entries.next();
+            Candidate candidate = entry.getValue();
+            if (now - candidate.stableSince < settleNanos) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(entry.getKey(), BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                entries.remove();
+                continue;
+            } catch (IOException e) {
+                continue;
+            }
+            if (!attributes.isRegularFile()) {
+                entries.remove();
+                continue;
+            }
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (size != candidate.size || modified != candidate.modified) {
+                candidate.size = size;
+                candidate.modified = modified;
+                candidate.stableSince = now;
+            } else if (size > 0) {
+                claimed.add(entry.getKey());
+                if (!ready.offer(entry.getKey())) {
+                    claimed.remove(entry.getKey());
+                    return;
+                }
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Files picked up since the watcher started
+     */
+    long getDetected() {
+        return detected.sum();
+    }
+
+    /**
+     * @return Times the directory was listed because events were lost or too many files were waiting
+     */
+    long getRescans() {
+        return rescans.sum();
+    }
+
+    /**
+     * @return Ready files waiting to be taken
+     */
+    int getQueued() {
+        return ready.size();
+    }
+
+    /**
+     * @return Error that stopped watching, or null
+     */
+    IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Stop watching and end iteration.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    private static final class Candidate {
+        private long size = -1;
+        private long modified;
+        private long stableSince;
+
+        private Candidate(long stableSince) {
+            this.stableSince = stableSince;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.vrecon.demo.commands;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resolves the images of a batch from a directory, a glob pattern or a manifest file.
+ */
+final class ImageSources {
+
+    private ImageSources() {}
+
+    /**
+     * Resolve an input specification into a sorted list of image files.
+     *
+     * <ul>
+     *   <li>a directory: every jpg, jpeg, png and webp file directly inside it</li>
+     *   <li>a glob such as {@code /data/cam1/**&#47;*.jpg}: every regular file matching it</li>
+     *   <li>any other file: a manifest with one image path per line; blank lines and lines
+     *       starting with {@code #} are ignored, relative paths are resolved against the
+     *       manifest's directory</li>
+     * </ul>
+     *
+     * @param input Directory, glob pattern or manifest path
+     * @return Image files in a stable order
+     * @throws IOException if the input cannot be read
+     */
+    static List<Path> resolve(String input) throws IOException {
+        if (isGlob(input)) {
+            return resolveGlob(input);
+        }
+        Path path = Path.of(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                return files.filter(Files::isRegularFile)
+                    .filter(ImageSources::isImage)
+                    .sorted()
+                    .collect(Collectors.toList());
+            }
+        }
+        if (Files.isRegularFile(path)) {
+            return readManifest(path);
+        }
+        throw new IOException("Input not found: " + input);
+    }
+
+    private static List<Path> resolveGlob(String pattern) throws IOException {
+        Path base = globBase(pattern);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                .filter(file -> matcher.matches(file.normalize()))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static List<Path> readManifest(Path manifest) throws IOException {
+        Path dir = manifest.toAbsolutePath().getParent();
+        List<Path> images = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            images.add(dir.resolve(trimmed));
+        }
+        return images;
+    }
+
+    /**
+     * Longest leading part of the pattern without glob syntax, used as the walk root.
+     */
+    private static Path globBase(String pattern) {
+        String normalized = pattern.replace('\\', '/');
+        int firstMeta = firstGlobChar(normalized);
+        int slash = normalized.lastIndexOf('/', firstMeta);
+        if (slash < 0) {
+            return Path.of(".");
+        }
+        return Path.of(slash == 0 ? "/" : normalized.substring(0, slash));
+    }
+
+    private static boolean isGlob(String input) {
+        return firstGlobChar(input) < input.length();
+    }
+
+    private static int firstGlobChar(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return input.length();
+    }
+
+    static boolean isImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png") || name.endsWith(".webp");
+    }
+}
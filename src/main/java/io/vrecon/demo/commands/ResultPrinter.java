@@ -0,0 +1,111 @@
+package io.vrecon.demo.commands;
+
+import io.vrecon.demo.model.RecognizeResponse;
+import io.vrecon.demo.model.StateResponse;
+
+/**
+ * Console output of the recognize, state and recognize-wait commands, shared by the commands
+ * that call the API themselves and those forwarded to a running daemon.
+ *
+ * Only depends on the model classes, so that a forwarded command does not load the HTTP
+ * client.
+ */
+final class ResultPrinter {
+
+    private ResultPrinter() {
+    }
+
+    static void printSubmitted(RecognizeResponse response) {
+        if (response.isSuccess()) {
+            System.out.println("Recognition request submitted successfully!");
+            System.out.println("Request UUID: " + response.getRequestUuid());
+            System.out.println("Initial State: " + response.getState());
+            System.out.println();
+            System.out.println("Use the 'state' command to check the recognition status:");
+            System.out.println("  java -jar vrecon-demo-client.jar state --uuid " + response.getRequestUuid());
+        } else {
+            System.err.println("Recognition request failed!");
+            System.err.println("Error: " + response.getError());
+        }
+    }
+
+    static void printState(StateResponse response) {
+        if (response.isSuccess()) {
+            System.out.println("Request UUID: " + response.getRequestUuid());
+            System.out.println("State: " + response.getState());
+            System.out.println("Created At: " + response.getCreatedAt());
+            System.out.println("Updated At: " + response.getUpdatedAt());
+
+            String state = response.getState();
+            if (("DONE".equals(state) || "DELIVERED".equals(state)) && response.getResult() != null) {
+                System.out.println();
+                System.out.println("Recognition Result:");
+                System.out.println("-------------------");
+                printResult(response);
+            } else if ("FAILED".equals(state)) {
+                System.out.println();
+                System.err.println("Recognition failed: " + response.getError());
+            } else if ("PENDING".equals(state) || "PROCESSING".equals(state)) {
+                System.out.println();
+                System.out.println("Recognition is still in progress. Please check again later.");
+            }
+        } else {
+            System.err.println("Failed to get recognition state!");
+            System.err.println("Error: " + response.getError());
+        }
+    }
+
+    static void printFinalState(StateResponse response) {
+        if (response.isSuccess()) {
+            System.out.println("Request UUID: " + response.getRequestUuid());
+            System.out.println("Final State: " + response.getState());
+            System.out.println("Created At: " + response.getCreatedAt());
+            System.out.println("Updated At: " + response.getUpdatedAt());
+
+            String finalState = response.getState();
+            if (("DONE".equals(finalState) || "DELIVERED".equals(finalState)) && response.getResult() != null) {
+                System.out.println();
+                System.out.println("Recognition Result:");
+                System.out.println("-------------------");
+                printResult(response);
+            } else if ("FAILED".equals(finalState)) {
+                System.err.println("Recognition failed: " + response.getError());
+            }
+        } else {
+            System.err.println("Recognition request failed!");
+            System.err.println("Error: " + response.getError());
+        }
+    }
+
+    private static void printResult(StateResponse response) {
+        var result = response.getResult();
+        System.out.println("Vehicle Found: " + result.isVehicleFound());
+
+        if (result.isVehicleFound()) {
+            System.out.println("Make: " + result.getMake());
+            System.out.println("Model: " + result.getModel());
+            System.out.println("Generation: " + result.getGeneration());
+            System.out.println("Color: " + result.getColor());
+            System.out.println("Side: " + result.getSide());
+            System.out.println("Angle: " + result.getAngle());
+            System.out.println("Recognition Probability: " +
+                (result.getRecognitionProbability() != null ?
+                    String.format("%.2f%%", result.getRecognitionProbability() * 100) : "N/A"));
+
+            if (result.getRectArea() != null) {
+                System.out.println("Bounding Box: " + result.getRectArea());
+            }
+
+            System.out.println("Damage Detected: " + result.isDamageDetected());
+            if (result.isDamageDetected() && result.getDamageArea() != null) {
+                System.out.println("Damage Areas: " + result.getDamageArea());
+            }
+
+            System.out.println("Multiple Vehicles: " + result.isMultipleVehiclesInImage());
+
+            if (result.getDetectionNotes() != null) {
+                System.out.println("Notes: " + result.getDetectionNotes());
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.vrecon.demo.commands;
+
+import io.vrecon.demo.client.PollingStrategy;
+
+/**
+ * Options of the serve command.
+ */
+public class ServeOptions {
+
+    private int port;
+    private int threads;
+    private String endpointFile;
+    private PollingStrategy pollingStrategy;
+    private int maxWaitTime;
+
+    /**
+     * @return Loopback port to listen on, 0 for any free port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @return Number of requests handled at the same time
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return File the endpoint is written to for forwarding commands, or null for the default location
+     */
+    public String getEndpointFile() {
+        return endpointFile;
+    }
+
+    public void setEndpointFile(String endpointFile) {
+        this.endpointFile = endpointFile;
+    }
+
+    public PollingStrategy getPollingStrategy() {
+        return pollingStrategy;
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        this.pollingStrategy = pollingStrategy;
+    }
+
+    /**
+     * @return Maximum time to wait per image in seconds, unless a request sets its own
+     */
+    public int getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public void setMaxWaitTime(int maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+}
@@ -0,0 +1,67 @@
+package io.vrecon.demo.commands;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Moves the images of the watch command out of the spool directory once they are done,
+ * with their result next to them.
+ *
+ * Recognized images go to a folder per day below the archive directory, images that failed
+ * or could not be recognized to the failed directory, from where they can be moved back to
+ * retry. The result is written as {@code <image name>.json}; a name taken by an earlier
+ * image gets a numeric suffix instead of being overwritten.
+ */
+final class SpoolArchiver {
+
+    private final Path archiveDirectory;
+    private final Path failedDirectory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    SpoolArchiver(Path archiveDirectory, Path failedDirectory) {
+        this.archiveDirectory = archiveDirectory;
+        this.failedDirectory = failedDirectory;
+    }
+
+    /**
+     * @param response Final state of the image
+     * @return New location of the image
+     */
+    Path archive(Path image, StateResponse response) throws IOException {
+        return move(image, archiveDirectory.resolve(LocalDate.now().toString()), response);
+    }
+
+    /**
+     * @param response Final state of the image, or null if no state was received
+     * @return New location of the image
+     */
+    Path fail(Path image, StateResponse response) throws IOException {
+        return move(image, failedDirectory, response);
+    }
+
+    private Path move(Path image, Path directory, StateResponse response) throws IOException {
+        Files.createDirectories(directory);
+        Path target = freeName(directory, image.getFileName().toString());
+        Files.move(image, target);
+        if (response != null) {
+            objectMapper.writeValue(target.resolveSibling(target.getFileName() + ".json").toFile(), response);
+        }
+        return target;
+    }
+
+    private static Path freeName(Path directory, String name) {
+        Path target = directory.resolve(name);
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; Files.exists(target); i++) {
+            target = directory.resolve(base + "-" + i + extension);
+        }
+        return target;
+    }
+}
@@ -1,20 +1,215 @@
 package io.vrecon.demo.commands;
 
+import io.vrecon.demo.client.ApiEndpoint;
+import io.vrecon.demo.client.BatchRecognizer;
+import io.vrecon.demo.client.BatchSummary;
+import io.vrecon.demo.client.ByteBudget;
+import io.vrecon.demo.client.ConnectionSettings;
+import io.vrecon.demo.client.EndpointPool;
+import io.vrecon.demo.client.ImagePreprocessor;
+import io.vrecon.demo.client.JobJournal;
+import io.vrecon.demo.client.JobTimings;
+import io.vrecon.demo.client.LimiterSettings;
+import io.vrecon.demo.client.LoadGenerator;
+import io.vrecon.demo.client.LoadReport;
+import io.vrecon.demo.client.PollScheduler;
+import io.vrecon.demo.client.PollingStrategy;
+import io.vrecon.demo.client.PreparedImage;
+import io.vrecon.demo.client.ResultCache;
+import io.vrecon.demo.client.ResultSink;
+import io.vrecon.demo.client.Tracer;
 import io.vrecon.demo.client.VReconApiClient;
-import io.vrecon.demo.model.RecognizeResponse;
+import io.vrecon.demo.client.VReconAsyncApiClient;
+import io.vrecon.demo.metrics.MetricsHttpServer;
+import io.vrecon.demo.metrics.MetricsRegistry;
+import io.vrecon.demo.metrics.MetricsTextfileWriter;
+import io.vrecon.demo.model.RecognitionResult;
+import io.vrecon.demo.model.RecognitionStates;
 import io.vrecon.demo.model.StateResponse;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
 
+import javax.management.JMException;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Command handlers for VRecon CLI operations.
  */
 public class VReconCommands {
 
+    private static final long POLL_TICK_MILLIS = 50;
+    private static final long JOURNAL_SYNC_MILLIS = 100;
+    private static final long METRICS_FILE_INTERVAL_MILLIS = 10_000;
+    private static final long SHUTDOWN_GRACE_MILLIS = 10_000;
+    private static final long RESULT_WRITE_TIMEOUT_MILLIS = 30_000;
+
+    private final EndpointPool pool;
+    private final String baseUrl;
+    private final String apiKey;
+    private final boolean verbose;
+    private final ConnectionSettings connectionSettings;
     private final VReconApiClient client;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final JobTimings jobTimings = new JobTimings();
+    private ResultCache resultCache;
+    private ResultSink resultSink;
+    private ImagePreprocessor imagePreprocessor;
+    private ByteBudget byteBudget;
+    private Tracer tracer;
+    private MetricsHttpServer metricsServer;
+    private MetricsTextfileWriter metricsFile;
 
     public VReconCommands(String baseUrl, String apiKey, boolean verbose) {
-        this.client = new VReconApiClient(baseUrl, apiKey, verbose);
+        this(baseUrl, apiKey, verbose, new ConnectionSettings());
+    }
+
+    public VReconCommands(String baseUrl, String apiKey, boolean verbose, ConnectionSettings connectionSettings) {
+        this(new EndpointPool(List.of(new ApiEndpoint(baseUrl, apiKey)), EndpointPool.Balancing.LEAST_OUTSTANDING,
+            connectionSettings), verbose, connectionSettings);
+    }
+
+    /**
+     * @param pool               Endpoints and keys shared by the sync client and the async clients of the commands;
+     *                           the first one names the daemon started by serve
+     * @param verbose            Log requests and responses to standard output
+     * @param connectionSettings Connection pool, timeout, retry and circuit breaker settings
+     */
+    public VReconCommands(EndpointPool pool, boolean verbose, ConnectionSettings connectionSettings) {
+        ApiEndpoint first = pool.getEndpoints().get(0);
+        this.pool = pool;
+        this.baseUrl = first.getBaseUrl();
+        this.apiKey = first.getApiKey();
+        this.verbose = verbose;
+        this.connectionSettings = connectionSettings;
+        this.client = new VReconApiClient(pool, verbose, connectionSettings);
+        this.client.setMetrics(metrics);
+        this.pool.registerMetrics(metrics);
+        this.jobTimings.registerMetrics(metrics);
+        this.client.setJobTimings(jobTimings);
+    }
+
+    /**
+     * Use a result cache for recognize-wait and recognize-batch.
+     *
+     * @param resultCache Cache checked before uploading an image, or null to disable caching
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+        if (resultCache != null) {
+            String help = "Result cache lookups by result";
+            metrics.counter("vrecon_cache_requests_total", help, resultCache::getHits, "result", "hit");
+            metrics.counter("vrecon_cache_requests_total", help, resultCache::getMisses, "result", "miss");
+            metrics.counter("vrecon_cache_evictions_total", "Entries evicted from the result cache",
+                resultCache::getEvictions);
+            metrics.gauge("vrecon_cache_hit_ratio", "Share of result cache lookups that were hits", () -> {
+                long hits = resultCache.getHits();
+                long lookups = hits + resultCache.getMisses();
+                return lookups == 0 ? 0 : (double) hits / lookups;
+            });
+            metrics.gauge("vrecon_cache_bytes", "Total size of the cached results", resultCache::getTotalBytes);
+        }
+    }
+
+    /**
+     * Write the results of recognize-wait, recognize-batch and watch to a machine-readable
+     * file. Batch and watch then no longer print a line per image. The sink is closed with
+     * these commands.
+     *
+     * @param resultSink Sink of final results, or null to only print them
+     */
+    public void setResultSink(ResultSink resultSink) {
+        this.resultSink = resultSink;
+        if (resultSink != null) {
+            resultSink.registerMetrics(metrics);
+        }
+    }
+
+    /**
+     * Admit all API requests of the sync and async clients through one limiter per API key,
+     * shared by the clients. Call at most once, before running a command.
+     *
+     * @param settings Rate limit and adaptive concurrency settings, used for every key without
+     *                 a rate of its own
+     */
+    public void setLimiter(LimiterSettings settings) {
+        pool.setLimiterSettings(settings);
+        pool.registerLimiterMetrics(metrics);
+    }
+
+    /**
+     * Expose the metrics of this process while the commands run.
+     *
+     * @param port     Port of a Prometheus scrape endpoint at /metrics, or 0 for none
+     * @param textfile File rewritten every 10 seconds and on close in Prometheus text format, or null for none
+     * @param jmx      Register the metrics as an MBean with the platform MBean server
+     * @throws IOException if the endpoint cannot be started
+     */
+    public void exportMetrics(int port, String textfile, boolean jmx) throws IOException {
+        if (port > 0) {
+            metricsServer = new MetricsHttpServer(metrics, port);
+        }
+        if (textfile != null) {
+            metricsFile = new MetricsTextfileWriter(metrics, Path.of(textfile), METRICS_FILE_INTERVAL_MILLIS);
+        }
+        if (jmx) {
+            try {
+                metrics.registerMBean("vrecon-" + ProcessHandle.current().pid());
+            } catch (JMException e) {
+                throw new IOException("Cannot register metrics MBean: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Downscale and re-encode images before they are uploaded.
+     *
+     * @param imagePreprocessor Preprocessor to use, or null to upload the original files
+     */
+    public void setImagePreprocessor(ImagePreprocessor imagePreprocessor) {
+        this.imagePreprocessor = imagePreprocessor;
+        if (imagePreprocessor != null) {
+            imagePreprocessor.setByteBudget(byteBudget);
+        }
+    }
+
+    /**
+     * Bound the heap held by images being preprocessed and uploaded. Call at most once,
+     * before running a command.
+     *
+     * @param maxBytes Bytes that images in flight may hold together
+     */
+    public void setByteBudget(long maxBytes) {
+        byteBudget = new ByteBudget(maxBytes);
+        byteBudget.registerMetrics(metrics);
+        client.setByteBudget(byteBudget);
+        if (imagePreprocessor != null) {
+            imagePreprocessor.setByteBudget(byteBudget);
+        }
+    }
+
+    /**
+     * Trace the phases of recognize, state, recognize-wait and serve requests. The tracer is
+     * closed with these commands.
+     *
+     * @param tracer Tracer with the exporter to write spans to
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+        tracer.registerMetrics(metrics);
+        client.setTracer(tracer);
     }
 
     /**
@@ -27,19 +222,7 @@ public class VReconCommands {
         System.out.println();
 
         try {
-            RecognizeResponse response = client.recognize(imagePath);
-
-            if (response.isSuccess()) {
-                System.out.println("Recognition request submitted successfully!");
-                System.out.println("Request UUID: " + response.getRequestUuid());
-                System.out.println("Initial State: " + response.getState());
-                System.out.println();
-                System.out.println("Use the 'state' command to check the recognition status:");
-                System.out.println("  java -jar vrecon-demo-client.jar state --uuid " + response.getRequestUuid());
-            } else {
-                System.err.println("Recognition request failed!");
-                System.err.println("Error: " + response.getError());
-            }
+            ResultPrinter.printSubmitted(client.recognize(prepareImage(imagePath)));
         } catch (IOException e) {
             System.err.println("Error submitting recognition request: " + e.getMessage());
         }
@@ -58,38 +241,12 @@ public class VReconCommands {
         }
 
         try {
-            String jsonResponse = client.getStateAsJson(requestUuid);
-
             if (outputJson) {
-                System.out.println(jsonResponse);
+                System.out.println(client.getStateAsJson(requestUuid));
                 return;
             }
 
-            StateResponse response = client.parseStateResponse(jsonResponse);
-
-            if (response.isSuccess()) {
-                System.out.println("Request UUID: " + response.getRequestUuid());
-                System.out.println("State: " + response.getState());
-                System.out.println("Created At: " + response.getCreatedAt());
-                System.out.println("Updated At: " + response.getUpdatedAt());
-
-                String state = response.getState();
-                if (("DONE".equals(state) || "DELIVERED".equals(state)) && response.getResult() != null) {
-                    System.out.println();
-                    System.out.println("Recognition Result:");
-                    System.out.println("-------------------");
-                    printResult(response);
-                } else if ("FAILED".equals(state)) {
-                    System.out.println();
-                    System.err.println("Recognition failed: " + response.getError());
-                } else if ("PENDING".equals(state) || "PROCESSING".equals(state)) {
-                    System.out.println();
-                    System.out.println("Recognition is still in progress. Please check again later.");
-                }
-            } else {
-                System.err.println("Failed to get recognition state!");
-                System.err.println("Error: " + response.getError());
-            }
+            ResultPrinter.printState(client.getState(requestUuid));
         } catch (IOException e) {
             System.err.println("Error getting recognition state: " + e.getMessage());
         }
@@ -98,47 +255,47 @@ public class VReconCommands {
     /**
      * Execute the recognize-and-wait command - submit and poll until complete.
      *
-     * @param imagePath    Path to the image file
-     * @param pollInterval Interval between polls in seconds
-     * @param maxWaitTime  Maximum time to wait in seconds
+     * @param imagePath       Path to the image file
+     * @param pollingStrategy Strategy deciding when the state is polled
+     * @param maxWaitTime     Maximum time to wait in seconds
      */
-    public void recognizeAndWait(String imagePath, int pollInterval, int maxWaitTime) {
+    public void recognizeAndWait(String imagePath, PollingStrategy pollingStrategy, int maxWaitTime) {
         System.out.println("Submitting image for recognition: " + imagePath);
-        System.out.println("Polling interval: " + pollInterval + " seconds");
+        System.out.println("Polling: " + pollingStrategy);
         System.out.println("Max wait time: " + maxWaitTime + " seconds");
         System.out.println();
 
+        long start = System.nanoTime();
         try {
-            System.out.println("Waiting for recognition to complete...");
+            String cacheKey = resultCache != null ? resultCache.key(Path.of(imagePath)) : null;
+            StateResponse response = cacheKey != null ? resultCache.get(cacheKey) : null;
 
-            StateResponse response = client.recognizeAndWait(
-                imagePath,
-                pollInterval * 1000L,
-                maxWaitTime * 1000L
-            );
+            if (response != null) {
+                System.out.println("Found a cached result for identical image content.");
+            } else {
+                System.out.println("Waiting for recognition to complete...");
 
-            System.out.println();
+                response = client.recognizeAndWait(
+                    prepareImage(imagePath),
+                    pollingStrategy,
+                    maxWaitTime * 1000L
+                );
 
-            if (response.isSuccess()) {
-                System.out.println("Request UUID: " + response.getRequestUuid());
-                System.out.println("Final State: " + response.getState());
-                System.out.println("Created At: " + response.getCreatedAt());
-                System.out.println("Updated At: " + response.getUpdatedAt());
-
-                String finalState = response.getState();
-                if (("DONE".equals(finalState) || "DELIVERED".equals(finalState)) && response.getResult() != null) {
-                    System.out.println();
-                    System.out.println("Recognition Result:");
-                    System.out.println("-------------------");
-                    printResult(response);
-                } else if ("FAILED".equals(finalState)) {
-                    System.err.println("Recognition failed: " + response.getError());
+                if (cacheKey != null) {
+                    resultCache.put(cacheKey, response);
                 }
-            } else {
-                System.err.println("Recognition request failed!");
-                System.err.println("Error: " + response.getError());
             }
+
+            if (resultSink != null) {
+                resultSink.write(imagePath, response, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            System.out.println();
+
+            ResultPrinter.printFinalState(response);
         } catch (IOException e) {
+            if (resultSink != null) {
+                resultSink.writeError(imagePath, e.getMessage(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
             System.err.println("Error during recognition: " + e.getMessage());
         } catch (InterruptedException e) {
             System.err.println("Recognition was interrupted");
@@ -146,46 +303,707 @@ public class VReconCommands {
         }
     }
 
-    private void printResult(StateResponse response) {
-        var result = response.getResult();
-        System.out.println("Vehicle Found: " + result.isVehicleFound());
+    /**
+     * Execute the recognize-batch command - recognize many images concurrently.
+     *
+     * @param options Batch input, concurrency and polling options
+     */
+    public void recognizeBatch(BatchOptions options) {
+        List<Path> images;
+        try {
+            images = ImageSources.resolve(options.getInput());
+        } catch (IOException e) {
+            System.err.println("Error reading batch input: " + e.getMessage());
+            return;
+        }
+
+        int concurrency = options.getConcurrency();
+        long maxWaitTime = options.getMaxWaitTime() * 1000L;
+        PollingStrategy pollingStrategy = options.getPollingStrategy();
+        boolean scheduled = !options.isAsync() && options.getPollThreads() > 0;
+
+        System.out.println("Recognizing " + images.size() + " images from: " + options.getInput());
+        System.out.print("Max in flight: " + concurrency);
+        if (options.isAsync()) {
+            System.out.println(" (async)");
+        } else if (scheduled) {
+            System.out.println(" (" + options.getSubmitThreads() + " upload threads, "
+                + options.getPollThreads() + " poll threads)");
+        } else {
+            System.out.println();
+        }
+        System.out.println("Polling: " + pollingStrategy);
+
+        JobJournal journal = null;
+        if (options.getJournal() != null) {
+            try {
+                journal = new JobJournal(Path.of(options.getJournal()), JOURNAL_SYNC_MILLIS);
+            } catch (IOException e) {
+                System.err.println("Error opening journal: " + e.getMessage());
+                return;
+            }
+            System.out.println("Journal: " + options.getJournal() + " (" + journal.size() + " images recorded)");
+        }
+        System.out.println();
+
+        int total = images.size();
+        if (journal != null) {
+            for (Path image : images) {
+                JobJournal.Entry entry = journal.get(JobJournal.key(image));
+                if (entry != null && entry.isFinished()) {
+                    total--;
+                }
+            }
+        }
+        int remaining = total;
+        AtomicLong finished = new AtomicLong();
+        VReconAsyncApiClient asyncClient = null;
+        PollScheduler scheduler = null;
+        BatchRecognizer recognizer;
+        if (options.isAsync()) {
+            asyncClient = newAsyncClient();
+            recognizer = new BatchRecognizer(asyncClient, concurrency, pollingStrategy, maxWaitTime);
+        } else if (scheduled) {
+            scheduler = new PollScheduler(client, pollingStrategy, options.getPollThreads(), POLL_TICK_MILLIS);
+            recognizer = new BatchRecognizer(client, scheduler, options.getSubmitThreads(), concurrency, maxWaitTime);
+        } else {
+            recognizer = new BatchRecognizer(client, concurrency, pollingStrategy, maxWaitTime);
+        }
+        recognizer.setResultCache(resultCache);
+        recognizer.setJournal(journal);
+        recognizer.setPreprocessor(imagePreprocessor);
+        // Only the size description is kept, so the re-encoded data can be collected after upload
+        Map<Path, String> preparedSizes = new ConcurrentHashMap<>();
+        AtomicReference<IOException> sinkFailure = new AtomicReference<>();
+
+        try {
+            BatchSummary summary = recognizer.run(images, new BatchRecognizer.Listener() {
+                @Override
+                public void onResult(Path image, StateResponse response, long elapsedMillis) {
+                    String prepared = preparedSizes.remove(image);
+                    if (resultSink != null) {
+                        writeBatchResult(sinkFailure, image, response, null, elapsedMillis);
+                        return;
+                    }
+                    String prefix = "[" + finished.incrementAndGet() + "/" + remaining + "] " + image + " -> ";
+                    String timing = "(" + elapsedMillis + " ms"
+                        + (prepared != null ? ", " + prepared : "") + ")";
+                    if (!response.isSuccess()) {
+                        System.out.println(prefix + "ERROR " + response.getError() + " " + timing);
+                    } else {
+                        System.out.println(prefix + response.getState() + " " + describeResult(response) + timing);
+                    }
+                }
+
+                @Override
+                public void onPrepared(PreparedImage image) {
+                    if (resultSink == null) {
+                        preparedSizes.put(image.getSource(), describeSize(image));
+                    }
+                }
+
+                @Override
+                public void onError(Path image, Exception error, long elapsedMillis) {
+                    preparedSizes.remove(image);
+                    if (resultSink != null) {
+                        writeBatchResult(sinkFailure, image, null, error.getMessage(), elapsedMillis);
+                        return;
+                    }
+                    System.out.println("[" + finished.incrementAndGet() + "/" + remaining + "] " + image
+                        + " -> ERROR " + error.getMessage() + " (" + elapsedMillis + " ms)");
+                }
+            });
+            if (sinkFailure.get() != null) {
+                System.err.println("Stopped submitting because results could not be written"
+                    + (journal != null ? "; images without a written result stay unfinished in the journal" : ""));
+            }
+            printBatchSummary(summary);
+        } catch (InterruptedException e) {
+            System.err.println("Batch recognition was interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            if (scheduler != null) {
+                scheduler.close();
+            }
+            if (asyncClient != null) {
+                asyncClient.close();
+            }
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Error writing journal, remaining images were not submitted: "
+                        + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute the watch command - recognize the images dropped into a spool directory until
+     * the process is stopped, moving each image and its result out of the directory when done.
+     *
+     * @param options Spool directory, archive and pipeline options
+     */
+    public void watch(WatchOptions options) {
+        Path directory = Path.of(options.getDirectory());
+        Path archiveDirectory = options.getArchiveDirectory() != null
+            ? Path.of(options.getArchiveDirectory()) : directory.resolve("processed");
+        Path failedDirectory = options.getFailedDirectory() != null
+            ? Path.of(options.getFailedDirectory()) : directory.resolve("failed");
+        int concurrency = options.getConcurrency();
+        long maxWaitTime = options.getMaxWaitTime() * 1000L;
+        PollingStrategy pollingStrategy = options.getPollingStrategy();
+        boolean scheduled = !options.isAsync() && options.getPollThreads() > 0;
+
+        FolderWatcher watcher;
+        try {
+            watcher = new FolderWatcher(directory, ImageSources::isImage, options.getSettleTime(),
+                options.getQueueSize());
+        } catch (IOException e) {
+            System.err.println("Error watching directory: " + e.getMessage());
+            return;
+        }
+        System.out.println("Watching: " + directory + " (settle time " + options.getSettleTime() + " ms)");
+        System.out.println("Archive: " + archiveDirectory + ", failed: " + failedDirectory);
+        System.out.println("Max in flight: " + concurrency + (options.isAsync() ? " (async)" : "")
+            + ", queue: " + options.getQueueSize());
+        System.out.println("Polling: " + pollingStrategy);
+        System.out.println("Press Ctrl+C to stop.");
+        System.out.println();
+
+        VReconAsyncApiClient asyncClient = null;
+        PollScheduler scheduler = null;
+        BatchRecognizer recognizer;
+        if (options.isAsync()) {
+            asyncClient = newAsyncClient();
+            recognizer = new BatchRecognizer(asyncClient, concurrency, pollingStrategy, maxWaitTime);
+        } else if (scheduled) {
+            scheduler = new PollScheduler(client, pollingStrategy, options.getPollThreads(), POLL_TICK_MILLIS);
+            recognizer = new BatchRecognizer(client, scheduler, options.getSubmitThreads(), concurrency, maxWaitTime);
+        } else {
+            recognizer = new BatchRecognizer(client, concurrency, pollingStrategy, maxWaitTime);
+        }
+        recognizer.setResultCache(resultCache);
+        recognizer.setPreprocessor(imagePreprocessor);
+        metrics.counter("vrecon_watch_detected_total", "Images picked up in the spool directory",
+            watcher::getDetected);
+        metrics.gauge("vrecon_watch_queued", "Settled images waiting for a free slot", watcher::getQueued);
+
+        // Moves are blocking file operations and must not run on the I/O threads that complete
+        // jobs; when the disk falls behind, completing threads do the move themselves
+        SpoolArchiver archiver = new SpoolArchiver(archiveDirectory, failedDirectory);
+        ThreadPoolExecutor archiveThread = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(options.getQueueSize()), runnable -> {
+                Thread thread = new Thread(runnable, "vrecon-watch-archive");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicLong finished = new AtomicLong();
+        AtomicLong archived = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicReference<IOException> sinkFailure = new AtomicReference<>();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread shutdownHook = new Thread(() -> {
+            watcher.close();
+            try {
+                stopped.await(maxWaitTime + SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        try {
+            BatchSummary summary = recognizer.run(watcher, new BatchRecognizer.Listener() {
+                @Override
+                public void onResult(Path image, StateResponse response, long elapsedMillis) {
+                    archiveThread.execute(() -> {
+                        if (!writeWatchResult(watcher, sinkFailure, image, response, null, elapsedMillis)) {
+                            return;
+                        }
+                        boolean recognized = response.isSuccess() && RecognitionStates.isCompleted(response.getState());
+                        String moved = moveAway(watcher, archiver, image, response, recognized, archived, failed);
+                        if (resultSink != null) {
+                            return;
+                        }
+                        String outcome = !response.isSuccess() ? "ERROR " + response.getError() + " "
+                            : response.getState() + " " + describeResult(response);
+                        System.out.println("[" + finished.incrementAndGet() + "] " + image + " -> " + outcome
+                            + "(" + elapsedMillis + " ms)" + moved);
+                    });
+                }
+
+                @Override
+                public void onError(Path image, Exception error, long elapsedMillis) {
+                    archiveThread.execute(() -> {
+                        if (!writeWatchResult(watcher, sinkFailure, image, null, error.getMessage(), elapsedMillis)) {
+                            return;
+                        }
+                        String moved = moveAway(watcher, archiver, image, null, false, archived, failed);
+                        if (resultSink != null) {
+                            return;
+                        }
+                        System.out.println("[" + finished.incrementAndGet() + "] " + image + " -> ERROR "
+                            + error.getMessage() + " (" + elapsedMillis + " ms)" + moved);
+                    });
+                }
+            });
+            archiveThread.shutdown();
+            archiveThread.awaitTermination(SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            if (watcher.getFailure() != null) {
+                System.err.println("Stopped watching: " + watcher.getFailure().getMessage());
+            }
+            if (sinkFailure.get() != null) {
+                System.err.println("Stopped watching because results could not be written; images without a "
+                    + "written result were left in " + directory);
+            }
+            printBatchSummary(summary);
+            System.out.println("Archived: " + archived.get());
+            System.out.println("Moved to failed: " + failed.get());
+            System.out.println("Directory rescans: " + watcher.getRescans());
+        } catch (InterruptedException e) {
+            System.err.println("Watching was interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            watcher.close();
+            archiveThread.shutdownNow();
+            if (scheduler != null) {
+                scheduler.close();
+            }
+            if (asyncClient != null) {
+                asyncClient.close();
+            }
+            stopped.countDown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down; the hook is waiting for this
+            }
+        }
+    }
+
+    /**
+     * Hand the result of a batch image to the result sink, waiting while it is backed up.
+     * If the sink cannot take it, the listener throws so that the batch stops submitting and
+     * the image is not journaled as finished.
+     */
+    private void writeBatchResult(AtomicReference<IOException> failure, Path image, StateResponse response,
+                                  String error, long elapsedMillis) {
+        IOException previous = failure.get();
+        if (previous != null) {
+            throw new UncheckedIOException(previous);
+        }
+        try {
+            resultSink.writeOrFail(image.toString(), response, error, elapsedMillis, RESULT_WRITE_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            if (failure.compareAndSet(null, e)) {
+                System.err.println("Error writing the result of " + image + ": " + e.getMessage());
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Hand the result of a watched image to the result sink before the image is moved away.
+     * If the sink cannot take it, watching stops and the image stays in the spool directory,
+     * to be recognized again by the next run.
+     *
+     * @return Whether the image may be moved away
+     */
+    private boolean writeWatchResult(FolderWatcher watcher, AtomicReference<IOException> failure, Path image,
+                                     StateResponse response, String error, long elapsedMillis) {
+        if (resultSink == null) {
+            return true;
+        }
+        if (failure.get() != null) {
+            return false;
+        }
+        try {
+            resultSink.writeOrFail(image.toString(), response, error, elapsedMillis, RESULT_WRITE_TIMEOUT_MILLIS);
+            return true;
+        } catch (IOException e) {
+            if (failure.compareAndSet(null, e)) {
+                System.err.println("Error writing the result of " + image + ": " + e.getMessage());
+                watcher.close();
+            }
+            return false;
+        }
+    }
 
-        if (result.isVehicleFound()) {
-            System.out.println("Make: " + result.getMake());
-            System.out.println("Model: " + result.getModel());
-            System.out.println("Generation: " + result.getGeneration());
-            System.out.println("Color: " + result.getColor());
-            System.out.println("Side: " + result.getSide());
-            System.out.println("Angle: " + result.getAngle());
-            System.out.println("Recognition Probability: " +
-                (result.getRecognitionProbability() != null ?
-                    String.format("%.2f%%", result.getRecognitionProbability() * 100) : "N/A"));
+    private static String moveAway(FolderWatcher watcher, SpoolArchiver archiver, Path image, StateResponse response,
+                                   boolean recognized, AtomicLong archived, AtomicLong failed) {
+        try {
+            Path target = recognized ? archiver.archive(image, response) : archiver.fail(image, response);
+            (recognized ? archived : failed).incrementAndGet();
+            watcher.release(image);
+            return " moved to " + target;
+        } catch (IOException e) {
+            // Keep it claimed so that the same file is not uploaded again in a loop
+            System.err.println("Error moving " + image + ": " + e.getMessage());
+            return " not moved";
+        }
+    }
 
-            if (result.getRectArea() != null) {
-                System.out.println("Bounding Box: " + result.getRectArea());
+    /**
+     * Execute the serve command - keep this client warm and let recognize, state and
+     * recognize-wait commands run through it until the process is stopped.
+     *
+     * @param options Port, threads, endpoint file and polling options
+     */
+    public void serve(ServeOptions options) {
+        Path endpointFile = options.getEndpointFile() != null
+            ? Path.of(options.getEndpointFile()) : DaemonEndpoint.defaultFile();
+        DaemonEndpoint running = DaemonEndpoint.read(endpointFile);
+        if (running != null && running.isAlive()) {
+            System.err.println("A daemon is already running with pid " + running.getPid() + " (" + endpointFile + ")");
+            return;
+        }
+
+        String token = DaemonEndpoint.newToken();
+        DaemonServer server;
+        try {
+            server = new DaemonServer(client, imagePreprocessor, resultCache, options.getPollingStrategy(),
+                options.getMaxWaitTime() * 1000L, token, options.getPort(), options.getThreads());
+        } catch (IOException e) {
+            System.err.println("Error starting daemon: " + e.getMessage());
+            return;
+        }
+        server.registerMetrics(metrics);
+        DaemonEndpoint endpoint = new DaemonEndpoint(server.getPort(), baseUrl, DaemonEndpoint.hashKey(apiKey),
+            token, ProcessHandle.current().pid());
+        try {
+            endpoint.write(endpointFile);
+        } catch (IOException e) {
+            System.err.println("Error writing daemon endpoint file: " + e.getMessage());
+            server.close();
+            return;
+        }
+        if (connectionSettings.getPrewarmConnections() == 0) {
+            // The first forwarded command should not pay for the TLS handshake either
+            client.prewarm(1);
+        }
+
+        System.out.println("VRecon daemon listening on http://127.0.0.1:" + server.getPort()
+            + " for " + describeEndpoints() + " (pid " + endpoint.getPid() + ")");
+        System.out.println("Endpoint file: " + endpointFile);
+        System.out.println("Polling: " + options.getPollingStrategy());
+        System.out.println("recognize, state and recognize-wait with the same --url and --key now run "
+            + "through this daemon. Press Ctrl+C to stop.");
+
+        CountDownLatch stopRequested = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread shutdownHook = new Thread(() -> {
+            stopRequested.countDown();
+            try {
+                stopped.await(options.getMaxWaitTime() * 1000L + SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        try {
+            stopRequested.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Forwarding commands run directly from now on
+            endpoint.delete(endpointFile);
+            server.close(options.getMaxWaitTime() * 1000L);
+            stopped.countDown();
+        }
+    }
 
-            System.out.println("Damage Detected: " + result.isDamageDetected());
-            if (result.isDamageDetected() && result.getDamageArea() != null) {
-                System.out.println("Damage Areas: " + result.getDamageArea());
+    /**
+     * Execute the bench command - replay images at a target rate or concurrency and report
+     * latency percentiles.
+     *
+     * @param options Images, load model and polling options
+     */
+    public void bench(BenchOptions options) {
+        List<PreparedImage> images = new ArrayList<>();
+        try {
+            for (Path image : ImageSources.resolve(options.getInput())) {
+                // Prepare once up front so that preprocessing does not count as request latency
+                PreparedImage prepared = imagePreprocessor != null
+                    ? imagePreprocessor.prepare(image) : PreparedImage.original(image);
+                // The images stay in memory for the whole run, outside the in-flight byte budget
+                prepared.release();
+                images.add(prepared);
             }
+        } catch (IOException e) {
+            System.err.println("Error reading bench input: " + e.getMessage());
+            return;
+        }
+        if (images.isEmpty()) {
+            System.err.println("No images found in: " + options.getInput());
+            return;
+        }
 
-            System.out.println("Multiple Vehicles: " + result.isMultipleVehiclesInImage());
+        boolean openLoop = options.getRate() > 0;
+        System.out.println("Benchmarking " + describeEndpoints() + " with " + images.size() + " images from: " + options.getInput());
+        if (openLoop) {
+            System.out.println("Load: open loop, " + options.getRate() + " jobs/s (max in flight: "
+                + options.getMaxInFlight() + ")");
+        } else {
+            System.out.println("Load: closed loop, " + options.getUsers() + " users");
+        }
+        System.out.println("Duration: " + options.getDuration() + " s" + (options.getWarmup() > 0
+            ? " after " + options.getWarmup() + " s warmup" : ""));
+        System.out.println("Polling: " + options.getPollingStrategy());
+        System.out.println();
+
+        PrintStream logStream = null;
+        HistogramLogWriter logWriter = null;
+        if (options.getHistogramLog() != null) {
+            try {
+                logStream = new PrintStream(options.getHistogramLog(), "UTF-8");
+            } catch (IOException e) {
+                System.err.println("Error opening histogram log: " + e.getMessage());
+                return;
+            }
+            logWriter = new HistogramLogWriter(logStream);
+            logWriter.outputComment("vrecon bench " + describeEndpoints() + (openLoop
+                ? " rate=" + options.getRate() : " users=" + options.getUsers()) + ", values in microseconds");
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(System.currentTimeMillis());
+            logWriter.setBaseTime(System.currentTimeMillis());
+            logWriter.outputLegend();
+        }
+
+        VReconAsyncApiClient asyncClient = newAsyncClient();
+        LoadGenerator generator = new LoadGenerator(asyncClient, images, options.getPollingStrategy(),
+            options.getMaxWaitTime() * 1000L);
+        HistogramLogWriter writer = logWriter;
+        LoadGenerator.IntervalListener listener = interval -> {
+            if (writer != null) {
+                for (LoadReport.Phase phase : LoadReport.Phase.values()) {
+                    writer.outputIntervalHistogram(interval.getHistogram(phase));
+                }
+            }
+            double seconds = Math.max(1, interval.getEndMillis() - interval.getStartMillis()) / 1000.0;
+            System.out.println(String.format("%6.1f/s started %6.1f/s done  in flight %4d  errors %4d  "
+                    + "submit p99 %7.1f ms  done p99 %8.1f ms  poll p99 %7.1f ms",
+                interval.getStarted() / seconds, interval.getCompleted() / seconds, interval.getInFlight(),
+                interval.getErrors(), percentileMillis(interval.getHistogram(LoadReport.Phase.SUBMIT), 99),
+                percentileMillis(interval.getHistogram(LoadReport.Phase.DONE), 99),
+                percentileMillis(interval.getHistogram(LoadReport.Phase.POLL), 99)));
+        };
 
-            if (result.getDetectionNotes() != null) {
-                System.out.println("Notes: " + result.getDetectionNotes());
+        try {
+            long warmup = options.getWarmup() * 1000L;
+            long duration = options.getDuration() * 1000L;
+            long reportInterval = options.getReportInterval() * 1000L;
+            LoadReport report = openLoop
+                ? generator.runOpenLoop(options.getRate(), options.getMaxInFlight(), warmup, duration,
+                    reportInterval, listener)
+                : generator.runClosedLoop(options.getUsers(), warmup, duration, reportInterval, listener);
+            printBenchReport(report);
+            if (options.getHistogramLog() != null) {
+                System.out.println();
+                System.out.println("Histogram log: " + options.getHistogramLog());
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Benchmark was interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            asyncClient.close();
+            if (logStream != null) {
+                logStream.close();
             }
         }
     }
 
+    private void printBenchReport(LoadReport report) {
+        System.out.println();
+        System.out.println("Bench Summary:");
+        System.out.println("--------------");
+        System.out.println("Elapsed: " + String.format("%.1f s", report.getElapsedMillis() / 1000.0));
+        System.out.println("Started: " + report.getStarted() + String.format(" (%.2f jobs/s)", report.getStartRate()));
+        System.out.println("Completed: " + report.getCompleted()
+            + String.format(" (%.2f jobs/s)", report.getThroughput()));
+        System.out.println("Failed: " + report.getFailed());
+        System.out.println("Errors: " + report.getErrors());
+        for (Map.Entry<String, Long> error : report.getErrorBreakdown().entrySet()) {
+            System.out.println("  " + error.getKey() + ": " + error.getValue());
+        }
+        System.out.println();
+        printLatencyHeader("Latency");
+        for (LoadReport.Phase phase : LoadReport.Phase.values()) {
+            printLatencyRow(phase.getTag(), report.getHistogram(phase));
+        }
+        System.out.println("(milliseconds; queue, processing, server and result_delay from server timestamps)");
+    }
+
+    private void printJobTimings() {
+        if (jobTimings.getHistogram(JobTimings.Phase.SERVER).getTotalCount() == 0
+                && jobTimings.getInvalid() == 0) {
+            return;
+        }
+        System.out.println();
+        printLatencyHeader("Job phase");
+        for (JobTimings.Phase phase : JobTimings.Phase.values()) {
+            printLatencyRow(phase.getTag(), jobTimings.getHistogram(phase));
+        }
+        System.out.println("(milliseconds; queue and processing only for jobs polled while PROCESSING)");
+        if (jobTimings.getInvalid() > 0) {
+            System.out.println("Jobs with unusable server timestamps: " + jobTimings.getInvalid());
+        }
+    }
+
+    private static void printLatencyHeader(String title) {
+        System.out.println(String.format("%-12s %8s %10s %10s %10s %10s %10s %10s",
+            title, "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+    }
+
+    private static void printLatencyRow(String tag, Histogram histogram) {
+        System.out.println(String.format("%-12s %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f",
+            tag, histogram.getTotalCount(), histogram.getMean() / 1000.0,
+            percentileMillis(histogram, 50), percentileMillis(histogram, 90), percentileMillis(histogram, 99),
+            percentileMillis(histogram, 99.9), histogram.getMaxValue() / 1000.0));
+    }
+
+    private static double percentileMillis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private void printBatchSummary(BatchSummary summary) {
+        System.out.println();
+        System.out.println("Batch Summary:");
+        System.out.println("--------------");
+        System.out.println("Images: " + summary.getTotal());
+        System.out.println("Completed: " + summary.getCompleted());
+        System.out.println("Failed: " + summary.getFailed());
+        System.out.println("Errors: " + summary.getErrors());
+        if (summary.getResumed() > 0 || summary.getSkipped() > 0) {
+            System.out.println("Resumed: " + summary.getResumed());
+            System.out.println("Skipped (finished in journal): " + summary.getSkipped());
+        }
+        System.out.println("Elapsed: " + String.format("%.1f s", summary.getElapsedMillis() / 1000.0));
+        System.out.println("Throughput: " + String.format("%.2f images/s", summary.getThroughput()));
+        System.out.println("Average Latency: " + String.format("%.0f ms", summary.getAverageLatencyMillis()));
+        System.out.println("Max Latency: " + summary.getMaxLatencyMillis() + " ms");
+        if (summary.getPrepared() > 0) {
+            long original = summary.getOriginalBytes();
+            long uploaded = summary.getUploadedBytes();
+            System.out.println("Preprocessed: " + summary.getPrepared() + " images, " + formatBytes(original)
+                + " -> " + formatBytes(uploaded) + String.format(" (%.0f%% saved)",
+                original == 0 ? 0.0 : 100.0 * (original - uploaded) / original));
+        }
+        if (resultCache != null) {
+            System.out.println("Cache Hits: " + summary.getCached());
+            System.out.println("Cache Misses: " + resultCache.getMisses());
+            System.out.println("Cache Evictions: " + resultCache.getEvictions());
+        }
+        printJobTimings();
+    }
+
+    /**
+     * @return Base URL of a single endpoint, or the endpoints and key labels of a pool
+     */
+    private String describeEndpoints() {
+        List<ApiEndpoint> endpoints = pool.getEndpoints();
+        if (endpoints.size() == 1) {
+            return baseUrl;
+        }
+        List<String> names = new ArrayList<>();
+        for (ApiEndpoint endpoint : endpoints) {
+            names.add(endpoint.toString());
+        }
+        return String.join(", ", names);
+    }
+
+    /**
+     * Async client sharing the pool, metrics, byte budget and job timings of the sync client.
+     */
+    private VReconAsyncApiClient newAsyncClient() {
+        VReconAsyncApiClient asyncClient = new VReconAsyncApiClient(pool, verbose, connectionSettings);
+        asyncClient.setMetrics(metrics);
+        asyncClient.setByteBudget(byteBudget);
+        asyncClient.setJobTimings(jobTimings);
+        return asyncClient;
+    }
+
+    private PreparedImage prepareImage(String imagePath) throws IOException {
+        if (imagePreprocessor == null) {
+            return PreparedImage.original(Path.of(imagePath));
+        }
+        PreparedImage image = imagePreprocessor.prepare(Path.of(imagePath));
+        System.out.println("Preprocessed: " + describeSize(image));
+        return image;
+    }
+
+    static String describeSize(PreparedImage image) {
+        if (!image.isModified()) {
+            return formatBytes(image.getSize()) + " unchanged";
+        }
+        return formatBytes(image.getOriginalSize()) + " -> " + formatBytes(image.getSize())
+            + ", saved " + formatBytes(image.getBytesSaved());
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private String describeResult(StateResponse response) {
+        RecognitionResult result = response.getResult();
+        if (!RecognitionStates.isCompleted(response.getState()) || result == null) {
+            return "";
+        }
+        if (!result.isVehicleFound()) {
+            return "no vehicle ";
+        }
+        return result.getMake() + " " + result.getModel() + " ";
+    }
+
     /**
      * Close resources.
      */
     public void close() {
+        if (resultSink != null) {
+            try {
+                resultSink.close();
+            } catch (IOException e) {
+                System.err.println("Error writing results: " + e.getMessage());
+            }
+            if (resultSink.getDropped() > 0) {
+                System.err.println("Results not written because the writer fell behind: " + resultSink.getDropped());
+            }
+        }
+        if (imagePreprocessor != null) {
+            imagePreprocessor.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+        if (metricsFile != null) {
+            try {
+                metricsFile.close();
+            } catch (IOException e) {
+                System.err.println("Error writing metrics file: " + e.getMessage());
+            }
+        }
         try {
             client.close();
         } catch (IOException e) {
             // Ignore close errors
         }
+        if (tracer != null) {
+            try {
+                tracer.close();
+            } catch (IOException e) {
+                System.err.println("Error writing trace file: " + e.getMessage());
+            }
+            if (tracer.getDropped() > 0) {
+                System.err.println("Spans not written because the trace writer fell behind: " + tracer.getDropped());
+            }
+        }
     }
 }
@@ -0,0 +1,139 @@
+package io.vrecon.demo.commands;
+
+import io.vrecon.demo.client.PollingStrategy;
+
+/**
+ * Options of the watch command.
+ */
+public class WatchOptions {
+
+    private String directory;
+    private String archiveDirectory;
+    private String failedDirectory;
+    private long settleTime;
+    private int queueSize;
+    private int concurrency;
+    private PollingStrategy pollingStrategy;
+    private int maxWaitTime;
+    private boolean async;
+    private int pollThreads;
+    private int submitThreads;
+
+    /**
+     * @return Spool directory the images are dropped into
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return Directory recognized images are moved to, or null for a processed folder in the spool directory
+     */
+    public String getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    public void setArchiveDirectory(String archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+    }
+
+    /**
+     * @return Directory failed images are moved to, or null for a failed folder in the spool directory
+     */
+    public String getFailedDirectory() {
+        return failedDirectory;
+    }
+
+    public void setFailedDirectory(String failedDirectory) {
+        this.failedDirectory = failedDirectory;
+    }
+
+    /**
+     * @return Time in milliseconds a new file must stay unchanged before it is uploaded
+     */
+    public long getSettleTime() {
+        return settleTime;
+    }
+
+    public void setSettleTime(long settleTime) {
+        this.settleTime = settleTime;
+    }
+
+    /**
+     * @return Maximum number of settled images waiting for a free slot
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @return Maximum number of images in flight
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public PollingStrategy getPollingStrategy() {
+        return pollingStrategy;
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        this.pollingStrategy = pollingStrategy;
+    }
+
+    /**
+     * @return Maximum time to wait per image in seconds
+     */
+    public int getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public void setMaxWaitTime(int maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * @return Use the non-blocking client instead of worker threads
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    /**
+     * @return Number of threads of a shared poll scheduler, 0 to poll on the job threads
+     */
+    public int getPollThreads() {
+        return pollThreads;
+    }
+
+    public void setPollThreads(int pollThreads) {
+        this.pollThreads = pollThreads;
+    }
+
+    /**
+     * @return Number of upload threads when a poll scheduler is used
+     */
+    public int getSubmitThreads() {
+        return submitThreads;
+    }
+
+    public void setSubmitThreads(int submitThreads) {
+        this.submitThreads = submitThreads;
+    }
+}
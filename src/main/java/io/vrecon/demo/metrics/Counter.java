@@ -0,0 +1,38 @@
+package io.vrecon.demo.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing count. Updates are striped and never contend.
+ */
+public final class Counter implements Metric {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    public void writePrometheus(Appendable out, String name, String labels) throws IOException {
+        Metric.writeSample(out, name, labels, get());
+    }
+
+    @Override
+    public void snapshot(Map<String, Double> values, String name, String labels) {
+        values.put(Metric.sampleName(name, "", labels), (double) get());
+    }
+}
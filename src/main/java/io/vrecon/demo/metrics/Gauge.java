@@ -0,0 +1,42 @@
+package io.vrecon.demo.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Value that goes up and down, such as the number of jobs in flight.
+ */
+public final class Gauge implements Metric {
+
+    private final LongAdder value = new LongAdder();
+
+    Gauge() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void decrement() {
+        value.decrement();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    public void writePrometheus(Appendable out, String name, String labels) throws IOException {
+        Metric.writeSample(out, name, labels, get());
+    }
+
+    @Override
+    public void snapshot(Map<String, Double> values, String name, String labels) {
+        values.put(Metric.sampleName(name, "", labels), (double) get());
+    }
+}
@@ -0,0 +1,121 @@
+package io.vrecon.demo.metrics;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of observed values over fixed buckets, exposed as a Prometheus histogram.
+ *
+ * An observation is a short scan of the bucket bounds and two striped additions. JMX gets
+ * the count, the sum and p50, p90 and p99 estimated by linear interpolation within a bucket,
+ * the same way Prometheus' histogram_quantile does.
+ */
+public final class Histogram implements Metric {
+
+    /** Bucket bounds in seconds for request and job latencies */
+    public static final double[] LATENCY_SECONDS =
+        {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    /** Bucket bounds for small counts, such as polls per job */
+    public static final double[] SMALL_COUNTS = {1, 2, 3, 4, 5, 7, 10, 15, 20, 30, 50};
+
+    private static final double[] SNAPSHOT_QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] SNAPSHOT_SUFFIXES = {"_p50", "_p90", "_p99"};
+
+    private final double[] bounds;
+    private final LongAdder[] buckets;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        this.buckets = new LongAdder[this.bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void observe(double value) {
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Observe a duration, recorded in seconds.
+     */
+    public void observeNanos(long nanos) {
+        observe(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    @Override
+    public void writePrometheus(Appendable out, String name, String labels) throws IOException {
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += buckets[i].sum();
+            Metric.writeSample(out, name + "_bucket", separator + "le=\"" + Metric.formatValue(bounds[i]) + "\"",
+                cumulative);
+        }
+        cumulative += buckets[bounds.length].sum();
+        Metric.writeSample(out, name + "_bucket", separator + "le=\"+Inf\"", cumulative);
+        Metric.writeSample(out, name + "_sum", labels, getSum());
+        Metric.writeSample(out, name + "_count", labels, cumulative);
+    }
+
+    @Override
+    public void snapshot(Map<String, Double> values, String name, String labels) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        values.put(Metric.sampleName(name, "_count", labels), (double) total);
+        values.put(Metric.sampleName(name, "_sum", labels), getSum());
+        for (int i = 0; i < SNAPSHOT_QUANTILES.length; i++) {
+            values.put(Metric.sampleName(name, SNAPSHOT_SUFFIXES[i], labels),
+                quantile(counts, total, SNAPSHOT_QUANTILES[i]));
+        }
+    }
+
+    private double quantile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        double rank = quantile * total;
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (cumulative + counts[i] >= rank) {
+                if (i == bounds.length) {
+                    // Above the highest bound nothing is known beyond the bound itself
+                    return bounds[bounds.length - 1];
+                }
+                double lower = i == 0 ? 0 : bounds[i - 1];
+                double fraction = counts[i] == 0 ? 0 : (rank - cumulative) / counts[i];
+                return lower + (bounds[i] - lower) * fraction;
+            }
+            cumulative += counts[i];
+        }
+        return bounds[bounds.length - 1];
+    }
+}
@@ -0,0 +1,52 @@
+package io.vrecon.demo.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * One labeled series of a metric family.
+ */
+interface Metric {
+
+    /**
+     * Append the samples of this series in Prometheus text format.
+     *
+     * @param out    Destination
+     * @param name   Family name
+     * @param labels Rendered label pairs without braces, empty for none
+     */
+    void writePrometheus(Appendable out, String name, String labels) throws IOException;
+
+    /**
+     * Add the current values of this series under flat attribute names.
+     *
+     * @param values Destination
+     * @param name   Family name
+     * @param labels Rendered label pairs without braces, empty for none
+     */
+    void snapshot(Map<String, Double> values, String name, String labels);
+
+    static String sampleName(String name, String suffix, String labels) {
+        return labels.isEmpty() ? name + suffix : name + suffix + "{" + labels + "}";
+    }
+
+    static void writeSample(Appendable out, String name, String labels, double value) throws IOException {
+        out.append(labels.isEmpty() ? name : name + "{" + labels + "}")
+            .append(' ')
+            .append(formatValue(value))
+            .append('\n');
+    }
+
+    static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
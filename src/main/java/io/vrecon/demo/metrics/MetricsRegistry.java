@@ -0,0 +1,187 @@
+package io.vrecon.demo.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+/**
+ * Named, labeled counters, gauges and histograms of one process.
+ *
+ * Metrics are looked up once and then updated without locking. Asking again for the same
+ * name and labels returns the same instance. Values computed on demand, such as pool
+ * statistics, are registered as functions and read only when the registry is exported.
+ *
+ * The registry is exported in Prometheus text format through {@link #writePrometheus(Appendable)},
+ * {@link MetricsHttpServer} and {@link MetricsTextfileWriter}, and to JMX through
+ * {@link #registerMBean(String)}.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    /**
+     * @param name   Metric name, by convention ending in {@code _total}
+     * @param help   Description
+     * @param labels Label names and values in turn
+     * @return The counter with this name and labels
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return family(name, help, "counter").series(labels, key -> new Counter(), Counter.class);
+    }
+
+    /**
+     * Register a counter whose value is read from a function, such as a count kept elsewhere.
+     */
+    public void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "counter").series(labels, key -> new FunctionMetric(value), FunctionMetric.class);
+    }
+
+    /**
+     * @param name   Metric name
+     * @param help   Description
+     * @param labels Label names and values in turn
+     * @return The gauge with this name and labels
+     */
+    public Gauge gauge(String name, String help, String... labels) {
+        return family(name, help, "gauge").series(labels, key -> new Gauge(), Gauge.class);
+    }
+
+    /**
+     * Register a gauge whose value is read from a function when the registry is exported.
+     * A later registration with the same name and labels replaces the function.
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").replace(labels, new FunctionMetric(value));
+    }
+
+    /**
+     * @param name    Metric name, by convention ending in the unit, such as {@code _seconds}
+     * @param help    Description
+     * @param buckets Upper bounds of the buckets
+     * @param labels  Label names and values in turn
+     * @return The histogram with this name and labels
+     */
+    public Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return family(name, help, "histogram").series(labels, key -> new Histogram(buckets), Histogram.class);
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format, version 0.0.4.
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        for (Map.Entry<String, Family> entry : new TreeMap<>(families).entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(escapeHelp(family.help)).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Metric> series : new TreeMap<>(family.series).entrySet()) {
+                series.getValue().writePrometheus(out, name, series.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return Current values by sample name, such as
+     *         {@code vrecon_requests_total{endpoint="state",status="200"}}
+     */
+    public Map<String, Double> snapshot() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Family> entry : new TreeMap<>(families).entrySet()) {
+            for (Map.Entry<String, Metric> series : new TreeMap<>(entry.getValue().series).entrySet()) {
+                series.getValue().snapshot(values, entry.getKey(), series.getKey());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Register the registry with the platform MBean server as {@code io.vrecon:type=Metrics,name=<name>},
+     * with one read-only attribute per sample.
+     *
+     * @param name Name distinguishing this registry from others in the same JVM
+     * @throws JMException if the MBean cannot be registered
+     */
+    public void registerMBean(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new MetricsMBean(this), new ObjectName("io.vrecon:type=Metrics,name=" + name));
+    }
+
+    private static String labels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"").append(escapeLabel(labels[i + 1])).append('"');
+        }
+        return rendered.toString();
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static final class Family {
+        final String help;
+        final String type;
+        final Map<String, Metric> series = new ConcurrentHashMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+
+        <T extends Metric> T series(String[] labels, Function<String, Metric> factory, Class<T> kind) {
+            Metric metric = series.computeIfAbsent(labels(labels), factory);
+            if (!kind.isInstance(metric)) {
+                throw new IllegalArgumentException("Series " + labels(labels) + " is already registered differently");
+            }
+            return kind.cast(metric);
+        }
+
+        void replace(String[] labels, Metric metric) {
+            series.put(labels(labels), metric);
+        }
+    }
+
+    private static final class FunctionMetric implements Metric {
+        private final DoubleSupplier value;
+
+        FunctionMetric(DoubleSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public void writePrometheus(Appendable out, String name, String labels) throws IOException {
+            Metric.writeSample(out, name, labels, value.getAsDouble());
+        }
+
+        @Override
+        public void snapshot(Map<String, Double> values, String name, String labels) {
+            values.put(Metric.sampleName(name, "", labels), value.getAsDouble());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.vrecon.demo.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a registry in Prometheus text format to a file at a fixed interval, for the
+ * node_exporter textfile collector or any other file-based pickup.
+ *
+ * Each write goes to a temporary file next to the target that is then renamed over it, so
+ * a reader never sees a partial file. A final write happens on close.
+ */
+public class MetricsTextfileWriter implements AutoCloseable {
+
+    private final MetricsRegistry registry;
+    private final Path file;
+    private final Path temporary;
+    private final ScheduledExecutorService executor;
+    private volatile IOException lastError;
+
+    /**
+     * @param registry       Registry to write
+     * @param file           Target file, by convention ending in {@code .prom}
+     * @param intervalMillis Time between writes in milliseconds
+     */
+    public MetricsTextfileWriter(MetricsRegistry registry, Path file, long intervalMillis) {
+        this.registry = registry;
+        this.file = file.toAbsolutePath();
+        this.temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vrecon-metrics-file");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::writeQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the current values now.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void write() throws IOException {
+        try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            registry.writePrometheus(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+            lastError = null;
+        } catch (IOException e) {
+            lastError = e;
+        }
+    }
+
+    /**
+     * @return Error of the most recent periodic write, or null if it succeeded
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Stop the periodic writes and write the final values.
+     *
+     * @throws IOException if the final write fails
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        write();
+    }
+}
@@ -0,0 +1,66 @@
+package io.vrecon.demo.mock;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random duration in milliseconds, parsed from a short text form:
+ * <ul>
+ *   <li>{@code fixed:<ms>} or just {@code <ms>}</li>
+ *   <li>{@code uniform:<min>-<max>}</li>
+ *   <li>{@code exp:<mean>} - exponential, memoryless arrivals</li>
+ *   <li>{@code lognormal:<median>:<sigma>} - long right tail, typical of service times</li>
+ * </ul>
+ */
+public interface Distribution {
+
+    /**
+     * @return A non-negative sample in milliseconds
+     */
+    long sample();
+
+    static Distribution fixed(long millis) {
+        return () -> millis;
+    }
+
+    /**
+     * @param spec Distribution in one of the text forms above
+     * @return The parsed distribution
+     * @throws IllegalArgumentException if the text cannot be parsed
+     */
+    static Distribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed" -> {
+                    return fixed(Long.parseLong(parts[1]));
+                }
+                case "uniform" -> {
+                    String[] range = parts[1].split("-");
+                    long min = Long.parseLong(range[0]);
+                    long max = Long.parseLong(range[1]);
+                    if (max < min) {
+                        throw new IllegalArgumentException("Empty range in distribution: " + spec);
+                    }
+                    return () -> ThreadLocalRandom.current().nextLong(min, max + 1);
+                }
+                case "exp" -> {
+                    double mean = Double.parseDouble(parts[1]);
+                    return () -> Math.round(-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+                }
+                case "lognormal" -> {
+                    double mu = Math.log(Double.parseDouble(parts[1]));
+                    double sigma = Double.parseDouble(parts[2]);
+                    return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+                }
+                default -> {
+                    if (parts.length == 1) {
+                        return fixed(Long.parseLong(parts[0]));
+                    }
+                    throw new IllegalArgumentException("Unknown distribution: " + spec);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid distribution: " + spec, e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.vrecon.demo.mock;
+
+import io.vrecon.demo.model.RecognitionResult;
+
+import java.util.List;
+
+/**
+ * Behavior of the {@link MockVReconServer}. Rates are probabilities between 0.0 and 1.0,
+ * durations are in milliseconds.
+ */
+public class MockServerSettings {
+
+    private int port = 8080;
+    private int threads = 64;
+    private Distribution queueTime = Distribution.parse("exp:300");
+    private Distribution processingTime = Distribution.parse("lognormal:1500:0.4");
+    private Distribution latency = Distribution.fixed(0);
+    private double spikeRate;
+    private Distribution spikeLatency = Distribution.fixed(2000);
+    private double errorRate;
+    private double failRate;
+    private double throttleRate;
+    private double serverErrorRate;
+    private int retryAfterSeconds = 1;
+    private long retention = 600_000;
+    private List<RecognitionResult> results;
+
+    /**
+     * @return TCP port to listen on, 0 for any free port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @return Number of threads handling requests; a request holds its thread during injected latency
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return Time a job stays PENDING
+     */
+    public Distribution getQueueTime() {
+        return queueTime;
+    }
+
+    public void setQueueTime(Distribution queueTime) {
+        this.queueTime = queueTime;
+    }
+
+    /**
+     * @return Time a job stays PROCESSING
+     */
+    public Distribution getProcessingTime() {
+        return processingTime;
+    }
+
+    public void setProcessingTime(Distribution processingTime) {
+        this.processingTime = processingTime;
+    }
+
+    /**
+     * @return Delay added to every response
+     */
+    public Distribution getLatency() {
+        return latency;
+    }
+
+    public void setLatency(Distribution latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @return Share of responses delayed by an additional latency spike
+     */
+    public double getSpikeRate() {
+        return spikeRate;
+    }
+
+    public void setSpikeRate(double spikeRate) {
+        this.spikeRate = spikeRate;
+    }
+
+    public Distribution getSpikeLatency() {
+        return spikeLatency;
+    }
+
+    public void setSpikeLatency(Distribution spikeLatency) {
+        this.spikeLatency = spikeLatency;
+    }
+
+    /**
+     * @return Share of recognize requests rejected with success=false and HTTP 200
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @return Share of accepted jobs that end in FAILED instead of DONE
+     */
+    public double getFailRate() {
+        return failRate;
+    }
+
+    public void setFailRate(double failRate) {
+        this.failRate = failRate;
+    }
+
+    /**
+     * @return Share of requests answered with HTTP 429 and a Retry-After header
+     */
+    public double getThrottleRate() {
+        return throttleRate;
+    }
+
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    /**
+     * @return Share of requests answered with HTTP 503
+     */
+    public double getServerErrorRate() {
+        return serverErrorRate;
+    }
+
+    public void setServerErrorRate(double serverErrorRate) {
+        this.serverErrorRate = serverErrorRate;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return How long finished jobs can still be queried before they are forgotten
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * @return Results returned for DONE jobs, picked at random; null for the bundled examples
+     */
+    public List<RecognitionResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<RecognitionResult> results) {
+        this.results = results;
+    }
+}
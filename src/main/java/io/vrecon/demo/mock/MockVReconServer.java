@@ -0,0 +1,377 @@
+package io.vrecon.demo.mock;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.vrecon.demo.model.RecognitionResult;
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.RecognizeResponse;
+import io.vrecon.demo.model.StateRequest;
+import io.vrecon.demo.model.StateResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for the VRecon API, for load and soak tests without the production service.
+ *
+ * Implements the recognize and state endpoints. Accepted jobs move from PENDING to PROCESSING
+ * to DONE (or FAILED) after durations drawn from the configured distributions. Faults are
+ * injected at configurable rates: 429 with Retry-After, 503, rejected submits, failed jobs
+ * and latency spikes.
+ *
+ * Injected latency is spent on the request thread. Responses completed from any other thread
+ * are only flushed when the JDK server's dispatcher next wakes up, up to a second later, which
+ * would distort every measurement taken against the mock.
+ */
+public class MockVReconServer implements AutoCloseable {
+
+    private static final String RECOGNIZE_PATH = "/api/securapi/recognize";
+    private static final String STATE_PATH = "/api/securapi/state";
+    private static final DateTimeFormatter TIMESTAMP =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final MockServerSettings settings;
+    private final ObjectMapper objectMapper;
+    private final List<RecognitionResult> results;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final LongAdder recognizeRequests = new LongAdder();
+    private final LongAdder stateRequests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder spikes = new LongAdder();
+    private HttpServer server;
+    private ExecutorService requestThreads;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param settings Behavior of the server
+     * @throws IOException if the bundled results cannot be read
+     */
+    public MockVReconServer(MockServerSettings settings) throws IOException {
+        this.settings = settings;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        if (settings.getResults() != null && !settings.getResults().isEmpty()) {
+            this.results = settings.getResults();
+        } else {
+            try (InputStream bundled = MockVReconServer.class.getResourceAsStream("results.json")) {
+                if (bundled == null) {
+                    throw new IOException("Bundled mock results not found");
+                }
+                this.results = objectMapper.readValue(bundled, new TypeReference<List<RecognitionResult>>() {});
+            }
+        }
+    }
+
+    /**
+     * Read canned results from a JSON file holding an array of recognition results.
+     */
+    public static List<RecognitionResult> readResults(Path file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper.readValue(file.toFile(), new TypeReference<List<RecognitionResult>>() {});
+    }
+
+    /**
+     * Start listening on all interfaces.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public void start() throws IOException {
+        // Small JSON responses would otherwise wait for delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        AtomicInteger threadIds = new AtomicInteger();
+        requestThreads = Executors.newFixedThreadPool(settings.getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "mock-http-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mock-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::expireJobs, 10, 10, TimeUnit.SECONDS);
+
+        server = HttpServer.create(new InetSocketAddress(settings.getPort()), 1024);
+        server.createContext(RECOGNIZE_PATH, exchange -> handle(exchange, true));
+        server.createContext(STATE_PATH, exchange -> handle(exchange, false));
+        server.setExecutor(requestThreads);
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, boolean recognize) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                drain(exchange);
+                send(exchange, 405, error("Method not allowed"));
+                return;
+            }
+            (recognize ? recognizeRequests : stateRequests).increment();
+
+            String apiKey;
+            String requestUuid = null;
+            try {
+                if (recognize) {
+                    apiKey = readRecognizeRequest(exchange);
+                } else {
+                    StateRequest request = objectMapper.readValue(exchange.getRequestBody(), StateRequest.class);
+                    apiKey = request.getApiKey();
+                    requestUuid = request.getRequestUuid();
+                }
+            } catch (IOException e) {
+                send(exchange, 400, error("Invalid request: " + e.getMessage()));
+                return;
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            double fault = random.nextDouble();
+            int status = 200;
+            Object body;
+            if (fault < settings.getThrottleRate()) {
+                throttled.increment();
+                status = 429;
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(settings.getRetryAfterSeconds()));
+                body = error("Too many requests");
+            } else if (fault < settings.getThrottleRate() + settings.getServerErrorRate()) {
+                serverErrors.increment();
+                status = 503;
+                body = error("Service temporarily unavailable");
+            } else if (apiKey == null || apiKey.isBlank()) {
+                body = error("Invalid API key");
+            } else if (recognize) {
+                body = submit(random);
+            } else {
+                body = state(requestUuid);
+            }
+
+            long delay = settings.getLatency().sample();
+            if (settings.getSpikeRate() > 0 && random.nextDouble() < settings.getSpikeRate()) {
+                spikes.increment();
+                delay += settings.getSpikeLatency().sample();
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exchange.close();
+                    return;
+                }
+            }
+            send(exchange, status, body);
+        } catch (RuntimeException e) {
+            exchange.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the API key from a recognize request. The image is tokenized but never
+     * materialized as a String.
+     */
+    private String readRecognizeRequest(HttpExchange exchange) throws IOException {
+        String apiKey = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(exchange.getRequestBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("apiKey".equals(field)) {
+                    apiKey = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return apiKey;
+    }
+
+    private RecognizeResponse submit(ThreadLocalRandom random) {
+        RecognizeResponse response = new RecognizeResponse();
+        if (random.nextDouble() < settings.getErrorRate()) {
+            rejected.increment();
+            response.setSuccess(false);
+            response.setError("Recognition service rejected the request");
+            return response;
+        }
+        long now = System.currentTimeMillis();
+        long processingAt = now + settings.getQueueTime().sample();
+        long finishedAt = processingAt + settings.getProcessingTime().sample();
+        boolean fails = random.nextDouble() < settings.getFailRate();
+        RecognitionResult result = fails ? null : results.get(random.nextInt(results.size()));
+        String requestUuid = UUID.randomUUID().toString();
+        jobs.put(requestUuid, new Job(now, processingAt, finishedAt, result));
+
+        response.setSuccess(true);
+        response.setRequestUuid(requestUuid);
+        response.setState(RecognitionStates.PENDING);
+        return response;
+    }
+
+    private StateResponse state(String requestUuid) {
+        Job job = requestUuid != null ? jobs.get(requestUuid) : null;
+        if (job == null) {
+            return error("Request not found");
+        }
+        long now = System.currentTimeMillis();
+        StateResponse response = new StateResponse();
+        response.setSuccess(true);
+        response.setRequestUuid(requestUuid);
+        response.setCreatedAt(TIMESTAMP.format(Instant.ofEpochMilli(job.createdAt)));
+        if (now < job.processingAt) {
+            response.setState(RecognitionStates.PENDING);
+            response.setUpdatedAt(response.getCreatedAt());
+        } else if (now < job.finishedAt) {
+            response.setState(RecognitionStates.PROCESSING);
+            response.setUpdatedAt(TIMESTAMP.format(Instant.ofEpochMilli(job.processingAt)));
+        } else {
+            response.setUpdatedAt(TIMESTAMP.format(Instant.ofEpochMilli(job.finishedAt)));
+            if (job.result == null) {
+                response.setState(RecognitionStates.FAILED);
+                response.setError("Recognition failed");
+            } else {
+                response.setState(RecognitionStates.DONE);
+                response.setResult(job.result);
+            }
+        }
+        return response;
+    }
+
+    private static StateResponse error(String message) {
+        StateResponse response = new StateResponse();
+        response.setSuccess(false);
+        response.setError(message);
+        return response;
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        send(exchange, status, objectMapper.writeValueAsBytes(body));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        byte[] discard = new byte[8192];
+        while (in.read(discard) >= 0) {
+            // Consume the rest of the request so that the connection can be reused
+        }
+    }
+
+    private void expireJobs() {
+        long cutoff = System.currentTimeMillis() - settings.getRetention();
+        jobs.values().removeIf(job -> job.finishedAt < cutoff);
+    }
+
+    public long getRecognizeRequests() {
+        return recognizeRequests.sum();
+    }
+
+    public long getStateRequests() {
+        return stateRequests.sum();
+    }
+
+    /**
+     * @return Number of requests answered with HTTP 429
+     */
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return Number of requests answered with HTTP 503
+     */
+    public long getServerErrors() {
+        return serverErrors.sum();
+    }
+
+    /**
+     * @return Number of recognize requests rejected with success=false
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return Number of responses delayed by a latency spike
+     */
+    public long getSpikes() {
+        return spikes.sum();
+    }
+
+    /**
+     * @return Number of jobs that can currently be queried
+     */
+    public int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Stop accepting connections and release the threads.
+     */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (requestThreads != null) {
+            requestThreads.shutdownNow();
+        }
+    }
+
+    private static final class Job {
+        final long createdAt;
+        final long processingAt;
+        final long finishedAt;
+        final RecognitionResult result;
+
+        Job(long createdAt, long processingAt, long finishedAt, RecognitionResult result) {
+            this.createdAt = createdAt;
+            this.processingAt = processingAt;
+            this.finishedAt = finishedAt;
+            this.result = result;
+        }
+    }
+}
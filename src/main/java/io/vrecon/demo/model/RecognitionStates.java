@@ -0,0 +1,30 @@
+package io.vrecon.demo.model;
+
+/**
+ * Recognition states reported by the VRecon API.
+ */
+public final class RecognitionStates {
+
+    public static final String PENDING = "PENDING";
+    public static final String PROCESSING = "PROCESSING";
+    public static final String DONE = "DONE";
+    public static final String DELIVERED = "DELIVERED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private RecognitionStates() {}
+
+    /**
+     * @return true if the state is final and will not change any more
+     */
+    public static boolean isTerminal(String state) {
+        return DONE.equals(state) || DELIVERED.equals(state) || FAILED.equals(state) || CANCELLED.equals(state);
+    }
+
+    /**
+     * @return true if the state carries a recognition result
+     */
+    public static boolean isCompleted(String state) {
+        return DONE.equals(state) || DELIVERED.equals(state);
+    }
+}
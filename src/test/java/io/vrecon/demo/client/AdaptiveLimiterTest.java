@@ -0,0 +1,90 @@
+package io.vrecon.demo.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimiterTest {
+
+    @Test
+    void limitGrowsWithSuccessesUpToMaximum() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings(2, 1, 3));
+
+        for (int round = 0; round < 10; round++) {
+            List<AdaptiveLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.getLimit(); i++) {
+                permits.add(limiter.acquire());
+            }
+            permits.forEach(AdaptiveLimiter.Permit::success);
+        }
+
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void throttlingHalvesLimitDownToMinimum() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings(8, 3, 8));
+
+        limiter.acquire().throttled(0);
+        assertEquals(4, limiter.getLimit());
+
+        // Decreases are spaced by a round trip, which is not known before the first success
+        limiter.acquire().success();
+        Thread.sleep(5);
+        limiter.acquire().throttled(0);
+        assertEquals(3, limiter.getLimit());
+        assertEquals(2, limiter.getThrottled());
+    }
+
+    @Test
+    void requestsBeyondLimitWaitForReleaseInArrivalOrder() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings(1, 1, 1));
+        AdaptiveLimiter.Permit first = limiter.acquire();
+
+        CompletableFuture<AdaptiveLimiter.Permit> second = limiter.acquireAsync();
+        CompletableFuture<AdaptiveLimiter.Permit> third = limiter.acquireAsync();
+        assertFalse(second.isDone());
+        assertEquals(2, limiter.getWaiting());
+
+        first.ignore();
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        second.join().ignore();
+        third.get(1, TimeUnit.SECONDS).ignore();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void retryAfterPausesAllRequests() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings(8, 1, 8));
+        limiter.acquire().throttled(300);
+
+        long start = System.nanoTime();
+        CompletableFuture<AdaptiveLimiter.Permit> next = limiter.acquireAsync();
+        assertFalse(next.isDone());
+        assertFalse(limiter.canAdmit());
+
+        next.get(5, TimeUnit.SECONDS).success();
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMillis >= 250, "admitted after " + waitedMillis + " ms");
+        assertTrue(limiter.canAdmit());
+    }
+
+    private static LimiterSettings settings(int initial, int min, int max) {
+        LimiterSettings settings = new LimiterSettings();
+        settings.setInitialConcurrency(initial);
+        settings.setMinConcurrency(min);
+        settings.setMaxConcurrency(max);
+        // Latency of the in-memory permits says nothing about load
+        settings.setLatencyTolerance(1000);
+        return settings;
+    }
+}
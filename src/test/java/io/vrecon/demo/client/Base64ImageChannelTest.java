@@ -0,0 +1,121 @@
+package io.vrecon.demo.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Base64ImageChannelTest {
+
+    private static final byte[] PREFIX = "{\"image\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final int CHUNK = Base64ImageChannel.RAW_CHUNK_SIZE;
+
+    @Test
+    void matchesJdkEncoderAtChunkBoundaries() throws IOException {
+        int[] sizes = {0, 1, 2, 3, 4, CHUNK - 1, CHUNK, CHUNK + 1, CHUNK + 2, 2 * CHUNK, 3 * CHUNK - 1};
+        for (int size : sizes) {
+            byte[] image = randomBytes(size);
+            byte[] expected = envelope(image);
+            for (int bufferSize : new int[] {1, 7, 8192, 256 * 1024}) {
+                byte[] actual = readAll(new Base64ImageChannel(PREFIX, Channels.newChannel(
+                    new ByteArrayInputStream(image)), size, SUFFIX), bufferSize);
+                assertArrayEquals(expected, actual, size + " bytes read with buffer of " + bufferSize);
+            }
+            assertEquals(Base64.getEncoder().encodeToString(image).length(), Base64ImageChannel.encodedLength(size));
+        }
+    }
+
+    @Test
+    void handlesShortReadsFromTheFile() throws IOException {
+        byte[] image = randomBytes(CHUNK + 5);
+        ReadableByteChannel trickle = new ReadableByteChannel() {
+            private final ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(image));
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                ByteBuffer limited = dst.slice().limit(Math.min(dst.remaining(), 1000));
+                int n = source.read(limited);
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return source.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        };
+
+        assertArrayEquals(envelope(image), readAll(new Base64ImageChannel(PREFIX, trickle, image.length, SUFFIX),
+            4096));
+    }
+
+    @Test
+    void failsWhenImageIsShorterOrLongerThanAnnounced() {
+        byte[] image = randomBytes(CHUNK + 5);
+
+        IOException shorter = assertThrows(IOException.class, () -> readAll(new Base64ImageChannel(PREFIX,
+            Channels.newChannel(new ByteArrayInputStream(image)), image.length + 1, SUFFIX), 4096));
+        assertTrue(shorter.getMessage().contains("changed"), shorter.getMessage());
+        assertThrows(IOException.class, () -> readAll(new Base64ImageChannel(PREFIX,
+            Channels.newChannel(new ByteArrayInputStream(image)), image.length - 1, SUFFIX), 4096));
+        assertThrows(IOException.class, () -> readAll(new Base64ImageChannel(PREFIX,
+            Channels.newChannel(new ByteArrayInputStream(image)), CHUNK - 1, SUFFIX), 4096));
+    }
+
+    @Test
+    void readAfterCloseFails() throws IOException {
+        Base64ImageChannel channel = new Base64ImageChannel(PREFIX,
+            Channels.newChannel(new ByteArrayInputStream(new byte[10])), 10, SUFFIX);
+        channel.close();
+
+        assertThrows(ClosedChannelException.class, () -> channel.read(ByteBuffer.allocate(16)));
+    }
+
+    private static byte[] readAll(ReadableByteChannel channel, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        try (channel) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                out.write(buffer.array(), 0, buffer.limit());
+                buffer.clear();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] envelope(byte[] image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(PREFIX);
+        out.writeBytes(Base64.getEncoder().encode(image));
+        out.writeBytes(SUFFIX);
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
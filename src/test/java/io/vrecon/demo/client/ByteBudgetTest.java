@@ -0,0 +1,81 @@
+package io.vrecon.demo.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteBudgetTest {
+
+    @Test
+    void reservationsAreGrantedInArrivalOrder() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+        ByteBudget.Reservation first = budget.reserve(80);
+
+        CompletableFuture<ByteBudget.Reservation> large = budget.reserveAsync(50);
+        // Would fit next to the first one, but must not overtake the large one
+        CompletableFuture<ByteBudget.Reservation> small = budget.reserveAsync(10);
+        assertFalse(large.isDone());
+        assertFalse(small.isDone());
+        assertEquals(2, budget.getWaiting());
+
+        first.release();
+
+        assertTrue(large.isDone());
+        assertTrue(small.isDone());
+        assertEquals(60, budget.getReserved());
+        large.join().release();
+        small.join().release();
+        assertEquals(0, budget.getReserved());
+    }
+
+    @Test
+    void shrinkGivesBackTheDifference() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+        ByteBudget.Reservation reservation = budget.reserve(100);
+        CompletableFuture<ByteBudget.Reservation> waiting = budget.reserveAsync(40);
+
+        reservation.shrink(70);
+        assertFalse(waiting.isDone());
+        reservation.shrink(80);
+        assertEquals(70, reservation.getBytes());
+
+        reservation.shrink(60);
+        assertTrue(waiting.isDone());
+        assertEquals(100, budget.getReserved());
+
+        reservation.release();
+        reservation.release();
+        assertEquals(40, budget.getReserved());
+    }
+
+    @Test
+    void cancelledWaiterDoesNotHoldUpTheQueue() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+        ByteBudget.Reservation first = budget.reserve(60);
+        CompletableFuture<ByteBudget.Reservation> large = budget.reserveAsync(100);
+        CompletableFuture<ByteBudget.Reservation> small = budget.reserveAsync(30);
+
+        large.cancel(false);
+
+        assertTrue(small.isDone());
+        assertEquals(90, budget.getReserved());
+        first.release();
+        small.join().release();
+        assertEquals(0, budget.getReserved());
+    }
+
+    @Test
+    void oversizedReservationIsCutToTheBudget() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+
+        try (ByteBudget.Reservation reservation = budget.reserve(1000)) {
+            assertEquals(100, reservation.getBytes());
+            assertFalse(budget.reserveAsync(1).isDone());
+        }
+        assertEquals(1, budget.getReserved());
+    }
+}
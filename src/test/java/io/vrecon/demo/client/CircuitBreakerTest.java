@@ -0,0 +1,84 @@
+package io.vrecon.demo.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 50;
+
+    @Test
+    void opensAfterConsecutiveFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("/v1/state", 2, OPEN_MILLIS);
+        fail(breaker);
+        breaker.acquire();
+        breaker.onSuccess();
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(breaker);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+        assertEquals(1, breaker.getRejected());
+    }
+
+    @Test
+    void halfOpenLetsOneTrialThroughAndClosesOnSuccess() throws Exception {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(breaker.isAvailable());
+
+        breaker.acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailures());
+        assertDoesNotThrow(breaker::acquire);
+        assertDoesNotThrow(breaker::acquire);
+    }
+
+    @Test
+    void failedTrialOpensAgain() throws Exception {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        breaker.acquire();
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+    }
+
+    @Test
+    void ignoredTrialAllowsAnotherTrial() throws Exception {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        breaker.acquire();
+        breaker.onIgnored();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertDoesNotThrow(breaker::acquire);
+    }
+
+    private static CircuitBreaker open() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker("/v1/state", 1, OPEN_MILLIS);
+        fail(breaker);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static void fail(CircuitBreaker breaker) throws CircuitOpenException {
+        breaker.acquire();
+        breaker.onFailure();
+    }
+}
@@ -0,0 +1,96 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static io.vrecon.demo.client.StateResponses.done;
+import static io.vrecon.demo.client.StateResponses.error;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobJournalTest {
+
+    private static final long SYNC_MILLIS = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaySkipsTruncatedLastLineAndAppendsAfterIt() throws IOException {
+        Path file = dir.resolve("journal");
+        Files.writeString(file,
+            "{\"type\":\"submit\",\"image\":\"/a.jpg\",\"requestUuid\":\"uuid-a\",\"state\":\"PENDING\",\"time\":1}\n"
+                + "{\"type\":\"submit\",\"image\":\"/b.jpg\",\"requ",
+            StandardCharsets.UTF_8);
+
+        try (JobJournal journal = new JobJournal(file, SYNC_MILLIS)) {
+            assertEquals(1, journal.size());
+            assertEquals("uuid-a", journal.get("/a.jpg").getRequestUuid());
+            assertNull(journal.get("/b.jpg"));
+            journal.finished("/a.jpg", done("uuid-a"));
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        try (JobJournal journal = new JobJournal(file, SYNC_MILLIS)) {
+            JobJournal.Entry entry = journal.get("/a.jpg");
+            assertTrue(entry.isFinished());
+            assertEquals(RecognitionStates.DONE, entry.getState());
+        }
+    }
+
+    @Test
+    void compactionKeepsLatestRecordOfEachImage() throws IOException {
+        Path file = dir.resolve("journal");
+        try (JobJournal journal = new JobJournal(file, SYNC_MILLIS)) {
+            journal.submitted("/a.jpg", "uuid-a");
+            journal.submitted("/b.jpg", "uuid-b");
+            journal.finished("/b.jpg", done("uuid-b"));
+            for (int i = 0; i < 10_010; i++) {
+                journal.stateObserved("uuid-a", i % 2 == 0 ? RecognitionStates.PROCESSING : RecognitionStates.PENDING);
+            }
+        }
+
+        long lines = Files.readAllLines(file, StandardCharsets.UTF_8).size();
+        assertTrue(lines < 100, "journal was not compacted, " + lines + " lines");
+        try (JobJournal journal = new JobJournal(file, SYNC_MILLIS)) {
+            assertEquals(2, journal.size());
+            JobJournal.Entry open = journal.get("/a.jpg");
+            assertEquals("uuid-a", open.getRequestUuid());
+            assertEquals(RecognitionStates.PENDING, open.getState());
+            assertFalse(open.isFinished());
+            JobJournal.Entry finished = journal.get("/b.jpg");
+            assertTrue(finished.isFinished());
+            assertEquals("uuid-b", finished.getResult().getRequestUuid());
+        }
+    }
+
+    @Test
+    void failedResponseDiscardsRequestButTimeoutKeepsIt() throws IOException {
+        Path file = dir.resolve("journal");
+        try (JobJournal journal = new JobJournal(file, SYNC_MILLIS)) {
+            journal.submitted("/a.jpg", "uuid-a");
+            journal.submitted("/b.jpg", "uuid-b");
+            journal.finished("/a.jpg", error("Request not found"));
+            journal.finished("/b.jpg", error(VReconApiClient.TIMEOUT_ERROR));
+        }
+
+        try (JobJournal journal = new JobJournal(file, SYNC_MILLIS)) {
+            JobJournal.Entry discarded = journal.get("/a.jpg");
+            assertNotNull(discarded);
+            assertNull(discarded.getRequestUuid());
+            assertFalse(discarded.isFinished());
+            assertEquals("uuid-b", journal.get("/b.jpg").getRequestUuid());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static io.vrecon.demo.client.StateResponses.done;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCacheTest {
+
+    private static final long DAY_MILLIS = 24 * 3600 * 1000L;
+    private static final String CONFIGURATION = "preprocessing=original";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void expiredEntryIsMissingAndDeleted() throws Exception {
+        ResultCache cache = new ResultCache(dir, 1 << 20, 100, CONFIGURATION);
+        cache.put("aa", done("uuid-a"));
+        assertNotNull(cache.get("aa"));
+
+        Thread.sleep(150);
+
+        assertNull(cache.get("aa"));
+        assertEquals(0, cache.getEntryCount());
+        assertFalse(Files.exists(dir.resolve("aa.json")));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() throws IOException {
+        ResultCache sizing = new ResultCache(dir.resolve("sizing"), 1 << 20, DAY_MILLIS, CONFIGURATION);
+        sizing.put("aa", done("uuid-a"));
+        long entryBytes = sizing.getTotalBytes();
+
+        ResultCache cache = new ResultCache(dir.resolve("cache"), entryBytes * 2 + entryBytes / 2, DAY_MILLIS,
+            CONFIGURATION);
+        cache.put("aa", done("uuid-a"));
+        cache.put("bb", done("uuid-b"));
+        // Touch the older entry, so that the other one is the least recently used
+        assertNotNull(cache.get("aa"));
+        cache.put("cc", done("uuid-c"));
+
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("bb"));
+        assertEquals("uuid-a", cache.get("aa").getRequestUuid());
+        assertEquals("uuid-c", cache.get("cc").getRequestUuid());
+    }
+
+    @Test
+    void entriesSurviveReopen() throws IOException {
+        ResultCache cache = new ResultCache(dir, 1 << 20, DAY_MILLIS, CONFIGURATION);
+        cache.put("aa", done("uuid-a"));
+        cache.put("bb", done("uuid-b"));
+
+        ResultCache reopened = new ResultCache(dir, 1 << 20, DAY_MILLIS, CONFIGURATION);
+
+        assertEquals(2, reopened.getEntryCount());
+        assertEquals(cache.getTotalBytes(), reopened.getTotalBytes());
+        assertEquals("uuid-b", reopened.get("bb").getRequestUuid());
+    }
+
+    @Test
+    void unreadableEntryIsDropped() throws IOException {
+        ResultCache cache = new ResultCache(dir, 1 << 20, DAY_MILLIS, CONFIGURATION);
+        cache.put("aa", done("uuid-a"));
+        Files.writeString(dir.resolve("aa.json"), "{\"success\":tr");
+
+        assertNull(cache.get("aa"));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getTotalBytes());
+        assertFalse(Files.exists(dir.resolve("aa.json")));
+    }
+
+    @Test
+    void staleTemporaryFilesAreDeletedOnOpen() throws IOException {
+        Path stale = Files.writeString(dir.resolve("aa123.tmp"), "{");
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+        Path writing = Files.writeString(dir.resolve("bb456.tmp"), "{");
+
+        ResultCache cache = new ResultCache(dir, 1 << 20, DAY_MILLIS, CONFIGURATION);
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(writing));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void keyDependsOnContentAndConfiguration() throws IOException {
+        Path image = Files.write(dir.resolve("a.jpg"), new byte[] {1, 2, 3});
+        Path copy = Files.write(dir.resolve("copy.jpg"), new byte[] {1, 2, 3});
+        Path other = Files.write(dir.resolve("b.jpg"), new byte[] {1, 2, 4});
+        ResultCache cache = new ResultCache(dir.resolve("cache"), 1 << 20, DAY_MILLIS, CONFIGURATION);
+        ResultCache resized = new ResultCache(dir.resolve("cache"), 1 << 20, DAY_MILLIS,
+            "preprocessing=max-dimension=1600");
+
+        assertEquals(cache.key(image), cache.key(copy));
+        assertNotEquals(cache.key(image), cache.key(other));
+        assertNotEquals(cache.key(image), resized.key(image));
+    }
+
+    @Test
+    void onlyCompletedResultsAreStored() throws IOException {
+        ResultCache cache = new ResultCache(dir, 1 << 20, DAY_MILLIS, CONFIGURATION);
+        StateResponse failed = done("uuid-a");
+        failed.setState(RecognitionStates.FAILED);
+        cache.put("aa", failed);
+
+        assertEquals(0, cache.getEntryCount());
+        assertNull(cache.get("aa"));
+    }
+}
@@ -0,0 +1,112 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.vrecon.demo.client.StateResponses.state;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateCoalescerTest {
+
+    @Test
+    void concurrentCallersShareOneRequest() throws Exception {
+        StateCoalescer coalescer = new StateCoalescer(0, 0);
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StateResponse response = state("uuid", RecognitionStates.PROCESSING);
+        StateCoalescer.Fetch fetch = () -> {
+            fetches.incrementAndGet();
+            started.countDown();
+            await(release);
+            return response;
+        };
+
+        CompletableFuture<StateResponse> first = CompletableFuture.supplyAsync(() -> get(coalescer, fetch));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<StateResponse> second = CompletableFuture.supplyAsync(() -> get(coalescer, fetch));
+        while (coalescer.getCoalesced() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertSame(response, first.get(5, TimeUnit.SECONDS));
+        assertSame(response, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void finalStatesAreAnsweredFromMemory() throws IOException {
+        StateCoalescer coalescer = new StateCoalescer(60_000, 10);
+        AtomicInteger fetches = new AtomicInteger();
+        StateCoalescer.Fetch fetch = () -> {
+            fetches.incrementAndGet();
+            return state("uuid", RecognitionStates.DONE);
+        };
+
+        StateResponse first = coalescer.get("uuid", false, fetch);
+
+        assertSame(first, coalescer.get("uuid", true, fetch));
+        assertEquals(1, fetches.get());
+        assertEquals(1, coalescer.getCacheHits());
+    }
+
+    @Test
+    void failedRequestIsNotShared() throws IOException {
+        StateCoalescer coalescer = new StateCoalescer(0, 0);
+
+        assertThrows(IOException.class, () -> coalescer.get("uuid", false, () -> {
+            throw new IOException("connection reset");
+        }));
+        assertThrows(AssertionError.class, () -> coalescer.get("uuid", false, () -> {
+            throw new AssertionError("broken parser");
+        }));
+
+        StateResponse response = state("uuid", RecognitionStates.PENDING);
+        assertSame(response, coalescer.get("uuid", false, () -> response));
+    }
+
+    @Test
+    void asyncFetchThatThrowsCompletesTheFlight() throws Exception {
+        StateCoalescer coalescer = new StateCoalescer(0, 0);
+
+        CompletableFuture<StateResponse> failed = coalescer.getAsync("uuid", false, () -> {
+            throw new IllegalStateException("client closed");
+        });
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+
+        StateResponse response = state("uuid", RecognitionStates.PENDING);
+        CompletableFuture<StateResponse> next = coalescer.getAsync("uuid", false,
+            () -> CompletableFuture.completedFuture(response));
+        assertSame(response, next.get(5, TimeUnit.SECONDS));
+    }
+
+    private static StateResponse get(StateCoalescer coalescer, StateCoalescer.Fetch fetch) {
+        try {
+            return coalescer.get("uuid", false, fetch);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.vrecon.demo.client;
+
+import io.vrecon.demo.model.RecognitionStates;
+import io.vrecon.demo.model.StateResponse;
+
+/**
+ * State responses as the API returns them, for tests.
+ */
+final class StateResponses {
+
+    private StateResponses() {
+    }
+
+    /**
+     * @return Successful response reporting a job in the given state
+     */
+    static StateResponse state(String requestUuid, String state) {
+        StateResponse response = new StateResponse();
+        response.setSuccess(true);
+        response.setRequestUuid(requestUuid);
+        response.setState(state);
+        return response;
+    }
+
+    /**
+     * @return Successful response of a completed job
+     */
+    static StateResponse done(String requestUuid) {
+        return state(requestUuid, RecognitionStates.DONE);
+    }
+
+    /**
+     * @return Response of a request the API refused, without a state
+     */
+    static StateResponse error(String message) {
+        StateResponse response = new StateResponse();
+        response.setSuccess(false);
+        response.setError(message);
+        return response;
+    }
+}
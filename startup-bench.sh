@@ -0,0 +1,71 @@
+#!/bin/bash
+
+# Compare the time from process start to the first answered API request of the plain JVM,
+# the JVM with the class data sharing archive and the native executable. Each run is a
+# `state` command against a local mock server, so the network adds next to nothing.
+#
+# Build the variants first:
+#   mvn -Pcds package      # target/vrecon-demo-client-1.0.0-SNAPSHOT.jar and .jsa
+#   mvn -Pnative package   # target/vrecon-demo-client (GraalVM JDK only)
+# Variants that were not built are skipped.
+#
+# Usage: ./startup-bench.sh [runs]
+
+set -e
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+JAR="$SCRIPT_DIR/target/vrecon-demo-client-1.0.0-SNAPSHOT.jar"
+ARCHIVE="$SCRIPT_DIR/target/vrecon-demo-client-1.0.0-SNAPSHOT.jsa"
+NATIVE="$SCRIPT_DIR/target/vrecon-demo-client"
+RUNS="${1:-10}"
+PORT="${MOCK_PORT:-18999}"
+
+if [ ! -f "$JAR" ]; then
+    echo "Error: $JAR not found. Run mvn package first."
+    exit 1
+fi
+
+java -jar "$JAR" mock-server --port "$PORT" --latency 0 > /dev/null &
+MOCK_PID=$!
+trap 'kill $MOCK_PID 2> /dev/null' EXIT
+for _ in $(seq 50); do
+    if (exec 3<> "/dev/tcp/127.0.0.1/$PORT") 2> /dev/null; then
+        break
+    fi
+    sleep 0.1
+done
+
+ARGS=(state --url "http://127.0.0.1:$PORT" --key startup-bench --uuid 00000000-0000-0000-0000-000000000000 --no-daemon)
+
+# Prints min, median and mean wall time in milliseconds of RUNS runs, after one unmeasured run
+# that brings the files into the page cache.
+measure() {
+    local name="$1"
+    shift
+    "$@" "${ARGS[@]}" > /dev/null 2>&1
+    local times=()
+    for _ in $(seq "$RUNS"); do
+        local start end
+        start=$(date +%s%N)
+        "$@" "${ARGS[@]}" > /dev/null 2>&1
+        end=$(date +%s%N)
+        times+=($(( (end - start) / 1000000 )))
+    done
+    printf '%s\n' "${times[@]}" | sort -n | awk -v name="$name" '
+        { t[NR] = $1; sum += $1 }
+        END { printf "%-10s %8d %8d %8.0f\n", name, t[1], t[int((NR + 1) / 2)], sum / NR }'
+}
+
+echo "Time to first answered request, $RUNS runs (ms)"
+printf "%-10s %8s %8s %8s\n" variant min median mean
+measure jvm java -jar "$JAR"
+if [ -f "$ARCHIVE" ]; then
+    measure jvm-cds java -XX:SharedArchiveFile="$ARCHIVE" -Xlog:disable -Xlog:all=warning:stderr -jar "$JAR"
+else
+    echo "jvm-cds    skipped, build with: mvn -Pcds package"
+fi
+if [ -x "$NATIVE" ]; then
+    measure native "$NATIVE"
+else
+    echo "native     skipped, build with a GraalVM JDK: mvn -Pnative package"
+fi
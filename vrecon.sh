@@ -9,4 +9,11 @@ if [ ! -f "$JAR_PATH" ]; then
     exit 1
 fi
 
-java -jar "$JAR_PATH" "$@"
+JAVA_OPTS=()
+ARCHIVE_PATH="$SCRIPT_DIR/vrecon-demo-client.jsa"
+if [ -f "$ARCHIVE_PATH" ]; then
+    # JVM warnings go to stderr, so an outdated archive cannot garble the command output
+    JAVA_OPTS+=(-XX:SharedArchiveFile="$ARCHIVE_PATH" -Xlog:disable -Xlog:all=warning:stderr)
+fi
+
+java "${JAVA_OPTS[@]}" -jar "$JAR_PATH" "$@"